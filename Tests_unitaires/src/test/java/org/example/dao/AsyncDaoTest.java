@@ -0,0 +1,121 @@
+package org.example.dao;
+
+import org.example.model.Prestataire;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+final class AsyncDaoTest {
+
+    @Test
+    void writesAreAppliedInSubmissionOrder() throws Exception {
+        try (InMemoryDataStore store = new InMemoryDataStore(); AsyncDao dao = new AsyncDao(store)) {
+            List<CompletableFuture<Integer>> inserts = new ArrayList<>();
+            for (int i = 0; i < 20; i++) {
+                String name = String.format("P%02d", i);
+                inserts.add(dao.write("insertPrestataire", s -> s.insertPrestataire(prestataire(name))));
+            }
+            CompletableFuture.allOf(inserts.toArray(CompletableFuture[]::new)).get(5, TimeUnit.SECONDS);
+            for (int i = 1; i < inserts.size(); i++) {
+                assertTrue(inserts.get(i).join() > inserts.get(i - 1).join());
+            }
+
+            List<Prestataire> all = dao.read("list", s -> s.list("")).get(5, TimeUnit.SECONDS);
+            assertEquals(20, all.size());
+            AsyncDao.CallStats stats = dao.stats().get("insertPrestataire");
+            assertEquals(20, stats.calls());
+            assertEquals(0, stats.failures());
+        }
+    }
+
+    @Test
+    void queuedCallsPastTheirDeadlineOrCancelledNeverRun() throws Exception {
+        try (InMemoryDataStore store = new InMemoryDataStore();
+             AsyncDao dao = new AsyncDao(store, 1, Duration.ofMillis(100))) {
+            CountDownLatch release = new CountDownLatch(1);
+            CompletableFuture<Void> blocker = dao.read("blocker", Duration.ZERO, s -> {
+                try {
+                    release.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return null;
+            });
+            AtomicBoolean lateRan = new AtomicBoolean();
+            AtomicBoolean cancelledRan = new AtomicBoolean();
+            CompletableFuture<Object> late = dao.read("late", s -> {
+                lateRan.set(true);
+                return null;
+            });
+            CompletableFuture<Object> cancelled = dao.read("cancelled", Duration.ZERO, s -> {
+                cancelledRan.set(true);
+                return null;
+            });
+            cancelled.cancel(false);
+
+            ExecutionException ex = assertThrows(ExecutionException.class, () -> late.get(5, TimeUnit.SECONDS));
+            assertInstanceOf(TimeoutException.class, AsyncDao.unwrap(ex));
+            release.countDown();
+            blocker.get(5, TimeUnit.SECONDS);
+            // Une lecture soumise après coup passe derrière les deux appels abandonnés.
+            dao.read("after", s -> s.list("")).get(5, TimeUnit.SECONDS);
+
+            assertFalse(lateRan.get());
+            assertFalse(cancelledRan.get());
+            // Le dépassement est compté par le minuteur juste après avoir réveillé l'appelant.
+            long until = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+            while (!dao.stats().containsKey("late") && System.nanoTime() < until) Thread.sleep(5);
+            assertEquals(1, dao.stats().get("late").timeouts());
+            assertEquals(0, dao.stats().get("late").calls());
+        }
+    }
+
+    @Test
+    void failuresReachTheCallerAndAreCounted() {
+        try (InMemoryDataStore store = new InMemoryDataStore(); AsyncDao dao = new AsyncDao(store)) {
+            dao.write("insertPrestataire", s -> s.insertPrestataire(prestataire("Alpha"))).join();
+            CompletableFuture<Integer> duplicate = dao.write("insertPrestataire", s -> s.insertPrestataire(prestataire("ALPHA")));
+
+            ExecutionException ex = assertThrows(ExecutionException.class, () -> duplicate.get(5, TimeUnit.SECONDS));
+            assertInstanceOf(IllegalArgumentException.class, AsyncDao.unwrap(ex));
+            assertEquals(1, dao.stats().get("insertPrestataire").failures());
+        }
+    }
+
+    @Test
+    void pausedCallsWaitPastTheirDeadlineAndRunInOrderOnResume() throws Exception {
+        try (InMemoryDataStore store = new InMemoryDataStore();
+             AsyncDao dao = new AsyncDao(store, 1, Duration.ofMillis(100))) {
+            dao.pause();
+            CompletableFuture<Integer> insert = dao.write("insertPrestataire", s -> s.insertPrestataire(prestataire("Alpha")));
+            CompletableFuture<List<Prestataire>> list = dao.read("list", s -> s.list(""));
+
+            // Le délai de lecture ne court pas pendant la pause.
+            Thread.sleep(250);
+            assertFalse(insert.isDone());
+            assertFalse(list.isDone());
+
+            dao.resume();
+            insert.get(5, TimeUnit.SECONDS);
+            assertEquals(1, list.get(5, TimeUnit.SECONDS).size());
+        }
+    }
+
+    private static Prestataire prestataire(String name) {
+        return new Prestataire(0, name, "", "", "", 0, "", "", "");
+    }
+}
@@ -0,0 +1,133 @@
+package org.example.dao;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.SecureRandom;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+final class BackupServiceTest {
+
+    @TempDir
+    Path tempDir;
+
+    private UserDB userDb;
+    private final byte[] key = new byte[32];
+
+    @BeforeEach
+    void setUp() throws Exception {
+        new SecureRandom().nextBytes(key);
+        userDb = new UserDB(tempDir.resolve("alice.db").toString());
+        userDb.openPool(key);
+        try (Statement st = userDb.getConnection().createStatement()) {
+            st.execute("CREATE TABLE t(id INTEGER PRIMARY KEY, payload TEXT NOT NULL)");
+        }
+        insertRows(2_000);
+    }
+
+    @AfterEach
+    void tearDown() {
+        userDb.close();
+    }
+
+    @Test
+    void keepsOnlyTheConfiguredNumberOfGenerations() throws Exception {
+        BackupService backups = new BackupService(userDb, tempDir.resolve("backups"), 2);
+        Path first = backups.backupNow();
+        Thread.sleep(5);
+        backups.backupNow();
+        Thread.sleep(5);
+        Path last = backups.backupNow();
+
+        List<Path> generations = backups.generations();
+        assertEquals(2, generations.size());
+        assertEquals(last, generations.get(0));
+        assertFalse(Files.exists(first));
+        assertFalse(Files.exists(tempDir.resolve("backups").resolve("alice.db.part")));
+        assertEquals(2_000, countRows(last));
+    }
+
+    @Test
+    void foregroundWritesDuringBackupDoNotRestartTheCopy() throws Exception {
+        int[] writes = {0};
+        BackupService backups = new BackupService(userDb, tempDir.resolve("backups"), 1, () -> {
+            // Appelé entre deux paquets de pages : simule l'application qui écrit pendant la copie.
+            insertRows(1);
+            return ++writes[0];
+        });
+        backups.setThrottle(8, 0);
+
+        Path copy = backups.backupNow();
+
+        assertTrue(writes[0] > 10, "la copie doit se faire en plusieurs paquets");
+        assertEquals(2_000, countRows(copy), "la copie reflète l'instantané du début de sauvegarde");
+        assertEquals(2_000 + writes[0], countRows(userDb.path()));
+    }
+
+    @Test
+    void lockedSessionOpensNoKeyedConnection() throws Exception {
+        BackupService backups = new BackupService(userDb, tempDir.resolve("backups"), 1);
+        userDb.lock();
+
+        assertTrue(userDb.isLocked());
+        assertThrows(IllegalStateException.class, userDb::openSecondaryConnection);
+        assertThrows(IllegalStateException.class, backups::backupNow);
+        assertFalse(Files.exists(tempDir.resolve("backups").resolve("alice.db.part")));
+
+        userDb.unlock(key);
+        assertEquals(2_000, countRows(backups.backupNow()));
+    }
+
+    @Test
+    void lockingDuringACopyDiscardsThePartialGeneration() throws Exception {
+        BackupService[] holder = new BackupService[1];
+        int[] calls = {0};
+        BackupService backups = new BackupService(userDb, tempDir.resolve("backups"), 1, () -> {
+            // Le premier appel sert d'état initial ; le verrouillage tombe après le premier paquet de pages.
+            if (++calls[0] == 2) holder[0].pause();
+            return 0L;
+        });
+        holder[0] = backups;
+        backups.setThrottle(8, 0);
+
+        assertThrows(SQLException.class, backups::backupNow);
+
+        assertTrue(calls[0] >= 2, "le verrouillage doit survenir pendant la copie");
+        assertTrue(backups.generations().isEmpty());
+        assertFalse(Files.exists(tempDir.resolve("backups").resolve("alice.db.part")));
+    }
+
+    private void insertRows(int n) {
+        try (PreparedStatement ps = userDb.getConnection().prepareStatement("INSERT INTO t(payload) VALUES(?)")) {
+            for (int i = 0; i < n; i++) {
+                ps.setString(1, "x".repeat(400) + i);
+                ps.executeUpdate();
+            }
+        } catch (SQLException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private int countRows(Path file) throws SQLException {
+        try (Connection c = userDb.openCopy(file);
+             Statement st = c.createStatement();
+             ResultSet rs = st.executeQuery("SELECT count(*) FROM t")) {
+            rs.next();
+            return rs.getInt(1);
+        }
+    }
+}
@@ -10,6 +10,7 @@ import org.junit.jupiter.api.io.TempDir;
 import java.nio.file.Path;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
 
 final class DBNotificationSettingsEmailTest {
 
@@ -64,4 +65,21 @@ final class DBNotificationSettingsEmailTest {
 
         assertEquals(updated.normalized(), loaded);
     }
+
+    @Test
+    void settingsAreReadOnceThenPublishedBySave() {
+        NotificationSettings first = db.loadNotificationSettings();
+        assertSame(first, db.loadNotificationSettings());
+
+        NotificationSettings defaults = NotificationSettings.defaults();
+        NotificationSettings changed = new NotificationSettings(
+                7, 10, 30, defaults.repeatEveryHours(), defaults.highlightOverdue(), defaults.desktopPopup(),
+                defaults.snoozeMinutes(), false, "", "", "smtp.example.com", 587, "", "", SmtpSecurity.STARTTLS,
+                defaults.subjectTemplate(), defaults.bodyTemplate());
+        db.saveNotificationSettings(changed);
+
+        NotificationSettings published = db.loadNotificationSettings();
+        assertEquals(changed.normalized(), published);
+        assertSame(published, db.loadNotificationSettings());
+    }
 }
@@ -0,0 +1,143 @@
+package org.example.dao;
+
+import org.example.model.Facture;
+import org.example.model.NotificationSettings;
+import org.example.model.Prestataire;
+import org.example.model.Rappel;
+import org.example.model.ServiceRow;
+import org.example.model.ServiceStatus;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.math.BigDecimal;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DBPrestataireDeletionTest {
+
+    @TempDir
+    Path tempDir;
+
+    private DB db;
+
+    @BeforeEach
+    void setUp() {
+        db = new DB(tempDir.resolve("deletion.sqlite").toString());
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (db != null) {
+            db.close();
+        }
+    }
+
+    @Test
+    void deletesLargeHistoriesAndKeepsOtherSuppliers() throws Exception {
+        int doomed = db.insertPrestataire(prestataire("Alpha"));
+        int kept = db.insertPrestataire(prestataire("Beta"));
+        for (int i = 0; i < 1200; i++) {
+            int factureId = db.insertFacture(doomed, facture(LocalDate.now().minusDays(1)));
+            if (i % 2 == 0) {
+                db.addRappel(new Rappel(0, factureId, "owner@example.com", "Sujet", "Corps",
+                        LocalDateTime.now().minusMinutes(1), false));
+            }
+        }
+        for (int i = 0; i < 600; i++) {
+            db.insertService(doomed, new ServiceRow(null, "Service " + i, "01/01/2024", ServiceStatus.EN_ATTENTE));
+        }
+        int keptFacture = db.insertFacture(kept, facture(LocalDate.now().minusDays(1)));
+        db.insertService(kept, new ServiceRow(null, "Gardé", "01/01/2024", ServiceStatus.EN_ATTENTE));
+
+        db.deletePrestataire(doomed);
+        // Masqué dès le retour ; les lignes filles partent en arrière-plan.
+        assertNull(db.findPrestataire(doomed));
+        assertEquals(List.of("Beta"), db.list("").stream().map(Prestataire::getNom).toList());
+        db.pendingPurges().get(30, TimeUnit.SECONDS);
+
+        assertEquals(0, count("SELECT COUNT(*) FROM prestataires WHERE id=" + doomed));
+        assertEquals(0, count("SELECT COUNT(*) FROM factures WHERE prestataire_id=" + doomed));
+        assertEquals(0, count("SELECT COUNT(*) FROM services WHERE prestataire_id=" + doomed));
+        assertEquals(0, count("SELECT COUNT(*) FROM rappels"));
+        assertEquals(1, db.factures(kept, null).size());
+        assertEquals(keptFacture, db.factures(kept, null).get(0).getId());
+        assertEquals(1, db.services(kept).size());
+    }
+
+    @Test
+    void interruptedDeletionIsHiddenAndResumed() throws Exception {
+        int doomed = db.insertPrestataire(prestataire("Alpha"));
+        int kept = db.insertPrestataire(prestataire("Beta"));
+        int factureId = db.insertFacture(doomed, facture(LocalDate.now().minusDays(1)));
+        db.addRappel(new Rappel(0, factureId, "owner@example.com", "Sujet", "Corps",
+                LocalDateTime.now().minusMinutes(1), false));
+        db.insertFacture(kept, facture(LocalDate.now().minusDays(1)));
+        // Arrêt brutal juste après le marquage : les lignes filles sont encore là.
+        execute("UPDATE prestataires SET suppression_ts=1 WHERE id=" + doomed);
+
+        assertEquals(1, db.list("").size());
+        assertNull(db.findPrestataire(doomed));
+        assertTrue(db.facturesImpayeesPourDashboard(LocalDateTime.now().plusDays(30)).stream()
+                .allMatch(f -> f.getPrestataireId() == kept));
+        assertTrue(db.facturesARelancer(LocalDateTime.now().plusDays(30), NotificationSettings.defaults()).stream()
+                .allMatch(c -> c.facture().getPrestataireId() == kept));
+        assertTrue(db.rappelsAEnvoyer().isEmpty());
+
+        assertEquals(1, db.resumePendingDeletions());
+        db.pendingPurges().get(30, TimeUnit.SECONDS);
+        assertEquals(0, count("SELECT COUNT(*) FROM factures WHERE prestataire_id=" + doomed));
+        assertEquals(0, count("SELECT COUNT(*) FROM prestataires WHERE id=" + doomed));
+        assertEquals(0, db.resumePendingDeletions());
+        assertNotNull(db.findPrestataire(kept));
+    }
+
+    @Test
+    void deletedNameIsFreeBeforeThePurgeEnds() throws Exception {
+        int doomed = db.insertPrestataire(prestataire("Beta"));
+        for (int i = 0; i < 600; i++) {
+            db.insertFacture(doomed, facture(LocalDate.now().minusDays(1)));
+        }
+
+        db.deletePrestataire(doomed);
+        int recreated = db.insertPrestataire(prestataire("Beta"));
+        db.pendingPurges().get(30, TimeUnit.SECONDS);
+
+        assertEquals(List.of("Beta"), db.list("").stream().map(Prestataire::getNom).toList());
+        assertEquals(recreated, db.list("").get(0).getId());
+        assertEquals(0, count("SELECT COUNT(*) FROM prestataires WHERE id=" + doomed));
+    }
+
+    private int count(String sql) throws SQLException {
+        try (Connection c = db.getConnection();
+             Statement st = c.createStatement();
+             ResultSet rs = st.executeQuery(sql)) {
+            return rs.next() ? rs.getInt(1) : 0;
+        }
+    }
+
+    private void execute(String sql) throws SQLException {
+        try (Connection c = db.getConnection(); Statement st = c.createStatement()) {
+            st.executeUpdate(sql);
+        }
+    }
+
+    private static Prestataire prestataire(String name) {
+        return new Prestataire(0, name, "", "", "", 0, "", "", "");
+    }
+
+    private static Facture facture(LocalDate dueDate) {
+        return new Facture(0, 0, "Maintenance", dueDate,
+                new BigDecimal("100.00"), new BigDecimal("20.0"), null, null, false, null, false);
+    }
+}
@@ -133,6 +133,7 @@ class DBPrestataireServiceCrudTest {
         db.insertService(prestataireId, new ServiceRow("Audit", "01/01/2025", ServiceStatus.EN_ATTENTE));
 
         db.deletePrestataire(prestataireId);
+        db.pendingPurges().join();
 
         assertTrue(db.services(prestataireId).isEmpty());
     }
@@ -143,6 +144,7 @@ class DBPrestataireServiceCrudTest {
         db.insertFacture(prestataireId, facture(prestataireId, "Janvier", LocalDate.now().plusDays(3), false));
 
         db.deletePrestataire(prestataireId);
+        db.pendingPurges().join();
 
         assertTrue(db.factures(prestataireId, null).isEmpty());
     }
@@ -0,0 +1,114 @@
+package org.example.dao;
+
+import org.example.model.Prestataire;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DBPrestataireSortKeyTest {
+
+    private static final List<String> NAMES = List.of("Zèbre Transports", "électricité Dupont", "Eco Bâtiment",
+            "Côté Jardin", "cote ouest", "Œuvre Nettoyage", "Alpha", "Émeraude", "oasis");
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void listsInFrenchOrderAndSearchesWithoutAccents() {
+        DB db = new DB(tempDir.resolve("tri.sqlite").toString());
+        try {
+            NAMES.forEach(n -> db.insertPrestataire(prestataire(n)));
+
+            assertEquals(List.of("Alpha", "Côté Jardin", "cote ouest", "Eco Bâtiment", "électricité Dupont",
+                    "Émeraude", "oasis", "Œuvre Nettoyage", "Zèbre Transports"), names(db.list("")));
+            assertEquals(List.of("électricité Dupont"), names(db.list("ELECTRICITE")));
+            assertEquals(List.of("Œuvre Nettoyage"), names(db.list("oeuvre")));
+        } finally {
+            db.close();
+        }
+    }
+
+    @Test
+    void keysetPagesCoverTheListingOnceAndMatchTheMemoryStore() {
+        DB db = new DB(tempDir.resolve("pages.sqlite").toString());
+        InMemoryDataStore memory = new InMemoryDataStore();
+        try {
+            NAMES.forEach(n -> {
+                db.insertPrestataire(prestataire(n));
+                memory.insertPrestataire(prestataire(n));
+            });
+
+            List<String> paged = pageThrough(db, 4);
+            assertEquals(names(db.list("")), paged);
+            assertEquals(paged, pageThrough(memory, 4));
+            assertEquals(names(db.list("e")), names(memory.list("e")));
+        } finally {
+            db.close();
+            memory.close();
+        }
+    }
+
+    @Test
+    void backfillsSortKeysOfRowsWrittenBeforeTheColumn() throws Exception {
+        Path file = tempDir.resolve("legacy.sqlite");
+        new DB(file.toString()).close();
+        try (Connection c = DriverManager.getConnection("jdbc:sqlite:" + file);
+             Statement st = c.createStatement()) {
+            st.executeUpdate("INSERT INTO prestataires(nom) VALUES ('Électricité'), ('Alpha'), ('ébéniste')");
+        }
+
+        DB db = new DB(file.toString());
+        try {
+            assertEquals(List.of("Alpha", "ébéniste", "Électricité"), names(db.list("")));
+        } finally {
+            db.close();
+        }
+    }
+
+    @Test
+    void externalInsertsStillSortNearTheirPlace() throws Exception {
+        Path file = tempDir.resolve("external.sqlite");
+        DB db = new DB(file.toString());
+        try {
+            db.insertPrestataire(prestataire("Alpha"));
+            db.insertPrestataire(prestataire("Zèbre"));
+            try (Connection c = DriverManager.getConnection("jdbc:sqlite:" + file);
+                 Statement st = c.createStatement()) {
+                st.executeUpdate("INSERT INTO prestataires(nom) VALUES ('Milieu')");
+            }
+
+            assertEquals(List.of("Alpha", "Milieu", "Zèbre"), names(db.list("")));
+        } finally {
+            db.close();
+        }
+    }
+
+    private static List<String> pageThrough(PrestataireRepository repo, int size) {
+        List<String> out = new ArrayList<>();
+        Prestataire after = null;
+        while (true) {
+            List<Prestataire> page = repo.listPage("", after, size);
+            page.forEach(p -> out.add(p.getNom()));
+            if (page.size() < size) {
+                return out;
+            }
+            after = page.get(page.size() - 1);
+        }
+    }
+
+    private static List<String> names(List<Prestataire> list) {
+        return list.stream().map(Prestataire::getNom).toList();
+    }
+
+    private static Prestataire prestataire(String name) {
+        return new Prestataire(0, name, "", "", "", 0, "", "", "");
+    }
+}
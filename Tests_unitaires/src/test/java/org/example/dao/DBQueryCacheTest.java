@@ -0,0 +1,96 @@
+package org.example.dao;
+
+import org.example.model.Facture;
+import org.example.model.Prestataire;
+import org.example.model.Rappel;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.math.BigDecimal;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.Statement;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+final class DBQueryCacheTest {
+
+    @TempDir
+    Path tempDir;
+
+    private Path dbFile;
+    private DB db;
+    private int prestataireId;
+    private int factureId;
+
+    @BeforeEach
+    void setUp() {
+        dbFile = tempDir.resolve("cache.sqlite");
+        db = new DB(new DriverConnections(dbFile));
+        prestataireId = db.insertPrestataire(new Prestataire(0, "Alpha", "", "", "", 0, "", "", ""));
+        factureId = db.insertFacture(prestataireId, new Facture(0, prestataireId, "Maintenance",
+                LocalDate.now().minusDays(1), new BigDecimal("100.00"), new BigDecimal("20.0"),
+                null, null, false, null, false));
+    }
+
+    @AfterEach
+    void tearDown() {
+        db.close();
+    }
+
+    @Test
+    void repeatedReadsAreServedUntilTheNextCommit() {
+        db.countRappelsByStatus(Rappel.STATUS_PENDING);
+        long misses = db.queryCache().misses();
+        assertEquals(0, db.countRappelsByStatus(Rappel.STATUS_PENDING));
+        assertEquals(0, db.countRappelsByStatus(Rappel.STATUS_SENT));
+        assertEquals(misses, db.queryCache().misses());
+
+        db.addRappel(new Rappel(0, factureId, "ops@example.com", "Sujet", "Corps", LocalDateTime.now(), false));
+
+        assertEquals(1, db.countRappelsByStatus(Rappel.STATUS_PENDING));
+        assertEquals(misses + 1, db.queryCache().misses());
+    }
+
+    @Test
+    void externalCommitInvalidatesTheCache() throws Exception {
+        assertEquals(1, db.facturesImpayeesPourDashboard(LocalDateTime.now()).size());
+
+        try (Connection other = DriverManager.getConnection("jdbc:sqlite:" + dbFile);
+             Statement st = other.createStatement()) {
+            st.executeUpdate("UPDATE factures SET paye=1");
+        }
+
+        assertEquals(0, db.facturesImpayeesPourDashboard(LocalDateTime.now()).size());
+    }
+
+    @Test
+    void cachedInvoicesAreCopiedForEachCaller() {
+        List<Facture> first = db.facturesImpayeesPourDashboard(LocalDateTime.now());
+        first.get(0).payeProperty().set(true);
+
+        List<Facture> second = db.facturesImpayeesPourDashboard(LocalDateTime.now());
+        assertFalse(second.get(0).isPaye());
+        assertEquals(0, db.facturesImpayeesPourDashboard(LocalDateTime.now().minusDays(3)).size());
+    }
+
+    /** Connexion unique comme en production (UserDB), pour que data_version soit lu sur la même connexion. */
+    private record DriverConnections(Path file) implements ConnectionProvider {
+        @Override
+        public Connection getConnection() throws java.sql.SQLException {
+            return DriverManager.getConnection("jdbc:sqlite:" + file);
+        }
+
+        @Override
+        public void close() {
+            // Rien à fermer : chaque appel ouvre sa propre connexion.
+        }
+    }
+}
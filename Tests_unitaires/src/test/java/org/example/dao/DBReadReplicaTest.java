@@ -0,0 +1,105 @@
+package org.example.dao;
+
+import org.example.model.Facture;
+import org.example.model.Prestataire;
+import org.example.model.Rappel;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.math.BigDecimal;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.Statement;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+final class DBReadReplicaTest {
+
+    @TempDir
+    Path tempDir;
+
+    private Path dbFile;
+    private DB db;
+
+    @BeforeEach
+    void setUp() {
+        dbFile = tempDir.resolve("replica.sqlite");
+        db = new DB(dbFile.toString());
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (db != null) {
+            db.close();
+        }
+    }
+
+    @Test
+    void analyticsReadsFollowCommittedWrites() {
+        int alphaId = db.insertPrestataire(prestataire("Alpha"));
+        int factureId = db.insertFacture(alphaId, facture(alphaId, "overdue", LocalDate.now().minusDays(2)));
+        db.enableReadReplica(() -> DriverManager.getConnection("jdbc:sqlite:" + dbFile));
+        assertTrue(db.readReplicaEnabled());
+
+        LocalDateTime now = LocalDateTime.now();
+        assertEquals(1, db.facturesImpayeesPourDashboard(now).size());
+        assertEquals(List.of("Alpha"), names(db.list("")));
+
+        db.insertPrestataire(prestataire("Beta"));
+        db.toggleFacturePayee(factureId, true, null, null);
+        db.addRappel(new Rappel(0, factureId, "ops@example.com", "Sujet", "Corps", now, true));
+
+        assertTrue(db.facturesImpayeesPourDashboard(now).isEmpty());
+        assertEquals(List.of("Alpha", "Beta"), names(db.list("")));
+        assertEquals(1, db.rappelsHistorique(10).size());
+
+        db.deletePrestataire(alphaId);
+        assertEquals(List.of("Beta"), names(db.list("")));
+        assertTrue(db.rappelsHistorique(10).isEmpty());
+    }
+
+    @Test
+    void externalCommitTriggersFullRefresh() throws Exception {
+        db.insertPrestataire(prestataire("Alpha"));
+        db.enableReadReplica(() -> DriverManager.getConnection("jdbc:sqlite:" + dbFile));
+        assertEquals(1, db.list("").size());
+
+        try (Connection other = DriverManager.getConnection("jdbc:sqlite:" + dbFile);
+             Statement st = other.createStatement()) {
+            st.executeUpdate("INSERT INTO prestataires(nom) VALUES('Externe')");
+        }
+
+        assertEquals(List.of("Alpha", "Externe"), names(db.list("")));
+    }
+
+    @Test
+    void disablingReplicaFallsBackToPrimary() {
+        db.enableReadReplica(() -> DriverManager.getConnection("jdbc:sqlite:" + dbFile));
+        db.disableReadReplica();
+        assertFalse(db.readReplicaEnabled());
+
+        db.insertPrestataire(prestataire("Gamma"));
+        assertEquals(List.of("Gamma"), names(db.list("")));
+    }
+
+    private static List<String> names(List<Prestataire> list) {
+        return list.stream().map(Prestataire::getNom).toList();
+    }
+
+    private static Prestataire prestataire(String name) {
+        return new Prestataire(0, name, "", "", "", 0, "", "", "");
+    }
+
+    private static Facture facture(int prestataireId, String description, LocalDate dueDate) {
+        return new Facture(0, prestataireId, description, dueDate,
+                new BigDecimal("100.00"), new BigDecimal("20.0"), null, null, false, null, false);
+    }
+}
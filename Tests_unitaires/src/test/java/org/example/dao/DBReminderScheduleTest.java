@@ -0,0 +1,106 @@
+package org.example.dao;
+
+import org.example.model.Facture;
+import org.example.model.NotificationSettings;
+import org.example.model.Prestataire;
+import org.example.model.ReminderCandidate;
+import org.example.model.SmtpSecurity;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.math.BigDecimal;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+final class DBReminderScheduleTest {
+
+    @TempDir
+    Path tempDir;
+
+    private DB db;
+    private int prestataireId;
+
+    @BeforeEach
+    void setUp() {
+        db = new DB(tempDir.resolve("schedule.sqlite").toString());
+        prestataireId = db.insertPrestataire(new Prestataire(0, "Alpha", "", "", "", 0, "", "", ""));
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (db != null) {
+            db.close();
+        }
+    }
+
+    @Test
+    void firstReminderBecomesDueAtLeadTimeAndRepeatFollowsLastActivity() {
+        NotificationSettings cfg = settings(2, 24);
+        db.saveNotificationSettings(cfg);
+        LocalDate due = LocalDate.of(2030, 3, 15);
+        int id = db.insertFacture(prestataireId, facture(due));
+
+        assertTrue(db.facturesARelancer(due.minusDays(2).atTime(8, 59), cfg).isEmpty());
+        List<ReminderCandidate> first = db.facturesARelancer(due.minusDays(2).atTime(9, 0), cfg);
+        assertEquals(1, first.size());
+        assertNull(first.get(0).lastReminder());
+
+        LocalDateTime sentAt = due.minusDays(2).atTime(9, 0);
+        db.marquerPreavisEnvoye(id);
+        db.recordReminderActivity(id, sentAt);
+
+        assertTrue(db.facturesARelancer(due.minusDays(1).atTime(23, 59), cfg).isEmpty());
+        List<ReminderCandidate> repeat = db.facturesARelancer(due.atStartOfDay(), cfg);
+        assertEquals(1, repeat.size());
+        assertEquals(sentAt, repeat.get(0).lastReminder());
+
+        db.toggleFacturePayee(id, true, null, null);
+        assertTrue(db.facturesARelancer(due.plusDays(10).atStartOfDay(), cfg).isEmpty());
+    }
+
+    @Test
+    void savingSettingsReschedulesPendingInvoices() {
+        db.saveNotificationSettings(settings(2, 24));
+        LocalDate due = LocalDate.of(2030, 6, 10);
+        db.insertFacture(prestataireId, facture(due));
+        LocalDateTime probe = due.minusDays(4).atTime(10, 0);
+        assertTrue(db.facturesARelancer(probe, null).isEmpty());
+
+        NotificationSettings wider = settings(5, 24);
+        db.saveNotificationSettings(wider);
+
+        assertEquals(1, db.facturesARelancer(probe, null).size());
+    }
+
+    @Test
+    void unsavedPreviewSettingsAreEvaluatedOnTheFly() {
+        db.saveNotificationSettings(settings(2, 24));
+        LocalDate due = LocalDate.of(2030, 9, 1);
+        db.insertFacture(prestataireId, facture(due));
+        LocalDateTime probe = due.minusDays(6).atTime(12, 0);
+
+        assertTrue(db.facturesARelancer(probe, settings(2, 24)).isEmpty());
+        assertEquals(1, db.facturesARelancer(probe, settings(7, 24)).size());
+    }
+
+    private static NotificationSettings settings(int leadDays, int repeatHours) {
+        return new NotificationSettings(
+                leadDays, 9, 0, repeatHours, true, true, 30, false,
+                "", "", "", 587, "", "", SmtpSecurity.STARTTLS,
+                "Sujet {{facture}}", "Corps {{prestataire}}"
+        ).normalized();
+    }
+
+    private Facture facture(LocalDate due) {
+        return new Facture(0, prestataireId, "Maintenance", due,
+                new BigDecimal("100.00"), new BigDecimal("20.0"), null, null, false, null, false);
+    }
+}
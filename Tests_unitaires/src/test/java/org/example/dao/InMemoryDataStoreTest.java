@@ -0,0 +1,153 @@
+package org.example.dao;
+
+import org.example.model.Facture;
+import org.example.model.NotificationSettings;
+import org.example.model.Prestataire;
+import org.example.model.Rappel;
+import org.example.model.ReminderCandidate;
+import org.example.model.ServiceRow;
+import org.example.model.ServiceStatus;
+import org.example.model.SmtpSecurity;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.math.BigDecimal;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+final class InMemoryDataStoreTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void behavesLikeTheSqliteStore() {
+        InMemoryDataStore memory = new InMemoryDataStore();
+        DB sqlite = new DB(tempDir.resolve("parity.sqlite").toString());
+        try {
+            assertEquals(scenario(sqlite), scenario(memory));
+        } finally {
+            sqlite.close();
+            memory.close();
+        }
+    }
+
+    @Test
+    void rejectsDuplicateNamesIgnoringCase() {
+        InMemoryDataStore store = new InMemoryDataStore();
+        store.insertPrestataire(prestataire("Alpha"));
+        assertThrows(IllegalArgumentException.class, () -> store.insertPrestataire(prestataire("ALPHA")));
+    }
+
+    @Test
+    void deletingAPrestataireCascades() {
+        InMemoryDataStore store = new InMemoryDataStore();
+        int pid = store.insertPrestataire(prestataire("Alpha"));
+        int fid = store.insertFacture(pid, facture(pid, LocalDate.of(2030, 1, 10)));
+        store.insertService(pid, new ServiceRow("Audit", "01/01/2030"));
+        store.addRappel(new Rappel(0, fid, "ops@example.com", "Sujet", "Corps", LocalDateTime.of(2030, 1, 1, 9, 0), false));
+
+        store.deletePrestataire(pid);
+
+        assertTrue(store.list("").isEmpty());
+        assertEquals(null, store.findFacture(fid));
+        assertTrue(store.services(pid).isEmpty());
+        assertTrue(store.rappelsHistorique(10).isEmpty());
+        assertEquals(0, store.countRappelsByStatus(Rappel.STATUS_PENDING));
+    }
+
+    @Test
+    void reminderIndexScalesToLargeStores() {
+        InMemoryDataStore store = new InMemoryDataStore();
+        store.saveNotificationSettings(settings(3));
+        int pid = store.insertPrestataire(prestataire("Volume"));
+        LocalDate base = LocalDate.of(2030, 1, 1);
+        for (int i = 0; i < 100_000; i++) {
+            store.insertFacture(pid, facture(pid, base.plusDays(i % 3650)));
+        }
+
+        List<ReminderCandidate> due = store.facturesARelancer(base.plusDays(7).atTime(9, 0), null);
+
+        // Préavis de 3 jours : échéances des 11 premiers jours de chacun des 28 cycles de 3650 jours.
+        assertEquals(11 * 28, due.size());
+        assertEquals(1, store.list("vol").size());
+        assertEquals(100_000, store.list("").get(0).getImpayes());
+    }
+
+    /** Même suite d'opérations sur n'importe quel {@link DataStore}, réduite à une empreinte comparable. */
+    private static List<String> scenario(DataStore store) {
+        List<String> trace = new ArrayList<>();
+        store.saveNotificationSettings(settings(2));
+        int beta = store.insertPrestataire(prestataire("beta"));
+        int alpha = store.insertPrestataire(prestataire("Alpha"));
+        LocalDate due = LocalDate.of(2030, 5, 20);
+        int f1 = store.insertFacture(alpha, facture(alpha, due));
+        int f2 = store.insertFacture(alpha, facture(alpha, due.plusDays(30)));
+        store.insertFacture(beta, facture(beta, due.minusDays(5)));
+        store.insertService(alpha, new ServiceRow("Maintenance", "02/03/2030", ServiceStatus.EN_COURS));
+
+        trace.add(names(store.list("")) + impayes(store.list("")));
+        trace.add(names(store.list("ALP")));
+        trace.add(ids(store.facturesImpayeesPourDashboard(due.atStartOfDay())).size() + "");
+        trace.add(candidates(store.facturesARelancer(due.minusDays(2).atTime(9, 0), null)));
+
+        store.marquerPreavisEnvoye(f1);
+        store.recordReminderActivity(f1, due.minusDays(2).atTime(9, 0));
+        trace.add(candidates(store.facturesARelancer(due.atTime(8, 0), null)));
+        trace.add(candidates(store.facturesARelancer(due.atTime(8, 0), settings(40))));
+
+        Rappel r = new Rappel(0, "job-1", Rappel.TYPE_MANAGER_DUE, f2, alpha, "ops@example.com", "Sujet", "Corps",
+                LocalDateTime.of(2020, 1, 1, 9, 0), false, Rappel.STATUS_PENDING, 0, "", null);
+        trace.add(store.enqueueRappelIfAbsent(r) + "/" + store.enqueueRappelIfAbsent(r));
+        trace.add(store.rappelsAEnvoyer().size() + "");
+        store.toggleFacturePayee(f2, true, null, "01/06/2030");
+        trace.add(store.countRappelsByStatus(Rappel.STATUS_SKIPPED) + "/" + store.countRappelsByStatus(Rappel.STATUS_PENDING));
+        trace.add(impayes(store.list("")));
+        trace.add(store.factures(alpha, true).size() + "/" + store.factures(alpha, false).size());
+        trace.add(store.services(alpha).get(0).desc() + "/" + store.services(alpha).get(0).status());
+
+        store.deletePrestataire(alpha);
+        trace.add(names(store.list("")) + "/" + store.rappelsHistorique(5).size());
+        return trace;
+    }
+
+    private static String names(List<Prestataire> list) {
+        return list.stream().map(Prestataire::getNom).toList().toString();
+    }
+
+    private static String impayes(List<Prestataire> list) {
+        return list.stream().map(p -> p.getImpayes()).toList().toString();
+    }
+
+    private static List<Integer> ids(List<Facture> list) {
+        return list.stream().map(Facture::getId).toList();
+    }
+
+    private static String candidates(List<ReminderCandidate> list) {
+        return list.stream().map(c -> c.facture().getEcheance() + "@" + c.lastReminder()).toList().toString();
+    }
+
+    private static NotificationSettings settings(int leadDays) {
+        return new NotificationSettings(
+                leadDays, 9, 0, 24, true, true, 30, false,
+                "", "", "", 587, "", "", SmtpSecurity.STARTTLS,
+                "Sujet {{facture}}", "Corps {{prestataire}}"
+        ).normalized();
+    }
+
+    private static Prestataire prestataire(String name) {
+        return new Prestataire(0, name, "", "", "", 0, "", "", "");
+    }
+
+    private static Facture facture(int prestataireId, LocalDate dueDate) {
+        return new Facture(0, prestataireId, "Maintenance", dueDate,
+                new BigDecimal("100.00"), new BigDecimal("20.0"), null, null, false, null, false);
+    }
+}
@@ -0,0 +1,119 @@
+package org.example.dao;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+final class IntegrityVerifierTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void checksOneTablePerStepAndResumesAcrossSessions() throws Exception {
+        Path db = tempDir.resolve("data.db");
+        exec(db, "CREATE TABLE a(x)", "CREATE TABLE b(x)", "CREATE TABLE c(x)");
+        Path stateFile = tempDir.resolve("integrity.properties");
+        List<IntegrityVerifier.Problem> problems = new ArrayList<>();
+
+        IntegrityVerifier first = verifier(stateFile, db, problems);
+        assertTrue(first.step());
+        assertEquals("a", first.cursor("data.db"));
+        first.close();
+
+        IntegrityVerifier second = verifier(stateFile, db, problems);
+        assertEquals("a", second.cursor("data.db"));
+        assertTrue(second.step());
+        assertEquals("b", second.cursor("data.db"));
+        assertTrue(second.step());
+        assertTrue(second.step());
+        assertNull(second.cursor("data.db"));
+        assertFalse(second.step(), "passe terminée : rien avant l'intervalle suivant");
+        assertTrue(problems.isEmpty());
+    }
+
+    @Test
+    void reportsIndexesThatDisagreeWithTheirTable() throws Exception {
+        Path db = tempDir.resolve("broken.db");
+        exec(db, "CREATE TABLE t(a, b)", "CREATE INDEX t_a ON t(a)",
+                "INSERT INTO t VALUES (1, 10), (2, 20), (3, 30)",
+                "PRAGMA writable_schema=ON",
+                "UPDATE sqlite_master SET sql='CREATE INDEX t_a ON t(b)' WHERE name='t_a'");
+        List<IntegrityVerifier.Problem> problems = new ArrayList<>();
+        IntegrityVerifier verifier = verifier(tempDir.resolve("state.properties"), db, problems);
+        verifier.setThorough(true);
+
+        while (verifier.step()) {
+            // jusqu'à la fin de la passe
+        }
+
+        assertEquals(1, problems.size());
+        assertEquals("t", problems.get(0).table());
+    }
+
+    @Test
+    void transientErrorsRetryTheSameTableWithoutReporting() throws Exception {
+        Path db = tempDir.resolve("busy.db");
+        exec(db, "CREATE TABLE a(x)", "CREATE TABLE b(x)");
+        List<IntegrityVerifier.Problem> problems = new ArrayList<>();
+        int[] attempts = {0};
+        IntegrityVerifier verifier = new IntegrityVerifier(tempDir.resolve("state.properties"),
+                List.of(new IntegrityVerifier.Target("busy.db", () -> {
+                    if (++attempts[0] == 2) throw new SQLException("database is locked", null, 5);
+                    return DriverManager.getConnection("jdbc:sqlite:" + db);
+                })),
+                problems::add);
+
+        assertTrue(verifier.step());
+        assertEquals("a", verifier.cursor("busy.db"));
+        assertTrue(verifier.step());
+        assertEquals("a", verifier.cursor("busy.db"), "la table suivante est retentée, pas sautée");
+        assertTrue(verifier.step());
+        assertEquals("b", verifier.cursor("busy.db"));
+        assertTrue(problems.isEmpty());
+    }
+
+    @Test
+    void unreadableFileIsReportedAndEndsThePass() throws Exception {
+        Path db = tempDir.resolve("garbage.db");
+        Files.writeString(db, "ceci n'est pas une base SQLite, juste du texte.");
+        List<IntegrityVerifier.Problem> problems = new ArrayList<>();
+        IntegrityVerifier verifier = verifier(tempDir.resolve("state.properties"), db, problems);
+
+        assertTrue(verifier.step());
+
+        assertEquals(1, problems.size());
+        assertNull(verifier.cursor("garbage.db"));
+        assertFalse(verifier.step());
+    }
+
+    private static IntegrityVerifier verifier(Path stateFile, Path db, List<IntegrityVerifier.Problem> problems) {
+        IntegrityVerifier v = new IntegrityVerifier(stateFile,
+                List.of(new IntegrityVerifier.Target(db.getFileName().toString(),
+                        () -> DriverManager.getConnection("jdbc:sqlite:" + db))),
+                problems::add);
+        v.setBudget(1.0, Duration.ofDays(1));
+        return v;
+    }
+
+    private static void exec(Path db, String... sql) throws SQLException {
+        try (Connection c = DriverManager.getConnection("jdbc:sqlite:" + db);
+             Statement st = c.createStatement()) {
+            for (String s : sql) st.execute(s);
+        }
+    }
+}
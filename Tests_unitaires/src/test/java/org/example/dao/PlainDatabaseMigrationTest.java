@@ -0,0 +1,126 @@
+package org.example.dao;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.SecureRandom;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+final class PlainDatabaseMigrationTest {
+
+    private static final int ROWS = 2_500;
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void copiesInChunksVerifiesAndSwapsInPlace() throws Exception {
+        Path db = plainDatabase();
+        byte[] key = key();
+        List<Double> progress = new CopyOnWriteArrayList<>();
+
+        PlainDatabaseMigration.run(db, key, progress::add, 1_000);
+
+        assertEquals(1.0, progress.get(progress.size() - 1));
+        for (int i = 1; i < progress.size(); i++) {
+            assertTrue(progress.get(i) >= progress.get(i - 1));
+        }
+        assertFalse(Files.exists(tempDir.resolve("alice.db.migrating")));
+        assertFalse(Files.exists(tempDir.resolve("alice.db.migrated")));
+        try (Stream<Path> files = Files.list(tempDir)) {
+            assertEquals(1, files.filter(p -> p.getFileName().toString().startsWith("alice.db.plain.bak.")).count());
+        }
+        assertMigrated(db, key);
+    }
+
+    @Test
+    void interruptedMigrationResumesWhereItStopped() throws Exception {
+        Path db = plainDatabase();
+        byte[] key = key();
+
+        assertThrows(IllegalStateException.class, () -> PlainDatabaseMigration.run(db, key, fraction -> {
+            if (fraction > 0.2) throw new IllegalStateException("arrêt simulé");
+        }, 1_000));
+        assertTrue(Files.exists(tempDir.resolve("alice.db.migrating")));
+        assertTrue(UserDB.looksPlainSQLite(db));
+
+        List<Double> progress = new CopyOnWriteArrayList<>();
+        PlainDatabaseMigration.run(db, key, progress::add, 1_000);
+
+        assertTrue(progress.get(0) > 0, "la reprise ne recopie pas les paquets déjà validés");
+        assertMigrated(db, key);
+    }
+
+    private Path plainDatabase() throws Exception {
+        Path db = tempDir.resolve("alice.db");
+        try (Connection c = DriverManager.getConnection("jdbc:sqlite:" + db);
+             Statement st = c.createStatement()) {
+            st.execute("CREATE TABLE prestataires(id INTEGER PRIMARY KEY, nom TEXT NOT NULL UNIQUE, note REAL)");
+            st.execute("CREATE TABLE services(id INTEGER PRIMARY KEY, prestataire_id INTEGER REFERENCES prestataires(id),"
+                    + " description BLOB)");
+            st.execute("CREATE INDEX idx_services_prestataire ON services(prestataire_id)");
+            st.execute("CREATE TRIGGER trg_noop AFTER DELETE ON prestataires BEGIN SELECT 1; END");
+            c.setAutoCommit(false);
+            try (PreparedStatement p = c.prepareStatement("INSERT INTO prestataires(id, nom, note) VALUES(?,?,?)");
+                 PreparedStatement s = c.prepareStatement("INSERT INTO services(prestataire_id, description) VALUES(?,?)")) {
+                for (int i = 1; i <= ROWS; i++) {
+                    p.setInt(1, i * 3);
+                    p.setString(2, "P" + i);
+                    p.setDouble(3, i / 7.0);
+                    p.addBatch();
+                    s.setInt(1, i * 3);
+                    s.setBytes(2, new byte[]{(byte) i, 0, (byte) (i >> 8)});
+                    s.addBatch();
+                }
+                p.executeBatch();
+                s.executeBatch();
+            }
+            c.commit();
+        }
+        return db;
+    }
+
+    private static void assertMigrated(Path db, byte[] key) throws Exception {
+        try (UserDB migrated = new UserDB(db.toString())) {
+            migrated.openPool(key);
+            Connection c = migrated.getConnection();
+            try (Statement st = c.createStatement()) {
+                try (ResultSet rs = st.executeQuery("SELECT count(*), max(id), sum(note) FROM prestataires")) {
+                    assertTrue(rs.next());
+                    assertEquals(ROWS, rs.getInt(1));
+                    assertEquals(ROWS * 3, rs.getInt(2));
+                }
+                try (ResultSet rs = st.executeQuery("SELECT count(*) FROM services")) {
+                    assertTrue(rs.next());
+                    assertEquals(ROWS, rs.getInt(1));
+                }
+                try (ResultSet rs = st.executeQuery(
+                        "SELECT count(*) FROM sqlite_master WHERE name IN ('idx_services_prestataire','trg_noop')")) {
+                    assertTrue(rs.next());
+                    assertEquals(2, rs.getInt(1));
+                }
+                try (ResultSet rs = st.executeQuery("SELECT count(*) FROM sqlite_master WHERE name='__plain_migration'")) {
+                    assertTrue(rs.next());
+                    assertEquals(0, rs.getInt(1));
+                }
+            }
+        }
+    }
+
+    private static byte[] key() {
+        byte[] key = new byte[32];
+        new SecureRandom().nextBytes(key);
+        return key;
+    }
+}
@@ -0,0 +1,97 @@
+package org.example.dao;
+
+import org.example.model.Prestataire;
+import org.example.model.ServiceRow;
+import org.example.model.ServiceStatus;
+import org.example.security.EncryptedField;
+import org.example.security.PasswordKdf;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.crypto.SecretKey;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.Statement;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+final class PortableArchiveTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void exportedDatabaseIsRestoredUnderAnotherKey() throws Exception {
+        SecretKey sourceKey = PasswordKdf.newDataKey();
+        SecretKey targetKey = PasswordKdf.newDataKey();
+        Path archive = tempDir.resolve("alice.cpxa");
+        int prestataires = 30;
+        PortableArchive.Manifest exported;
+        long maxId;
+        try (UserDB source = new UserDB(tempDir.resolve("alice.db").toString())) {
+            source.openPool(sourceKey.getEncoded());
+            SecureDB dao = new SecureDB(source::getConnection, 1, sourceKey);
+            DbBootstrap.ensureSchema(dao, source);
+            for (int i = 0; i < prestataires; i++) {
+                int id = dao.insertPrestataire(new Prestataire(0, "P" + i, "", "", "", 0, "", "", ""));
+                dao.insertService(id, new ServiceRow("Service " + i, "01/01/2025", ServiceStatus.EN_ATTENTE));
+            }
+            maxId = maxId(source.getConnection(), "prestataires");
+
+            exported = PortableArchive.export(source, sourceKey, archive, "phrase secrète".toCharArray());
+        }
+
+        Path restored = tempDir.resolve("restored.db");
+        PortableArchive.Manifest read = PortableArchive.restore(archive, "phrase secrète".toCharArray(), restored, targetKey);
+
+        assertEquals(exported.totalRows(), read.totalRows());
+        assertFalse(Files.exists(tempDir.resolve("restored.db.part")));
+        try (UserDB target = new UserDB(restored.toString())) {
+            target.openPool(targetKey.getEncoded());
+            SecureDB dao = new SecureDB(target::getConnection, 1, targetKey);
+            assertEquals(prestataires, dao.list("").size());
+            Prestataire first = dao.list("").stream().filter(p -> p.getNom().equals("P0")).findFirst().orElseThrow();
+            assertEquals("Service 0", dao.services(first.getId()).get(0).desc());
+            assertEquals(maxId, maxId(target.getConnection(), "prestataires"));
+            try (Statement st = target.getConnection().createStatement();
+                 ResultSet rs = st.executeQuery("SELECT description FROM services LIMIT 1")) {
+                assertTrue(rs.next());
+                byte[] sealed = rs.getBytes(1);
+                assertTrue(EncryptedField.isSealed(sealed));
+                assertThrows(java.security.GeneralSecurityException.class, () -> EncryptedField.open(sealed, sourceKey));
+            }
+            try (Statement st = target.getConnection().createStatement();
+                 ResultSet rs = st.executeQuery("SELECT COUNT(*) FROM sqlite_master WHERE type IN ('index','trigger') AND sql IS NOT NULL")) {
+                assertTrue(rs.next());
+                assertEquals(exported.schema().size(), rs.getInt(1));
+            }
+        }
+    }
+
+    @Test
+    void wrongPassphraseLeavesNoDatabaseBehind() throws Exception {
+        SecretKey key = PasswordKdf.newDataKey();
+        Path archive = tempDir.resolve("alice.cpxa");
+        try (UserDB source = new UserDB(tempDir.resolve("alice.db").toString())) {
+            source.openPool(key.getEncoded());
+            DbBootstrap.ensureSchema(new SecureDB(source::getConnection, 1, key), source);
+            PortableArchive.export(source, key, archive, "phrase secrète".toCharArray());
+        }
+
+        Path restored = tempDir.resolve("restored.db");
+        assertThrows(IOException.class,
+                () -> PortableArchive.restore(archive, "mauvaise phrase".toCharArray(), restored, key));
+        assertFalse(Files.exists(restored));
+        assertFalse(Files.exists(tempDir.resolve("restored.db.part")));
+    }
+
+    private static long maxId(Connection c, String table) throws Exception {
+        try (Statement st = c.createStatement();
+             ResultSet rs = st.executeQuery("SELECT MAX(id) FROM " + table)) {
+            return rs.next() ? rs.getLong(1) : -1;
+        }
+    }
+}
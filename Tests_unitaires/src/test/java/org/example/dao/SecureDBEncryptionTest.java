@@ -3,7 +3,9 @@ package org.example.dao;
 import org.example.model.Prestataire;
 import org.example.model.ServiceRow;
 import org.example.model.ServiceStatus;
+import org.example.model.NotificationSettings;
 import org.example.security.CryptoUtils;
+import org.example.security.EncryptedField;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -49,11 +51,11 @@ class SecureDBEncryptionTest {
         int serviceId = secureDb.insertService(prestataireId,
                 new ServiceRow("Top secret", "01/01/2025", ServiceStatus.EN_ATTENTE));
 
-        String stored = rawServiceDescription(serviceId);
+        byte[] stored = rawServiceDescription(serviceId);
         assertNotNull(stored);
-        assertNotEquals("Top secret", stored);
-        assertTrue(stored.length() > "Top secret".length());
-        assertDoesNotThrow(() -> CryptoUtils.base64ToBlob(stored));
+        assertTrue(EncryptedField.isSealed(stored));
+        assertFalse(new String(stored, java.nio.charset.StandardCharsets.ISO_8859_1).contains("Top secret"));
+        assertEquals("blob", rawType(serviceId));
     }
 
     @Test
@@ -76,8 +78,8 @@ class SecureDBEncryptionTest {
 
         secureDb.updateService(new ServiceRow(serviceId, "Apres", "02/01/2025", ServiceStatus.TERMINE));
 
-        String stored = rawServiceDescription(serviceId);
-        assertNotEquals("Apres", stored);
+        byte[] stored = rawServiceDescription(serviceId);
+        assertEquals("Apres", EncryptedField.open(stored, testKey()));
 
         ServiceRow loaded = secureDb.services(prestataireId).get(0);
         assertEquals("Apres", loaded.desc());
@@ -85,42 +87,210 @@ class SecureDBEncryptionTest {
     }
 
     @Test
-    void servicesMigratesLegacyPlaintextRowsToEncryptedStorage() throws Exception {
+    void legacyPlaintextIsReadWithoutWritingAndMigratedByTheJob() throws Exception {
         int prestataireId = secureDb.insertPrestataire(samplePrestataire("Alpha"));
-        int serviceId;
         String legacy = "Legacy plaintext";
+        int serviceId = insertRawService(prestataireId, legacy);
 
+        ServiceRow row = secureDb.services(prestataireId).stream()
+                .filter(r -> r.id() == serviceId)
+                .findFirst()
+                .orElseThrow();
+        assertEquals(legacy, row.desc());
+        assertEquals("text", rawType(serviceId));
+
+        ServiceEncryptionMigration.Progress done = migration(10).run(null);
+
+        assertTrue(done.done());
+        assertEquals(1, done.converted());
+        assertEquals(legacy, EncryptedField.open(rawServiceDescription(serviceId), testKey()));
+        assertEquals(legacy, secureDb.services(prestataireId).get(0).desc());
+    }
+
+    @Test
+    void migrationResumesFromItsCursorAndRecordsCompletion() throws Exception {
+        int prestataireId = secureDb.insertPrestataire(samplePrestataire("Alpha"));
+        for (int i = 0; i < 7; i++) {
+            insertRawService(prestataireId, "Ancien " + i);
+        }
+        List<ServiceEncryptionMigration.Progress> seen = new java.util.ArrayList<>();
+
+        // Arrêt brutal juste après le deuxième lot validé.
+        assertThrows(IllegalStateException.class, () -> migration(3).run(p -> {
+            seen.add(p);
+            if (seen.size() == 2) throw new IllegalStateException("arrêt");
+        }));
+        assertEquals(6, seen.get(1).converted());
+        assertEquals(1, seen.get(1).remaining());
+        assertFalse(migration(3).isComplete());
+
+        ServiceEncryptionMigration.Progress done = migration(3).run(null);
+
+        assertTrue(done.done());
+        assertEquals(7, done.converted());
+        assertTrue(migration(3).isComplete());
+        assertEquals(done, migration(3).run(null));
+        List<ServiceRow> rows = secureDb.services(prestataireId);
+        assertEquals(7, rows.size());
+        assertTrue(rows.stream().allMatch(r -> r.desc().startsWith("Ancien ")));
+        assertEquals(0, countRaw("SELECT COUNT(*) FROM services WHERE typeof(description)='text'"));
+    }
+
+    @Test
+    void shortPlaintextThatIsValidBase64IsReadAndMigratedAsPlaintext() throws Exception {
+        int prestataireId = secureDb.insertPrestataire(samplePrestataire("Alpha"));
+        int serviceId = insertRawService(prestataireId, "Ramonage");
+
+        assertEquals("Ramonage", secureDb.services(prestataireId).get(0).desc());
+        ServiceEncryptionMigration.Progress done = migration(10).run(null);
+
+        assertTrue(done.done());
+        assertEquals("blob", rawType(serviceId));
+        assertEquals("Ramonage", secureDb.services(prestataireId).get(0).desc());
+    }
+
+    @Test
+    void unreadableDescriptionsKeepTheMigrationOpen() throws Exception {
+        int prestataireId = secureDb.insertPrestataire(samplePrestataire("Alpha"));
+        insertRawService(prestataireId, "Ancien 0");
+        SecretKey otherKey = new javax.crypto.spec.SecretKeySpec(new byte[32], "AES");
+        int foreign = insertRawService(prestataireId, CryptoUtils.encryptToBase64("Autre clé", otherKey));
+
+        ServiceEncryptionMigration.Progress first = migration(10).run(null);
+
+        assertFalse(first.done());
+        assertEquals(1, first.converted());
+        assertEquals(1, first.remaining());
+        assertFalse(migration(10).isComplete());
+        assertEquals("text", rawType(foreign));
+        // Le curseur est revenu au début : la ligne est retentée au démarrage suivant.
+        assertFalse(migration(10).run(null).done());
+        assertEquals("text", rawType(foreign));
+    }
+
+    @Test
+    void longDescriptionsAreCompressedBeforeEncryption() throws Exception {
+        int prestataireId = secureDb.insertPrestataire(samplePrestataire("Alpha"));
+        String longText = "Remplacement du filtre principal, contrôle de l'étanchéité et nettoyage. ".repeat(20).strip();
+
+        int serviceId = secureDb.insertService(prestataireId, new ServiceRow(longText, "01/01/2025", ServiceStatus.EN_ATTENTE));
+
+        byte[] stored = rawServiceDescription(serviceId);
+        assertTrue(EncryptedField.isCompressed(stored));
+        assertTrue(stored.length < longText.length() / 2);
+        assertEquals(longText, secureDb.services(prestataireId).get(0).desc());
+    }
+
+    @Test
+    void base64CiphertextsStayReadableAndAreConvertedInTheBackground() throws Exception {
+        int prestataireId = secureDb.insertPrestataire(samplePrestataire("Alpha"));
+        int serviceId = secureDb.insertService(prestataireId, new ServiceRow("Ancien format", "01/01/2025", ServiceStatus.EN_ATTENTE));
+        try (Connection c = DB.newConnection(dbFile.toString());
+             PreparedStatement ps = c.prepareStatement("UPDATE services SET description=? WHERE id=?")) {
+            ps.setString(1, CryptoUtils.encryptToBase64("Ancien format", testKey()));
+            ps.setInt(2, serviceId);
+            ps.executeUpdate();
+        }
+        assertEquals("text", rawType(serviceId));
+        assertEquals("Ancien format", secureDb.services(prestataireId).get(0).desc());
+
+        assertEquals(1, migration(10).run(null).converted());
+
+        assertEquals("blob", rawType(serviceId));
+        assertEquals("Ancien format", secureDb.services(prestataireId).get(0).desc());
+    }
+
+    @Test
+    void smtpPasswordIsStoredAsBinaryCiphertext() throws Exception {
+        NotificationSettings settings = NotificationSettings.defaults();
+        secureDb.saveNotificationSettings(new NotificationSettings(settings.leadDays(), settings.reminderHour(),
+                settings.reminderMinute(), settings.repeatEveryHours(), settings.highlightOverdue(), settings.desktopPopup(),
+                settings.snoozeMinutes(), settings.emailEnabled(), settings.emailRecipient(), settings.emailFrom(),
+                settings.emailFromName(), settings.emailReplyTo(), settings.emailSignature(), settings.smtpHost(),
+                settings.smtpPort(), settings.smtpUsername(), "s3cret!", settings.smtpSecurity(),
+                settings.subjectTemplate(), settings.bodyTemplate(), settings.supplierEmailEnabled(),
+                settings.supplierSendOnDueDate(), settings.supplierSubjectTemplate(), settings.supplierBodyTemplate()));
+
+        try (Connection c = DB.newConnection(dbFile.toString());
+             PreparedStatement ps = c.prepareStatement("SELECT typeof(smtp_password), smtp_password FROM notification_settings WHERE id=1");
+             ResultSet rs = ps.executeQuery()) {
+            assertTrue(rs.next());
+            assertEquals("blob", rs.getString(1));
+            assertEquals("s3cret!", EncryptedField.open(rs.getBytes(2), testKey()));
+        }
+        assertEquals("s3cret!", secureDb.loadNotificationSettings().smtpPassword());
+    }
+
+    @Test
+    void largeHistoriesDecryptInParallelAndKeepTheirOrder() throws Exception {
+        int alpha = secureDb.insertPrestataire(samplePrestataire("Alpha"));
+        int beta = secureDb.insertPrestataire(samplePrestataire("Beta"));
+        int rows = SecureDB.PARALLEL_THRESHOLD * 2;
+        for (int i = 0; i < rows; i++) {
+            LocalDate day = LocalDate.of(2020, 1, 1).plusDays(i);
+            secureDb.insertService(i % 2 == 0 ? alpha : beta, new ServiceRow("Service " + i,
+                    day.format(java.time.format.DateTimeFormatter.ofPattern("dd/MM/yyyy")), ServiceStatus.EN_ATTENTE));
+        }
+
+        List<ServiceRow> alphaRows = secureDb.services(alpha);
+        assertEquals(rows / 2, alphaRows.size());
+        for (int i = 0; i < alphaRows.size(); i++) {
+            assertEquals("Service " + (2 * i), alphaRows.get(i).desc());
+        }
+
+        java.util.Map<Integer, List<ServiceRow>> all = secureDb.allServices();
+        assertEquals(List.of(alpha, beta), List.copyOf(all.keySet()));
+        assertEquals(alphaRows, all.get(alpha));
+        assertEquals("Service 1", all.get(beta).get(0).desc());
+        assertEquals("Service " + (rows - 1), all.get(beta).get(rows / 2 - 1).desc());
+    }
+
+    private ServiceEncryptionMigration migration(int chunkSize) {
+        return new ServiceEncryptionMigration(secureDb, () -> DB.newConnection(dbFile.toString()), chunkSize);
+    }
+
+    private int insertRawService(int prestataireId, String description) throws Exception {
         try (Connection c = DB.newConnection(dbFile.toString());
              PreparedStatement ps = c.prepareStatement(
                      "INSERT INTO services(prestataire_id, description, date, date_ts, status) VALUES(?,?,?,?,?)",
                      PreparedStatement.RETURN_GENERATED_KEYS)) {
             ps.setInt(1, prestataireId);
-            ps.setString(2, legacy);
+            ps.setString(2, description);
             ps.setString(3, "01/01/2025");
             ps.setLong(4, LocalDate.of(2025, 1, 1).atStartOfDay().toEpochSecond(ZoneOffset.UTC));
             ps.setString(5, ServiceStatus.EN_ATTENTE.name());
             ps.executeUpdate();
             try (ResultSet rs = ps.getGeneratedKeys()) {
                 assertTrue(rs.next());
-                serviceId = rs.getInt(1);
+                return rs.getInt(1);
             }
         }
+    }
 
-        ServiceRow row = secureDb.services(prestataireId).stream()
-                .filter(r -> r.id() == serviceId)
-                .findFirst()
-                .orElseThrow();
-        assertEquals(legacy, row.desc());
-
-        String storedAfterMigration = rawServiceDescription(serviceId);
-        assertNotEquals(legacy, storedAfterMigration);
-        assertDoesNotThrow(() -> CryptoUtils.base64ToBlob(storedAfterMigration));
+    private int countRaw(String sql) throws Exception {
+        try (Connection c = DB.newConnection(dbFile.toString());
+             PreparedStatement ps = c.prepareStatement(sql);
+             ResultSet rs = ps.executeQuery()) {
+            assertTrue(rs.next());
+            return rs.getInt(1);
+        }
     }
 
-    private String rawServiceDescription(int serviceId) throws Exception {
+    private byte[] rawServiceDescription(int serviceId) throws Exception {
         try (Connection c = DB.newConnection(dbFile.toString());
              PreparedStatement ps = c.prepareStatement("SELECT description FROM services WHERE id=?")) {
             ps.setInt(1, serviceId);
+            try (ResultSet rs = ps.executeQuery()) {
+                assertTrue(rs.next());
+                return rs.getBytes(1);
+            }
+        }
+    }
+
+    private String rawType(int serviceId) throws Exception {
+        try (Connection c = DB.newConnection(dbFile.toString());
+             PreparedStatement ps = c.prepareStatement("SELECT typeof(description) FROM services WHERE id=?")) {
+            ps.setInt(1, serviceId);
             try (ResultSet rs = ps.executeQuery()) {
                 assertTrue(rs.next());
                 return rs.getString(1);
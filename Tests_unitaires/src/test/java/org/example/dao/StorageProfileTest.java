@@ -0,0 +1,88 @@
+package org.example.dao;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+final class StorageProfileTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void connectionsAreOpenedWithTheRequestedProfile() throws SQLException {
+        DB db = new DB(tempDir.resolve("bulk.sqlite").toString(), StorageProfile.BULK_IMPORT);
+        try (Connection c = db.getConnection()) {
+            assertEquals(1L, pragma(c, "synchronous"));
+            assertEquals(-64L * 1024, pragma(c, "cache_size"));
+            assertEquals(2L, pragma(c, "temp_store"));
+        } finally {
+            db.close();
+        }
+    }
+
+    @Test
+    void temporarySwitchOnlyAffectsTheBulkConnection() throws SQLException {
+        DB db = new DB(tempDir.resolve("switch.sqlite").toString(), StorageProfile.DURABLE_DESKTOP);
+        try (Connection bulk = db.getConnection()) {
+            long mmap = StorageProfile.READ_MOSTLY_ANALYTICS.during(bulk, false, db.storageProfile(), c -> {
+                assertEquals(1L, pragma(c, "synchronous"));
+                // Une écriture de l'interface pendant le traitement reste synchronisée sur disque.
+                try (Connection other = db.getConnection()) {
+                    assertEquals(2L, pragma(other, "synchronous"));
+                }
+                return pragma(c, "mmap_size");
+            });
+            assertEquals(StorageProfile.READ_MOSTLY_ANALYTICS.mmapBytes(false), mmap);
+            assertEquals(StorageProfile.DURABLE_DESKTOP, db.storageProfile());
+            assertEquals(2L, pragma(bulk, "synchronous"));
+            assertEquals(0L, pragma(bulk, "mmap_size"));
+        } finally {
+            db.close();
+        }
+    }
+
+    @Test
+    void mmapIsNeverEnabledOnEncryptedDatabases() {
+        for (StorageProfile p : StorageProfile.values()) {
+            assertEquals(0L, p.mmapBytes(true));
+        }
+        assertEquals(StorageProfile.BULK_IMPORT, StorageProfile.parse("bulk-import"));
+        assertEquals(StorageProfile.DURABLE_DESKTOP, StorageProfile.parse("inconnu"));
+    }
+
+    @Test
+    void benchmarkMeasuresEveryProfileOnACopy() throws SQLException {
+        Path file = tempDir.resolve("source.sqlite");
+        DB db = new DB(file.toString());
+        db.close();
+
+        List<StorageBenchmark.Result> results =
+                StorageBenchmark.run(file, (copy, profile) -> DB.newConnection(copy.toString(), profile));
+
+        assertEquals(StorageProfile.values().length, results.size());
+        try (Connection c = DB.newConnection(file.toString());
+             Statement st = c.createStatement();
+             ResultSet rs = st.executeQuery("SELECT count(*) FROM sqlite_master WHERE name='__bench'")) {
+            rs.next();
+            assertEquals(0, rs.getInt(1));
+        }
+        assertFalse(results.stream().anyMatch(r -> r.bulkInsertMs() < 0));
+    }
+
+    private static long pragma(Connection c, String name) throws SQLException {
+        try (Statement st = c.createStatement();
+             ResultSet rs = st.executeQuery("PRAGMA " + name)) {
+            return rs.next() ? rs.getLong(1) : -1L;
+        }
+    }
+}
@@ -0,0 +1,140 @@
+package org.example.notifications;
+
+import org.example.model.NotificationSettings;
+import org.example.model.SmtpSecurity;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class EmailDispatcherTest {
+
+    private static final EmailMessage MESSAGE = new EmailMessage(
+            "owner@example.com", "alerts@example.com", "", "", "Sujet", "Corps");
+
+    @Test
+    void concurrencyIsCappedPerSmtpHost() throws Exception {
+        BlockingSender sender = new BlockingSender();
+        EmailDispatcher dispatcher = new EmailDispatcher(sender, 6, 2);
+        NotificationSettingsSnapshot alpha = snapshot("smtp.alpha.test");
+        NotificationSettingsSnapshot beta = snapshot("smtp.beta.test");
+        List<CompletableFuture<Void>> results = new ArrayList<>();
+        try {
+            for (int i = 0; i < 5; i++) {
+                results.add(dispatcher.submit(alpha, MESSAGE));
+                results.add(dispatcher.submit(beta, MESSAGE));
+            }
+            assertTrue(sender.awaitActive(4));
+            Thread.sleep(200);
+            assertEquals(2, sender.peak("smtp.alpha.test"));
+            assertEquals(2, sender.peak("smtp.beta.test"));
+
+            sender.release.countDown();
+            CompletableFuture.allOf(results.toArray(CompletableFuture[]::new)).get(5, TimeUnit.SECONDS);
+        } finally {
+            dispatcher.shutdownNow();
+        }
+    }
+
+    @Test
+    void sendFailuresSurfaceThroughTheFuture() throws Exception {
+        EmailDispatcher dispatcher = new EmailDispatcher((settings, message) -> {
+            throw new IllegalStateException("refusé");
+        }, 2, 1);
+        try {
+            CompletableFuture<Void> result = dispatcher.submit(snapshot("smtp.alpha.test"), MESSAGE);
+
+            CompletionException ex = assertThrows(CompletionException.class, result::join);
+            assertEquals("refusé", ex.getCause().getMessage());
+        } finally {
+            dispatcher.shutdownNow();
+        }
+    }
+
+    @Test
+    void drainLetsInFlightSendsFinishAndCancelsQueuedOnes() throws Exception {
+        BlockingSender sender = new BlockingSender();
+        EmailDispatcher dispatcher = new EmailDispatcher(sender, 2, 1);
+        NotificationSettingsSnapshot alpha = snapshot("smtp.alpha.test");
+        CompletableFuture<Void> inFlight = dispatcher.submit(alpha, MESSAGE);
+        assertTrue(sender.awaitActive(1));
+        CompletableFuture<Void> waitingForHost = dispatcher.submit(alpha, MESSAGE);
+        CompletableFuture<Void> queued = dispatcher.submit(alpha, MESSAGE);
+
+        Thread release = new Thread(() -> {
+            sleep(200);
+            sender.release.countDown();
+        });
+        release.start();
+        assertTrue(dispatcher.drain(Duration.ofSeconds(5)));
+
+        assertNull(inFlight.join());
+        assertThrows(CancellationException.class, waitingForHost::join);
+        assertThrows(CancellationException.class, queued::join);
+        assertEquals(1, sender.sent.get());
+        assertTrue(dispatcher.submit(alpha, MESSAGE).isCancelled());
+    }
+
+    private static NotificationSettingsSnapshot snapshot(String host) {
+        return NotificationSettingsSnapshot.of(new NotificationSettings(
+                1, 0, 0, 4, true, false, 30, true,
+                "owner@example.com", "alerts@example.com", host, 587, "smtp-user", "smtp-pass",
+                SmtpSecurity.STARTTLS, "Sujet", "Corps", false, true, "Sujet", "Corps"));
+    }
+
+    private static void sleep(long ms) {
+        try {
+            Thread.sleep(ms);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static final class BlockingSender implements EmailSender {
+        private final CountDownLatch release = new CountDownLatch(1);
+        private final ConcurrentHashMap<String, AtomicInteger> active = new ConcurrentHashMap<>();
+        private final ConcurrentHashMap<String, AtomicInteger> peaks = new ConcurrentHashMap<>();
+        private final AtomicInteger running = new AtomicInteger();
+        private final AtomicInteger sent = new AtomicInteger();
+
+        @Override
+        public void send(NotificationSettings settings, EmailMessage message) throws Exception {
+            String host = settings.smtpHost();
+            int now = active.computeIfAbsent(host, k -> new AtomicInteger()).incrementAndGet();
+            peaks.computeIfAbsent(host, k -> new AtomicInteger()).accumulateAndGet(now, Math::max);
+            running.incrementAndGet();
+            try {
+                release.await();
+                sent.incrementAndGet();
+            } finally {
+                running.decrementAndGet();
+                active.get(host).decrementAndGet();
+            }
+        }
+
+        private boolean awaitActive(int count) throws InterruptedException {
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+            while (running.get() < count) {
+                if (System.nanoTime() > deadline) {
+                    return false;
+                }
+                Thread.sleep(10);
+            }
+            return true;
+        }
+
+        private int peak(String host) {
+            return peaks.get(host).get();
+        }
+    }
+}
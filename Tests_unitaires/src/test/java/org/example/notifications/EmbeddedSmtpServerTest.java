@@ -0,0 +1,90 @@
+package org.example.notifications;
+
+import jakarta.mail.AuthenticationFailedException;
+import jakarta.mail.SendFailedException;
+import org.example.model.NotificationSettings;
+import org.example.model.SmtpSecurity;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class EmbeddedSmtpServerTest {
+
+    private static final EmbeddedSmtpServer.Options SECURED =
+            EmbeddedSmtpServer.Options.plain().withStartTls().withAuth("alerts", "s3cret");
+
+    @Test
+    void realSenderUpgradesToTlsAndAuthenticates() throws Exception {
+        try (EmbeddedSmtpServer server = new EmbeddedSmtpServer(SECURED);
+             SmtpTransportPool pool = pool(server)) {
+            SmtpEmailSender sender = new SmtpEmailSender(pool);
+
+            sender.send(snapshot(server, "s3cret"), message("Rappel F-12"));
+
+            assertEquals(1, server.messages().size());
+            EmbeddedSmtpServer.Received received = server.messages().get(0);
+            assertTrue(received.tls());
+            assertEquals("alerts", received.user());
+            assertEquals("alerts@example.com", received.from());
+            assertEquals(java.util.List.of("owner@example.com"), received.recipients());
+            assertTrue(received.data().contains("Subject: Rappel F-12"));
+        }
+    }
+
+    @Test
+    void wrongPasswordIsRejected() throws Exception {
+        try (EmbeddedSmtpServer server = new EmbeddedSmtpServer(SECURED);
+             SmtpTransportPool pool = pool(server)) {
+            SmtpEmailSender sender = new SmtpEmailSender(pool);
+
+            assertThrows(AuthenticationFailedException.class,
+                    () -> sender.send(snapshot(server, "mauvais"), message("Rappel")));
+            assertTrue(server.messages().isEmpty());
+        }
+    }
+
+    @Test
+    void injectedFailuresAreTemporaryAndKeepTheConnection() throws Exception {
+        try (EmbeddedSmtpServer server = new EmbeddedSmtpServer(SECURED.withFailureRate(1.0));
+             SmtpTransportPool pool = pool(server)) {
+            SmtpEmailSender sender = new SmtpEmailSender(pool);
+            NotificationSettingsSnapshot cfg = snapshot(server, "s3cret");
+
+            assertThrows(SendFailedException.class, () -> sender.send(cfg, message("Rappel 1")));
+            assertThrows(SendFailedException.class, () -> sender.send(cfg, message("Rappel 2")));
+
+            assertEquals(2, server.rejected());
+            assertEquals(1, server.connections());
+        }
+    }
+
+    @Test
+    void benchmarkDeliversTheWholeOutbox() throws Exception {
+        OutboxBenchmark.Result result = OutboxBenchmark.run(40, Duration.ZERO, 0);
+
+        assertEquals(40, result.delivered());
+        assertEquals(0, result.failed());
+        assertTrue(result.connections() <= EmailDispatcher.DEFAULT_PER_HOST, result::toString);
+        assertTrue(result.perSecond() > 0);
+        assertTrue(result.p50Ms() <= result.p99Ms());
+    }
+
+    private static SmtpTransportPool pool(EmbeddedSmtpServer server) {
+        AtomicLong clock = new AtomicLong();
+        return new SmtpTransportPool(100, Duration.ofMinutes(1), clock::get, server.clientProperties());
+    }
+
+    private static NotificationSettingsSnapshot snapshot(EmbeddedSmtpServer server, String password) {
+        return NotificationSettingsSnapshot.of(new NotificationSettings(
+                1, 0, 0, 4, true, false, 30, true,
+                "owner@example.com", "alerts@example.com", server.host(), server.port(), "alerts", password,
+                SmtpSecurity.STARTTLS, "Sujet", "Corps", false, true, "Sujet", "Corps"));
+    }
+
+    private static EmailMessage message(String subject) {
+        return new EmailMessage("owner@example.com", "alerts@example.com", "Alertes", "", subject, "Corps");
+    }
+}
@@ -4,21 +4,21 @@ import org.example.dao.DB;
 import org.example.model.Facture;
 import org.example.model.NotificationSettings;
 import org.example.model.Prestataire;
+import org.example.model.Rappel;
 import org.example.model.SmtpSecurity;
+import org.example.util.NotificationTemplateEngine;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.io.TempDir;
 
-import java.lang.reflect.Field;
 import java.lang.reflect.Method;
 import java.math.BigDecimal;
 import java.nio.file.Path;
 import java.time.Duration;
-import java.time.Instant;
 import java.time.LocalDate;
+import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.Map;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
 
@@ -194,12 +194,58 @@ class NotificationServiceTest {
         invokeTick(service);
         assertEquals(1, notifier.messages.size());
 
-        setReminderTimestamp(service, factureId, Instant.now().minus(Duration.ofHours(5)));
+        db.recordReminderActivity(factureId, LocalDateTime.now().minusHours(5));
         invokeTick(service);
 
         assertEquals(2, notifier.messages.size());
     }
 
+    @Test
+    void updateSettingsPublishesAPreparedSnapshot() {
+        service = newService(baseSettings(true, false), new RecordingNotifier(0), new RecordingEmailSender(0));
+        NotificationSettingsSnapshot before = service.currentSnapshot();
+
+        service.updateSettings(baseSettings(true, true));
+        NotificationSettingsSnapshot after = service.currentSnapshot();
+
+        assertNotSame(before, after);
+        assertTrue(after.settings().emailEnabled());
+        assertEquals("alerts@example.com", after.senderAddress());
+        assertTrue(after.smtpReady());
+        assertEquals("smtp.example.com", after.smtpProperties().getProperty("mail.smtp.host"));
+        assertEquals("true", after.smtpProperties().getProperty("mail.smtp.starttls.enable"));
+        assertEquals("Corps Alpha", after.body().render(new NotificationTemplateEngine.Context(
+                "Alpha", "F-1", null, "", "", 0, false)));
+    }
+
+    @Test
+    void startWakesUpAtTheNextQueuedReminderInsteadOfPolling() throws Exception {
+        RecordingEmailSender sender = new RecordingEmailSender(1);
+        service = newService(baseSettings(false, true), new RecordingNotifier(0), sender);
+        int factureId = insertInvoiceDue(LocalDate.now().plusDays(30));
+        db.addRappel(new Rappel(0, factureId, "owner@example.com", "Sujet", "Corps",
+                LocalDateTime.now().plusSeconds(2), false));
+
+        service.start();
+
+        assertTrue(sender.await(10, TimeUnit.SECONDS), "le rappel part à son échéance, pas au sondage suivant");
+    }
+
+    @Test
+    void commitRearmsTheSchedulerForNewlyQueuedReminders() throws Exception {
+        RecordingEmailSender sender = new RecordingEmailSender(1);
+        service = newService(baseSettings(false, true), new RecordingNotifier(0), sender);
+        int factureId = insertInvoiceDue(LocalDate.now().plusDays(30));
+        db.addCommitListener(service::reschedule);
+        service.start();
+        Thread.sleep(300);
+
+        db.addRappel(new Rappel(0, factureId, "owner@example.com", "Sujet", "Corps",
+                LocalDateTime.now().minusMinutes(1), false));
+
+        assertTrue(sender.await(5, TimeUnit.SECONDS), "un commit réarme l'échéance sans attendre le plafond d'une heure");
+    }
+
     private NotificationService newService(NotificationSettings settings,
                                            RecordingNotifier notifier,
                                            RecordingEmailSender sender) {
@@ -238,6 +284,10 @@ class NotificationServiceTest {
     }
 
     private int insertDueInvoice() {
+        return insertInvoiceDue(LocalDate.now());
+    }
+
+    private int insertInvoiceDue(LocalDate echeance) {
         int prestataireId = db.insertPrestataire(new Prestataire(
                 0,
                 "Alpha",
@@ -253,7 +303,7 @@ class NotificationServiceTest {
                 0,
                 prestataireId,
                 "Facture test",
-                LocalDate.now(),
+                echeance,
                 new BigDecimal("100.00"),
                 new BigDecimal("20.0"),
                 null,
@@ -285,14 +335,6 @@ class NotificationServiceTest {
         tick.invoke(service);
     }
 
-    @SuppressWarnings("unchecked")
-    private static void setReminderTimestamp(NotificationService service, int factureId, Instant value) throws Exception {
-        Field historyField = NotificationService.class.getDeclaredField("reminderHistory");
-        historyField.setAccessible(true);
-        Map<Integer, Instant> history = (Map<Integer, Instant>) historyField.get(service);
-        history.put(factureId, value);
-    }
-
     private static final class RecordingNotifier implements DesktopNotifier {
         private final CountDownLatch latch;
         private final List<String> messages = new ArrayList<>();
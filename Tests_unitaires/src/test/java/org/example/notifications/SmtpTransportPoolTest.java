@@ -0,0 +1,118 @@
+package org.example.notifications;
+
+import org.example.model.NotificationSettings;
+import org.example.model.SmtpSecurity;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SmtpTransportPoolTest {
+
+    private final AtomicLong clock = new AtomicLong();
+    private EmbeddedSmtpServer server;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        server = new EmbeddedSmtpServer(EmbeddedSmtpServer.Options.plain());
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        server.close();
+    }
+
+    @Test
+    void batchSharesOneConnection() throws Exception {
+        try (SmtpTransportPool pool = pool(100)) {
+            SmtpEmailSender sender = new SmtpEmailSender(pool);
+            NotificationSettingsSnapshot cfg = snapshot("Sujet");
+
+            for (int i = 0; i < 20; i++) {
+                sender.send(cfg, message(i));
+            }
+
+            assertEquals(20, server.messages().size());
+            assertEquals(1, server.connections());
+            assertTrue(server.messages().get(7).data().contains("Rappel 7"));
+        }
+    }
+
+    @Test
+    void sessionIsSharedAcrossSnapshotsWithTheSameConnectionSettings() throws Exception {
+        try (SmtpTransportPool pool = pool(100)) {
+            SmtpEmailSender sender = new SmtpEmailSender(pool);
+            NotificationSettingsSnapshot before = snapshot("Sujet");
+            NotificationSettingsSnapshot after = snapshot("Autre sujet");
+
+            sender.send(before, message(1));
+            sender.send(after, message(2));
+
+            assertSame(pool.session(before), pool.session(after));
+            assertEquals(1, server.connections());
+        }
+    }
+
+    @Test
+    void connectionIsRecycledAfterMaxMessages() throws Exception {
+        try (SmtpTransportPool pool = pool(5)) {
+            SmtpEmailSender sender = new SmtpEmailSender(pool);
+            NotificationSettingsSnapshot cfg = snapshot("Sujet");
+
+            for (int i = 0; i < 12; i++) {
+                sender.send(cfg, message(i));
+            }
+
+            assertEquals(12, server.messages().size());
+            assertEquals(3, pool.connectCount());
+        }
+    }
+
+    @Test
+    void droppedConnectionIsReopenedTransparently() throws Exception {
+        try (SmtpTransportPool pool = pool(100)) {
+            SmtpEmailSender sender = new SmtpEmailSender(pool);
+            NotificationSettingsSnapshot cfg = snapshot("Sujet");
+            sender.send(cfg, message(1));
+
+            server.dropConnections();
+            sender.send(cfg, message(2));
+
+            assertEquals(2, server.messages().size());
+            assertEquals(2, pool.connectCount());
+        }
+    }
+
+    @Test
+    void idleConnectionIsNotReused() throws Exception {
+        try (SmtpTransportPool pool = pool(100)) {
+            SmtpEmailSender sender = new SmtpEmailSender(pool);
+            NotificationSettingsSnapshot cfg = snapshot("Sujet");
+            sender.send(cfg, message(1));
+
+            clock.addAndGet(Duration.ofMinutes(2).toNanos());
+            sender.send(cfg, message(2));
+
+            assertEquals(2, pool.connectCount());
+        }
+    }
+
+    private SmtpTransportPool pool(int maxMessages) {
+        return new SmtpTransportPool(maxMessages, Duration.ofMinutes(1), clock::get);
+    }
+
+    private NotificationSettingsSnapshot snapshot(String subject) {
+        return NotificationSettingsSnapshot.of(new NotificationSettings(
+                1, 0, 0, 4, true, false, 30, true,
+                "owner@example.com", "alerts@example.com", "127.0.0.1", server.port(), "", "",
+                SmtpSecurity.NONE, subject, "Corps", false, true, "Sujet", "Corps"));
+    }
+
+    private static EmailMessage message(int i) {
+        return new EmailMessage("owner@example.com", "alerts@example.com", "Alertes", "", "Rappel " + i, "Corps " + i);
+    }
+}
@@ -1,15 +1,26 @@
 package org.example.security;
 
 import org.example.dao.AuthDB;
+import org.example.dao.DbBootstrap;
+import org.example.dao.SecureDB;
+import org.example.dao.UserDB;
+import org.example.model.Prestataire;
+import org.example.model.ServiceRow;
+import org.example.model.ServiceStatus;
 import org.example.util.AppPaths;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.io.TempDir;
 
+import javax.crypto.SecretKey;
 import java.lang.reflect.Field;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.Arrays;
 import java.util.List;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -124,6 +135,48 @@ class AuthServiceWorkflowTest {
         assertNotNull(session.key());
     }
 
+    @Test
+    void registerStoresSinglePassCredentials() throws Exception {
+        service.register("alice", chars("LongPass123"));
+
+        try (PreparedStatement ps = authDb.c().prepareStatement(
+                "SELECT kdf_version, kdf_memory FROM users WHERE username='alice'");
+             ResultSet rs = ps.executeQuery()) {
+            assertTrue(rs.next());
+            assertEquals(PasswordKdf.VERSION_2, rs.getInt(1));
+            assertTrue(rs.getInt(2) >= PasswordKdf.MIN_MEMORY_KIB);
+        }
+    }
+
+    @Test
+    void legacyAccountIsUpgradedAtLoginAndKeepsItsDatabaseKey() throws Exception {
+        byte[] salt = new byte[PasswordKdf.SALT_BYTES];
+        salt[0] = 7;
+        try (PreparedStatement ps = authDb.c().prepareStatement(
+                "INSERT INTO users(username,pwd_hash,kdf_salt,kdf_iters) VALUES(?,?,?,?)")) {
+            ps.setString(1, "legacy");
+            ps.setString(2, CryptoUtils.hashPwd(chars("LongPass123")));
+            ps.setBytes(3, salt);
+            ps.setInt(4, 10_000);
+            ps.executeUpdate();
+        }
+        SecretKey legacyKey = CryptoUtils.deriveKey(chars("LongPass123"), salt, 10_000);
+
+        AuthService.Session first = service.login("legacy", chars("LongPass123"));
+
+        assertArrayEquals(legacyKey.getEncoded(), first.key().getEncoded());
+        try (PreparedStatement ps = authDb.c().prepareStatement(
+                "SELECT kdf_version, wrapped_key FROM users WHERE username='legacy'");
+             ResultSet rs = ps.executeQuery()) {
+            assertTrue(rs.next());
+            assertEquals(PasswordKdf.VERSION_2, rs.getInt(1));
+            assertEquals(PasswordKdf.WRAPPED_BYTES, rs.getBytes(2).length);
+        }
+        assertNull(service.login("legacy", chars("WrongPass123")));
+        AuthService.Session second = service.login("legacy", chars("LongPass123"));
+        assertArrayEquals(legacyKey.getEncoded(), second.key().getEncoded());
+    }
+
     @Test
     void updateUsernameRenamesAccountAndAllowsLoginWithNewName() throws Exception {
         service.register("alice", chars("LongPass123"));
@@ -169,6 +222,72 @@ class AuthServiceWorkflowTest {
         assertNotNull(service.login("alice", chars("NewPass123")));
     }
 
+    @Test
+    void registerWrapsARandomDataKey() throws Exception {
+        AuthService.Session created = service.register("alice", chars("LongPass123"));
+
+        try (PreparedStatement ps = authDb.c().prepareStatement("SELECT wrapped_key FROM users WHERE username='alice'");
+             ResultSet rs = ps.executeQuery()) {
+            assertTrue(rs.next());
+            assertEquals(PasswordKdf.WRAPPED_BYTES, rs.getBytes(1).length);
+        }
+        assertArrayEquals(created.key().getEncoded(), service.login("alice", chars("LongPass123")).key().getEncoded());
+    }
+
+    @Test
+    void changePasswordOnlyRewrapsTheDataKey() throws Exception {
+        AuthService.Session session = service.register("alice", chars("LongPass123"));
+        Path dbFile = AppPaths.userDb("alice");
+        try (UserDB userDb = new UserDB(dbFile.toString())) {
+            userDb.openPool(session.key().getEncoded());
+            try (Statement st = userDb.getConnection().createStatement()) {
+                st.execute("CREATE TABLE t(x INTEGER)");
+            }
+        }
+        byte[] before = Files.readAllBytes(dbFile);
+
+        service.changePassword(session.userId(), chars("LongPass123"), chars("NewPass123"));
+
+        assertArrayEquals(before, Files.readAllBytes(dbFile));
+        assertArrayEquals(session.key().getEncoded(), service.login("alice", chars("NewPass123")).key().getEncoded());
+    }
+
+    @Test
+    void rotateDataKeyReencryptsTheDatabaseUnderANewKey() throws Exception {
+        AuthService.Session session = service.register("alice", chars("LongPass123"));
+        int serviceId;
+        try (UserDB userDb = new UserDB(AppPaths.userDb("alice").toString())) {
+            userDb.openPool(session.key().getEncoded());
+            SecureDB dao = new SecureDB(userDb::getConnection, session.userId(), session.key());
+            DbBootstrap.ensureSchema(dao, userDb);
+            int prestataire = dao.insertPrestataire(new Prestataire(0, "Alpha", "", "", "", 0, "", "", ""));
+            serviceId = dao.insertService(prestataire, new ServiceRow("Entretien", "01/01/2025", ServiceStatus.EN_ATTENTE));
+        }
+
+        service.rotateDataKey(session.userId(), chars("LongPass123"));
+
+        AuthService.Session after = service.login("alice", chars("LongPass123"));
+        assertFalse(Arrays.equals(session.key().getEncoded(), after.key().getEncoded()));
+        try (UserDB userDb = new UserDB(AppPaths.userDb("alice").toString())) {
+            userDb.openPool(after.key().getEncoded());
+            SecureDB dao = new SecureDB(userDb::getConnection, after.userId(), after.key());
+            assertEquals("Entretien", dao.services(dao.list("").get(0).getId()).get(0).desc());
+            try (PreparedStatement ps = userDb.getConnection().prepareStatement("SELECT description FROM services WHERE id=?")) {
+                ps.setInt(1, serviceId);
+                try (ResultSet rs = ps.executeQuery()) {
+                    assertTrue(rs.next());
+                    assertThrows(java.security.GeneralSecurityException.class,
+                            () -> EncryptedField.open(rs.getBytes(1), session.key()));
+                }
+            }
+        }
+        try (PreparedStatement ps = authDb.c().prepareStatement("SELECT pending_key FROM users WHERE username='alice'");
+             ResultSet rs = ps.executeQuery()) {
+            assertTrue(rs.next());
+            assertNull(rs.getBytes(1));
+        }
+    }
+
     @Test
     void deleteUserForbidLastThrows() throws Exception {
         service.register("alice", chars("LongPass123"));
@@ -3,8 +3,11 @@ package org.example.security;
 import org.junit.jupiter.api.Test;
 
 import javax.crypto.SecretKey;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 import java.security.GeneralSecurityException;
 import java.util.Arrays;
+import java.util.List;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -109,6 +112,59 @@ class CryptoUtilsTest {
         assertFalse(Arrays.equals(first.iv(), second.iv()));
     }
 
+    @Test
+    void bufferApiRoundTripsIntoCallerBuffers() throws Exception {
+        SecretKey key = deriveTestKey((byte) 7);
+        byte[] payload = "tampon réutilisé".getBytes(StandardCharsets.UTF_8);
+        ByteBuffer sealed = ByteBuffer.allocate(payload.length + CryptoUtils.SEALED_OVERHEAD + 8);
+        sealed.position(8);
+
+        int written = CryptoUtils.encrypt(ByteBuffer.wrap(payload), sealed, key);
+        assertEquals(payload.length + CryptoUtils.SEALED_OVERHEAD, written);
+
+        sealed.flip().position(8);
+        ByteBuffer plain = ByteBuffer.allocateDirect(payload.length);
+        assertEquals(payload.length, CryptoUtils.decrypt(sealed, plain, key));
+        byte[] back = new byte[payload.length];
+        plain.flip().get(back);
+        assertArrayEquals(payload, back);
+
+        byte[] array = new byte[written + 3];
+        System.arraycopy(sealed.array(), 8, array, 3, written);
+        byte[] out = new byte[payload.length + 2];
+        assertEquals(payload.length, CryptoUtils.decrypt(array, 3, written, out, 2, key));
+        assertArrayEquals(payload, Arrays.copyOfRange(out, 2, out.length));
+    }
+
+    @Test
+    void base64HelpersStayCompatibleWithCipherBlobFormat() throws Exception {
+        SecretKey key = deriveTestKey((byte) 8);
+
+        String legacy = CryptoUtils.blobToBase64(CryptoUtils.encrypt("déjà stocké".getBytes(StandardCharsets.UTF_8), key));
+        assertEquals("déjà stocké", CryptoUtils.decryptFromBase64(legacy, key));
+
+        String current = CryptoUtils.encryptToBase64("nouvelle valeur", key);
+        assertArrayEquals("nouvelle valeur".getBytes(StandardCharsets.UTF_8),
+                CryptoUtils.decrypt(CryptoUtils.base64ToBlob(current), key));
+        assertThrows(IllegalArgumentException.class, () -> CryptoUtils.decryptFromBase64("@@not-base64@@", key));
+        // Trop court pour un chiffré : c'est un clair qui se trouve être du Base64 valide.
+        assertThrows(IllegalArgumentException.class, () -> CryptoUtils.decryptFromBase64("QUJD", key));
+        String foreign = CryptoUtils.encryptToBase64("autre clé", deriveTestKey((byte) 9));
+        assertThrows(GeneralSecurityException.class, () -> CryptoUtils.decryptFromBase64(foreign, key));
+    }
+
+    @Test
+    void benchmarkShowsBufferPathAllocatesLessThanPerCallCiphers() throws Exception {
+        List<CryptoBenchmark.Result> results = CryptoBenchmark.run(2_000);
+
+        assertEquals(4, results.size());
+        CryptoBenchmark.Result perCall = results.get(0);
+        CryptoBenchmark.Result buffers = results.get(2);
+        if (perCall.bytesPerRow() >= 0) {
+            assertTrue(buffers.bytesPerRow() < perCall.bytesPerRow(), results.toString());
+        }
+    }
+
     private static SecretKey deriveTestKey(byte marker) throws Exception {
         byte[] salt = new byte[16];
         Arrays.fill(salt, marker);
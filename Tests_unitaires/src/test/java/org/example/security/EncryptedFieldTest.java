@@ -0,0 +1,67 @@
+package org.example.security;
+
+import org.junit.jupiter.api.Test;
+
+import javax.crypto.SecretKey;
+import javax.crypto.spec.SecretKeySpec;
+import java.security.GeneralSecurityException;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class EncryptedFieldTest {
+
+    private static final SecretKey KEY = new SecretKeySpec(filled((byte) 11), "AES");
+
+    @Test
+    void shortValuesAreStoredUncompressed() throws Exception {
+        byte[] sealed = EncryptedField.seal("court", KEY);
+
+        assertTrue(EncryptedField.isSealed(sealed));
+        assertFalse(EncryptedField.isCompressed(sealed));
+        assertEquals(EncryptedField.VERSION_1, sealed[0]);
+        assertEquals("court", EncryptedField.open(sealed, KEY));
+    }
+
+    @Test
+    void compressionNeverGrowsTheValue() throws Exception {
+        StringBuilder sb = new StringBuilder();
+        java.util.Random rnd = new java.util.Random(42);
+        while (sb.length() < 400) sb.append((char) (0x4E00 + rnd.nextInt(0x5000)));
+        int clearBytes = sb.toString().getBytes(java.nio.charset.StandardCharsets.UTF_8).length;
+
+        byte[] sealed = EncryptedField.seal(sb.toString(), KEY);
+
+        assertTrue(sealed.length <= clearBytes + 30);
+        assertEquals(sb.toString(), EncryptedField.open(sealed, KEY));
+    }
+
+    @Test
+    void headerIsAuthenticated() throws Exception {
+        byte[] sealed = EncryptedField.seal("Révision annuelle ".repeat(30), KEY);
+        assertTrue(EncryptedField.isCompressed(sealed));
+
+        byte[] flipped = sealed.clone();
+        flipped[1] = 0;
+        assertThrows(GeneralSecurityException.class, () -> EncryptedField.open(flipped, KEY));
+
+        byte[] unknownVersion = sealed.clone();
+        unknownVersion[0] = 9;
+        assertFalse(EncryptedField.isSealed(unknownVersion));
+        assertThrows(GeneralSecurityException.class, () -> EncryptedField.open(unknownVersion, KEY));
+    }
+
+    @Test
+    void wrongKeyIsRejected() throws Exception {
+        byte[] sealed = EncryptedField.seal("secret", KEY);
+
+        assertThrows(GeneralSecurityException.class,
+                () -> EncryptedField.open(sealed, new SecretKeySpec(filled((byte) 12), "AES")));
+    }
+
+    private static byte[] filled(byte b) {
+        byte[] raw = new byte[32];
+        Arrays.fill(raw, b);
+        return raw;
+    }
+}
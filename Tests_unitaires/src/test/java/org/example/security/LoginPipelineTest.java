@@ -0,0 +1,115 @@
+package org.example.security;
+
+import org.example.dao.AuthDB;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LoginPipelineTest {
+
+    @TempDir
+    Path tempDir;
+
+    private AuthDB authDb;
+    private AuthService auth;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        authDb = new AuthDB(tempDir.resolve("auth.sqlite").toString());
+        auth = new AuthService(authDb);
+    }
+
+    @AfterEach
+    void tearDown() {
+        authDb.close();
+    }
+
+    @Test
+    void registerThenLoginReportStepsAndOpenOffTheCallerThread() throws Exception {
+        List<LoginPipeline.Step> steps = new CopyOnWriteArrayList<>();
+        AtomicReference<String> openerThread = new AtomicReference<>();
+        try (LoginPipeline<String> pipeline = new LoginPipeline<>(auth, (session, lock, progress) -> {
+            openerThread.set(Thread.currentThread().getName());
+            progress.accept(LoginPipeline.Step.MIGRATING);
+            return "base de " + session.username();
+        }, r -> { })) {
+            LoginPipeline.Opened<String> created = pipeline.register("alice", "LongPass123".toCharArray(), "2468".toCharArray(), steps::add)
+                    .result().get(30, TimeUnit.SECONDS);
+            LoginPipeline.Opened<String> opened = pipeline.login("alice", "LongPass123".toCharArray(), "2468".toCharArray(), steps::add)
+                    .result().get(30, TimeUnit.SECONDS);
+
+            assertEquals("base de alice", opened.resource());
+            assertEquals(created.session().userId(), opened.session().userId());
+            assertArrayEquals(created.session().key().getEncoded(), opened.session().key().getEncoded());
+            assertEquals("login-worker", openerThread.get());
+            assertEquals(List.of(LoginPipeline.Step.VERIFYING, LoginPipeline.Step.OPENING, LoginPipeline.Step.MIGRATING),
+                    steps.subList(3, 6));
+
+            // Le verrou de session redemande le mot de passe du compte, vérifié par AuthService.
+            opened.lock().lock();
+            assertFalse(opened.lock().unlock("1357".toCharArray()));
+            assertTrue(opened.lock().unlock("2468".toCharArray()));
+            assertArrayEquals(opened.session().key().getEncoded(), opened.lock().key().getEncoded());
+        }
+    }
+
+    @Test
+    void rejectedCredentialsCompleteWithNullWithoutOpening() throws Exception {
+        auth.register("alice", "LongPass123".toCharArray());
+        try (LoginPipeline<String> pipeline = new LoginPipeline<>(auth, (session, lock, progress) -> {
+            throw new AssertionError("ne doit pas ouvrir");
+        }, r -> { })) {
+            assertNull(pipeline.login("alice", "WrongPass123".toCharArray(), "2468".toCharArray(), s -> { })
+                    .result().get(30, TimeUnit.SECONDS));
+        }
+    }
+
+    @Test
+    void lockPinEqualToThePasswordIsRejectedBeforeVerification() throws Exception {
+        auth.register("alice", "LongPass123".toCharArray());
+        try (LoginPipeline<String> pipeline = new LoginPipeline<>(auth, (session, lock, progress) -> {
+            throw new AssertionError("ne doit pas ouvrir");
+        }, r -> { })) {
+            char[] pin = "LongPass123".toCharArray();
+            ExecutionException ex = assertThrows(ExecutionException.class,
+                    () -> pipeline.login("alice", "LongPass123".toCharArray(), pin, s -> { })
+                            .result().get(30, TimeUnit.SECONDS));
+
+            assertInstanceOf(IllegalArgumentException.class, ex.getCause());
+            assertArrayEquals(new char[pin.length], pin);
+        }
+    }
+
+    @Test
+    void cancellingDuringOpeningDiscardsTheOpenedResource() throws Exception {
+        auth.register("alice", "LongPass123".toCharArray());
+        CountDownLatch opening = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch discarded = new CountDownLatch(1);
+        try (LoginPipeline<String> pipeline = new LoginPipeline<>(auth, (session, lock, progress) -> {
+            opening.countDown();
+            release.await();
+            return "base";
+        }, r -> discarded.countDown())) {
+            LoginPipeline.Attempt<String> attempt = pipeline.login("alice", "LongPass123".toCharArray(), "2468".toCharArray(), s -> { });
+            assertTrue(opening.await(30, TimeUnit.SECONDS));
+
+            attempt.cancel();
+            release.countDown();
+
+            assertTrue(attempt.result().isCancelled());
+            assertTrue(discarded.await(5, TimeUnit.SECONDS));
+        }
+    }
+}
@@ -0,0 +1,54 @@
+package org.example.security;
+
+import org.junit.jupiter.api.Test;
+
+import javax.crypto.SecretKey;
+import javax.crypto.spec.SecretKeySpec;
+import java.time.Duration;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PasswordKdfTest {
+
+    private static final PasswordKdf.Params LIGHT = new PasswordKdf.Params(2, 8 * 1024, 1);
+
+    @Test
+    void singlePassSplitsIntoIndependentVerifierAndKey() {
+        byte[] salt = new byte[PasswordKdf.SALT_BYTES];
+
+        PasswordKdf.Derived first = PasswordKdf.derive("StrongPass123".toCharArray(), salt, LIGHT);
+        PasswordKdf.Derived again = PasswordKdf.derive("StrongPass123".toCharArray(), salt, LIGHT);
+        PasswordKdf.Derived other = PasswordKdf.derive("WrongPass456".toCharArray(), salt, LIGHT);
+
+        assertTrue(again.matches(first.verifier()));
+        assertArrayEquals(first.key().getEncoded(), again.key().getEncoded());
+        assertFalse(other.matches(first.verifier()));
+        assertFalse(Arrays.equals(first.verifier(), first.key().getEncoded()));
+        assertEquals(PasswordKdf.KEY_BYTES, first.key().getEncoded().length);
+    }
+
+    @Test
+    void wrappedKeyOnlyOpensWithItsKek() throws Exception {
+        byte[] raw = new byte[32];
+        raw[5] = 42;
+        SecretKey dataKey = new SecretKeySpec(raw, "AES");
+        SecretKey kek = PasswordKdf.derive("StrongPass123".toCharArray(), new byte[16], LIGHT).key();
+        SecretKey otherKek = PasswordKdf.derive("WrongPass456".toCharArray(), new byte[16], LIGHT).key();
+
+        byte[] wrapped = PasswordKdf.wrap(dataKey, kek);
+
+        assertEquals(PasswordKdf.WRAPPED_BYTES, wrapped.length);
+        assertArrayEquals(raw, PasswordKdf.unwrap(wrapped, kek).getEncoded());
+        assertThrows(java.security.GeneralSecurityException.class, () -> PasswordKdf.unwrap(wrapped, otherKek));
+    }
+
+    @Test
+    void calibrationStaysWithinBoundsOnAnUnreachableTarget() {
+        PasswordKdf.Params p = PasswordKdf.calibrate(Duration.ofNanos(1));
+
+        assertEquals(PasswordKdf.MIN_ITERATIONS, p.iterations());
+        assertEquals(PasswordKdf.MIN_MEMORY_KIB, p.memoryKib());
+        assertTrue(p.parallelism() >= 1);
+    }
+}
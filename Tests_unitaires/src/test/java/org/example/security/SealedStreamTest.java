@@ -0,0 +1,73 @@
+package org.example.security;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SealedStreamTest {
+
+    private static final PasswordKdf.Params FAST = new PasswordKdf.Params(1, 8 * 1024, 1);
+    private static final int CHUNK = 4 * 1024;
+
+    @Test
+    void roundTripsAcrossSeveralChunks() throws Exception {
+        byte[] data = randomBytes(3 * CHUNK + 123);
+        byte[] sealed = seal(data, "phrase secrète");
+
+        assertArrayEquals(data, open(sealed, "phrase secrète"));
+        assertFalse(new String(sealed, java.nio.charset.StandardCharsets.ISO_8859_1)
+                .contains(new String(data, 0, 64, java.nio.charset.StandardCharsets.ISO_8859_1)));
+    }
+
+    @Test
+    void wrongPassphraseFailsOnTheFirstChunk() throws Exception {
+        byte[] sealed = seal(randomBytes(100), "phrase secrète");
+
+        IOException ex = assertThrows(IOException.class, () -> open(sealed, "autre phrase"));
+        assertEquals("Phrase de passe incorrecte ou archive altérée.", ex.getMessage());
+    }
+
+    @Test
+    void truncatedOrAlteredArchivesAreRejected() throws Exception {
+        byte[] sealed = seal(randomBytes(2 * CHUNK + 10), "phrase secrète");
+        // Le dernier morceau (10 octets + tag + longueur) retiré : les morceaux restants sont intacts mais aucun n'est final.
+        byte[] withoutLast = Arrays.copyOf(sealed, sealed.length - (4 + 10 + 16));
+        byte[] flipped = sealed.clone();
+        flipped[flipped.length / 2] ^= 1;
+        byte[] trailing = Arrays.copyOf(sealed, sealed.length + 1);
+
+        assertThrows(IOException.class, () -> open(withoutLast, "phrase secrète"));
+        assertThrows(IOException.class, () -> open(flipped, "phrase secrète"));
+        assertThrows(IOException.class, () -> open(trailing, "phrase secrète"));
+    }
+
+    private static byte[] seal(byte[] data, String passphrase) throws IOException {
+        ByteArrayOutputStream buf = new ByteArrayOutputStream();
+        try (SealedStream.Output out = SealedStream.output(Channels.newChannel(buf), passphrase.toCharArray(), FAST, CHUNK)) {
+            out.write(data, 0, 7);
+            out.write(data, 7, data.length - 7);
+        }
+        return buf.toByteArray();
+    }
+
+    private static byte[] open(byte[] sealed, String passphrase) throws IOException {
+        try (InputStream in = SealedStream.input(
+                Channels.newChannel(new ByteArrayInputStream(sealed)), passphrase.toCharArray())) {
+            return in.readAllBytes();
+        }
+    }
+
+    private static byte[] randomBytes(int n) {
+        byte[] b = new byte[n];
+        new Random(42).nextBytes(b);
+        return b;
+    }
+}
@@ -0,0 +1,62 @@
+package org.example.security;
+
+import org.junit.jupiter.api.Test;
+
+import javax.crypto.spec.SecretKeySpec;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SessionLockTest {
+
+    @Test
+    void lockWipesTheKeyAndTheRightPinRestoresIt() throws Exception {
+        byte[] raw = PasswordKdf.newDataKey().getEncoded();
+        SessionLock lock = new SessionLock(new SecretKeySpec(raw, "AES"), "4821".toCharArray());
+        List<String> events = new ArrayList<>();
+        lock.addListener(new SessionLock.Listener() {
+            @Override
+            public void locked() {
+                events.add("locked");
+            }
+
+            @Override
+            public void unlocked() {
+                events.add("unlocked");
+            }
+        });
+
+        lock.lock();
+
+        assertTrue(lock.isLocked());
+        assertThrows(IllegalStateException.class, lock::key);
+        char[] pin = "4821".toCharArray();
+        assertTrue(lock.unlock(pin));
+        assertArrayEquals(new char[pin.length], pin);
+        assertArrayEquals(raw, lock.key().getEncoded());
+        assertEquals(List.of("locked", "unlocked"), events);
+    }
+
+    @Test
+    void repeatedWrongPinsDestroyTheWrappedKey() throws Exception {
+        SessionLock lock = new SessionLock(PasswordKdf.newDataKey(), "4821".toCharArray());
+        lock.lock();
+
+        for (int i = 1; i < SessionLock.MAX_FAILED_UNLOCKS; i++) {
+            assertFalse(lock.unlock("1111".toCharArray()));
+            assertFalse(lock.exhausted());
+        }
+        assertFalse(lock.unlock("1111".toCharArray()));
+
+        assertTrue(lock.exhausted());
+        assertFalse(lock.unlock("4821".toCharArray()));
+        assertTrue(lock.isLocked());
+    }
+
+    @Test
+    void tooShortPinIsRejected() {
+        assertThrows(IllegalArgumentException.class,
+                () -> new SessionLock(PasswordKdf.newDataKey(), "12".toCharArray()));
+    }
+}
@@ -87,6 +87,14 @@ class AppPathsTest {
         assertEquals(AppPaths.dataRoot().resolve("outbox"), outbox);
     }
 
+    @Test
+    void backupsDirIsCreatedUnderDataRoot() {
+        Path backups = AppPaths.backupsDir();
+
+        assertEquals(AppPaths.dataRoot().resolve("backups"), backups);
+        assertTrue(Files.isDirectory(backups));
+    }
+
     @Test
     void authDbFileNameIsAlwaysAuthDb() {
         assertEquals("auth.db", AppPaths.authDb().getFileName().toString());
@@ -66,6 +66,16 @@ class NotificationTemplateEngineTest {
         assertEquals("-", rendered);
     }
 
+    @Test
+    void compiledTemplateRendersLikeRenderAndCanBeReused() {
+        String template = "Rappel {{ Facture }} : {{montant}} ({{inconnu}}) {{statut}}.";
+        NotificationTemplateEngine.Template compiled = NotificationTemplateEngine.compile(template);
+
+        assertEquals(NotificationTemplateEngine.render(template, sampleContext(false)), compiled.render(sampleContext(false)));
+        assertEquals("Rappel F-001 : 120,00 € () En retard.", compiled.render(sampleContext(true)));
+        assertEquals("", NotificationTemplateEngine.compile("  ").render(sampleContext(false)));
+    }
+
     @Test
     void sampleContextContainsUsefulDefaults() {
         NotificationTemplateEngine.Context sample = NotificationTemplateEngine.sampleContext();
@@ -0,0 +1,33 @@
+package org.example.util;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SortKeysTest {
+
+    @Test
+    void foldIgnoresAccentsAndCase() {
+        assertEquals("electricite dupont", SortKeys.fold("Électricité Dupont"));
+        assertEquals(SortKeys.fold("electricite dupont"), SortKeys.fold("ÉLECTRICITÉ DUPONT"));
+    }
+
+    @Test
+    void foldExpandsLigaturesAndSeparators() {
+        assertEquals("oeuvre et soeur", SortKeys.fold("Œuvre  et sœur"));
+        assertEquals("jean pierre l atelier", SortKeys.fold("Jean-Pierre L’Atelier"));
+    }
+
+    @Test
+    void foldHandlesNullAndDecomposedInput() {
+        assertEquals("", SortKeys.fold(null));
+        assertEquals("cafe", SortKeys.fold("Café"));
+    }
+
+    @Test
+    void nocaseFoldsAsciiOnly() {
+        assertEquals(0, SortKeys.NOCASE.compare("Alpha", "aLPHA"));
+        assertTrue(SortKeys.NOCASE.compare("cote", "côte") < 0);
+        assertNotEquals(0, SortKeys.NOCASE.compare("É", "é"));
+    }
+}
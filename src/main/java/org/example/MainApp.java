@@ -6,13 +6,18 @@ import javafx.event.EventHandler;
 import javafx.scene.Scene;
 import javafx.scene.control.Alert;
 import javafx.scene.control.ButtonType;
+import javafx.scene.layout.StackPane;
 import javafx.stage.Stage;
 import javafx.stage.WindowEvent;
 import org.example.dao.AuthDB;
+import org.example.dao.BackupService;
 import org.example.dao.DB;
 import org.example.dao.DbBootstrap;
+import org.example.dao.IntegrityVerifier;
 import org.example.dao.UserDB;
 import org.example.dao.SecureDB;
+import org.example.dao.ServiceEncryptionMigration;
+import org.example.dao.StorageProfile;
 import org.example.util.AppPaths;
 import org.example.AppServices;
 import org.example.model.NotificationSettings;
@@ -21,12 +26,15 @@ import org.example.notifications.DialogDesktopNotifier;
 import org.example.notifications.NotificationService;
 import org.example.notifications.SystemTrayManager;
 import org.example.notifications.SystemTrayNotifier;
+import org.example.gui.AutoLock;
 import org.example.gui.Dialogs;
 import org.example.gui.LoginDialog;
 import org.example.gui.MainView;
 import org.example.gui.RegisterDialog;
 import org.example.gui.ThemeManager;
 import org.example.security.AuthService;
+import org.example.security.LoginPipeline;
+import org.example.security.SessionLock;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -45,8 +53,13 @@ public final class MainApp extends Application {
     private AuthDB authDb;
     private AuthService authService;
     private AuthService.Session session;
+    private SessionLock sessionLock;
     private Instant loginStarted;
     private NotificationService notificationService;
+    private BackupService backupService;
+    private IntegrityVerifier integrityVerifier;
+    private Thread maintenance;
+    private boolean maintenanceCut;
     private SystemTrayNotifier trayNotifier;
     private SystemTrayManager trayManager;
     private EventHandler<WindowEvent> defaultCloseHandler;
@@ -75,54 +88,51 @@ public final class MainApp extends Application {
             return;
         }
         try {
-            AuthService.Session session;
-            try (Statement st = authDb.c().createStatement();
+            Optional<LoginPipeline.Opened<OpenedDatabase>> opened;
+            try (LoginPipeline<OpenedDatabase> pipeline = new LoginPipeline<>(authService, this::openUserDatabase, OpenedDatabase::close);
+                 Statement st = authDb.c().createStatement();
                  ResultSet rs = st.executeQuery("SELECT COUNT(*) FROM users")) {
                 if (rs.next() && rs.getInt(1) == 0) {
-                    session = new RegisterDialog(authService).showAndWait().orElse(null);
-                    if (session != null) {
-                        byte[] key = session.key().getEncoded();
-                        if (!openUserDatabase(session, key, false)) {
-                            Platform.exit();
-                            return;
-                        }
-                    }
+                    opened = new RegisterDialog<>(pipeline).showAndWait();
                 } else {
-                    session = authenticateUntilDbOpen(authService).orElse(null);
+                    opened = promptLoginLoop(pipeline);
                 }
             }
 
-            if (session == null) {
+            if (opened.isEmpty()) {
                 Platform.exit();
                 return;
             }
 
-            this.session = session;
-            byte[] key = session.key().getEncoded();
+            // La clé ne vit plus que dans le verrou ; la session gardée pour l'interface n'en porte pas.
+            AuthService.Session full = opened.get().session();
+            this.session = new AuthService.Session(full.userId(), null, full.username());
+            this.sessionLock = opened.get().lock();
+            this.userDb = opened.get().resource().userDb();
+            DB dao = opened.get().resource().dao();
+            this.dao = dao;
             loginStarted = Instant.now();
 
             log.info("DB path = {}", AppPaths.userDb(session.username()));
 
-            DB dao = initSecureDbWithRepair(userDb, session, key);
-            this.dao = dao;
-            try {
-                DbBootstrap.ensureSchema(dao, userDb);
-            } catch (Exception ex) {
-                if (looksLikeNotADB(ex)) {
-                    userDb.close();
-                    userDb.openOrRepair(key);
-                    DbBootstrap.ensureSchema(dao, userDb);
-                } else throw ex;
-            }
+            // La copie en mémoire se construit pendant que la fenêtre s'affiche ; les lectures passent par la base d'ici là.
+            Thread replica = new Thread(() -> enableReadReplica(dao), "db-replica");
+            replica.setDaemon(true);
+            replica.start();
+            startMaintenance(dao);
+            startBackups(dao);
+            startIntegrityChecks(stage, dao);
 
             view = new MainView(stage, dao, authService, session, loginStarted);
-            Scene sc = new Scene(view.getRoot(), 920, 600);
+            StackPane host = new StackPane(view.getRoot());
+            Scene sc = new Scene(host, 920, 600);
             if (Boolean.getBoolean("app.safeUi")) sc.getStylesheets().clear();
             else ThemeManager.apply(sc);
             stage.setScene(sc);
             stage.setTitle("Gestion des Prestataires");
             defaultCloseHandler = stage.getOnCloseRequest();
             initNotifications(stage);
+            installAutoLock(sc, host);
             stage.show();
 
         } catch (Exception ex) {
@@ -132,12 +142,122 @@ public final class MainApp extends Application {
         }
     }
 
+    /** Verrouillage après {@code app.autoLockMinutes} minutes d'inactivité (10 par défaut, 0 pour désactiver). */
+    private void installAutoLock(Scene scene, StackPane host) {
+        sessionLock.addListener(new SessionLock.Listener() {
+            @Override
+            public void locked() {
+                view.setLocked(true);
+                // Plus de clé en mémoire : rien ne doit rouvrir la base ni garder de données déchiffrées.
+                userDb.lock();
+                if (notificationService != null) notificationService.pause();
+                if (backupService != null) backupService.pause();
+                if (integrityVerifier != null) integrityVerifier.pause();
+                dao.disableReadReplica();
+                dao.forgetDecrypted();
+                maintenanceCut = maintenance != null && maintenance.isAlive();
+                if (maintenanceCut) maintenance.interrupt();
+            }
+
+            @Override
+            public void unlocked() {
+                // Appelé sur le thread JavaFX : la fenêtre se rouvre tout de suite, les lectures passent par la base
+                // le temps que la copie en mémoire se reconstruise, comme à la connexion.
+                byte[] key = sessionLock.key().getEncoded();
+                try {
+                    userDb.unlock(key);
+                } finally {
+                    java.util.Arrays.fill(key, (byte) 0);
+                }
+                view.setLocked(false);
+                boolean restartMaintenance = maintenanceCut;
+                maintenanceCut = false;
+                Thread resume = new Thread(() -> {
+                    enableReadReplica(dao);
+                    if (backupService != null) backupService.resume();
+                    if (integrityVerifier != null) integrityVerifier.resume();
+                    // La migration des services repart de son dernier lot validé.
+                    if (restartMaintenance) startMaintenance(dao);
+                    if (notificationService != null) notificationService.resume();
+                }, "db-replica");
+                resume.setDaemon(true);
+                resume.start();
+            }
+        });
+        long minutes = Long.getLong("app.autoLockMinutes", 10);
+        AutoLock.install(scene, host, sessionLock, java.time.Duration.ofMinutes(Math.max(0, minutes)), () -> {
+            stopNotifications();
+            Platform.exit();
+        });
+    }
+
+    private void enableReadReplica(DB dao) {
+        if (!Boolean.parseBoolean(System.getProperty("app.readReplica", "true"))) {
+            return;
+        }
+        try {
+            dao.enableReadReplica(() -> userDb.openSecondaryConnection(StorageProfile.READ_MOSTLY_ANALYTICS));
+            log.info("[MainApp] Réplique de lecture en mémoire active.");
+        } catch (Exception ex) {
+            log.warn("[MainApp] Réplique de lecture indisponible, lectures sur la base principale : {}", ex.getMessage());
+        }
+    }
+
+    private void startMaintenance(DB dao) {
+        Thread t = new Thread(() -> {
+            try {
+                int resumed = dao.resumePendingDeletions();
+                if (resumed > 0) log.info("[MainApp] {} suppression(s) de prestataire relancée(s).", resumed);
+            } catch (Exception ex) {
+                log.warn("[MainApp] Reprise des suppressions impossible : {}", ex.getMessage());
+            }
+            if (dao instanceof SecureDB secure) {
+                try {
+                    new ServiceEncryptionMigration(secure, userDb::openSecondaryConnection, 200).run(p ->
+                            log.debug("[MainApp] Chiffrement des services : {} converties, {} restantes", p.converted(), p.remaining()));
+                } catch (Exception ex) {
+                    log.warn("[MainApp] Chiffrement des services interrompu, reprise au prochain démarrage : {}", ex.getMessage());
+                }
+            }
+        }, "db-maintenance");
+        t.setDaemon(true);
+        maintenance = t;
+        t.start();
+    }
+
+    private void startBackups(DB dao) {
+        if (!Boolean.parseBoolean(System.getProperty("app.backup", "true"))) {
+            return;
+        }
+        int generations = Integer.getInteger("app.backupGenerations", BackupService.DEFAULT_GENERATIONS);
+        backupService = new BackupService(userDb, AppPaths.backupsDir(), generations, dao::commitCount);
+        backupService.start(java.time.Duration.ofMinutes(2), java.time.Duration.ofHours(6));
+        log.info("[MainApp] Sauvegarde en arrière-plan active ({} générations).", generations);
+    }
+
+    private void startIntegrityChecks(Stage stage, DB dao) {
+        if (!Boolean.parseBoolean(System.getProperty("app.integrityCheck", "true"))) {
+            return;
+        }
+        java.util.List<IntegrityVerifier.Target> targets = java.util.List.of(
+                new IntegrityVerifier.Target(AppPaths.userDb(session.username()).getFileName().toString(),
+                        userDb::openSecondaryConnection),
+                new IntegrityVerifier.Target(AppPaths.authDb().getFileName().toString(), authDb::openSecondaryConnection));
+        integrityVerifier = new IntegrityVerifier(AppPaths.dataRoot().resolve("integrity.properties"), targets,
+                problem -> Platform.runLater(() -> Dialogs.warning(stage, "Intégrité des données",
+                        "Une anomalie a été détectée dans " + problem.database()
+                                + ". Une sauvegarde récente se trouve dans " + AppPaths.backupsDir() + ".")));
+        integrityVerifier.setForegroundActivity(dao::commitCount);
+        integrityVerifier.start(java.time.Duration.ofMinutes(5));
+    }
+
     private void initNotifications(Stage stage) {
         try {
             NotificationSettings settings = loadNotificationSettingsSafe();
             DesktopNotifier notifier = initDesktopNotifier(stage, settings);
             notificationService = new NotificationService(dao, notifier, () -> settings);
             notificationService.start();
+            dao.addCommitListener(notificationService::reschedule);
             AppServices.registerNotificationService(notificationService);
         } catch (Throwable ex) {
             log.warn("[MainApp] Notifications désactivées ({}).", ex.getMessage());
@@ -220,9 +340,9 @@ public final class MainApp extends Application {
         });
     }
 
-    private Optional<AuthService.Session> promptLoginLoop(AuthService sec) {
+    private Optional<LoginPipeline.Opened<OpenedDatabase>> promptLoginLoop(LoginPipeline<OpenedDatabase> pipeline) {
         while (true) {
-            Optional<AuthService.Session> opt = new LoginDialog(sec).showAndWait();
+            Optional<LoginPipeline.Opened<OpenedDatabase>> opt = new LoginDialog<>(pipeline).showAndWait();
             if (opt.isPresent()) return opt;
             Alert confirm = new Alert(Alert.AlertType.CONFIRMATION,
                     "Voulez-vous quitter l'application ?", ButtonType.YES, ButtonType.NO);
@@ -234,11 +354,12 @@ public final class MainApp extends Application {
     }
 
 
-    private DB initSecureDbWithRepair(UserDB userDb, AuthService.Session sess, byte[] keyBytes) throws Exception {
+    private DB initSecureDbWithRepair(UserDB userDb, AuthService.Session sess, SessionLock lock, byte[] keyBytes)
+            throws Exception {
         RuntimeException last = null;
         for (int attempt = 0; attempt < 2; attempt++) {
             try {
-                return new SecureDB(userDb::getConnection, sess.userId(), sess.key());
+                return new SecureDB(userDb::getConnection, sess.userId(), lock::key);
             } catch (RuntimeException ex) {
                 last = ex;
                 if (attempt == 0 && looksLikeNotADB(ex)) {
@@ -271,38 +392,42 @@ public final class MainApp extends Application {
         Dialogs.error(null, msg);
     }
 
-    private Optional<AuthService.Session> authenticateUntilDbOpen(AuthService sec) throws Exception {
-        while (true) {
-            Optional<AuthService.Session> opt = promptLoginLoop(sec);
-            if (opt.isEmpty()) {
-                return Optional.empty();
-            }
-            AuthService.Session session = opt.get();
-            byte[] key = session.key().getEncoded();
-            if (openUserDatabase(session, key, true)) {
-                return Optional.of(session);
-            }
+    /** Base ouverte par {@link LoginPipeline}, schéma à jour. */
+    private record OpenedDatabase(UserDB userDb, DB dao) {
+        void close() {
+            dao.close();
+            userDb.close();
         }
     }
 
-    private boolean openUserDatabase(AuthService.Session session, byte[] key, boolean allowRetry) throws Exception {
+    // Étapes d'ouverture exécutées sur le thread de connexion ; l'erreur est affichée dans le dialogue.
+    private OpenedDatabase openUserDatabase(AuthService.Session session, SessionLock lock,
+                                            LoginPipeline.Progress progress) throws Exception {
+        byte[] key = session.key().getEncoded();
         Path dbFile = AppPaths.userDb(session.username());
         Files.createDirectories(dbFile.getParent());
         UserDB candidate = new UserDB(dbFile.toString());
+        DB dao = null;
         try {
-            candidate.openOrRepair(key);
-            if (userDb != null) {
-                userDb.close();
+            candidate.openOrRepair(key, fraction -> progress.accept(LoginPipeline.Step.ENCRYPTING, fraction));
+            dao = initSecureDbWithRepair(candidate, session, lock, key);
+            progress.accept(LoginPipeline.Step.MIGRATING);
+            try {
+                DbBootstrap.ensureSchema(dao, candidate);
+            } catch (Exception ex) {
+                if (!looksLikeNotADB(ex)) throw ex;
+                candidate.close();
+                candidate.openOrRepair(key);
+                DbBootstrap.ensureSchema(dao, candidate);
             }
-            userDb = candidate;
-            return true;
+            return new OpenedDatabase(candidate, dao);
         } catch (Exception ex) {
+            if (dao != null) dao.close();
             candidate.close();
-            if (allowRetry && isRecoverableDbOpenError(ex)) {
+            if (isRecoverableDbOpenError(ex)) {
                 log.warn("[MainApp] Unable to open user DB for {}: {}", session.username(), ex.getMessage());
-                showError(ex.getMessage() != null ? ex.getMessage() :
-                        "Base chiffrée ou illisible. Veuillez vérifier votre mot de passe.");
-                return false;
+                throw new IllegalStateException(ex.getMessage() != null ? ex.getMessage() :
+                        "Base chiffrée ou illisible. Veuillez vérifier votre mot de passe.", ex);
             }
             throw ex;
         }
@@ -382,9 +507,12 @@ public final class MainApp extends Application {
     @Override
     public void stop() {
         stopNotifications();
+        if (integrityVerifier != null) integrityVerifier.close();
+        if (backupService != null) backupService.close();
+        // Les écritures encore en file doivent passer avant la fermeture de la base.
+        if (view != null) view.shutdownExecutor();
         if (dao != null) dao.close();
         if (userDb != null) userDb.close();
-        if (view != null) view.shutdownExecutor();
         if (authDb != null) authDb.close();
     }
 }
@@ -0,0 +1,226 @@
+package org.example.dao;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Accès asynchrone à un {@link DataStore} : les lectures passent par un petit pool, les écritures par un thread unique
+ * qui les applique dans l'ordre de soumission.
+ * <p>
+ * Chaque appel rend un {@link CompletableFuture}. L'annuler, ou dépasser son délai, retire l'appel de la file s'il n'a
+ * pas commencé ; un appel déjà lancé va jusqu'au bout (SQLite ne s'interrompt pas), seul son résultat est ignoré. Les
+ * lectures ont un délai par défaut, pas les écritures. Les durées sont cumulées par nom d'appel ({@link #stats()}).
+ * <p>
+ * {@link #pause()} retient les nouveaux appels sans les exécuter (session verrouillée) ; {@link #resume()} les confie
+ * aux pools dans l'ordre de soumission. Le délai d'une lecture retenue ne court qu'à partir de sa reprise.
+ */
+public final class AsyncDao implements AutoCloseable {
+
+    private static final Logger log = LoggerFactory.getLogger(AsyncDao.class);
+    private static final long SLOW_CALL_MS = 250;
+
+    public static final Duration DEFAULT_READ_DEADLINE = Duration.ofSeconds(15);
+
+    public record CallStats(long calls, long failures, long timeouts, long totalMicros, long maxMicros) {
+        CallStats add(long micros, boolean failed, boolean timedOut) {
+            return new CallStats(calls + (timedOut ? 0 : 1), failures + (failed ? 1 : 0), timeouts + (timedOut ? 1 : 0),
+                    totalMicros + micros, Math.max(maxMicros, micros));
+        }
+
+        public long averageMicros() {
+            return calls == 0 ? 0 : totalMicros / calls;
+        }
+    }
+
+    private record Held(Runnable enqueue, CompletableFuture<?> result) {
+    }
+
+    private final DataStore store;
+    private final ExecutorService readers;
+    private final ExecutorService writer;
+    private final Duration readDeadline;
+    private final Map<String, CallStats> stats = new ConcurrentHashMap<>();
+    private final Deque<Held> held = new ArrayDeque<>();
+    private boolean paused;
+
+    public AsyncDao(DataStore store) {
+        this(store, 2, DEFAULT_READ_DEADLINE);
+    }
+
+    public AsyncDao(DataStore store, int readThreads, Duration readDeadline) {
+        this.store = store;
+        this.readers = Executors.newFixedThreadPool(Math.max(1, readThreads), daemon("dao-read"));
+        this.writer = Executors.newSingleThreadExecutor(daemon("dao-write"));
+        this.readDeadline = readDeadline;
+    }
+
+    /** Accès synchrone, pour le code qui tourne déjà hors du thread JavaFX. */
+    public DataStore store() {
+        return store;
+    }
+
+    public <T> CompletableFuture<T> read(String name, Function<DataStore, T> call) {
+        return submit(readers, name, readDeadline, call);
+    }
+
+    public <T> CompletableFuture<T> read(String name, Duration deadline, Function<DataStore, T> call) {
+        return submit(readers, name, deadline, call);
+    }
+
+    public <T> CompletableFuture<T> write(String name, Function<DataStore, T> call) {
+        return submit(writer, name, null, call);
+    }
+
+    /** Écriture sans résultat. */
+    public CompletableFuture<Void> run(String name, Consumer<DataStore> call) {
+        return submit(writer, name, null, s -> {
+            call.accept(s);
+            return null;
+        });
+    }
+
+    private <T> CompletableFuture<T> submit(ExecutorService executor, String name, Duration deadline,
+                                            Function<DataStore, T> call) {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        AtomicReference<Future<?>> task = new AtomicReference<>();
+        Runnable enqueue = () -> {
+            if (result.isDone()) return;
+            long queued = System.nanoTime();
+            task.set(executor.submit(() -> execute(name, call, result, queued)));
+            if (deadline != null && !deadline.isZero() && !deadline.isNegative()) {
+                CompletableFuture.delayedExecutor(deadline.toMillis(), TimeUnit.MILLISECONDS)
+                        .execute(() -> expire(name, deadline, result));
+            }
+        };
+        synchronized (held) {
+            if (paused) {
+                held.addLast(new Held(enqueue, result));
+            } else {
+                enqueue.run();
+            }
+        }
+        result.whenComplete((v, err) -> {
+            Future<?> f = task.get();
+            if (f != null && (result.isCancelled() || err instanceof TimeoutException)) {
+                f.cancel(false);
+            }
+        });
+        return result;
+    }
+
+    // Compté seulement si le dépassement l'emporte : un appel terminé de justesse a rendu sa valeur.
+    private void expire(String name, Duration deadline, CompletableFuture<?> result) {
+        if (result.completeExceptionally(new TimeoutException())) {
+            record(name, 0, false, true);
+            log.warn("[AsyncDao] {} : délai de {} ms dépassé", name, deadline.toMillis());
+        }
+    }
+
+    private <T> void execute(String name, Function<DataStore, T> call, CompletableFuture<T> result, long queued) {
+        if (result.isDone()) {
+            // Annulé ou hors délai avant d'avoir commencé : on ne touche pas à la base.
+            return;
+        }
+        long started = System.nanoTime();
+        T value = null;
+        Throwable failure = null;
+        try {
+            value = call.apply(store);
+        } catch (Throwable t) {
+            failure = t;
+        }
+        // Statistiques à jour avant de rendre la main : l'appelant qui les lit après coup voit son propre appel.
+        long now = System.nanoTime();
+        record(name, (now - started) / 1_000, failure != null, false);
+        long totalMs = (now - queued) / 1_000_000;
+        if (totalMs > SLOW_CALL_MS) {
+            log.debug("[AsyncDao] {} : {} ms dont {} ms d'attente", name, totalMs, (started - queued) / 1_000_000);
+        }
+        if (failure != null) {
+            result.completeExceptionally(failure);
+        } else {
+            result.complete(value);
+        }
+    }
+
+    /** Retient les appels suivants jusqu'à {@link #resume()} ; ceux déjà en file ou en cours se terminent. */
+    public void pause() {
+        synchronized (held) {
+            paused = true;
+        }
+    }
+
+    public void resume() {
+        synchronized (held) {
+            paused = false;
+            Held h;
+            while ((h = held.pollFirst()) != null) h.enqueue().run();
+        }
+    }
+
+    /** Cause réelle d'un échec remonté par un étage dépendant ({@link CompletionException}). */
+    public static Throwable unwrap(Throwable t) {
+        while ((t instanceof CompletionException || t instanceof ExecutionException) && t.getCause() != null) {
+            t = t.getCause();
+        }
+        return t;
+    }
+
+    private void record(String name, long micros, boolean failed, boolean timedOut) {
+        stats.compute(name, (k, s) -> (s == null ? new CallStats(0, 0, 0, 0, 0) : s).add(micros, failed, timedOut));
+    }
+
+    /** Statistiques par nom d'appel, triées par nom ; les dépassements de délai sont comptés à part. */
+    public Map<String, CallStats> stats() {
+        return new TreeMap<>(stats);
+    }
+
+    @Override
+    public void close() {
+        synchronized (held) {
+            // Les appels retenus ne partiront plus : on libère ceux qui les attendent.
+            Held h;
+            while ((h = held.pollFirst()) != null) h.result().cancel(false);
+        }
+        readers.shutdownNow();
+        writer.shutdown();
+        try {
+            if (!writer.awaitTermination(5, TimeUnit.SECONDS)) {
+                log.warn("[AsyncDao] Écritures encore en cours à la fermeture");
+                writer.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            writer.shutdownNow();
+        }
+    }
+
+    private static ThreadFactory daemon(String prefix) {
+        AtomicInteger seq = new AtomicInteger();
+        return r -> {
+            Thread t = new Thread(r, prefix + "-" + seq.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        };
+    }
+}
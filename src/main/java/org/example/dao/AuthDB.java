@@ -15,6 +15,7 @@ import java.sql.Statement;
 public final class AuthDB implements AutoCloseable {
     private static final Logger log = LoggerFactory.getLogger(AuthDB.class);
     private final Connection conn;
+    private final Path path;
 
     public static Path defaultFile() {
         return AppPaths.authDb();
@@ -72,8 +73,27 @@ public final class AuthDB implements AutoCloseable {
                 """);
             }
         }
+        addKdfColumns(c);
         log.debug("[AuthDB] Opened OK at {} (WAL, FK ON)", p.toAbsolutePath());
         this.conn = c;
+        this.path = p;
+    }
+
+    // kdf_version 1 : Argon2 encodé + PBKDF2 (kdf_iters) ; 2 : une passe Argon2id (kdf_iters, kdf_memory, kdf_parallelism)
+    private static void addKdfColumns(Connection c) throws SQLException {
+        java.util.Set<String> cols = new java.util.HashSet<>();
+        try (Statement st = c.createStatement();
+             java.sql.ResultSet rs = st.executeQuery("PRAGMA table_info(users)")) {
+            while (rs.next()) cols.add(rs.getString("name"));
+        }
+        try (Statement st = c.createStatement()) {
+            if (!cols.contains("kdf_version")) st.executeUpdate("ALTER TABLE users ADD COLUMN kdf_version INTEGER NOT NULL DEFAULT 1");
+            if (!cols.contains("kdf_memory")) st.executeUpdate("ALTER TABLE users ADD COLUMN kdf_memory INTEGER");
+            if (!cols.contains("kdf_parallelism")) st.executeUpdate("ALTER TABLE users ADD COLUMN kdf_parallelism INTEGER");
+            if (!cols.contains("wrapped_key")) st.executeUpdate("ALTER TABLE users ADD COLUMN wrapped_key BLOB");
+            // Nouvelle clé de données enveloppée, le temps d'un renouvellement (voir DataKeyRotation).
+            if (!cols.contains("pending_key")) st.executeUpdate("ALTER TABLE users ADD COLUMN pending_key BLOB");
+        }
     }
 
     private static boolean isNotADB(SQLException e) {
@@ -96,6 +116,14 @@ public final class AuthDB implements AutoCloseable {
         return conn;
     }
 
+    // Connexion independante sur le meme fichier (taches de fond), a fermer par l'appelant
+    public Connection openSecondaryConnection() throws SQLException {
+        SQLiteConfig cfg = new SQLiteConfig();
+        cfg.setBusyTimeout(5_000);
+        cfg.enforceForeignKeys(true);
+        return DriverManager.getConnection("jdbc:sqlite:" + path.toAbsolutePath(), cfg.toProperties());
+    }
+
     @Override
     public void close() {
         try {
@@ -0,0 +1,255 @@
+package org.example.dao;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.sqlite.SQLiteConnection;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.LongSupplier;
+
+/**
+ * Sauvegarde à chaud de la base utilisateur par l'API de sauvegarde SQLite, par petits paquets de pages.
+ * <p>
+ * La copie se fait sur une connexion secondaire, dans une transaction de lecture tenue jusqu'au bout : l'instantané
+ * reste cohérent et les écritures du premier plan (WAL) ne relancent pas la copie. Entre deux paquets, le thread
+ * s'endort, plus longtemps si l'application vient de valider des écritures. La copie est chiffrée avec la clé active
+ * et les {@code generations} dernières sont conservées dans le dossier de sauvegarde.
+ */
+public final class BackupService implements AutoCloseable {
+
+    private static final Logger log = LoggerFactory.getLogger(BackupService.class);
+    private static final DateTimeFormatter STAMP = DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss-SSS");
+    private static final String SUFFIX = ".bak";
+    private static final int BUSY_SLEEP_MS = 100;
+    private static final int BUSY_RETRIES = 50;
+
+    public static final int DEFAULT_GENERATIONS = 3;
+    public static final int DEFAULT_PAGES_PER_STEP = 64;
+    public static final long DEFAULT_PAUSE_MS = 10;
+
+    private final UserDB userDb;
+    private final Path dir;
+    private final int generations;
+    private final LongSupplier foregroundActivity;
+    private final AtomicBoolean running = new AtomicBoolean();
+    private volatile int pagesPerStep = DEFAULT_PAGES_PER_STEP;
+    private volatile long pauseMs = DEFAULT_PAUSE_MS;
+    private volatile boolean closed;
+    private volatile boolean paused;
+    private ScheduledExecutorService scheduler;
+
+    public BackupService(UserDB userDb, Path dir, int generations) {
+        this(userDb, dir, generations, null);
+    }
+
+    /** {@code foregroundActivity} : compteur qui avance à chaque écriture du premier plan (ex. {@link DB#commitCount()}). */
+    public BackupService(UserDB userDb, Path dir, int generations, LongSupplier foregroundActivity) {
+        this.userDb = userDb;
+        this.dir = dir;
+        this.generations = Math.max(1, generations);
+        this.foregroundActivity = foregroundActivity;
+    }
+
+    public void setThrottle(int pagesPerStep, long pauseMs) {
+        this.pagesPerStep = Math.max(1, pagesPerStep);
+        this.pauseMs = Math.max(0, pauseMs);
+    }
+
+    public synchronized void start(Duration initialDelay, Duration period) {
+        if (scheduler != null || closed) {
+            return;
+        }
+        scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "db-backup");
+            t.setDaemon(true);
+            t.setPriority(Thread.MIN_PRIORITY);
+            return t;
+        });
+        scheduler.scheduleWithFixedDelay(this::backupQuietly,
+                initialDelay.toMillis(), period.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Session verrouillée : les sauvegardes planifiées passent leur tour ; une copie en cours, invérifiable sans la
+     * clé, termine ses pages sans plus céder la main puis est supprimée au lieu de devenir une génération.
+     */
+    public void pause() {
+        paused = true;
+    }
+
+    public void resume() {
+        paused = false;
+    }
+
+    /**
+     * Lance une sauvegarde complète et retourne la nouvelle génération,
+     * ou {@code null} si une sauvegarde est déjà en cours.
+     */
+    public Path backupNow() throws SQLException {
+        if (!running.compareAndSet(false, true)) {
+            return null;
+        }
+        try {
+            return runBackup();
+        } finally {
+            running.set(false);
+        }
+    }
+
+    /** Générations existantes, de la plus récente à la plus ancienne. */
+    public List<Path> generations() {
+        String prefix = userDb.path().getFileName() + ".";
+        List<Path> out = new ArrayList<>();
+        try (var files = Files.list(dir)) {
+            for (Path p : files.toList()) {
+                String name = p.getFileName().toString();
+                if (name.startsWith(prefix) && name.endsWith(SUFFIX)) {
+                    out.add(p);
+                }
+            }
+        } catch (IOException e) {
+            return out;
+        }
+        out.sort(Comparator.comparing((Path p) -> p.getFileName().toString()).reversed());
+        return out;
+    }
+
+    private void backupQuietly() {
+        if (paused) {
+            return;
+        }
+        try {
+            backupNow();
+        } catch (Exception ex) {
+            log.warn("[BackupService] Sauvegarde impossible : {}", ex.getMessage());
+        }
+    }
+
+    private Path runBackup() throws SQLException {
+        try {
+            Files.createDirectories(dir);
+        } catch (IOException e) {
+            throw new SQLException("Dossier de sauvegarde indisponible : " + dir, e);
+        }
+        String base = userDb.path().getFileName().toString();
+        Path part = dir.resolve(base + ".part");
+        deleteWithSidecars(part);
+        long started = System.nanoTime();
+        try (Connection c = userDb.openSecondaryConnection()) {
+            SQLiteConnection sqlite = c.unwrap(SQLiteConnection.class);
+            c.setAutoCommit(false);
+            try (Statement st = c.createStatement();
+                 ResultSet rs = st.executeQuery("SELECT count(*) FROM sqlite_master")) {
+                rs.next();
+            }
+            Throttle throttle = new Throttle();
+            try {
+                int rc = sqlite.getDatabase().backup("main", userDb.backupTargetUri(part), throttle,
+                        BUSY_SLEEP_MS, BUSY_RETRIES, pagesPerStep);
+                if (rc != 0) {
+                    throw new SQLException("Sauvegarde interrompue (code SQLite " + rc + ")");
+                }
+                if (paused) {
+                    throw new SQLException("Sauvegarde abandonnée : session verrouillée");
+                }
+            } finally {
+                c.rollback();
+                c.setAutoCommit(true);
+            }
+            verifyCopy(part);
+            Path target = dir.resolve(base + "." + LocalDateTime.now().format(STAMP) + SUFFIX);
+            Files.move(part, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            prune();
+            log.info("[BackupService] {} sauvegardée en {} ms ({} pages)", base,
+                    (System.nanoTime() - started) / 1_000_000, throttle.total);
+            return target;
+        } catch (IOException e) {
+            deleteWithSidecars(part);
+            throw new SQLException("Rotation des sauvegardes impossible : " + e.getMessage(), e);
+        } catch (SQLException | RuntimeException e) {
+            deleteWithSidecars(part);
+            throw e;
+        }
+    }
+
+    /** La copie doit s'ouvrir avec la clé active, et ne jamais être en clair si la source est chiffrée. */
+    private void verifyCopy(Path copy) throws SQLException {
+        if (!UserDB.looksPlainSQLite(userDb.path()) && UserDB.looksPlainSQLite(copy)) {
+            throw new SQLException("La copie de sauvegarde n'est pas chiffrée : abandon.");
+        }
+        userDb.openCopy(copy).close();
+    }
+
+    private void prune() {
+        List<Path> all = generations();
+        for (int i = generations; i < all.size(); i++) {
+            deleteWithSidecars(all.get(i));
+        }
+    }
+
+    private static void deleteWithSidecars(Path p) {
+        for (String suffix : new String[]{"", "-wal", "-shm", "-journal"}) {
+            try {
+                Files.deleteIfExists(p.resolveSibling(p.getFileName() + suffix));
+            } catch (IOException ignore) {
+            }
+        }
+    }
+
+    @Override
+    public synchronized void close() {
+        closed = true;
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+            scheduler = null;
+        }
+    }
+
+    /** Rappelé par le moteur après chaque paquet de pages : c'est là que la copie cède la main. */
+    private final class Throttle implements org.sqlite.core.DB.ProgressObserver {
+        private long lastActivity = foregroundActivity == null ? 0L : foregroundActivity.getAsLong();
+        private int total;
+
+        @Override
+        public void progress(int remaining, int pageCount) {
+            total = pageCount;
+            if (remaining <= 0 || closed || paused) {
+                return;
+            }
+            long pause = pauseMs;
+            if (foregroundActivity != null) {
+                long now = foregroundActivity.getAsLong();
+                if (now != lastActivity) {
+                    lastActivity = now;
+                    pause = Math.max(pause * 10, 100);
+                }
+            }
+            if (pause > 0) {
+                try {
+                    Thread.sleep(pause);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            } else {
+                Thread.yield();
+            }
+        }
+    }
+}
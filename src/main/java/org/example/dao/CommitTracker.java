@@ -0,0 +1,143 @@
+package org.example.dao;
+
+import org.sqlite.SQLiteCommitListener;
+import org.sqlite.SQLiteConnection;
+import org.sqlite.SQLiteUpdateListener;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Compteur de commits alimenté par les hooks SQLite des connexions du DAO.
+ * Peut aussi mémoriser les lignes (table, rowid) modifiées par les transactions validées.
+ */
+final class CommitTracker {
+
+    static final int MAX_TRACKED_ROWS = 20_000;
+
+    private final AtomicLong version = new AtomicLong();
+    private final Set<SQLiteConnection> registered = Collections.newSetFromMap(new WeakHashMap<>());
+    private final Object lock = new Object();
+    private Map<String, Set<Long>> committed = new HashMap<>();
+    private int committedRows;
+    private boolean overflow;
+    private volatile boolean trackRows;
+    private final List<Runnable> listeners = new CopyOnWriteArrayList<>();
+
+    void register(Connection c) {
+        if (c == null) {
+            return;
+        }
+        SQLiteConnection sqlite;
+        try {
+            if (!c.isWrapperFor(SQLiteConnection.class)) {
+                return;
+            }
+            sqlite = c.unwrap(SQLiteConnection.class);
+        } catch (SQLException e) {
+            return;
+        }
+        synchronized (registered) {
+            if (!registered.add(sqlite)) {
+                return;
+            }
+        }
+        Hooks hooks = new Hooks();
+        sqlite.addUpdateListener(hooks);
+        sqlite.addCommitListener(hooks);
+    }
+
+    /** Appelé depuis le hook de commit, avant que la transaction ne soit visible : ne doit que déléguer. */
+    void addListener(Runnable listener) {
+        listeners.add(listener);
+    }
+
+    long version() {
+        return version.get();
+    }
+
+    void trackRows(boolean enabled) {
+        synchronized (lock) {
+            trackRows = enabled;
+            committed = new HashMap<>();
+            committedRows = 0;
+            overflow = false;
+        }
+    }
+
+    /** Retourne les lignes validées depuis le dernier appel, ou {@code null} si le suivi a débordé. */
+    Map<String, Set<Long>> drainChanges() {
+        synchronized (lock) {
+            Map<String, Set<Long>> out = overflow ? null : committed;
+            committed = new HashMap<>();
+            committedRows = 0;
+            overflow = false;
+            return out;
+        }
+    }
+
+    private void publish(Map<String, Set<Long>> rows, boolean truncated) {
+        synchronized (lock) {
+            if (trackRows && !overflow) {
+                if (truncated) {
+                    overflow = true;
+                } else {
+                    for (Map.Entry<String, Set<Long>> e : rows.entrySet()) {
+                        Set<Long> target = committed.computeIfAbsent(e.getKey(), k -> new HashSet<>());
+                        int before = target.size();
+                        target.addAll(e.getValue());
+                        committedRows += target.size() - before;
+                    }
+                    overflow = committedRows > MAX_TRACKED_ROWS;
+                }
+            }
+        }
+        version.incrementAndGet();
+        for (Runnable l : listeners) {
+            l.run();
+        }
+    }
+
+    private final class Hooks implements SQLiteUpdateListener, SQLiteCommitListener {
+        private Map<String, Set<Long>> pending = new HashMap<>();
+        private int pendingRows;
+
+        @Override
+        public synchronized void onUpdate(Type type, String database, String table, long rowId) {
+            if (!trackRows || !"main".equals(database)) {
+                return;
+            }
+            if (pendingRows <= MAX_TRACKED_ROWS && pending.computeIfAbsent(table, k -> new HashSet<>()).add(rowId)) {
+                pendingRows++;
+            }
+        }
+
+        @Override
+        public void onCommit() {
+            Map<String, Set<Long>> rows;
+            boolean truncated;
+            synchronized (this) {
+                rows = pending;
+                truncated = pendingRows > MAX_TRACKED_ROWS;
+                pending = new HashMap<>();
+                pendingRows = 0;
+            }
+            publish(rows, truncated);
+        }
+
+        @Override
+        public synchronized void onRollback() {
+            pending = new HashMap<>();
+            pendingRows = 0;
+        }
+    }
+}
@@ -4,11 +4,16 @@ import org.example.model.Facture;
 import org.example.model.NotificationSettings;
 import org.example.model.Prestataire;
 import org.example.model.Rappel;
+import org.example.model.ReminderCandidate;
 import org.example.model.SmtpSecurity;
 import org.example.model.ServiceRow;
 import org.example.model.ServiceStatus;
+import org.example.util.SortKeys;
 import org.example.util.TokenCrypto;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.sqlite.SQLiteConfig;
+import org.sqlite.SQLiteConnection;
 import org.sqlite.SQLiteOpenMode;
 import com.zaxxer.hikari.HikariConfig;
 import com.zaxxer.hikari.HikariDataSource;
@@ -18,6 +23,7 @@ import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.lang.reflect.Proxy;
 import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
 import javax.crypto.SecretKey;
 import java.sql.*;
 import java.time.Instant;
@@ -28,22 +34,50 @@ import java.time.ZoneOffset;
 import java.time.format.DateTimeFormatter;
 import java.time.format.DateTimeParseException;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
 
-public class DB implements ConnectionProvider {
+public class DB implements ConnectionProvider, DataStore {
+
+    private static final Logger log = LoggerFactory.getLogger(DB.class);
 
     private static final DateTimeFormatter DATE_FR = DateTimeFormatter.ofPattern("dd/MM/yyyy");
     private static final DateTimeFormatter DATE_DB = DateTimeFormatter.ofPattern("yyyy-MM-dd");
 
+    /** Prestataires en cours de suppression : invisibles partout, leurs lignes filles partent par lots. */
+    private static final String DELETING_PRESTATAIRES = "SELECT id FROM prestataires WHERE suppression_ts IS NOT NULL";
+    private static final int DELETE_CHUNK = 500;
+    private static final long DELETE_PAUSE_MS = 10;
+
     private final HikariDataSource ds;
     private final ConnectionProvider delegate;
     private Connection singleConn;
     private Connection proxyConn;
+    private final CommitTracker commits = new CommitTracker();
+    private volatile ReadReplica replica;
+    private volatile ReminderBasis reminderBasis;
+    private final StorageProfile baseProfile;
+    private final QueryCache queryCache = new QueryCache();
+    private final Object notificationSettingsLock = new Object();
+    private volatile NotificationSettings notificationSettings;
+    private final ExecutorService purger = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "db-purge");
+        t.setDaemon(true);
+        return t;
+    });
 
     public static Connection newConnection(String path) throws SQLException {
+        return newConnection(path, StorageProfile.configured());
+    }
+
+    public static Connection newConnection(String path, StorageProfile profile) throws SQLException {
         SQLiteConfig cfg = new SQLiteConfig();
         cfg.setBusyTimeout(5000);
         cfg.setSharedCache(true);
-        cfg.setSynchronous(SQLiteConfig.SynchronousMode.FULL);
+        profile.configure(cfg, false);
         cfg.setJournalMode(SQLiteConfig.JournalMode.WAL);
         cfg.enforceForeignKeys(true);
         cfg.setOpenMode(SQLiteOpenMode.FULLMUTEX);
@@ -53,8 +87,11 @@ public class DB implements ConnectionProvider {
     public DB(ConnectionProvider provider) {
         this.ds = null;
         this.delegate = provider;
+        // Connexions fournies par UserDB : chiffrées, ouvertes avec le profil configuré.
+        this.baseProfile = StorageProfile.configured();
         try {
             singleConn = provider.getConnection();
+            commits.register(singleConn);
             try (Statement st = singleConn.createStatement()) {
                 st.execute("PRAGMA foreign_keys = 1");
             }
@@ -66,10 +103,15 @@ public class DB implements ConnectionProvider {
     }
 
     public DB(String path) {
+        this(path, StorageProfile.configured());
+    }
+
+    public DB(String path, StorageProfile profile) {
+        this.baseProfile = profile;
         SQLiteConfig sc = new SQLiteConfig();
         sc.setBusyTimeout(5000);
         sc.setSharedCache(true);
-        sc.setSynchronous(SQLiteConfig.SynchronousMode.FULL);
+        profile.configure(sc, false);
         sc.setJournalMode(SQLiteConfig.JournalMode.WAL);
         sc.enforceForeignKeys(true);
         sc.setOpenMode(SQLiteOpenMode.FULLMUTEX);
@@ -95,11 +137,102 @@ public class DB implements ConnectionProvider {
 
     @Override
     public Connection getConnection() throws SQLException {
-        return ds == null ? proxyConn : ds.getConnection();
+        if (ds == null) {
+            return proxyConn;
+        }
+        Connection c = ds.getConnection();
+        commits.register(c);
+        return c;
+    }
+
+    public StorageProfile storageProfile() {
+        return baseProfile;
+    }
+
+    /**
+     * Active une copie en mémoire de la base pour les lectures analytiques (tableau de bord, historique, liste).
+     * {@code sourceConnections} doit ouvrir une nouvelle connexion, déjà déchiffrée, sur le même fichier.
+     */
+    public synchronized void enableReadReplica(ConnectionProvider sourceConnections) {
+        if (replica != null) return;
+        try {
+            replica = new ReadReplica(sourceConnections, commits);
+        } catch (SQLException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    public synchronized void disableReadReplica() {
+        ReadReplica r = replica;
+        replica = null;
+        if (r != null) r.close();
+    }
+
+    public boolean readReplicaEnabled() {
+        return replica != null;
+    }
+
+    /** Connexion des lectures analytiques : la réplique mémoire si elle est active, sinon la base elle-même. */
+    protected Connection analyticsConnection() throws SQLException {
+        ReadReplica r = replica;
+        if (r != null) {
+            try {
+                return r.connection();
+            } catch (SQLException ex) {
+                log.warn("[DB] read replica unavailable, falling back to primary: {}", ex.getMessage());
+            }
+        }
+        return getConnection();
+    }
+
+    /** Nombre de commits validés par les connexions du DAO ; sert d'indicateur d'activité au premier plan. */
+    public long commitCount() {
+        return commits.version();
+    }
+
+    /**
+     * Signale chaque commit des connexions du DAO. L'écouteur est appelé dans le hook de commit de SQLite, avant que
+     * les données ne soient visibles des autres connexions : il doit seulement planifier son travail, avec un délai.
+     */
+    public void addCommitListener(Runnable listener) {
+        commits.addListener(listener);
+    }
+
+    /** Lecture servie par le cache de résultats tant qu'aucun commit n'a eu lieu. */
+    private <T> T cached(Object key, QueryCache.Loader<T> loader) throws SQLException {
+        return queryCache.get(cacheStamp(), key, loader);
+    }
+
+    private QueryCache.Stamp cacheStamp() throws SQLException {
+        long version = commits.version();
+        try (Connection c = getConnection()) {
+            if (!c.getAutoCommit()) {
+                // Transaction ouverte : ses écritures non validées ne doivent pas entrer dans le cache.
+                return null;
+            }
+            Object physical = c.isWrapperFor(SQLiteConnection.class) ? c.unwrap(SQLiteConnection.class) : c;
+            try (Statement st = c.createStatement();
+                 ResultSet rs = st.executeQuery("PRAGMA data_version")) {
+                return new QueryCache.Stamp(version, physical, rs.next() ? rs.getLong(1) : 0L);
+            }
+        }
+    }
+
+    QueryCache queryCache() {
+        return queryCache;
     }
 
     @Override
     public void close() {
+        // Une purge coupée en plein lot reprendra au prochain démarrage ; le lot en cours finit avant la fermeture.
+        purger.shutdownNow();
+        try {
+            purger.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        disableReadReplica();
+        queryCache.clear();
         if (ds != null) ds.close();
         else {
             try {
@@ -159,7 +292,9 @@ public class DB implements ConnectionProvider {
                         paye INTEGER NOT NULL DEFAULT 0,
                         date_paiement TEXT,
                         date_paiement_ts INTEGER,
-                        preavis_envoye INTEGER NOT NULL DEFAULT 0
+                        preavis_envoye INTEGER NOT NULL DEFAULT 0,
+                        last_reminder_ts INTEGER,
+                        next_reminder_ts INTEGER
                     );""");
             st.executeUpdate("""
                     CREATE TABLE IF NOT EXISTS rappels(
@@ -378,23 +513,43 @@ public class DB implements ConnectionProvider {
     }
 
     public List<Prestataire> list(String filter) {
+        return listPage(filter, null, -1);
+    }
+
+    @Override
+    public List<Prestataire> listPage(String filter, Prestataire after, int limit) {
         String sql = """
                 SELECT p.*,
                        (SELECT COUNT(*) FROM factures f WHERE f.prestataire_id = p.id AND f.paye = 0) AS impayes
                 FROM prestataires p
-                WHERE (? IS NULL OR ? = '' OR
-                       p.nom LIKE ? OR p.societe LIKE ? OR p.email LIKE ? OR p.telephone LIKE ?)
-                ORDER BY p.nom COLLATE NOCASE""";
-        try (Connection conn = getConnection();
+                WHERE p.suppression_ts IS NULL
+                  AND (? IS NULL OR ? = '' OR
+                       p.nom_tri LIKE ? OR p.societe LIKE ? OR p.email LIKE ? OR p.telephone LIKE ?)
+                  AND (? IS NULL OR (p.nom_tri, p.nom, p.id) > (?, ?, ?))
+                ORDER BY p.nom_tri, p.nom, p.id
+                LIMIT ?""";
+        try (Connection conn = analyticsConnection();
              PreparedStatement ps = conn.prepareStatement(sql)) {
             String q = (filter == null) ? "" : filter;
             String like = '%' + q + '%';
             ps.setString(1, q);
             ps.setString(2, q);
-            ps.setString(3, like);
+            ps.setString(3, '%' + SortKeys.fold(q) + '%');
             ps.setString(4, like);
             ps.setString(5, like);
             ps.setString(6, like);
+            if (after == null) {
+                ps.setNull(7, Types.INTEGER);
+                ps.setNull(8, Types.VARCHAR);
+                ps.setNull(9, Types.VARCHAR);
+                ps.setNull(10, Types.INTEGER);
+            } else {
+                ps.setInt(7, 1);
+                ps.setString(8, SortKeys.fold(after.getNom()));
+                ps.setString(9, after.getNom());
+                ps.setInt(10, after.getId());
+            }
+            ps.setInt(11, limit);
             ResultSet rs = ps.executeQuery();
             List<Prestataire> out = new ArrayList<>();
             while (rs.next()) out.add(toPrestataire(rs));
@@ -406,8 +561,8 @@ public class DB implements ConnectionProvider {
 
     public void add(Prestataire p) {
         String sql = """
-                INSERT INTO prestataires(nom,societe,telephone,email,note,facturation,service_notes,date_contrat,date_contrat_ts)
-                VALUES(?,?,?,?,?,?,?,?,?)""";
+                INSERT INTO prestataires(nom,societe,telephone,email,note,facturation,service_notes,date_contrat,date_contrat_ts,nom_tri)
+                VALUES(?,?,?,?,?,?,?,?,?,?)""";
         try (Connection conn = getConnection();
              PreparedStatement ps = conn.prepareStatement(sql)) {
             bindPrestataire(ps, p);
@@ -420,12 +575,12 @@ public class DB implements ConnectionProvider {
     public void update(Prestataire p) {
         String sql = """
                 UPDATE prestataires SET
-                nom=?,societe=?,telephone=?,email=?,note=?,facturation=?,service_notes=?,date_contrat=?,date_contrat_ts=?
+                nom=?,societe=?,telephone=?,email=?,note=?,facturation=?,service_notes=?,date_contrat=?,date_contrat_ts=?,nom_tri=?
                 WHERE id=?""";
         try (Connection conn = getConnection();
              PreparedStatement ps = conn.prepareStatement(sql)) {
             bindPrestataire(ps, p);
-            ps.setInt(10, p.getId());
+            ps.setInt(11, p.getId());
             ps.executeUpdate();
         } catch (SQLException e) {
             throw new RuntimeException(e);
@@ -433,19 +588,13 @@ public class DB implements ConnectionProvider {
     }
 
     public void delete(int id) {
-        try (Connection conn = getConnection();
-             PreparedStatement ps = conn.prepareStatement("DELETE FROM prestataires WHERE id=?")) {
-            ps.setInt(1, id);
-            ps.executeUpdate();
-        } catch (SQLException e) {
-            throw new RuntimeException(e);
-        }
+        deletePrestataire(id);
     }
 
     public int insertPrestataire(Prestataire p) {
         String sql = """
-        INSERT INTO prestataires(nom, societe, telephone, email, note, facturation, service_notes, date_contrat, date_contrat_ts)
-        VALUES(?,?,?,?,?,?,?,?,?)
+        INSERT INTO prestataires(nom, societe, telephone, email, note, facturation, service_notes, date_contrat, date_contrat_ts, nom_tri)
+        VALUES(?,?,?,?,?,?,?,?,?,?)
     """;
         try (Connection c = getConnection();
              PreparedStatement ps = c.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
@@ -468,12 +617,12 @@ public class DB implements ConnectionProvider {
     public void updatePrestataire(Prestataire p) {
         String sql = """
         UPDATE prestataires SET
-            nom=?, societe=?, telephone=?, email=?, note=?, facturation=?, service_notes=?, date_contrat=?, date_contrat_ts=?
-        WHERE id=?
+            nom=?, societe=?, telephone=?, email=?, note=?, facturation=?, service_notes=?, date_contrat=?, date_contrat_ts=?, nom_tri=?
+        WHERE id=? AND suppression_ts IS NULL
     """;
         try (Connection c = getConnection(); PreparedStatement ps = c.prepareStatement(sql)) {
             bindPrestataire(ps, p);
-            ps.setInt(10, prestaId(p));
+            ps.setInt(11, prestaId(p));
             if (ps.executeUpdate() != 1) throw new SQLException("Aucune ligne mise a jour");
         } catch (SQLException e) {
             String m = e.getMessage();
@@ -484,17 +633,107 @@ public class DB implements ConnectionProvider {
         }
     }
 
+    /**
+     * Le prestataire est seulement marqué ici (une écriture courte, il disparaît aussitôt des listes et des relances) ;
+     * ses rappels, factures et services sont ensuite supprimés en arrière-plan, sur le fil {@code db-purge}, par lots
+     * de {@value #DELETE_CHUNK}, chacun dans sa propre transaction, pour ne jamais tenir le verrou d'écriture
+     * longtemps. Une suppression interrompue reprend avec {@link #resumePendingDeletions()}. Le marquage renomme aussi
+     * la ligne ({@code nom #id}) : le nom, unique, est libre tout de suite pour un nouveau prestataire.
+     */
     public void deletePrestataire(int id) {
         try (Connection c = getConnection();
-             PreparedStatement ps = c.prepareStatement("DELETE FROM prestataires WHERE id=?")) {
-            ps.setInt(1, id);
+             PreparedStatement ps = c.prepareStatement(
+                     "UPDATE prestataires SET suppression_ts=?, nom = nom || ' #' || id"
+                             + " WHERE id=? AND suppression_ts IS NULL")) {
+            ps.setLong(1, Instant.now().getEpochSecond());
+            ps.setInt(2, id);
             ps.executeUpdate();
         } catch (SQLException e) { throw new RuntimeException(e); }
+        schedulePurge(id);
+    }
+
+    private void schedulePurge(int id) {
+        try {
+            purger.execute(() -> {
+                try {
+                    purgePrestataire(id);
+                } catch (RuntimeException ex) {
+                    log.warn("[DB] Purge du prestataire {} interrompue, reprise au prochain démarrage : {}", id, ex.getMessage());
+                }
+            });
+        } catch (RejectedExecutionException closing) {
+            // Base en cours de fermeture : le marquage suffit, resumePendingDeletions() finira le travail.
+        }
+    }
+
+    /** Terminée quand les purges demandées jusqu'ici le sont (le fil de purge les traite dans l'ordre). */
+    public CompletableFuture<Void> pendingPurges() {
+        try {
+            return CompletableFuture.runAsync(() -> { }, purger);
+        } catch (RejectedExecutionException closing) {
+            return CompletableFuture.completedFuture(null);
+        }
+    }
+
+    /**
+     * Remet sur le fil {@code db-purge} les suppressions laissées en plan (arrêt brutal pendant la purge), pour que
+     * {@link #close()} les arrête comme les autres ; retourne leur nombre.
+     */
+    public int resumePendingDeletions() {
+        List<Integer> pending = new ArrayList<>();
+        try (Connection c = getConnection();
+             Statement st = c.createStatement();
+             ResultSet rs = st.executeQuery(DELETING_PRESTATAIRES + " ORDER BY suppression_ts, id")) {
+            while (rs.next()) pending.add(rs.getInt(1));
+        } catch (SQLException e) {
+            throw new RuntimeException(e);
+        }
+        for (int id : pending) {
+            log.info("[DB] Reprise de la suppression du prestataire {}", id);
+            schedulePurge(id);
+        }
+        return pending.size();
+    }
+
+    private void purgePrestataire(int id) {
+        String[] chunks = {
+                "DELETE FROM rappels WHERE id IN (SELECT r.id FROM rappels r JOIN factures f ON f.id = r.facture_id"
+                        + " WHERE f.prestataire_id=? LIMIT ?)",
+                "DELETE FROM factures WHERE id IN (SELECT id FROM factures WHERE prestataire_id=? LIMIT ?)",
+                "DELETE FROM services WHERE id IN (SELECT id FROM services WHERE prestataire_id=? LIMIT ?)"
+        };
+        try {
+            for (String sql : chunks) {
+                while (deleteChunk(sql, id) == DELETE_CHUNK) {
+                    // Laisse passer les autres écrivains (notifications, interface) entre deux lots.
+                    Thread.sleep(DELETE_PAUSE_MS);
+                }
+            }
+            // Les lignes ajoutées entre-temps partent avec la cascade, qui n'a plus grand-chose à faire.
+            try (Connection c = getConnection();
+                 PreparedStatement ps = c.prepareStatement("DELETE FROM prestataires WHERE id=? AND suppression_ts IS NOT NULL")) {
+                ps.setInt(1, id);
+                ps.executeUpdate();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            log.warn("[DB] Suppression du prestataire {} interrompue, reprise au prochain démarrage", id);
+        } catch (SQLException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private int deleteChunk(String sql, int id) throws SQLException {
+        try (Connection c = getConnection(); PreparedStatement ps = c.prepareStatement(sql)) {
+            ps.setInt(1, id);
+            ps.setInt(2, DELETE_CHUNK);
+            return ps.executeUpdate();
+        }
     }
 
     public Prestataire findPrestataire(int id) {
         try (Connection conn = getConnection();
-             PreparedStatement ps = conn.prepareStatement("SELECT * FROM prestataires WHERE id=?")) {
+             PreparedStatement ps = conn.prepareStatement("SELECT * FROM prestataires WHERE id=? AND suppression_ts IS NULL")) {
             ps.setInt(1, id);
             ResultSet rs = ps.executeQuery();
             return rs.next() ? toPrestataire(rs) : null;
@@ -522,30 +761,56 @@ public class DB implements ConnectionProvider {
 
     public List<ServiceRow> services(int pid) {
         String sql = "SELECT id, description, date, date_ts, status FROM services WHERE prestataire_id=? ORDER BY date_ts";
+        List<StoredService> out = new ArrayList<>();
         try (Connection conn = getConnection();
              PreparedStatement ps = conn.prepareStatement(sql)) {
             ps.setInt(1, pid);
             ResultSet rs = ps.executeQuery();
-            List<ServiceRow> out = new ArrayList<>();
+            while (rs.next()) out.add(readStoredService(rs));
+        } catch (SQLException e) {
+            throw new RuntimeException(e);
+        }
+        // Déchiffrement hors de la requête ; la lecture n'écrit jamais, la migration des anciens formats est à part.
+        return decodeServices(out);
+    }
+
+    @Override
+    public Map<Integer, List<ServiceRow>> allServices() {
+        String sql = "SELECT prestataire_id, id, description, date, date_ts, status FROM services"
+                + " WHERE prestataire_id NOT IN (" + DELETING_PRESTATAIRES + ") ORDER BY prestataire_id, date_ts";
+        List<Integer> owners = new ArrayList<>();
+        List<StoredService> stored = new ArrayList<>();
+        try (Connection conn = getConnection();
+             Statement st = conn.createStatement();
+             ResultSet rs = st.executeQuery(sql)) {
             while (rs.next()) {
-                LocalDate d;
-                long ts = rs.getLong("date_ts");
-                boolean hasTimestamp = !rs.wasNull();
-                if (hasTimestamp) {
-                    d = LocalDateTime.ofEpochSecond(ts, 0, ZoneOffset.UTC).toLocalDate();
-                } else {
-                    d = parseDate(rs.getString("date"));
-                }
-                String dateStr = d == null ? DATE_FR.format(LocalDate.now()) : DATE_FR.format(d);
-                ServiceStatus status = ServiceStatus.from(rs.getString("status"));
-                int id = rs.getInt("id");
-                String desc = rs.getString("description");
-                out.add(new ServiceRow(id, desc, dateStr, status));
+                owners.add(rs.getInt("prestataire_id"));
+                stored.add(readStoredService(rs));
             }
-            return out;
         } catch (SQLException e) {
             throw new RuntimeException(e);
         }
+        // Un seul lot pour tout l'historique : c'est là que le déchiffrement parallèle de SecureDB rapporte.
+        List<ServiceRow> rows = decodeServices(stored);
+        Map<Integer, List<ServiceRow>> out = new LinkedHashMap<>();
+        for (int i = 0; i < rows.size(); i++) {
+            out.computeIfAbsent(owners.get(i), k -> new ArrayList<>()).add(rows.get(i));
+        }
+        return out;
+    }
+
+    private static StoredService readStoredService(ResultSet rs) throws SQLException {
+        LocalDate d;
+        long ts = rs.getLong("date_ts");
+        boolean hasTimestamp = !rs.wasNull();
+        if (hasTimestamp) {
+            d = LocalDateTime.ofEpochSecond(ts, 0, ZoneOffset.UTC).toLocalDate();
+        } else {
+            d = parseDate(rs.getString("date"));
+        }
+        String dateStr = d == null ? DATE_FR.format(LocalDate.now()) : DATE_FR.format(d);
+        ServiceStatus status = ServiceStatus.from(rs.getString("status"));
+        return new StoredService(rs.getInt("id"), rs.getObject("description"), dateStr, status);
     }
 
     public int insertService(int prestataireId, ServiceRow s) {
@@ -555,13 +820,13 @@ public class DB implements ConnectionProvider {
     """;
         try (Connection c = getConnection();
              PreparedStatement ps = c.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
-            String desc = svcDesc(s);
+            Object desc = encodeServiceDescription(svcDesc(s));
             String date = svcDateStr(s);
             Long   ts   = svcDateTs(s);
             ServiceStatus status = s.status() == null ? ServiceStatus.EN_ATTENTE : s.status();
 
             ps.setInt(1, prestataireId);
-            ps.setString(2, desc);
+            bindStored(ps, 2, desc);
             ps.setString(3, date);
             if (ts == null) ps.setNull(4, Types.BIGINT); else ps.setLong(4, ts);
             ps.setString(5, status.name());
@@ -577,12 +842,12 @@ public class DB implements ConnectionProvider {
     public void updateService(ServiceRow s) {
         String sql = "UPDATE services SET description=?, date=?, date_ts=?, status=? WHERE id=?";
         try (Connection c = getConnection(); PreparedStatement ps = c.prepareStatement(sql)) {
-            String desc = svcDesc(s);
+            Object desc = encodeServiceDescription(svcDesc(s));
             String date = svcDateStr(s);
             Long   ts   = svcDateTs(s);
             ServiceStatus status = s.status() == null ? ServiceStatus.EN_ATTENTE : s.status();
 
-            ps.setString(1, desc);
+            bindStored(ps, 1, desc);
             ps.setString(2, date);
             if (ts == null) ps.setNull(3, Types.BIGINT); else ps.setLong(3, ts);
             ps.setString(4, status.name());
@@ -643,11 +908,16 @@ public class DB implements ConnectionProvider {
             ps.setString(11, payFr);
             if (payTs == null) ps.setNull(12, Types.BIGINT); else ps.setLong(12, payTs);
             ps.executeUpdate();
-            try (ResultSet rs = ps.getGeneratedKeys()) { if (rs.next()) return rs.getInt(1); }
-            try (Statement s2 = c.createStatement(); ResultSet r2 = s2.executeQuery("SELECT last_insert_rowid()")) {
-                if (r2.next()) return r2.getInt(1);
+            int id = -1;
+            try (ResultSet rs = ps.getGeneratedKeys()) { if (rs.next()) id = rs.getInt(1); }
+            if (id <= 0) {
+                try (Statement s2 = c.createStatement(); ResultSet r2 = s2.executeQuery("SELECT last_insert_rowid()")) {
+                    if (r2.next()) id = r2.getInt(1);
+                }
             }
-            throw new SQLException("ID facture non généré");
+            if (id <= 0) throw new SQLException("ID facture non généré");
+            refreshNextReminder(c, id);
+            return id;
         } catch (SQLException e) { throw new RuntimeException(e); }
     }
 
@@ -660,7 +930,8 @@ public class DB implements ConnectionProvider {
         String sql = """
         UPDATE factures SET description=?, echeance=?, echeance_ts=?,
                montant_ht=?, tva_pct=?, montant_tva=?, montant_ttc=?, devise=?,
-               paye=?, date_paiement=?, date_paiement_ts=?, preavis_envoye=?
+               paye=?, date_paiement=?, date_paiement_ts=?, preavis_envoye=?,
+               last_reminder_ts=CASE WHEN ?=1 THEN last_reminder_ts ELSE NULL END
         WHERE id=?
     """;
         try (Connection c = getConnection(); PreparedStatement ps = c.prepareStatement(sql)) {
@@ -687,8 +958,10 @@ public class DB implements ConnectionProvider {
             ps.setString(10, payFr);
             if (payTs == null) ps.setNull(11, Types.BIGINT); else ps.setLong(11, payTs);
             ps.setInt(12, preavis);
-            ps.setInt(13, facId(f));
+            ps.setInt(13, payee ? 0 : preavis);
+            ps.setInt(14, facId(f));
             ps.executeUpdate();
+            refreshNextReminder(c, facId(f));
             if (resetPreavis) {
                 skipPendingRappelsForFacture(facId(f), "Relances obsolètes après modification de la facture.");
             }
@@ -704,7 +977,7 @@ public class DB implements ConnectionProvider {
     }
 
     public void toggleFacturePayee(int id, boolean payee, Long datePaiementTs, String datePaiementFr) {
-        String sql = "UPDATE factures SET paye=?, date_paiement=?, date_paiement_ts=?, preavis_envoye=CASE WHEN ?=0 THEN 0 ELSE preavis_envoye END WHERE id=?";
+        String sql = "UPDATE factures SET paye=?, date_paiement=?, date_paiement_ts=?, preavis_envoye=CASE WHEN ?=0 THEN 0 ELSE preavis_envoye END, last_reminder_ts=NULL WHERE id=?";
         try (Connection c = getConnection(); PreparedStatement ps = c.prepareStatement(sql)) {
             ps.setInt(1, payee ? 1 : 0);
             if (payee) {
@@ -717,6 +990,7 @@ public class DB implements ConnectionProvider {
             ps.setInt(4, payee ? 1 : 0);
             ps.setInt(5, id);
             ps.executeUpdate();
+            refreshNextReminder(c, id);
             skipPendingRappelsForFacture(id, payee
                     ? "Facture marquée réglée."
                     : "Facture repassée impayée ; relances réinitialisées.");
@@ -756,13 +1030,16 @@ public class DB implements ConnectionProvider {
             ps.setString(11, payFr);
             if (payTs == null) ps.setNull(12, Types.BIGINT); else ps.setLong(12, payTs);
             ps.executeUpdate();
+            try (Statement st = conn.createStatement(); ResultSet rs = st.executeQuery("SELECT last_insert_rowid()")) {
+                if (rs.next()) refreshNextReminder(conn, rs.getInt(1));
+            }
         } catch (SQLException e) {
             throw new RuntimeException(e);
         }
     }
 
     public void setFacturePayee(int id, boolean payee) {
-        String sql = "UPDATE factures SET paye=?,date_paiement=?,date_paiement_ts=?,preavis_envoye=CASE WHEN ?=0 THEN 0 ELSE preavis_envoye END WHERE id=?";
+        String sql = "UPDATE factures SET paye=?,date_paiement=?,date_paiement_ts=?,preavis_envoye=CASE WHEN ?=0 THEN 0 ELSE preavis_envoye END,last_reminder_ts=NULL WHERE id=?";
         try (Connection conn = getConnection();
              PreparedStatement ps = conn.prepareStatement(sql)) {
             ps.setInt(1, payee ? 1 : 0);
@@ -777,6 +1054,7 @@ public class DB implements ConnectionProvider {
             ps.setInt(4, payee ? 1 : 0);
             ps.setInt(5, id);
             ps.executeUpdate();
+            refreshNextReminder(conn, id);
             skipPendingRappelsForFacture(id, payee
                     ? "Facture marquée réglée."
                     : "Facture repassée impayée ; relances réinitialisées.");
@@ -785,7 +1063,7 @@ public class DB implements ConnectionProvider {
         }
     }
 
-    private boolean shouldResetPreavis(Facture current, Facture updated, boolean nextPaid) {
+    static boolean shouldResetPreavis(Facture current, Facture updated, boolean nextPaid) {
         if (nextPaid || updated == null || current == null) {
             return false;
         }
@@ -842,7 +1120,8 @@ public class DB implements ConnectionProvider {
     public List<Facture> facturesPrestataire(int prestataireId) { return factures(prestataireId, null); }
 
     public List<Facture> facturesImpayeesAvant(LocalDateTime limit) {
-        String sql = "SELECT * FROM factures WHERE paye=0 AND preavis_envoye=0 AND echeance_ts<=?";
+        String sql = "SELECT * FROM factures WHERE paye=0 AND preavis_envoye=0 AND echeance_ts<=?"
+                + " AND prestataire_id NOT IN (" + DELETING_PRESTATAIRES + ")";
         try (Connection conn = getConnection();
              PreparedStatement ps = conn.prepareStatement(sql)) {
             ps.setLong(1, limit.toEpochSecond(ZoneOffset.UTC));
@@ -856,21 +1135,37 @@ public class DB implements ConnectionProvider {
     }
 
     public List<Facture> facturesImpayeesPourDashboard(LocalDateTime limit) {
-        String sql = "SELECT * FROM factures WHERE paye=0 AND echeance_ts<=? ORDER BY echeance_ts, id";
-        try (Connection conn = getConnection();
-             PreparedStatement ps = conn.prepareStatement(sql)) {
-            ps.setLong(1, limit.toEpochSecond(ZoneOffset.UTC));
-            ResultSet rs = ps.executeQuery();
+        long until = limit.toEpochSecond(ZoneOffset.UTC);
+        try {
+            // L'horizon change à chaque appel : on met en cache toutes les impayées datées et on filtre ici.
+            List<DueFacture> unpaid = cached("facturesImpayees", () -> {
+                String sql = "SELECT * FROM factures WHERE paye=0 AND echeance_ts IS NOT NULL"
+                        + " AND prestataire_id NOT IN (" + DELETING_PRESTATAIRES + ") ORDER BY echeance_ts, id";
+                try (Connection conn = analyticsConnection();
+                     PreparedStatement ps = conn.prepareStatement(sql);
+                     ResultSet rs = ps.executeQuery()) {
+                    List<DueFacture> list = new ArrayList<>();
+                    while (rs.next()) list.add(new DueFacture(rs.getLong("echeance_ts"), toFacture(rs)));
+                    return List.copyOf(list);
+                }
+            });
             List<Facture> list = new ArrayList<>();
-            while (rs.next()) list.add(toFacture(rs));
+            for (DueFacture d : unpaid) {
+                if (d.ts() > until) break;
+                list.add(d.facture().copy());
+            }
             return list;
         } catch (SQLException e) {
             throw new RuntimeException(e);
         }
     }
 
+    private record DueFacture(long ts, Facture facture) {
+    }
+
     public List<Facture> facturesNonPayeesAvecPreavis() {
-        String sql = "SELECT * FROM factures WHERE paye=0 AND preavis_envoye=1";
+        String sql = "SELECT * FROM factures WHERE paye=0 AND preavis_envoye=1"
+                + " AND prestataire_id NOT IN (" + DELETING_PRESTATAIRES + ")";
         try (Connection conn = getConnection();
              PreparedStatement ps = conn.prepareStatement(sql);
              ResultSet rs = ps.executeQuery()) {
@@ -885,7 +1180,8 @@ public class DB implements ConnectionProvider {
     }
 
     public Set<Integer> factureIdsNonPayesAvecPreavis() {
-        String sql = "SELECT id FROM factures WHERE paye=0 AND preavis_envoye=1";
+        String sql = "SELECT id FROM factures WHERE paye=0 AND preavis_envoye=1"
+                + " AND prestataire_id NOT IN (" + DELETING_PRESTATAIRES + ")";
         try (Connection conn = getConnection();
              PreparedStatement ps = conn.prepareStatement(sql);
              ResultSet rs = ps.executeQuery()) {
@@ -899,7 +1195,175 @@ public class DB implements ConnectionProvider {
         }
     }
 
+    // ---------- Planification des relances ----------
+    // next_reminder_ts suit la convention des autres *_ts comparés à un LocalDateTime (heure locale encodée en UTC).
+    // ?1 = lead_days, ?2 = reminder_hour, ?3 = reminder_minute, ?4 = repeat_every_hours, ?5 = relances e-mail du jour J
+    private static final String DUE_DAY_START = "(echeance_ts - echeance_ts % 86400)";
+    private static final String DUE_DAY_REMINDER = "(" + DUE_DAY_START + " + ?2 * 3600 + ?3 * 60)";
+    private static final String NEXT_REMINDER_EXPR = """
+            CASE
+              WHEN paye <> 0 OR echeance_ts IS NULL THEN NULL
+              WHEN preavis_envoye = 0 THEN %1$s - ?1 * 86400
+              ELSE MIN(COALESCE(%2$s, %3$s), COALESCE(%3$s, %2$s))
+            END""".formatted(
+            DUE_DAY_REMINDER,
+            "(CASE WHEN ?5 <> 0 AND (last_reminder_ts IS NULL OR last_reminder_ts < " + DUE_DAY_REMINDER + ") THEN " + DUE_DAY_REMINDER + " END)",
+            "(CASE WHEN ?4 > 0 THEN MAX(" + DUE_DAY_START + ", COALESCE(last_reminder_ts + ?4 * 3600, 0)) END)");
+
+    private ReminderBasis reminderBasis(Connection c) throws SQLException {
+        ReminderBasis basis = reminderBasis;
+        if (basis == null) {
+            basis = readReminderBasis(c);
+            reminderBasis = basis;
+        }
+        return basis;
+    }
+
+    private static ReminderBasis readReminderBasis(Connection c) throws SQLException {
+        String sql = """
+                SELECT lead_days, reminder_hour, reminder_minute, repeat_every_hours,
+                       email_enabled, supplier_email_enabled, supplier_send_on_due_date
+                  FROM notification_settings WHERE id=1""";
+        try (PreparedStatement ps = c.prepareStatement(sql);
+             ResultSet rs = ps.executeQuery()) {
+            if (rs.next()) {
+                return new ReminderBasis(rs.getInt(1), rs.getInt(2), rs.getInt(3), rs.getInt(4),
+                        rs.getInt(5) != 0 || (rs.getInt(6) != 0 && rs.getInt(7) != 0));
+            }
+        }
+        return ReminderBasis.of(NotificationSettings.defaults());
+    }
+
+    private static void recomputeNextReminders(Connection c, ReminderBasis basis) throws SQLException {
+        String sql = "UPDATE factures SET next_reminder_ts=" + NEXT_REMINDER_EXPR + " WHERE paye=0 OR next_reminder_ts IS NOT NULL";
+        try (PreparedStatement ps = c.prepareStatement(sql)) {
+            basis.bind(ps);
+            ps.executeUpdate();
+        }
+    }
+
+    private void refreshNextReminder(Connection c, int factureId) throws SQLException {
+        String sql = "UPDATE factures SET next_reminder_ts=" + NEXT_REMINDER_EXPR + " WHERE id=?6";
+        try (PreparedStatement ps = c.prepareStatement(sql)) {
+            int idx = reminderBasis(c).bind(ps);
+            ps.setInt(idx, factureId);
+            ps.executeUpdate();
+        }
+    }
+
+    /** Enregistre une relance émise (ou évaluée) pour la facture et replanifie la suivante. */
+    public void recordReminderActivity(int factureId, LocalDateTime at) {
+        try (Connection conn = getConnection()) {
+            recordReminderActivity(conn, factureId, at == null ? LocalDateTime.now() : at);
+        } catch (SQLException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private void recordReminderActivity(Connection conn, int factureId, LocalDateTime at) throws SQLException {
+        try (PreparedStatement ps = conn.prepareStatement("UPDATE factures SET last_reminder_ts=? WHERE id=?")) {
+            ps.setLong(1, at.toEpochSecond(ZoneOffset.UTC));
+            ps.setInt(2, factureId);
+            ps.executeUpdate();
+        }
+        refreshNextReminder(conn, factureId);
+    }
+
+    /**
+     * Factures impayées dont la prochaine relance est échue à {@code now}. Avec les réglages enregistrés, c'est un
+     * parcours de l'index (paye, next_reminder_ts) ; des réglages d'aperçu non enregistrés évaluent la même formule
+     * à la volée.
+     */
+    public List<ReminderCandidate> facturesARelancer(LocalDateTime now, NotificationSettings cfg) {
+        try (Connection conn = getConnection()) {
+            ReminderBasis stored = reminderBasis(conn);
+            ReminderBasis wanted = cfg == null ? stored : ReminderBasis.of(cfg.normalized());
+            String sql;
+            int idx;
+            PreparedStatement ps;
+            if (wanted.equals(stored)) {
+                sql = "SELECT * FROM factures WHERE paye=0 AND next_reminder_ts<=?"
+                        + " AND prestataire_id NOT IN (" + DELETING_PRESTATAIRES + ") ORDER BY next_reminder_ts, id";
+                ps = conn.prepareStatement(sql);
+                idx = 1;
+            } else {
+                sql = "SELECT * FROM (SELECT f.*, " + NEXT_REMINDER_EXPR + " AS due_ts FROM factures f WHERE paye=0"
+                        + " AND prestataire_id NOT IN (" + DELETING_PRESTATAIRES + "))"
+                        + " WHERE due_ts<=?6 ORDER BY due_ts, id";
+                ps = conn.prepareStatement(sql);
+                idx = wanted.bind(ps);
+            }
+            try (ps) {
+                ps.setLong(idx, now.toEpochSecond(ZoneOffset.UTC));
+                try (ResultSet rs = ps.executeQuery()) {
+                    List<ReminderCandidate> out = new ArrayList<>();
+                    while (rs.next()) {
+                        long last = rs.getLong("last_reminder_ts");
+                        LocalDateTime lastAt = rs.wasNull() ? null : LocalDateTime.ofEpochSecond(last, 0, ZoneOffset.UTC);
+                        out.add(new ReminderCandidate(toFacture(rs), lastAt));
+                    }
+                    return out;
+                }
+            }
+        } catch (SQLException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /** Tête de l'index (paye, next_reminder_ts) ; même formule évaluée à la volée pour des réglages non enregistrés. */
+    public LocalDateTime prochaineRelance(NotificationSettings cfg) {
+        try (Connection conn = getConnection()) {
+            ReminderBasis stored = reminderBasis(conn);
+            ReminderBasis wanted = cfg == null ? stored : ReminderBasis.of(cfg.normalized());
+            PreparedStatement ps;
+            if (wanted.equals(stored)) {
+                ps = conn.prepareStatement("SELECT next_reminder_ts FROM factures WHERE paye=0 AND next_reminder_ts IS NOT NULL"
+                        + " AND prestataire_id NOT IN (" + DELETING_PRESTATAIRES + ") ORDER BY next_reminder_ts LIMIT 1");
+            } else {
+                ps = conn.prepareStatement("SELECT MIN(" + NEXT_REMINDER_EXPR + ") FROM factures WHERE paye=0"
+                        + " AND prestataire_id NOT IN (" + DELETING_PRESTATAIRES + ")");
+                wanted.bind(ps);
+            }
+            try (ps; ResultSet rs = ps.executeQuery()) {
+                if (!rs.next()) return null;
+                long ts = rs.getLong(1);
+                return rs.wasNull() ? null : LocalDateTime.ofEpochSecond(ts, 0, ZoneOffset.UTC);
+            }
+        } catch (SQLException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Session verrouillée : oublie ce qui a été déchiffré et gardé en mémoire, réglages de notification (mot de passe
+     * SMTP compris) et résultats en cache. Tout est relu à la demande après le déverrouillage.
+     */
+    public void forgetDecrypted() {
+        synchronized (notificationSettingsLock) {
+            notificationSettings = null;
+        }
+        queryCache.clear();
+    }
+
+    /**
+     * Réglages normalisés, mot de passe SMTP déchiffré. La ligne n'est lue et déchiffrée qu'au premier appel ; ensuite
+     * chaque {@link #saveNotificationSettings} publie la nouvelle valeur, seule voie d'écriture de cette table.
+     */
     public NotificationSettings loadNotificationSettings() {
+        NotificationSettings s = notificationSettings;
+        if (s == null) {
+            synchronized (notificationSettingsLock) {
+                s = notificationSettings;
+                if (s == null) {
+                    s = readNotificationSettings();
+                    notificationSettings = s;
+                }
+            }
+        }
+        return s;
+    }
+
+    private NotificationSettings readNotificationSettings() {
         String sql = """
                 SELECT lead_days, reminder_hour, reminder_minute, repeat_every_hours, highlight_overdue,
                        desktop_popup, snooze_minutes, email_enabled, email_recipient, email_from,
@@ -930,7 +1394,7 @@ public class DB implements ConnectionProvider {
                         rs.getString("smtp_host"),
                         rs.getInt("smtp_port"),
                         rs.getString("smtp_username"),
-                        decodeNotificationSecret(rs.getString("smtp_password")),
+                        decodeNotificationSecret(rs.getObject("smtp_password")),
                         SmtpSecurity.from(rs.getString("smtp_security")),
                         rs.getString("subject_template"),
                         rs.getString("body_template"),
@@ -1001,7 +1465,7 @@ public class DB implements ConnectionProvider {
             ps.setString(14, normalized.smtpHost());
             ps.setInt(15, normalized.smtpPort());
             ps.setString(16, normalized.smtpUsername());
-            ps.setString(17, encodeNotificationSecret(normalized.smtpPassword()));
+            bindStored(ps, 17, encodeNotificationSecret(normalized.smtpPassword()));
             ps.setString(18, normalized.smtpSecurity().name());
             ps.setString(19, normalized.subjectTemplate());
             ps.setString(20, normalized.bodyTemplate());
@@ -1010,6 +1474,15 @@ public class DB implements ConnectionProvider {
             ps.setString(23, normalized.supplierSubjectTemplate());
             ps.setString(24, normalized.supplierBodyTemplate());
             ps.executeUpdate();
+            ReminderBasis basis = ReminderBasis.of(normalized);
+            if (!basis.equals(reminderBasis)) {
+                recomputeNextReminders(conn, basis);
+                reminderBasis = basis;
+            }
+            synchronized (notificationSettingsLock) {
+                // Après une lecture concurrente éventuelle, qui ne peut donc pas republier l'ancienne valeur.
+                notificationSettings = normalized;
+            }
         } catch (SQLException e) {
             throw new RuntimeException("Sauvegarde des réglages de notifications impossible : " + e.getMessage(), e);
         }
@@ -1020,6 +1493,7 @@ public class DB implements ConnectionProvider {
              PreparedStatement ps = conn.prepareStatement("UPDATE factures SET preavis_envoye=1 WHERE id=?")) {
             ps.setInt(1, id);
             ps.executeUpdate();
+            refreshNextReminder(conn, id);
         } catch (SQLException e) {
             throw new RuntimeException(e);
         }
@@ -1084,8 +1558,9 @@ public class DB implements ConnectionProvider {
                  WHERE envoye=0
                    AND statut IN ('PENDING','FAILED')
                    AND date_envoi_ts<=?
+                   AND facture_id NOT IN (SELECT id FROM factures WHERE prestataire_id IN (%s))
                  ORDER BY date_envoi_ts ASC, id ASC
-                """;
+                """.formatted(DELETING_PRESTATAIRES);
         try (Connection conn = getConnection();
              PreparedStatement ps = conn.prepareStatement(sql)) {
             ps.setLong(1, LocalDateTime.now().toEpochSecond(ZoneOffset.UTC));
@@ -1100,23 +1575,46 @@ public class DB implements ConnectionProvider {
         }
     }
 
+    public LocalDateTime prochainRappel() {
+        String sql = """
+                SELECT MIN(date_envoi_ts) FROM rappels
+                 WHERE envoye=0
+                   AND statut IN ('PENDING','FAILED')
+                   AND facture_id NOT IN (SELECT id FROM factures WHERE prestataire_id IN (%s))
+                """.formatted(DELETING_PRESTATAIRES);
+        try (Connection conn = getConnection();
+             PreparedStatement ps = conn.prepareStatement(sql);
+             ResultSet rs = ps.executeQuery()) {
+            if (!rs.next()) return null;
+            long ts = rs.getLong(1);
+            return rs.wasNull() ? null : LocalDateTime.ofEpochSecond(ts, 0, ZoneOffset.UTC);
+        } catch (SQLException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
     public List<Rappel> rappelsHistorique(int limit) {
         int safeLimit = Math.max(1, limit);
         String sql = """
                 SELECT * FROM rappels
+                 WHERE facture_id NOT IN (SELECT id FROM factures WHERE prestataire_id IN (%s))
                  ORDER BY COALESCE(sent_at_ts, date_envoi_ts) DESC, id DESC
                  LIMIT ?
-                """;
-        try (Connection conn = getConnection();
-             PreparedStatement ps = conn.prepareStatement(sql)) {
-            ps.setInt(1, safeLimit);
-            try (ResultSet rs = ps.executeQuery()) {
-                List<Rappel> list = new ArrayList<>();
-                while (rs.next()) {
-                    list.add(toRappel(rs));
+                """.formatted(DELETING_PRESTATAIRES);
+        try {
+            return new ArrayList<>(cached(List.of("rappelsHistorique", safeLimit), () -> {
+                try (Connection conn = analyticsConnection();
+                     PreparedStatement ps = conn.prepareStatement(sql)) {
+                    ps.setInt(1, safeLimit);
+                    try (ResultSet rs = ps.executeQuery()) {
+                        List<Rappel> list = new ArrayList<>();
+                        while (rs.next()) {
+                            list.add(toRappel(rs));
+                        }
+                        return List.copyOf(list);
+                    }
                 }
-                return list;
-            }
+            }));
         } catch (SQLException e) {
             throw new RuntimeException(e);
         }
@@ -1127,13 +1625,21 @@ public class DB implements ConnectionProvider {
         if (normalized.isBlank()) {
             return 0;
         }
-        String sql = "SELECT COUNT(*) FROM rappels WHERE statut=?";
-        try (Connection conn = getConnection();
-             PreparedStatement ps = conn.prepareStatement(sql)) {
-            ps.setString(1, normalized);
-            try (ResultSet rs = ps.executeQuery()) {
-                return rs.next() ? rs.getInt(1) : 0;
-            }
+        // Un seul GROUP BY sert tous les statuts demandés par un même instantané.
+        String sql = "SELECT statut, COUNT(*) FROM rappels GROUP BY statut";
+        try {
+            Map<String, Integer> counts = cached("countRappelsByStatus", () -> {
+                try (Connection conn = analyticsConnection();
+                     PreparedStatement ps = conn.prepareStatement(sql);
+                     ResultSet rs = ps.executeQuery()) {
+                    Map<String, Integer> out = new HashMap<>();
+                    while (rs.next()) {
+                        if (rs.getString(1) != null) out.put(rs.getString(1), rs.getInt(2));
+                    }
+                    return Map.copyOf(out);
+                }
+            });
+            return counts.getOrDefault(normalized, 0);
         } catch (SQLException e) {
             throw new RuntimeException(e);
         }
@@ -1148,18 +1654,22 @@ public class DB implements ConnectionProvider {
                    AND statut IN ('PENDING','FAILED','SENT')
                  GROUP BY facture_id
                 """;
-        try (Connection conn = getConnection();
-             PreparedStatement ps = conn.prepareStatement(sql);
-             ResultSet rs = ps.executeQuery()) {
-            Map<Integer, Instant> out = new HashMap<>();
-            while (rs.next()) {
-                long ts = rs.getLong("ts");
-                if (rs.wasNull()) {
-                    continue;
+        try {
+            return new HashMap<>(cached("latestReminderActivityByFacture", () -> {
+                try (Connection conn = analyticsConnection();
+                     PreparedStatement ps = conn.prepareStatement(sql);
+                     ResultSet rs = ps.executeQuery()) {
+                    Map<Integer, Instant> out = new HashMap<>();
+                    while (rs.next()) {
+                        long ts = rs.getLong("ts");
+                        if (rs.wasNull()) {
+                            continue;
+                        }
+                        out.put(rs.getInt("facture_id"), Instant.ofEpochSecond(ts));
+                    }
+                    return Map.copyOf(out);
                 }
-                out.put(rs.getInt("facture_id"), Instant.ofEpochSecond(ts));
-            }
-            return out;
+            }));
         } catch (SQLException e) {
             throw new RuntimeException(e);
         }
@@ -1183,6 +1693,16 @@ public class DB implements ConnectionProvider {
             ps.setLong(2, now.toEpochSecond(ZoneOffset.UTC));
             ps.setInt(3, id);
             ps.executeUpdate();
+            Integer factureId = null;
+            try (PreparedStatement q = conn.prepareStatement("SELECT facture_id FROM rappels WHERE id=?")) {
+                q.setInt(1, id);
+                try (ResultSet rs = q.executeQuery()) {
+                    if (rs.next()) factureId = rs.getInt(1);
+                }
+            }
+            if (factureId != null) {
+                recordReminderActivity(conn, factureId, now);
+            }
         } catch (SQLException e) {
             throw new RuntimeException(e);
         }
@@ -1277,7 +1797,7 @@ public class DB implements ConnectionProvider {
         }
     }
 
-    private static Rappel normalizeRappelForInsert(Rappel r) {
+    static Rappel normalizeRappelForInsert(Rappel r) {
         Objects.requireNonNull(r, "r");
         String jobKey = sanitizeJobKey(r.jobKey());
         if (jobKey.isBlank()) {
@@ -1414,20 +1934,46 @@ public class DB implements ConnectionProvider {
         return null;
     }
 
-    private String encodeNotificationSecret(String plain) {
+    private Object encodeNotificationSecret(String plain) {
         SecretKey key = notificationSecretKey();
         if (key == null) {
             return plain == null ? "" : plain;
         }
-        return TokenCrypto.encrypt(plain, key);
+        return TokenCrypto.seal(plain, key);
     }
 
-    private String decodeNotificationSecret(String stored) {
+    private String decodeNotificationSecret(Object stored) {
         SecretKey key = notificationSecretKey();
         if (key == null) {
-            return stored == null ? "" : stored;
+            return stored == null ? "" : stored.toString();
+        }
+        return TokenCrypto.open(stored, key);
+    }
+
+    /** Service tel que stocké : {@code description} est un {@code String} ou un {@code byte[]} (colonne chiffrée). */
+    protected record StoredService(Integer id, Object description, String date, ServiceStatus status) {
+    }
+
+    /** Forme stockée d'une description de service ({@code String} ou {@code byte[]}). */
+    protected Object encodeServiceDescription(String plain) {
+        return plain;
+    }
+
+    /** Rend les services lus dans l'ordre reçu, descriptions en clair. */
+    protected List<ServiceRow> decodeServices(List<StoredService> stored) {
+        List<ServiceRow> out = new ArrayList<>(stored.size());
+        for (StoredService s : stored) {
+            Object d = s.description();
+            String desc = d instanceof byte[] bytes ? new String(bytes, StandardCharsets.UTF_8) : (String) d;
+            out.add(new ServiceRow(s.id(), desc, s.date(), s.status()));
         }
-        return TokenCrypto.decrypt(stored, key);
+        return out;
+    }
+
+    private static void bindStored(PreparedStatement ps, int index, Object value) throws SQLException {
+        if (value instanceof byte[] bytes) ps.setBytes(index, bytes);
+        else if (value == null) ps.setNull(index, Types.VARCHAR);
+        else ps.setString(index, value.toString());
     }
 
     private static void bindPrestataire(PreparedStatement ps, Prestataire p) throws SQLException {
@@ -1442,6 +1988,7 @@ public class DB implements ConnectionProvider {
         Long   ts   = prestaContratTs(p);
         ps.setString(8, date);
         if (ts == null) ps.setNull(9, Types.BIGINT); else ps.setLong(9, ts);
+        ps.setString(10, SortKeys.fold(prestaNom(p)));
     }
 
     private static LocalDate parseDate(String raw) {
@@ -1466,12 +2013,84 @@ public class DB implements ConnectionProvider {
         ensureTs(c, "factures", "echeance_ts", "echeance");
         ensureColumn(c, "prestataires", "facturation", "TEXT");
         ensureColumn(c, "prestataires", "service_notes", "TEXT");
+        ensureSortKeys(c);
+        ensureColumn(c, "prestataires", "suppression_ts", "INTEGER");
+        try (Statement st = c.createStatement()) {
+            st.executeUpdate("CREATE INDEX IF NOT EXISTS idx_prestataires_suppression ON prestataires(suppression_ts)"
+                    + " WHERE suppression_ts IS NOT NULL");
+            st.executeUpdate("CREATE INDEX IF NOT EXISTS idx_services_prestataire ON services(prestataire_id)");
+        }
         ensureTs(c, "factures", "date_paiement_ts", "date_paiement");
         ensureMoney(c);
         ensureNotificationSettingsSchema(c);
         ensureRappelsSchema(c);
+        ensureReminderSchedule(c);
         try (Statement st = c.createStatement()) {
             st.executeUpdate("UPDATE services SET status='EN_ATTENTE' WHERE status IS NULL OR TRIM(status)=''");
+            // Avancement des migrations de données en tâche de fond (curseur, compteur, date de fin).
+            st.executeUpdate("""
+                    CREATE TABLE IF NOT EXISTS schema_migrations(
+                        name TEXT PRIMARY KEY,
+                        last_id INTEGER NOT NULL DEFAULT 0,
+                        converted INTEGER NOT NULL DEFAULT 0,
+                        completed_ts INTEGER
+                    )""");
+        }
+    }
+
+    /**
+     * Clé de tri française des noms, calculée en Java à chaque écriture. Un écrivain externe qui l'ignore obtient une
+     * approximation ({@code lower(nom)}) par trigger ; les clés sont recalculées au démarrage suivant.
+     */
+    private static void ensureSortKeys(Connection c) throws SQLException {
+        ensureColumn(c, "prestataires", "nom_tri", "TEXT NOT NULL DEFAULT ''");
+        try (Statement st = c.createStatement()) {
+            st.executeUpdate("CREATE INDEX IF NOT EXISTS idx_prestataires_nom_tri ON prestataires(nom_tri, nom)");
+            st.executeUpdate("""
+                    CREATE TRIGGER IF NOT EXISTS trg_prestataires_nom_tri AFTER INSERT ON prestataires
+                    WHEN NEW.nom_tri = ''
+                    BEGIN
+                        UPDATE prestataires SET nom_tri = lower(trim(NEW.nom)) WHERE id = NEW.id;
+                    END""");
+        }
+        Map<Integer, String> stale = new HashMap<>();
+        try (Statement st = c.createStatement();
+             ResultSet rs = st.executeQuery("SELECT id, nom, nom_tri FROM prestataires")) {
+            while (rs.next()) {
+                String key = SortKeys.fold(rs.getString(2));
+                if (!key.equals(rs.getString(3))) stale.put(rs.getInt(1), key);
+            }
+        }
+        if (stale.isEmpty()) {
+            return;
+        }
+        try (PreparedStatement ps = c.prepareStatement("UPDATE prestataires SET nom_tri=? WHERE id=?")) {
+            for (Map.Entry<Integer, String> e : stale.entrySet()) {
+                ps.setString(1, e.getValue());
+                ps.setInt(2, e.getKey());
+                ps.addBatch();
+            }
+            ps.executeBatch();
+        }
+    }
+
+    private static void ensureReminderSchedule(Connection c) throws SQLException {
+        boolean migrate = !hasColumn(c, "factures", "next_reminder_ts");
+        ensureColumn(c, "factures", "last_reminder_ts", "INTEGER");
+        ensureColumn(c, "factures", "next_reminder_ts", "INTEGER");
+        try (Statement st = c.createStatement()) {
+            st.executeUpdate("CREATE INDEX IF NOT EXISTS idx_factures_paye_next_reminder ON factures(paye,next_reminder_ts)");
+            if (migrate) {
+                // Reprend l'historique qui n'existait jusque-là qu'en mémoire dans le moteur de notifications
+                st.executeUpdate("""
+                        UPDATE factures
+                           SET last_reminder_ts=(SELECT MAX(COALESCE(r.sent_at_ts, r.date_envoi_ts)) FROM rappels r
+                                                  WHERE r.facture_id=factures.id AND r.statut IN ('PENDING','FAILED','SENT'))
+                         WHERE paye=0 AND preavis_envoye=1""");
+            }
+        }
+        if (migrate) {
+            recomputeNextReminders(c, readReminderBasis(c));
         }
     }
 
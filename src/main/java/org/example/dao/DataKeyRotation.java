@@ -0,0 +1,140 @@
+package org.example.dao;
+
+import org.example.security.CryptoUtils;
+import org.example.security.EncryptedField;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.crypto.SecretKey;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.GeneralSecurityException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * Remplace la clé de données d'une base utilisateur : les champs chiffrés (descriptions de services, mot de passe SMTP)
+ * sont rescellés, puis les pages sont rechiffrées par {@code PRAGMA rekey}.
+ * <p>
+ * Opération longue sur un gros fichier, à lancer hors du thread JavaFX et base fermée par ailleurs. Elle peut être
+ * relancée après un arrêt brutal : la base s'ouvre avec l'ancienne ou la nouvelle clé selon l'avancement, et un champ
+ * qui ne s'ouvre plus avec l'ancienne clé est considéré comme déjà traité.
+ */
+public final class DataKeyRotation {
+
+    private static final Logger log = LoggerFactory.getLogger(DataKeyRotation.class);
+    private static final int CHUNK = 500;
+
+    private DataKeyRotation() {
+    }
+
+    public static void run(Path dbFile, SecretKey oldKey, SecretKey newKey) throws SQLException {
+        if (Files.notExists(dbFile)) {
+            return;
+        }
+        try (UserDB db = new UserDB(dbFile.toString())) {
+            boolean pagesRotated = false;
+            try {
+                db.openPool(oldKey.getEncoded());
+            } catch (SQLException oldRejected) {
+                try {
+                    db.openPool(newKey.getEncoded());
+                } catch (SQLException ex) {
+                    ex.addSuppressed(oldRejected);
+                    throw ex;
+                }
+                pagesRotated = true;
+            }
+            Connection c = db.getConnection();
+            int resealed = resealFields(c, oldKey, newKey);
+            if (!pagesRotated) {
+                SqlcipherUtil.disableWalForRekey(c);
+                SqlcipherUtil.rekey(c, newKey.getEncoded(), null);
+                SqlcipherUtil.enableWal(c);
+            }
+            log.info("[DataKeyRotation] {} : {} champ(s) rescellé(s), pages {}", dbFile.getFileName(), resealed,
+                    pagesRotated ? "déjà rechiffrées" : "rechiffrées");
+        }
+    }
+
+    private static int resealFields(Connection c, SecretKey oldKey, SecretKey newKey) throws SQLException {
+        boolean auto = c.getAutoCommit();
+        c.setAutoCommit(false);
+        try {
+            int n = 0;
+            if (hasTable(c, "services")) {
+                int lastId = 0;
+                while (true) {
+                    int seen = 0;
+                    try (PreparedStatement ps = c.prepareStatement(
+                            "SELECT id, description FROM services WHERE id>? ORDER BY id LIMIT ?")) {
+                        ps.setInt(1, lastId);
+                        ps.setInt(2, CHUNK);
+                        try (ResultSet rs = ps.executeQuery();
+                             PreparedStatement up = c.prepareStatement("UPDATE services SET description=? WHERE id=?")) {
+                            while (rs.next()) {
+                                seen++;
+                                lastId = rs.getInt(1);
+                                byte[] sealed = reseal(rs.getObject(2), oldKey, newKey);
+                                if (sealed == null) continue;
+                                up.setBytes(1, sealed);
+                                up.setInt(2, lastId);
+                                n += up.executeUpdate();
+                            }
+                        }
+                    }
+                    if (seen < CHUNK) break;
+                }
+            }
+            if (hasTable(c, "notification_settings")) {
+                byte[] sealed = null;
+                try (PreparedStatement ps = c.prepareStatement("SELECT smtp_password FROM notification_settings WHERE id=1");
+                     ResultSet rs = ps.executeQuery()) {
+                    if (rs.next()) sealed = reseal(rs.getObject(1), oldKey, newKey);
+                }
+                if (sealed != null) {
+                    try (PreparedStatement up = c.prepareStatement("UPDATE notification_settings SET smtp_password=? WHERE id=1")) {
+                        up.setBytes(1, sealed);
+                        n += up.executeUpdate();
+                    }
+                }
+            }
+            c.commit();
+            return n;
+        } catch (SQLException | RuntimeException e) {
+            c.rollback();
+            throw e;
+        } finally {
+            c.setAutoCommit(auto);
+        }
+    }
+
+    /**
+     * Nouvelle forme d'une valeur chiffrée avec {@code oldKey}, ou {@code null} s'il n'y a rien à faire : valeur vide,
+     * texte clair (chiffré plus tard par {@link ServiceEncryptionMigration}) ou déjà chiffrée avec {@code newKey}.
+     */
+    private static byte[] reseal(Object stored, SecretKey oldKey, SecretKey newKey) {
+        try {
+            if (stored instanceof byte[] bytes) {
+                return EncryptedField.seal(EncryptedField.open(bytes, oldKey), newKey);
+            }
+            if (stored instanceof String text && !text.isBlank()) {
+                return EncryptedField.seal(CryptoUtils.decryptFromBase64(text, oldKey), newKey);
+            }
+        } catch (IllegalArgumentException | GeneralSecurityException notOldKey) {
+            // clair, ou déjà traité lors d'une passe précédente
+        }
+        return null;
+    }
+
+    private static boolean hasTable(Connection c, String table) throws SQLException {
+        try (PreparedStatement ps = c.prepareStatement("SELECT 1 FROM sqlite_master WHERE type='table' AND name=?")) {
+            ps.setString(1, table);
+            try (ResultSet rs = ps.executeQuery()) {
+                return rs.next();
+            }
+        }
+    }
+}
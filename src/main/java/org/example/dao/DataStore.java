@@ -0,0 +1,12 @@
+package org.example.dao;
+
+/**
+ * Ensemble des dépôts utilisés par l'interface, les notifications et les exports.
+ * {@link DB} en est l'implémentation SQLite, {@link InMemoryDataStore} une implémentation en mémoire.
+ */
+public interface DataStore extends PrestataireRepository, FactureRepository, ServiceRepository,
+        RappelRepository, SettingsRepository, AutoCloseable {
+
+    @Override
+    void close();
+}
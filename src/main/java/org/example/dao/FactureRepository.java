@@ -0,0 +1,42 @@
+package org.example.dao;
+
+import org.example.model.Facture;
+import org.example.model.NotificationSettings;
+import org.example.model.ReminderCandidate;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/** Accès aux factures et à leur planification de relance. */
+public interface FactureRepository {
+
+    Facture findFacture(int id);
+
+    /** Factures du prestataire triées par échéance ; {@code payee} nul = toutes. */
+    List<Facture> factures(int prestataireId, Boolean payee);
+
+    default List<Facture> facturesPrestataire(int prestataireId) {
+        return factures(prestataireId, null);
+    }
+
+    int insertFacture(int prestataireId, Facture f);
+
+    void updateFacture(Facture f);
+
+    void deleteFacture(int id);
+
+    void toggleFacturePayee(int id, boolean payee, Long datePaiementTs, String datePaiementFr);
+
+    void marquerPreavisEnvoye(int id);
+
+    /** Factures impayées échues à {@code limit}, par échéance. */
+    List<Facture> facturesImpayeesPourDashboard(LocalDateTime limit);
+
+    /** Factures dont la prochaine relance est échue ; {@code cfg} nul = réglages enregistrés. */
+    List<ReminderCandidate> facturesARelancer(LocalDateTime now, NotificationSettings cfg);
+
+    /** Prochaine relance prévue parmi les factures impayées, {@code null} s'il n'y en a aucune ; {@code cfg} nul = réglages enregistrés. */
+    LocalDateTime prochaineRelance(NotificationSettings cfg);
+
+    void recordReminderActivity(int factureId, LocalDateTime at);
+}
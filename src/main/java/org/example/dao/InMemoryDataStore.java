@@ -0,0 +1,849 @@
+package org.example.dao;
+
+import org.example.model.Facture;
+import org.example.model.NotificationSettings;
+import org.example.model.Prestataire;
+import org.example.model.Rappel;
+import org.example.model.ReminderCandidate;
+import org.example.model.ServiceRow;
+import org.example.model.ServiceStatus;
+import org.example.util.SortKeys;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Supplier;
+
+/**
+ * Implémentation en mémoire de {@link DataStore}, pour les tests rapides, les simulations et les benchmarks.
+ * <p>
+ * Reproduit le comportement de {@link DB} (tri, cascades, unicité des noms et des clés de job, planification des
+ * relances) à partir d'index triés. Les recherches par identifiant, par nom et par prestataire, la pagination sans
+ * filtre et les relances calculées avec les réglages enregistrés ne lisent que les entrées utiles de leur index. En
+ * revanche, {@link #listPage} avec un filtre parcourt les prestataires dans l'ordre du tri jusqu'à remplir la page (tous
+ * si peu correspondent), et {@link #facturesARelancer} / {@link #prochaineRelance} avec d'autres réglages que ceux
+ * enregistrés recalculent l'échéance de chaque facture impayée. Les lectures se font en parallèle sous un verrou
+ * partagé, chaque écriture met à jour ses index sous le verrou exclusif. Les objets renvoyés sont des copies.
+ */
+public final class InMemoryDataStore implements DataStore {
+
+    private static final DateTimeFormatter DATE_FR = DateTimeFormatter.ofPattern("dd/MM/yyyy");
+    private static final String DUPLICATE_NAME = "Un prestataire avec ce nom existe déjà.";
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private final Map<Integer, PrestataireRow> prestataires = new HashMap<>();
+    private final Map<String, Integer> prestatairesByName = new HashMap<>();
+    private final NavigableSet<NameSlot> prestatairesBySortKey = new TreeSet<>();
+    private final Map<Integer, Integer> unpaidByPrestataire = new HashMap<>();
+
+    private final Map<Integer, FactureRow> factures = new HashMap<>();
+    private final Map<Integer, Set<Integer>> facturesByPrestataire = new HashMap<>();
+    private final NavigableSet<Slot> unpaidByEcheance = new TreeSet<>();
+    private final NavigableSet<Slot> byNextReminder = new TreeSet<>();
+
+    private final Map<Integer, ServiceEntry> services = new HashMap<>();
+    private final Map<Integer, Set<Integer>> servicesByPrestataire = new HashMap<>();
+
+    private final Map<Integer, Rappel> rappels = new HashMap<>();
+    private final Map<String, Integer> rappelsByJobKey = new HashMap<>();
+    private final Map<Integer, Set<Integer>> rappelsByFacture = new HashMap<>();
+    private final NavigableSet<Slot> rappelQueue = new TreeSet<>();
+    private final NavigableSet<Slot> rappelHistory = new TreeSet<>();
+    private final Map<String, Integer> rappelsByStatus = new HashMap<>();
+
+    private NotificationSettings settings;
+    private ReminderBasis basis = ReminderBasis.of(NotificationSettings.defaults());
+    private int prestataireSeq;
+    private int factureSeq;
+    private int serviceSeq;
+    private int rappelSeq;
+
+    // ---------- Prestataires ----------
+
+    @Override
+    public List<Prestataire> list(String filter) {
+        return listPage(filter, null, -1);
+    }
+
+    @Override
+    public List<Prestataire> listPage(String filter, Prestataire after, int limit) {
+        String q = filter == null ? "" : filter.toLowerCase(Locale.ROOT);
+        String folded = SortKeys.fold(filter);
+        return read(() -> {
+            List<Prestataire> out = new ArrayList<>();
+            NavigableSet<NameSlot> range = after == null ? prestatairesBySortKey
+                    : prestatairesBySortKey.tailSet(NameSlot.of(after.getId(), after.getNom()), false);
+            for (NameSlot slot : range) {
+                if (limit >= 0 && out.size() >= limit) {
+                    break;
+                }
+                PrestataireRow p = prestataires.get(slot.id());
+                if (q.isEmpty() || p.matches(q, folded)) {
+                    out.add(p.toPrestataire(unpaidByPrestataire.getOrDefault(slot.id(), 0)));
+                }
+            }
+            return out;
+        });
+    }
+
+    @Override
+    public Prestataire findPrestataire(int id) {
+        return read(() -> {
+            PrestataireRow p = prestataires.get(id);
+            return p == null ? null : p.toPrestataire(0);
+        });
+    }
+
+    @Override
+    public int insertPrestataire(Prestataire p) {
+        PrestataireRow draft = PrestataireRow.of(0, p);
+        return write(() -> {
+            if (prestatairesByName.containsKey(draft.nameKey())) {
+                throw new IllegalArgumentException(DUPLICATE_NAME);
+            }
+            PrestataireRow row = draft.withId(++prestataireSeq);
+            prestataires.put(row.id(), row);
+            prestatairesByName.put(row.nameKey(), row.id());
+            prestatairesBySortKey.add(row.slot());
+            return row.id();
+        });
+    }
+
+    @Override
+    public void updatePrestataire(Prestataire p) {
+        PrestataireRow draft = PrestataireRow.of(p.getId(), p);
+        write(() -> {
+            PrestataireRow current = prestataires.get(draft.id());
+            if (current == null) {
+                throw new IllegalStateException("Aucune ligne mise a jour");
+            }
+            Integer owner = prestatairesByName.get(draft.nameKey());
+            if (owner != null && owner != draft.id()) {
+                throw new IllegalArgumentException(DUPLICATE_NAME);
+            }
+            prestatairesByName.remove(current.nameKey());
+            prestatairesByName.put(draft.nameKey(), draft.id());
+            prestatairesBySortKey.remove(current.slot());
+            prestatairesBySortKey.add(draft.slot());
+            prestataires.put(draft.id(), draft);
+        });
+    }
+
+    @Override
+    public void deletePrestataire(int id) {
+        write(() -> {
+            PrestataireRow p = prestataires.remove(id);
+            if (p == null) {
+                return;
+            }
+            prestatairesByName.remove(p.nameKey());
+            prestatairesBySortKey.remove(p.slot());
+            for (Integer sid : take(servicesByPrestataire, id)) {
+                services.remove(sid);
+            }
+            for (Integer fid : new ArrayList<>(facturesByPrestataire.getOrDefault(id, Set.of()))) {
+                removeFacture(fid);
+            }
+            facturesByPrestataire.remove(id);
+            unpaidByPrestataire.remove(id);
+        });
+    }
+
+    // ---------- Factures ----------
+
+    @Override
+    public Facture findFacture(int id) {
+        return read(() -> {
+            FactureRow f = factures.get(id);
+            return f == null ? null : f.toFacture();
+        });
+    }
+
+    @Override
+    public List<Facture> factures(int prestataireId, Boolean payee) {
+        return read(() -> {
+            List<FactureRow> rows = new ArrayList<>();
+            for (Integer fid : facturesByPrestataire.getOrDefault(prestataireId, Set.of())) {
+                FactureRow f = factures.get(fid);
+                if (payee == null || f.paye() == payee) rows.add(f);
+            }
+            rows.sort(FactureRow.BY_ECHEANCE);
+            List<Facture> out = new ArrayList<>(rows.size());
+            for (FactureRow f : rows) out.add(f.toFacture());
+            return out;
+        });
+    }
+
+    @Override
+    public int insertFacture(int prestataireId, Facture f) {
+        return write(() -> {
+            requirePrestataire(prestataireId);
+            FactureRow row = FactureRow.of(++factureSeq, prestataireId, f, f.isPaye(), false, null);
+            putFacture(null, row);
+            return row.id();
+        });
+    }
+
+    @Override
+    public void updateFacture(Facture f) {
+        write(() -> {
+            FactureRow current = factures.get(f.getId());
+            if (current == null) {
+                return;
+            }
+            boolean payee = f.isPaye();
+            boolean reset = DB.shouldResetPreavis(current.toFacture(), f, payee);
+            boolean preavis = !reset && f.isPreavisEnvoye();
+            Long last = !payee && preavis ? current.lastReminderTs() : null;
+            putFacture(current, FactureRow.of(current.id(), current.prestataireId(), f, payee, preavis, last));
+            if (reset) {
+                skipPending(current.id(), "Relances obsolètes après modification de la facture.");
+            }
+        });
+    }
+
+    @Override
+    public void deleteFacture(int id) {
+        write(() -> removeFacture(id));
+    }
+
+    @Override
+    public void toggleFacturePayee(int id, boolean payee, Long datePaiementTs, String datePaiementFr) {
+        write(() -> {
+            FactureRow current = factures.get(id);
+            if (current == null) {
+                return;
+            }
+            LocalDate paidOn = null;
+            if (payee) {
+                paidOn = datePaiementTs != null
+                        ? LocalDateTime.ofEpochSecond(datePaiementTs, 0, ZoneOffset.UTC).toLocalDate()
+                        : parseDate(datePaiementFr);
+            }
+            putFacture(current, current.withPayment(payee, paidOn, payee && current.preavisEnvoye()));
+            skipPending(id, payee
+                    ? "Facture marquée réglée."
+                    : "Facture repassée impayée ; relances réinitialisées.");
+        });
+    }
+
+    @Override
+    public void marquerPreavisEnvoye(int id) {
+        write(() -> {
+            FactureRow current = factures.get(id);
+            if (current != null) putFacture(current, current.withReminder(true, current.lastReminderTs()));
+        });
+    }
+
+    @Override
+    public List<Facture> facturesImpayeesPourDashboard(LocalDateTime limit) {
+        long until = limit.toEpochSecond(ZoneOffset.UTC);
+        return read(() -> {
+            List<Facture> out = new ArrayList<>();
+            for (Slot s : unpaidByEcheance.headSet(new Slot(until, Integer.MAX_VALUE), true)) {
+                out.add(factures.get(s.id()).toFacture());
+            }
+            return out;
+        });
+    }
+
+    @Override
+    public List<ReminderCandidate> facturesARelancer(LocalDateTime now, NotificationSettings cfg) {
+        long at = now.toEpochSecond(ZoneOffset.UTC);
+        return read(() -> {
+            ReminderBasis wanted = cfg == null ? basis : ReminderBasis.of(cfg.normalized());
+            List<ReminderCandidate> out = new ArrayList<>();
+            if (wanted.equals(basis)) {
+                for (Slot s : byNextReminder.headSet(new Slot(at, Integer.MAX_VALUE), true)) {
+                    out.add(factures.get(s.id()).toCandidate());
+                }
+                return out;
+            }
+            List<Slot> due = new ArrayList<>();
+            for (Slot s : unpaidByEcheance) {
+                FactureRow f = factures.get(s.id());
+                Long next = f.nextReminder(wanted);
+                if (next != null && next <= at) due.add(new Slot(next, f.id()));
+            }
+            Collections.sort(due);
+            for (Slot s : due) out.add(factures.get(s.id()).toCandidate());
+            return out;
+        });
+    }
+
+    @Override
+    public LocalDateTime prochaineRelance(NotificationSettings cfg) {
+        return read(() -> {
+            ReminderBasis wanted = cfg == null ? basis : ReminderBasis.of(cfg.normalized());
+            Long next = null;
+            if (wanted.equals(basis)) {
+                if (!byNextReminder.isEmpty()) next = byNextReminder.first().ts();
+            } else {
+                for (Slot s : unpaidByEcheance) {
+                    Long ts = factures.get(s.id()).nextReminder(wanted);
+                    if (ts != null && (next == null || ts < next)) next = ts;
+                }
+            }
+            return next == null ? null : LocalDateTime.ofEpochSecond(next, 0, ZoneOffset.UTC);
+        });
+    }
+
+    @Override
+    public void recordReminderActivity(int factureId, LocalDateTime at) {
+        long ts = (at == null ? LocalDateTime.now() : at).toEpochSecond(ZoneOffset.UTC);
+        write(() -> {
+            FactureRow current = factures.get(factureId);
+            if (current != null) putFacture(current, current.withReminder(current.preavisEnvoye(), ts));
+        });
+    }
+
+    // ---------- Services ----------
+
+    @Override
+    public List<ServiceRow> services(int prestataireId) {
+        return read(() -> {
+            List<ServiceEntry> rows = new ArrayList<>();
+            for (Integer sid : servicesByPrestataire.getOrDefault(prestataireId, Set.of())) {
+                rows.add(services.get(sid));
+            }
+            rows.sort(ServiceEntry.BY_DATE);
+            List<ServiceRow> out = new ArrayList<>(rows.size());
+            for (ServiceEntry s : rows) out.add(s.toRow());
+            return out;
+        });
+    }
+
+    @Override
+    public Map<Integer, List<ServiceRow>> allServices() {
+        return read(() -> {
+            Map<Integer, List<ServiceRow>> out = new TreeMap<>();
+            for (Integer pid : servicesByPrestataire.keySet()) {
+                List<ServiceEntry> rows = new ArrayList<>();
+                for (Integer sid : servicesByPrestataire.get(pid)) rows.add(services.get(sid));
+                if (rows.isEmpty()) continue;
+                rows.sort(ServiceEntry.BY_DATE);
+                List<ServiceRow> list = new ArrayList<>(rows.size());
+                for (ServiceEntry e : rows) list.add(e.toRow());
+                out.put(pid, list);
+            }
+            return out;
+        });
+    }
+
+    @Override
+    public int insertService(int prestataireId, ServiceRow s) {
+        return write(() -> {
+            requirePrestataire(prestataireId);
+            ServiceEntry e = new ServiceEntry(++serviceSeq, prestataireId, s.desc(), parseDate(s.date()), s.status());
+            services.put(e.id(), e);
+            index(servicesByPrestataire, prestataireId, e.id());
+            return e.id();
+        });
+    }
+
+    @Override
+    public void updateService(ServiceRow s) {
+        if (s.id() == null) throw new IllegalArgumentException("ServiceRow.id manquant");
+        write(() -> {
+            ServiceEntry current = services.get(s.id());
+            if (current != null) {
+                services.put(current.id(), new ServiceEntry(current.id(), current.prestataireId(), s.desc(),
+                        parseDate(s.date()), s.status()));
+            }
+        });
+    }
+
+    @Override
+    public void updateServiceStatus(int id, ServiceStatus status) {
+        write(() -> {
+            ServiceEntry current = services.get(id);
+            if (current != null) {
+                services.put(id, new ServiceEntry(id, current.prestataireId(), current.desc(), current.date(),
+                        status == null ? ServiceStatus.EN_ATTENTE : status));
+            }
+        });
+    }
+
+    @Override
+    public void deleteService(int id) {
+        write(() -> {
+            ServiceEntry removed = services.remove(id);
+            if (removed != null) unindex(servicesByPrestataire, removed.prestataireId(), id);
+        });
+    }
+
+    // ---------- Rappels ----------
+
+    @Override
+    public void addRappel(Rappel r) {
+        Rappel normalized = truncate(DB.normalizeRappelForInsert(r));
+        write(() -> {
+            if (rappelsByJobKey.containsKey(normalized.jobKey())) {
+                throw new IllegalArgumentException("Rappel déjà planifié : " + normalized.jobKey());
+            }
+            insertRappel(normalized);
+        });
+    }
+
+    @Override
+    public boolean enqueueRappelIfAbsent(Rappel r) {
+        Rappel normalized = truncate(DB.normalizeRappelForInsert(r));
+        return write(() -> {
+            if (rappelsByJobKey.containsKey(normalized.jobKey())) {
+                return false;
+            }
+            insertRappel(normalized);
+            return true;
+        });
+    }
+
+    @Override
+    public Optional<Rappel> findRappelByJobKey(String jobKey) {
+        String key = jobKey == null ? "" : jobKey.trim();
+        if (key.isBlank()) {
+            return Optional.empty();
+        }
+        return read(() -> {
+            Integer id = rappelsByJobKey.get(key);
+            return id == null ? Optional.<Rappel>empty() : Optional.of(rappels.get(id));
+        });
+    }
+
+    @Override
+    public List<Rappel> rappelsAEnvoyer() {
+        long now = LocalDateTime.now().toEpochSecond(ZoneOffset.UTC);
+        return read(() -> {
+            List<Rappel> out = new ArrayList<>();
+            for (Slot s : rappelQueue.headSet(new Slot(now, Integer.MAX_VALUE), true)) {
+                out.add(rappels.get(s.id()));
+            }
+            return out;
+        });
+    }
+
+    @Override
+    public LocalDateTime prochainRappel() {
+        return read(() -> rappelQueue.isEmpty()
+                ? null
+                : LocalDateTime.ofEpochSecond(rappelQueue.first().ts(), 0, ZoneOffset.UTC));
+    }
+
+    @Override
+    public List<Rappel> rappelsHistorique(int limit) {
+        int safeLimit = Math.max(1, limit);
+        return read(() -> {
+            List<Rappel> out = new ArrayList<>(Math.min(safeLimit, rappels.size()));
+            Iterator<Slot> it = rappelHistory.descendingIterator();
+            while (it.hasNext() && out.size() < safeLimit) {
+                out.add(rappels.get(it.next().id()));
+            }
+            return out;
+        });
+    }
+
+    @Override
+    public int countRappelsByStatus(String status) {
+        String normalized = status == null ? "" : status.trim();
+        if (normalized.isBlank()) {
+            return 0;
+        }
+        return read(() -> rappelsByStatus.getOrDefault(normalized, 0));
+    }
+
+    @Override
+    public void markRappelEnvoye(int id) {
+        LocalDateTime now = LocalDateTime.now().truncatedTo(ChronoUnit.SECONDS);
+        write(() -> {
+            Rappel r = rappels.get(id);
+            if (r == null) {
+                return;
+            }
+            putRappel(r, new Rappel(r.id(), r.jobKey(), r.type(), r.factureId(), r.prestataireId(), r.dest(),
+                    r.sujet(), r.corps(), r.dateEnvoi(), true, Rappel.STATUS_SENT, r.attemptCount() + 1, "", now));
+            FactureRow f = factures.get(r.factureId());
+            if (f != null) putFacture(f, f.withReminder(f.preavisEnvoye(), now.toEpochSecond(ZoneOffset.UTC)));
+        });
+    }
+
+    @Override
+    public void markRappelFailed(int id, String error, LocalDateTime nextAttemptAt) {
+        LocalDateTime scheduled = (nextAttemptAt == null ? LocalDateTime.now().plusMinutes(15) : nextAttemptAt)
+                .truncatedTo(ChronoUnit.SECONDS);
+        write(() -> {
+            Rappel r = rappels.get(id);
+            if (r != null) {
+                putRappel(r, new Rappel(r.id(), r.jobKey(), r.type(), r.factureId(), r.prestataireId(), r.dest(),
+                        r.sujet(), r.corps(), scheduled, false, Rappel.STATUS_FAILED, r.attemptCount() + 1,
+                        error == null ? "" : error.strip(), r.sentAt()));
+            }
+        });
+    }
+
+    @Override
+    public void markRappelSkipped(int id, String reason) {
+        write(() -> {
+            Rappel r = rappels.get(id);
+            if (r != null) putRappel(r, skipped(r, reason));
+        });
+    }
+
+    @Override
+    public void skipPendingRappelsForFacture(int factureId, String reason) {
+        write(() -> skipPending(factureId, reason));
+    }
+
+    // ---------- Réglages ----------
+
+    @Override
+    public NotificationSettings loadNotificationSettings() {
+        return read(() -> settings == null ? NotificationSettings.defaults() : settings);
+    }
+
+    @Override
+    public void saveNotificationSettings(NotificationSettings s) {
+        NotificationSettings normalized = s == null ? NotificationSettings.defaults() : s.normalized();
+        write(() -> {
+            settings = normalized;
+            ReminderBasis next = ReminderBasis.of(normalized);
+            if (next.equals(basis)) {
+                return;
+            }
+            basis = next;
+            byNextReminder.clear();
+            for (Slot slot : unpaidByEcheance) {
+                FactureRow f = factures.get(slot.id());
+                FactureRow rescheduled = f.withNext(f.nextReminder(basis));
+                factures.put(f.id(), rescheduled);
+                if (rescheduled.nextReminderTs() != null) {
+                    byNextReminder.add(new Slot(rescheduled.nextReminderTs(), f.id()));
+                }
+            }
+        });
+    }
+
+    @Override
+    public void close() {
+        write(() -> {
+            prestataires.clear();
+            prestatairesByName.clear();
+            prestatairesBySortKey.clear();
+            unpaidByPrestataire.clear();
+            factures.clear();
+            facturesByPrestataire.clear();
+            unpaidByEcheance.clear();
+            byNextReminder.clear();
+            services.clear();
+            servicesByPrestataire.clear();
+            rappels.clear();
+            rappelsByJobKey.clear();
+            rappelsByFacture.clear();
+            rappelQueue.clear();
+            rappelHistory.clear();
+            rappelsByStatus.clear();
+        });
+    }
+
+    // ---------- Index (appelés sous le verrou exclusif) ----------
+
+    private void requirePrestataire(int prestataireId) {
+        if (!prestataires.containsKey(prestataireId)) {
+            throw new IllegalArgumentException("Prestataire introuvable : " + prestataireId);
+        }
+    }
+
+    /** Remplace {@code old} par {@code row} (l'un ou l'autre peut être nul) en recalculant la relance planifiée. */
+    private void putFacture(FactureRow old, FactureRow row) {
+        if (old != null) {
+            factures.remove(old.id());
+            unindex(facturesByPrestataire, old.prestataireId(), old.id());
+            if (!old.paye()) {
+                unpaidByPrestataire.merge(old.prestataireId(), -1, Integer::sum);
+                if (old.echeanceTs() != null) unpaidByEcheance.remove(new Slot(old.echeanceTs(), old.id()));
+            }
+            if (old.nextReminderTs() != null) byNextReminder.remove(new Slot(old.nextReminderTs(), old.id()));
+        }
+        if (row == null) {
+            return;
+        }
+        row = row.withNext(row.nextReminder(basis));
+        factures.put(row.id(), row);
+        index(facturesByPrestataire, row.prestataireId(), row.id());
+        if (!row.paye()) {
+            unpaidByPrestataire.merge(row.prestataireId(), 1, Integer::sum);
+            if (row.echeanceTs() != null) unpaidByEcheance.add(new Slot(row.echeanceTs(), row.id()));
+        }
+        if (row.nextReminderTs() != null) byNextReminder.add(new Slot(row.nextReminderTs(), row.id()));
+    }
+
+    private void removeFacture(int id) {
+        FactureRow f = factures.get(id);
+        if (f == null) {
+            return;
+        }
+        for (Integer rid : take(rappelsByFacture, id)) {
+            putRappel(rappels.get(rid), null);
+        }
+        putFacture(f, null);
+    }
+
+    private void insertRappel(Rappel r) {
+        if (!factures.containsKey(r.factureId())) {
+            throw new IllegalArgumentException("Facture introuvable : " + r.factureId());
+        }
+        int id = ++rappelSeq;
+        putRappel(null, new Rappel(id, r.jobKey(), r.type(), r.factureId(), r.prestataireId(), r.dest(), r.sujet(),
+                r.corps(), r.dateEnvoi(), r.envoye(), r.statut(), r.attemptCount(), r.lastError(), r.sentAt()));
+    }
+
+    private void putRappel(Rappel old, Rappel r) {
+        if (old != null) {
+            rappels.remove(old.id());
+            rappelsByJobKey.remove(old.jobKey());
+            unindex(rappelsByFacture, old.factureId(), old.id());
+            rappelQueue.remove(queueSlot(old));
+            rappelHistory.remove(historySlot(old));
+            rappelsByStatus.merge(old.statut(), -1, Integer::sum);
+        }
+        if (r == null) {
+            return;
+        }
+        rappels.put(r.id(), r);
+        rappelsByJobKey.put(r.jobKey(), r.id());
+        index(rappelsByFacture, r.factureId(), r.id());
+        if (!r.envoye() && (Rappel.STATUS_PENDING.equals(r.statut()) || Rappel.STATUS_FAILED.equals(r.statut()))) {
+            rappelQueue.add(queueSlot(r));
+        }
+        rappelHistory.add(historySlot(r));
+        rappelsByStatus.merge(r.statut(), 1, Integer::sum);
+    }
+
+    private void skipPending(int factureId, String reason) {
+        for (Integer rid : new ArrayList<>(rappelsByFacture.getOrDefault(factureId, Set.of()))) {
+            Rappel r = rappels.get(rid);
+            if (!r.envoye() && (Rappel.STATUS_PENDING.equals(r.statut()) || Rappel.STATUS_FAILED.equals(r.statut()))) {
+                putRappel(r, skipped(r, reason));
+            }
+        }
+    }
+
+    private static Rappel skipped(Rappel r, String reason) {
+        return new Rappel(r.id(), r.jobKey(), r.type(), r.factureId(), r.prestataireId(), r.dest(), r.sujet(),
+                r.corps(), r.dateEnvoi(), false, Rappel.STATUS_SKIPPED, r.attemptCount(),
+                reason == null ? "" : reason.strip(), r.sentAt());
+    }
+
+    private static Rappel truncate(Rappel r) {
+        return new Rappel(r.id(), r.jobKey(), r.type(), r.factureId(), r.prestataireId(), r.dest(), r.sujet(),
+                r.corps(), r.dateEnvoi().truncatedTo(ChronoUnit.SECONDS), r.envoye(), r.statut(), r.attemptCount(),
+                r.lastError(), r.sentAt() == null ? null : r.sentAt().truncatedTo(ChronoUnit.SECONDS));
+    }
+
+    private static Slot queueSlot(Rappel r) {
+        return new Slot(r.dateEnvoi().toEpochSecond(ZoneOffset.UTC), r.id());
+    }
+
+    private static Slot historySlot(Rappel r) {
+        LocalDateTime at = r.sentAt() != null ? r.sentAt() : r.dateEnvoi();
+        return new Slot(at.toEpochSecond(ZoneOffset.UTC), r.id());
+    }
+
+    private static void index(Map<Integer, Set<Integer>> index, int key, int id) {
+        index.computeIfAbsent(key, k -> new TreeSet<>()).add(id);
+    }
+
+    private static void unindex(Map<Integer, Set<Integer>> index, int key, int id) {
+        Set<Integer> ids = index.get(key);
+        if (ids != null && ids.remove(id) && ids.isEmpty()) index.remove(key);
+    }
+
+    private static Set<Integer> take(Map<Integer, Set<Integer>> index, int key) {
+        Set<Integer> ids = index.remove(key);
+        return ids == null ? Set.of() : ids;
+    }
+
+    private <T> T read(Supplier<T> action) {
+        lock.readLock().lock();
+        try {
+            return action.get();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private <T> T write(Supplier<T> action) {
+        lock.writeLock().lock();
+        try {
+            return action.get();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void write(Runnable action) {
+        write(() -> {
+            action.run();
+            return null;
+        });
+    }
+
+    private static LocalDate parseDate(String raw) {
+        if (raw == null || raw.isBlank()) return null;
+        String trimmed = raw.trim();
+        try {
+            return LocalDate.parse(trimmed, DATE_FR);
+        } catch (Exception ignore) {
+            try {
+                return LocalDate.parse(trimmed);
+            } catch (Exception ignore2) {
+                return null;
+            }
+        }
+    }
+
+    private static Long epochDay(LocalDate d) {
+        return d == null ? null : d.atStartOfDay().toEpochSecond(ZoneOffset.UTC);
+    }
+
+    // ---------- Lignes stockées ----------
+
+    /** Clé d'index triée : horodatage puis identifiant. */
+    private record Slot(long ts, int id) implements Comparable<Slot> {
+        @Override
+        public int compareTo(Slot o) {
+            int c = Long.compare(ts, o.ts);
+            return c != 0 ? c : Integer.compare(id, o.id);
+        }
+    }
+
+    /** Ordre de {@code ORDER BY nom_tri, nom, id} côté SQLite. */
+    private record NameSlot(String sortKey, String nom, int id) implements Comparable<NameSlot> {
+        static NameSlot of(int id, String nom) {
+            return new NameSlot(SortKeys.fold(nom), nom, id);
+        }
+
+        @Override
+        public int compareTo(NameSlot o) {
+            int c = sortKey.compareTo(o.sortKey);
+            if (c == 0) c = SortKeys.NOCASE.compare(nom, o.nom);
+            return c != 0 ? c : Integer.compare(id, o.id);
+        }
+    }
+
+    private record PrestataireRow(int id, String nom, String societe, String telephone, String email, int note,
+                                  String facturation, String serviceNotes, String dateContrat) {
+
+        static PrestataireRow of(int id, Prestataire p) {
+            LocalDate contrat = parseDate(p.getDateContrat());
+            return new PrestataireRow(id, p.getNom(), p.getSociete(), p.getTelephone(), p.getEmail(), p.getNote(),
+                    p.getFacturation(), p.getServiceNotes(), contrat == null ? "" : DATE_FR.format(contrat));
+        }
+
+        PrestataireRow withId(int newId) {
+            return new PrestataireRow(newId, nom, societe, telephone, email, note, facturation, serviceNotes, dateContrat);
+        }
+
+        String nameKey() {
+            return nom.toLowerCase(Locale.ROOT);
+        }
+
+        NameSlot slot() {
+            return NameSlot.of(id, nom);
+        }
+
+        boolean matches(String lowerQuery, String foldedQuery) {
+            return SortKeys.fold(nom).contains(foldedQuery)
+                    || societe.toLowerCase(Locale.ROOT).contains(lowerQuery)
+                    || email.toLowerCase(Locale.ROOT).contains(lowerQuery)
+                    || telephone.toLowerCase(Locale.ROOT).contains(lowerQuery);
+        }
+
+        Prestataire toPrestataire(int impayes) {
+            Prestataire p = new Prestataire(id, nom, societe, telephone, email, note, facturation, serviceNotes, dateContrat);
+            p.setImpayes(impayes);
+            return p;
+        }
+    }
+
+    private record FactureRow(int id, int prestataireId, String description, LocalDate echeance, BigDecimal ht,
+                              BigDecimal tvaPct, BigDecimal tva, BigDecimal ttc, boolean paye, LocalDate datePaiement,
+                              boolean preavisEnvoye, Long lastReminderTs, Long nextReminderTs) {
+
+        // Comme "ORDER BY echeance_ts" : les échéances absentes d'abord.
+        static final Comparator<FactureRow> BY_ECHEANCE = Comparator
+                .comparing(FactureRow::echeance, Comparator.nullsFirst(Comparator.naturalOrder()))
+                .thenComparingInt(FactureRow::id);
+
+        static FactureRow of(int id, int prestataireId, Facture f, boolean paye, boolean preavis, Long last) {
+            BigDecimal ht = f.getMontantHt() == null ? BigDecimal.ZERO : f.getMontantHt();
+            BigDecimal pct = f.getTvaPct() == null ? new BigDecimal("20") : f.getTvaPct();
+            BigDecimal tva = ht.multiply(pct).divide(new BigDecimal("100"));
+            BigDecimal ttc = f.getMontantTtc() == null ? ht.add(tva) : f.getMontantTtc();
+            return new FactureRow(id, prestataireId, f.getDescription(), f.getEcheance(), ht, pct, tva, ttc, paye,
+                    f.getDatePaiement(), preavis, last, null);
+        }
+
+        Long echeanceTs() {
+            return epochDay(echeance);
+        }
+
+        Long nextReminder(ReminderBasis b) {
+            return b.nextReminderTs(paye, echeanceTs(), preavisEnvoye, lastReminderTs);
+        }
+
+        FactureRow withNext(Long next) {
+            return new FactureRow(id, prestataireId, description, echeance, ht, tvaPct, tva, ttc, paye, datePaiement,
+                    preavisEnvoye, lastReminderTs, next);
+        }
+
+        FactureRow withReminder(boolean preavis, Long last) {
+            return new FactureRow(id, prestataireId, description, echeance, ht, tvaPct, tva, ttc, paye, datePaiement,
+                    preavis, last, nextReminderTs);
+        }
+
+        FactureRow withPayment(boolean payee, LocalDate paidOn, boolean preavis) {
+            return new FactureRow(id, prestataireId, description, echeance, ht, tvaPct, tva, ttc, payee, paidOn,
+                    preavis, null, nextReminderTs);
+        }
+
+        Facture toFacture() {
+            return new Facture(id, prestataireId, description, echeance, ht, tvaPct, tva, ttc, paye, datePaiement,
+                    preavisEnvoye);
+        }
+
+        ReminderCandidate toCandidate() {
+            return new ReminderCandidate(toFacture(), lastReminderTs == null
+                    ? null
+                    : LocalDateTime.ofEpochSecond(lastReminderTs, 0, ZoneOffset.UTC));
+        }
+    }
+
+    private record ServiceEntry(int id, int prestataireId, String desc, LocalDate date, ServiceStatus status) {
+
+        // Comme "ORDER BY date_ts" : les dates absentes d'abord.
+        static final Comparator<ServiceEntry> BY_DATE = Comparator
+                .comparing(ServiceEntry::date, Comparator.nullsFirst(Comparator.naturalOrder()))
+                .thenComparingInt(ServiceEntry::id);
+
+        ServiceRow toRow() {
+            return new ServiceRow(id, desc, DATE_FR.format(date == null ? LocalDate.now() : date), status);
+        }
+    }
+}
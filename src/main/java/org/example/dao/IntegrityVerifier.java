@@ -0,0 +1,296 @@
+package org.example.dao;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.LongSupplier;
+
+/**
+ * Vérification d'intégrité en arrière-plan, une table (et ses index) à la fois via {@code PRAGMA quick_check(table)}
+ * ou {@code integrity_check(table)}.
+ * <p>
+ * Après chaque tranche, le thread dort assez longtemps pour ne pas dépasser la part de temps {@code dutyCycle} ; il
+ * recule aussi tant que l'application écrit. La position dans la passe est enregistrée dans un fichier d'état, si bien
+ * qu'une passe interrompue reprend à la session suivante. La vérification par table ne contrôle pas la liste des pages
+ * libres : c'est le prix du découpage.
+ */
+public final class IntegrityVerifier implements AutoCloseable {
+
+    private static final Logger log = LoggerFactory.getLogger(IntegrityVerifier.class);
+    private static final long IDLE_RECHECK_MS = TimeUnit.MINUTES.toMillis(15);
+    private static final long BUSY_BACKOFF_MS = TimeUnit.SECONDS.toMillis(30);
+    private static final long MIN_PAUSE_MS = 200;
+    private static final int SQLITE_CORRUPT = 11;
+    private static final int SQLITE_NOTADB = 26;
+
+    /** Base à vérifier ; {@code name} sert de clé dans le fichier d'état, la connexion est fermée après chaque tranche. */
+    public record Target(String name, ConnectionProvider connections) {
+    }
+
+    public record Problem(String database, String table, List<String> messages) {
+        @Override
+        public String toString() {
+            return database + " / " + table + " : " + String.join(" ; ", messages);
+        }
+    }
+
+    private final Path stateFile;
+    private final List<Target> targets;
+    private final Consumer<Problem> onProblem;
+    private final Properties state = new Properties();
+    private volatile double dutyCycle = 0.05;
+    private volatile Duration passInterval = Duration.ofDays(1);
+    private volatile boolean thorough;
+    private volatile LongSupplier foregroundActivity;
+    private final Object lifecycle = new Object();
+    private long lastActivity;
+    private volatile boolean paused;
+    private boolean lastStepFailed;
+    private ScheduledExecutorService scheduler;
+
+    public IntegrityVerifier(Path stateFile, List<Target> targets, Consumer<Problem> onProblem) {
+        this.stateFile = stateFile;
+        this.targets = List.copyOf(targets);
+        this.onProblem = onProblem == null ? p -> { } : onProblem;
+        loadState();
+    }
+
+    /** {@code dutyCycle} : part maximale du temps passée à vérifier (0.05 = 5 %). */
+    public void setBudget(double dutyCycle, Duration passInterval) {
+        this.dutyCycle = Math.min(1.0, Math.max(0.001, dutyCycle));
+        this.passInterval = passInterval;
+    }
+
+    /** {@code integrity_check} (index comparés au contenu des tables) au lieu de {@code quick_check}. */
+    public void setThorough(boolean thorough) {
+        this.thorough = thorough;
+    }
+
+    /** Compteur qui avance à chaque écriture du premier plan ; la vérification recule tant qu'il bouge. */
+    public void setForegroundActivity(LongSupplier foregroundActivity) {
+        this.foregroundActivity = foregroundActivity;
+    }
+
+    public void start(Duration initialDelay) {
+        synchronized (lifecycle) {
+            if (scheduler != null) {
+                return;
+            }
+            scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread t = new Thread(r, "db-integrity");
+                t.setDaemon(true);
+                t.setPriority(Thread.MIN_PRIORITY);
+                return t;
+            });
+            LongSupplier activity = foregroundActivity;
+            lastActivity = activity == null ? 0L : activity.getAsLong();
+            scheduler.schedule(this::tick, initialDelay.toMillis(), TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /** Session verrouillée : aucune tranche n'est vérifiée, les connexions chiffrées ne pouvant plus s'ouvrir. */
+    public void pause() {
+        paused = true;
+    }
+
+    public void resume() {
+        paused = false;
+    }
+
+    private void tick() {
+        long delay;
+        LongSupplier activity = foregroundActivity;
+        long now = activity == null ? 0L : activity.getAsLong();
+        if (paused) {
+            delay = BUSY_BACKOFF_MS;
+        } else if (now != lastActivity) {
+            lastActivity = now;
+            delay = BUSY_BACKOFF_MS;
+        } else {
+            long t0 = System.nanoTime();
+            boolean checked;
+            try {
+                checked = step();
+            } catch (RuntimeException ex) {
+                log.warn("[IntegrityVerifier] Tranche ignorée : {}", ex.getMessage());
+                checked = true;
+            }
+            long elapsed = (System.nanoTime() - t0) / 1_000_000;
+            if (!checked) {
+                delay = IDLE_RECHECK_MS;
+            } else if (retryLater()) {
+                delay = BUSY_BACKOFF_MS;
+            } else {
+                delay = Math.max(MIN_PAUSE_MS, (long) (elapsed * (1 - dutyCycle) / dutyCycle));
+            }
+        }
+        synchronized (lifecycle) {
+            if (scheduler != null) {
+                scheduler.schedule(this::tick, delay, TimeUnit.MILLISECONDS);
+            }
+        }
+    }
+
+    /**
+     * Vérifie la tranche suivante de la première base dont la passe est en cours ou due.
+     * Retourne {@code false} s'il n'y a rien à faire pour l'instant. Seule une erreur de corruption
+     * ({@code SQLITE_CORRUPT}, {@code SQLITE_NOTADB}) est signalée ; une autre erreur (base occupée, disque plein…)
+     * laisse le curseur en place et la même table est retentée à la tranche suivante.
+     */
+    public synchronized boolean step() {
+        lastStepFailed = false;
+        long now = System.currentTimeMillis();
+        for (Target target : targets) {
+            String cursor = state.getProperty(target.name() + ".cursor");
+            long completed = Long.parseLong(state.getProperty(target.name() + ".completed", "0"));
+            if (cursor == null && now - completed < passInterval.toMillis()) {
+                continue;
+            }
+            try {
+                checkNext(target, cursor == null ? "" : cursor, now);
+            } catch (SQLException ex) {
+                if (!isCorruption(ex)) {
+                    log.warn("[IntegrityVerifier] Tranche de {} reportée : {}", target.name(), oneLine(ex));
+                    lastStepFailed = true;
+                    return true;
+                }
+                // Une base illisible est justement ce que l'on cherche : on le signale et on passe à la suite.
+                report(new Problem(target.name(), "", List.of(oneLine(ex))));
+                state.remove(target.name() + ".cursor");
+                state.setProperty(target.name() + ".completed", Long.toString(now));
+                saveState();
+            }
+            return true;
+        }
+        return false;
+    }
+
+    private void checkNext(Target target, String cursor, long now) throws SQLException {
+        try (Connection c = target.connections().getConnection()) {
+            String table = null;
+            try (Statement st = c.createStatement();
+                 ResultSet rs = st.executeQuery("SELECT name FROM sqlite_master WHERE type='table' ORDER BY name")) {
+                while (rs.next()) {
+                    String name = rs.getString(1);
+                    if (name.compareTo(cursor) > 0) {
+                        table = name;
+                        break;
+                    }
+                }
+            }
+            if (table == null) {
+                state.remove(target.name() + ".cursor");
+                state.setProperty(target.name() + ".completed", Long.toString(now));
+                saveState();
+                log.debug("[IntegrityVerifier] Passe terminée pour {}", target.name());
+                return;
+            }
+            List<String> messages = new ArrayList<>();
+            String pragma = thorough ? "integrity_check" : "quick_check";
+            try (Statement st = c.createStatement();
+                 ResultSet rs = st.executeQuery("PRAGMA " + pragma + "('" + table.replace("'", "''") + "')")) {
+                while (rs.next()) {
+                    String m = rs.getString(1);
+                    if (!"ok".equalsIgnoreCase(m)) {
+                        messages.add(m);
+                    }
+                }
+            }
+            state.setProperty(target.name() + ".cursor", table);
+            saveState();
+            if (!messages.isEmpty()) {
+                report(new Problem(target.name(), table, messages));
+            }
+        }
+    }
+
+    private synchronized boolean retryLater() {
+        return lastStepFailed;
+    }
+
+    /** Code primaire SQLite (octet de poids faible des codes étendus), sur toute la chaîne des causes. */
+    private static boolean isCorruption(SQLException ex) {
+        for (Throwable t = ex; t != null; t = t.getCause()) {
+            if (t instanceof SQLException sql) {
+                int primary = sql.getErrorCode() & 0xFF;
+                if (primary == SQLITE_CORRUPT || primary == SQLITE_NOTADB) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private void report(Problem problem) {
+        log.error("[IntegrityVerifier] Anomalie détectée : {}", problem);
+        state.setProperty(problem.database() + ".lastProblem", problem.toString());
+        saveState();
+        try {
+            onProblem.accept(problem);
+        } catch (RuntimeException ex) {
+            log.warn("[IntegrityVerifier] Signalement impossible : {}", ex.getMessage());
+        }
+    }
+
+    /** Table vérifiée en dernier dans la passe en cours, ou {@code null} hors passe. */
+    synchronized String cursor(String target) {
+        return state.getProperty(target + ".cursor");
+    }
+
+    private void loadState() {
+        if (!Files.exists(stateFile)) {
+            return;
+        }
+        try (InputStream in = Files.newInputStream(stateFile)) {
+            state.load(in);
+        } catch (IOException | IllegalArgumentException ex) {
+            log.warn("[IntegrityVerifier] État illisible, nouvelle passe : {}", ex.getMessage());
+            state.clear();
+        }
+    }
+
+    private void saveState() {
+        Path tmp = stateFile.resolveSibling(stateFile.getFileName() + ".tmp");
+        try {
+            try (OutputStream out = Files.newOutputStream(tmp)) {
+                state.store(out, "Progression de la vérification d'intégrité");
+            }
+            Files.move(tmp, stateFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException ex) {
+            log.warn("[IntegrityVerifier] État non enregistré : {}", ex.getMessage());
+        }
+    }
+
+    @Override
+    public void close() {
+        synchronized (lifecycle) {
+            if (scheduler != null) {
+                scheduler.shutdownNow();
+                scheduler = null;
+            }
+        }
+    }
+
+    private static String oneLine(Throwable t) {
+        String m = t == null ? null : t.getMessage();
+        return m == null ? "<no-message>" : m.replace('\n', ' ').replace('\r', ' ');
+    }
+}
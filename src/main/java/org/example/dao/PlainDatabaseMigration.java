@@ -0,0 +1,352 @@
+package org.example.dao;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.function.DoubleConsumer;
+
+/**
+ * Chiffrement d'une ancienne base SQLite en clair, table par table et par paquets de lignes, vers
+ * {@code <base>.migrating}. Chaque paquet est validé avec sa position dans une table de suivi de la base d'arrivée :
+ * une migration interrompue (fermeture, annulation, panne) reprend là où elle s'était arrêtée.
+ * <p>
+ * Une fois tout copié, le nombre de lignes et une empreinte SHA-256 de chaque table sont comparés des deux côtés, puis
+ * index et déclencheurs sont créés et la table de suivi supprimée dans une même transaction. La base terminée est
+ * renommée {@code <base>.migrated}, l'ancienne gardée sous {@code <base>.plain.bak.<horodatage>}, et la nouvelle
+ * remplace l'ancienne d'un bloc. L'avancement (0 à 1, copie puis vérification) est signalé à {@code progress} ; une
+ * exception levée par celui-ci interrompt proprement la migration.
+ */
+public final class PlainDatabaseMigration {
+
+    private static final Logger log = LoggerFactory.getLogger(PlainDatabaseMigration.class);
+    static final int DEFAULT_CHUNK_ROWS = 5_000;
+    private static final String PROGRESS_TABLE = "__plain_migration";
+
+    private PlainDatabaseMigration() {
+    }
+
+    public static void run(Path dbFile, byte[] keyBytes, DoubleConsumer progress) throws SQLException {
+        run(dbFile, keyBytes, progress, DEFAULT_CHUNK_ROWS);
+    }
+
+    static void run(Path dbFile, byte[] keyBytes, DoubleConsumer progress, int chunkRows) throws SQLException {
+        Path building = sibling(dbFile, ".migrating");
+        Path built = sibling(dbFile, ".migrated");
+        long started = System.nanoTime();
+        if (Files.notExists(built)) {
+            PortableArchive.Manifest manifest;
+            try (Connection plain = DriverManager.getConnection("jdbc:sqlite:" + dbFile.toAbsolutePath());
+                 UserDB target = new UserDB(building.toString())) {
+                manifest = PortableArchive.readManifest(plain);
+                Connection c = openTarget(target, building, keyBytes);
+                Map<String, Long> positions = prepare(c, manifest);
+                Counter counter = new Counter(manifest.totalRows(), progress);
+                counter.done = positions.values().stream().mapToLong(Long::longValue).sum();
+                counter.report();
+                // Copie en BULK_IMPORT sur cette connexion privée ; la transaction finale repasse au profil durable.
+                StorageProfile.BULK_IMPORT.during(c, true, target.storageProfile(), bulk -> {
+                    for (PortableArchive.Table t : manifest.tables()) {
+                        copyTable(plain, bulk, t, chunkRows, counter);
+                    }
+                    for (PortableArchive.Table t : manifest.tables()) {
+                        verifyTable(plain, bulk, t, counter);
+                    }
+                    return null;
+                });
+                finish(c, manifest);
+            }
+            moveFile(building, built, StandardCopyOption.ATOMIC_MOVE);
+            PortableArchive.deleteWithSidecars(building);
+            log.info("[PlainDatabaseMigration] {} : {} ligne(s) chiffrées en {} ms", dbFile.getFileName(),
+                    manifest.totalRows(), (System.nanoTime() - started) / 1_000_000);
+        }
+        swap(dbFile, built);
+        progress.accept(1.0);
+    }
+
+    private static Path sibling(Path p, String suffix) {
+        return p.resolveSibling(p.getFileName() + suffix);
+    }
+
+    // Une base d'arrivée illisible avec cette clé (ou créée sans table de suivi) ne peut pas être reprise.
+    private static Connection openTarget(UserDB target, Path building, byte[] keyBytes) throws SQLException {
+        if (Files.exists(building)) {
+            try {
+                target.openPool(keyBytes);
+                if (hasTable(target.getConnection(), PROGRESS_TABLE)) {
+                    log.info("[PlainDatabaseMigration] reprise de {}", building.getFileName());
+                    return configure(target.getConnection());
+                }
+            } catch (SQLException unreadable) {
+                log.warn("[PlainDatabaseMigration] {} illisible, on repart de zéro", building.getFileName());
+            }
+            target.close();
+            PortableArchive.deleteWithSidecars(building);
+        }
+        target.openPool(keyBytes);
+        return configure(target.getConnection());
+    }
+
+    private static Connection configure(Connection c) throws SQLException {
+        try (Statement st = c.createStatement()) {
+            st.execute("PRAGMA foreign_keys=OFF");
+        }
+        return c;
+    }
+
+    /** Crée tables et suivi au premier passage ; retourne le nombre de lignes déjà copiées par table. */
+    private static Map<String, Long> prepare(Connection c, PortableArchive.Manifest manifest) throws SQLException {
+        if (!hasTable(c, PROGRESS_TABLE)) {
+            inTransaction(c, () -> {
+                try (Statement st = c.createStatement()) {
+                    st.execute("CREATE TABLE " + PROGRESS_TABLE
+                            + "(name TEXT PRIMARY KEY, last_rowid INTEGER NOT NULL, copied INTEGER NOT NULL)");
+                    for (PortableArchive.Table t : manifest.tables()) {
+                        if (t.createSql() != null) st.execute(t.createSql());
+                    }
+                }
+                try (PreparedStatement ps = c.prepareStatement("INSERT INTO " + PROGRESS_TABLE + " VALUES(?,?,0)")) {
+                    for (PortableArchive.Table t : manifest.tables()) {
+                        ps.setString(1, t.name());
+                        ps.setLong(2, Long.MIN_VALUE);
+                        ps.addBatch();
+                    }
+                    ps.executeBatch();
+                }
+            });
+        }
+        Map<String, Long> copied = new HashMap<>();
+        try (Statement st = c.createStatement();
+             ResultSet rs = st.executeQuery("SELECT name, copied FROM " + PROGRESS_TABLE)) {
+            while (rs.next()) copied.put(rs.getString(1), rs.getLong(2));
+        }
+        return copied;
+    }
+
+    private static void copyTable(Connection plain, Connection c, PortableArchive.Table t, int chunkRows, Counter counter)
+            throws SQLException {
+        long lastRowid;
+        try (PreparedStatement ps = c.prepareStatement("SELECT last_rowid FROM " + PROGRESS_TABLE + " WHERE name=?")) {
+            ps.setString(1, t.name());
+            try (ResultSet rs = ps.executeQuery()) {
+                lastRowid = rs.next() ? rs.getLong(1) : Long.MAX_VALUE;
+            }
+        }
+        if (lastRowid == Long.MAX_VALUE) return;
+        boolean rowid = hasRowid(t);
+        String cols = PortableArchive.columnList(t);
+        String select = rowid
+                ? "SELECT rowid," + cols + " FROM " + PortableArchive.quote(t.name()) + " WHERE rowid>? ORDER BY rowid LIMIT ?"
+                : "SELECT 0," + cols + " FROM " + PortableArchive.quote(t.name());
+        String insert = "INSERT INTO " + PortableArchive.quote(t.name()) + "(" + cols + ") VALUES("
+                + String.join(",", Collections.nCopies(t.columns().size(), "?")) + ")";
+        int n = t.columns().size();
+        while (true) {
+            long from = lastRowid;
+            long[] chunk = new long[2];
+            inTransaction(c, () -> {
+                if ("sqlite_sequence".equals(t.name()) && from == Long.MIN_VALUE) {
+                    // Alimentée par les insertions dans les tables AUTOINCREMENT : on remet les compteurs d'origine.
+                    try (Statement st = c.createStatement()) {
+                        st.execute("DELETE FROM sqlite_sequence");
+                    }
+                }
+                long last = from;
+                int rows = 0;
+                try (PreparedStatement read = plain.prepareStatement(select);
+                     PreparedStatement write = c.prepareStatement(insert)) {
+                    if (rowid) {
+                        read.setLong(1, from);
+                        read.setInt(2, chunkRows);
+                    }
+                    try (ResultSet rs = read.executeQuery()) {
+                        while (rs.next()) {
+                            last = rs.getLong(1);
+                            for (int i = 0; i < n; i++) write.setObject(i + 1, rs.getObject(i + 2));
+                            write.addBatch();
+                            rows++;
+                        }
+                    }
+                    write.executeBatch();
+                }
+                boolean complete = !rowid || rows < chunkRows;
+                try (PreparedStatement up = c.prepareStatement(
+                        "UPDATE " + PROGRESS_TABLE + " SET last_rowid=?, copied=copied+? WHERE name=?")) {
+                    up.setLong(1, complete ? Long.MAX_VALUE : last);
+                    up.setLong(2, rows);
+                    up.setString(3, t.name());
+                    up.executeUpdate();
+                }
+                chunk[0] = complete ? Long.MAX_VALUE : last;
+                chunk[1] = rows;
+            });
+            // Compté une fois le paquet validé : un arrêt pendant le rapport n'en perd rien.
+            counter.advance(chunk[1]);
+            lastRowid = chunk[0];
+            if (lastRowid == Long.MAX_VALUE) return;
+        }
+    }
+
+    private static void verifyTable(Connection plain, Connection c, PortableArchive.Table t, Counter counter)
+            throws SQLException {
+        Digest source = digest(plain, t, null);
+        Digest copy = digest(c, t, counter);
+        if (source.rows() != t.rows() || copy.rows() != t.rows()) {
+            throw new SQLException("Migration : " + copy.rows() + " ligne(s) sur " + t.rows() + " dans " + t.name());
+        }
+        if (!Arrays.equals(source.hash(), copy.hash())) {
+            throw new SQLException("Migration : contenu différent de l'original dans " + t.name());
+        }
+    }
+
+    private record Digest(long rows, byte[] hash) {
+    }
+
+    private static Digest digest(Connection c, PortableArchive.Table t, Counter counter) throws SQLException {
+        MessageDigest md;
+        try {
+            md = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 indisponible", e);
+        }
+        long rows = 0;
+        int n = t.columns().size();
+        try (DataOutputStream out = new DataOutputStream(new DigestOutputStream(OutputStream.nullOutputStream(), md));
+             Statement st = c.createStatement();
+             ResultSet rs = st.executeQuery("SELECT " + PortableArchive.columnList(t) + " FROM "
+                     + PortableArchive.quote(t.name()) + (hasRowid(t) ? " ORDER BY rowid" : ""))) {
+            while (rs.next()) {
+                for (int i = 1; i <= n; i++) PortableArchive.writeValue(out, rs.getObject(i));
+                if (++rows % DEFAULT_CHUNK_ROWS == 0 && counter != null) counter.advance(DEFAULT_CHUNK_ROWS);
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        if (counter != null) counter.advance(rows % DEFAULT_CHUNK_ROWS);
+        return new Digest(rows, md.digest());
+    }
+
+    // Index, déclencheurs et fin du suivi ensemble : la base est complète ou toujours reprenable.
+    private static void finish(Connection c, PortableArchive.Manifest manifest) throws SQLException {
+        inTransaction(c, () -> {
+            try (Statement st = c.createStatement()) {
+                for (String sql : manifest.schema()) st.execute(sql);
+                st.execute("DROP TABLE " + PROGRESS_TABLE);
+                st.execute("PRAGMA user_version=" + manifest.userVersion());
+            }
+        });
+        try (Statement st = c.createStatement()) {
+            st.execute("PRAGMA foreign_keys=ON");
+            try (ResultSet rs = st.executeQuery("PRAGMA foreign_key_check")) {
+                if (rs.next()) {
+                    log.warn("[PlainDatabaseMigration] clé étrangère orpheline dans {} (déjà présente dans l'original)",
+                            rs.getString(1));
+                }
+            }
+            st.execute("PRAGMA wal_checkpoint(TRUNCATE)");
+        }
+    }
+
+    /*
+     * L'original est d'abord lié (ou copié) sous son nom de sauvegarde, puis la base chiffrée le remplace par un
+     * renommage atomique : à aucun moment le chemin de la base ne manque.
+     */
+    private static void swap(Path dbFile, Path built) throws SQLException {
+        Path bak = sibling(dbFile, ".plain.bak." + System.currentTimeMillis());
+        try {
+            try {
+                Files.createLink(bak, dbFile);
+            } catch (IOException | UnsupportedOperationException noLink) {
+                Files.copy(dbFile, bak, StandardCopyOption.COPY_ATTRIBUTES);
+            }
+            for (String suffix : new String[]{"-wal", "-shm"}) {
+                Path sidecar = sibling(dbFile, suffix);
+                if (Files.exists(sidecar)) Files.move(sidecar, sibling(bak, suffix));
+            }
+        } catch (IOException e) {
+            throw new SQLException("Sauvegarde de l'ancienne base impossible : " + e.getMessage(), e);
+        }
+        moveFile(built, dbFile, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        log.info("[PlainDatabaseMigration] {} chiffrée (original : {})", dbFile.getFileName(), bak.getFileName());
+    }
+
+    private static void moveFile(Path from, Path to, StandardCopyOption... options) throws SQLException {
+        try {
+            Files.move(from, to, options);
+        } catch (IOException e) {
+            throw new SQLException("Mise en place de la base chiffrée impossible : " + e.getMessage(), e);
+        }
+    }
+
+    private static boolean hasRowid(PortableArchive.Table t) {
+        return t.createSql() == null || !t.createSql().toUpperCase(Locale.ROOT).replaceAll("\\s+", " ").contains("WITHOUT ROWID");
+    }
+
+    private static boolean hasTable(Connection c, String table) throws SQLException {
+        try (PreparedStatement ps = c.prepareStatement("SELECT 1 FROM sqlite_master WHERE type='table' AND name=?")) {
+            ps.setString(1, table);
+            try (ResultSet rs = ps.executeQuery()) {
+                return rs.next();
+            }
+        }
+    }
+
+    @FunctionalInterface
+    private interface Work {
+        void run() throws SQLException;
+    }
+
+    private static void inTransaction(Connection c, Work work) throws SQLException {
+        c.setAutoCommit(false);
+        try {
+            work.run();
+            c.commit();
+        } catch (SQLException | RuntimeException e) {
+            c.rollback();
+            throw e;
+        } finally {
+            c.setAutoCommit(true);
+        }
+    }
+
+    /** Lignes copiées puis vérifiées : chaque ligne compte deux fois sur le total. */
+    private static final class Counter {
+        private final long total;
+        private final DoubleConsumer progress;
+        private long done;
+
+        Counter(long rows, DoubleConsumer progress) {
+            this.total = 2 * rows;
+            this.progress = progress;
+        }
+
+        void advance(long rows) {
+            done += rows;
+            report();
+        }
+
+        void report() {
+            progress.accept(total == 0 ? 1.0 : Math.min(1.0, (double) done / total));
+        }
+    }
+}
@@ -0,0 +1,460 @@
+package org.example.dao;
+
+import org.example.security.CryptoUtils;
+import org.example.security.EncryptedField;
+import org.example.security.SealedStream;
+import org.example.util.TokenCrypto;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.crypto.SecretKey;
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.GeneralSecurityException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Archive portable d'une base utilisateur, pour passer d'une machine ou d'un compte à l'autre sans copier le fichier
+ * SQLCipher ni {@code auth.db}. Tout passe par un {@link SealedStream} protégé par une phrase de passe propre à
+ * l'archive :
+ * <pre>
+ *   'M' manifeste : version, user_version, tables (nom, CREATE, colonnes, nombre de lignes), index et déclencheurs
+ *   'T' nom, puis 'R' ligne… pour chaque table, puis 'E'
+ *   'Z' fin
+ * </pre>
+ * Les champs chiffrés avec la clé de données (descriptions de services, mot de passe SMTP) voyagent en clair à
+ * l'intérieur de l'archive et sont rescellés avec la clé de la base d'arrivée. Export et import se font ligne à ligne :
+ * la mémoire ne dépend pas de la taille de la base.
+ */
+public final class PortableArchive {
+
+    private static final Logger log = LoggerFactory.getLogger(PortableArchive.class);
+    private static final int FORMAT_VERSION = 1;
+    private static final int BATCH = 1_000;
+    private static final int COMMIT_EVERY = 100_000;
+    private static final int MAX_TEXT_BYTES = 256 << 20;
+
+    private static final byte MANIFEST = 'M';
+    private static final byte TABLE = 'T';
+    private static final byte ROW = 'R';
+    private static final byte TABLE_END = 'E';
+    private static final byte END = 'Z';
+
+    private static final byte NULL = 0;
+    private static final byte LONG = 1;
+    private static final byte DOUBLE = 2;
+    private static final byte TEXT = 3;
+    private static final byte BLOB = 4;
+
+    /** Colonnes scellées avec la clé de données : exportées en clair, rescellées à l'import. */
+    private static final Map<String, String> SEALED_COLUMNS = Map.of(
+            "services", "description",
+            "notification_settings", "smtp_password");
+
+    public record Table(String name, String createSql, List<String> columns, long rows) {
+    }
+
+    public record Manifest(int formatVersion, long exportedAt, int userVersion, List<Table> tables, List<String> schema) {
+        public long totalRows() {
+            return tables.stream().mapToLong(Table::rows).sum();
+        }
+    }
+
+    private PortableArchive() {
+    }
+
+    /**
+     * Écrit toute la base dans {@code target} (remplacé d'un bloc à la fin). La lecture se fait sur une connexion
+     * secondaire, dans une transaction tenue jusqu'au bout : l'archive est un instantané cohérent, pendant que
+     * l'application continue d'écrire. {@code dataKey} est la clé de données de la base.
+     */
+    public static Manifest export(UserDB source, SecretKey dataKey, Path target, char[] passphrase)
+            throws IOException, SQLException {
+        Objects.requireNonNull(dataKey, "dataKey");
+        Path part = target.resolveSibling(target.getFileName() + ".part");
+        long started = System.nanoTime();
+        try (Connection c = source.openSecondaryConnection()) {
+            c.setAutoCommit(false);
+            try (FileChannel ch = FileChannel.open(part, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING)) {
+                Manifest manifest = readManifest(c);
+                try (DataOutputStream out = new DataOutputStream(SealedStream.output(ch, passphrase))) {
+                    writeManifest(out, manifest);
+                    for (Table t : manifest.tables()) {
+                        exportTable(c, t, dataKey, out);
+                    }
+                    out.writeByte(END);
+                }
+                ch.force(true);
+                Files.move(part, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+                log.info("[PortableArchive] {} : {} table(s), {} ligne(s) exportées en {} ms", target.getFileName(),
+                        manifest.tables().size(), manifest.totalRows(), (System.nanoTime() - started) / 1_000_000);
+                return manifest;
+            } finally {
+                c.rollback();
+            }
+        } catch (IOException | SQLException | RuntimeException e) {
+            Files.deleteIfExists(part);
+            throw e;
+        }
+    }
+
+    /**
+     * Recrée une base neuve {@code target}, chiffrée avec {@code dataKey}, à partir d'une archive. La base est construite
+     * à côté puis mise en place d'un bloc ; {@code target} ne doit pas exister. Les index et déclencheurs ne sont créés
+     * qu'après le chargement, et le nombre de lignes de chaque table est comparé au manifeste.
+     */
+    public static Manifest restore(Path archive, char[] passphrase, Path target, SecretKey dataKey)
+            throws IOException, SQLException {
+        Objects.requireNonNull(dataKey, "dataKey");
+        if (Files.exists(target)) {
+            throw new IOException("La base de destination existe déjà : " + target.getFileName());
+        }
+        Path part = target.resolveSibling(target.getFileName() + ".part");
+        deleteWithSidecars(part);
+        long started = System.nanoTime();
+        Manifest manifest;
+        try (FileChannel ch = FileChannel.open(archive, StandardOpenOption.READ);
+             DataInputStream in = new DataInputStream(new BufferedInputStream(SealedStream.input(ch, passphrase), 1 << 16));
+             UserDB db = new UserDB(part.toString())) {
+            db.openPool(dataKey.getEncoded());
+            Connection c = db.getConnection();
+            manifest = readManifest(in);
+            try (Statement st = c.createStatement()) {
+                // Fichier neuf, supprimé en cas d'échec : inutile de journaliser le chargement.
+                st.execute("PRAGMA foreign_keys=OFF");
+                st.execute("PRAGMA journal_mode=OFF");
+                st.execute("PRAGMA synchronous=OFF");
+            }
+            c.setAutoCommit(false);
+            for (Table t : manifest.tables()) {
+                if (t.createSql() != null) {
+                    try (Statement st = c.createStatement()) {
+                        st.execute(t.createSql());
+                    }
+                }
+            }
+            for (Table t : manifest.tables()) {
+                restoreTable(c, t, dataKey, in);
+            }
+            if (in.readByte() != END) {
+                throw new IOException("Archive corrompue : fin attendue");
+            }
+            if (in.read() != -1) {
+                throw new IOException("Archive corrompue : données après la fin");
+            }
+            try (Statement st = c.createStatement()) {
+                for (String sql : manifest.schema()) {
+                    st.execute(sql);
+                }
+                st.execute("PRAGMA user_version=" + manifest.userVersion());
+            }
+            c.commit();
+            c.setAutoCommit(true);
+            try (Statement st = c.createStatement()) {
+                st.execute("PRAGMA foreign_keys=ON");
+                try (ResultSet rs = st.executeQuery("PRAGMA foreign_key_check")) {
+                    if (rs.next()) {
+                        throw new SQLException("Archive incohérente : clé étrangère invalide dans " + rs.getString(1));
+                    }
+                }
+                st.execute("PRAGMA journal_mode=WAL");
+            }
+        } catch (IOException | SQLException | RuntimeException e) {
+            deleteWithSidecars(part);
+            throw e;
+        }
+        Files.move(part, target, StandardCopyOption.ATOMIC_MOVE);
+        deleteWithSidecars(part);
+        log.info("[PortableArchive] {} : {} ligne(s) restaurées en {} ms", target.getFileName(), manifest.totalRows(),
+                (System.nanoTime() - started) / 1_000_000);
+        return manifest;
+    }
+
+    // ---------- Export ----------
+
+    static Manifest readManifest(Connection c) throws SQLException {
+        List<Table> tables = new ArrayList<>();
+        List<String> schema = new ArrayList<>();
+        try (Statement st = c.createStatement();
+             ResultSet rs = st.executeQuery(
+                     "SELECT type, name, sql FROM sqlite_master WHERE sql IS NOT NULL ORDER BY rowid")) {
+            while (rs.next()) {
+                String type = rs.getString(1);
+                String name = rs.getString(2);
+                if ("table".equals(type)) {
+                    if (!name.startsWith("sqlite_")) tables.add(new Table(name, rs.getString(3), null, 0));
+                } else {
+                    schema.add(rs.getString(3));
+                }
+            }
+        }
+        boolean hasSequence;
+        try (Statement st = c.createStatement();
+             ResultSet rs = st.executeQuery("SELECT 1 FROM sqlite_master WHERE name='sqlite_sequence'")) {
+            hasSequence = rs.next();
+        }
+        if (hasSequence) {
+            // Compteurs AUTOINCREMENT : la table existe dès qu'une table en a besoin, on n'en restaure que le contenu.
+            tables.add(new Table("sqlite_sequence", null, null, 0));
+        }
+        List<Table> counted = new ArrayList<>(tables.size());
+        for (Table t : tables) {
+            List<String> columns = new ArrayList<>();
+            try (Statement st = c.createStatement();
+                 ResultSet rs = st.executeQuery("PRAGMA table_info(" + quote(t.name()) + ")")) {
+                while (rs.next()) columns.add(rs.getString("name"));
+            }
+            long rows;
+            try (Statement st = c.createStatement();
+                 ResultSet rs = st.executeQuery("SELECT count(*) FROM " + quote(t.name()))) {
+                rows = rs.next() ? rs.getLong(1) : 0;
+            }
+            counted.add(new Table(t.name(), t.createSql(), List.copyOf(columns), rows));
+        }
+        int userVersion;
+        try (Statement st = c.createStatement(); ResultSet rs = st.executeQuery("PRAGMA user_version")) {
+            userVersion = rs.next() ? rs.getInt(1) : 0;
+        }
+        return new Manifest(FORMAT_VERSION, System.currentTimeMillis(), userVersion, List.copyOf(counted), List.copyOf(schema));
+    }
+
+    private static void writeManifest(DataOutputStream out, Manifest m) throws IOException {
+        out.writeByte(MANIFEST);
+        out.writeInt(m.formatVersion());
+        out.writeLong(m.exportedAt());
+        out.writeInt(m.userVersion());
+        out.writeInt(m.tables().size());
+        for (Table t : m.tables()) {
+            writeText(out, t.name());
+            writeText(out, t.createSql());
+            out.writeLong(t.rows());
+            out.writeInt(t.columns().size());
+            for (String col : t.columns()) writeText(out, col);
+        }
+        out.writeInt(m.schema().size());
+        for (String sql : m.schema()) writeText(out, sql);
+    }
+
+    private static int sealedColumn(Table t) {
+        String column = SEALED_COLUMNS.get(t.name());
+        return column == null ? -1 : t.columns().indexOf(column);
+    }
+
+    private static void exportTable(Connection c, Table t, SecretKey dataKey, DataOutputStream out)
+            throws SQLException, IOException {
+        out.writeByte(TABLE);
+        writeText(out, t.name());
+        int sealed = sealedColumn(t);
+        long rows = 0;
+        try (Statement st = c.createStatement()) {
+            st.setFetchSize(BATCH);
+            try (ResultSet rs = st.executeQuery("SELECT " + columnList(t) + " FROM " + quote(t.name()))) {
+                int n = t.columns().size();
+                while (rs.next()) {
+                    out.writeByte(ROW);
+                    for (int i = 0; i < n; i++) {
+                        Object value = rs.getObject(i + 1);
+                        writeValue(out, i == sealed ? openSealed(t.name(), value, dataKey) : value);
+                    }
+                    rows++;
+                }
+            }
+        }
+        if (rows != t.rows()) {
+            throw new SQLException("Table " + t.name() + " modifiée pendant l'export");
+        }
+        out.writeByte(TABLE_END);
+    }
+
+    private static Object openSealed(String table, Object stored, SecretKey key) {
+        if (stored == null || stored instanceof Number) return stored;
+        if ("notification_settings".equals(table)) {
+            return TokenCrypto.open(stored, key);
+        }
+        try {
+            return stored instanceof byte[] bytes
+                    ? EncryptedField.open(bytes, key)
+                    : CryptoUtils.decryptFromBase64(stored.toString(), key);
+        } catch (IllegalArgumentException legacyPlaintext) {
+            return stored.toString();
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Champ chiffré illisible dans " + table, e);
+        }
+    }
+
+    static void writeValue(DataOutputStream out, Object v) throws IOException {
+        if (v == null) {
+            out.writeByte(NULL);
+        } else if (v instanceof Integer || v instanceof Long || v instanceof Short || v instanceof Byte) {
+            out.writeByte(LONG);
+            out.writeLong(((Number) v).longValue());
+        } else if (v instanceof Number num) {
+            out.writeByte(DOUBLE);
+            out.writeDouble(num.doubleValue());
+        } else if (v instanceof byte[] bytes) {
+            out.writeByte(BLOB);
+            out.writeInt(bytes.length);
+            out.write(bytes);
+        } else {
+            out.writeByte(TEXT);
+            writeText(out, v.toString());
+        }
+    }
+
+    // ---------- Import ----------
+
+    private static Manifest readManifest(DataInputStream in) throws IOException {
+        if (in.readByte() != MANIFEST) {
+            throw new IOException("Archive corrompue : manifeste absent");
+        }
+        int version = in.readInt();
+        if (version != FORMAT_VERSION) {
+            throw new IOException("Format d'archive non pris en charge : " + version);
+        }
+        long exportedAt = in.readLong();
+        int userVersion = in.readInt();
+        int tableCount = in.readInt();
+        List<Table> tables = new ArrayList<>(tableCount);
+        for (int i = 0; i < tableCount; i++) {
+            String name = readText(in);
+            String create = readText(in);
+            long rows = in.readLong();
+            int cols = in.readInt();
+            List<String> columns = new ArrayList<>(cols);
+            for (int j = 0; j < cols; j++) columns.add(readText(in));
+            tables.add(new Table(name, create, List.copyOf(columns), rows));
+        }
+        int schemaCount = in.readInt();
+        List<String> schema = new ArrayList<>(schemaCount);
+        for (int i = 0; i < schemaCount; i++) schema.add(readText(in));
+        return new Manifest(version, exportedAt, userVersion, List.copyOf(tables), List.copyOf(schema));
+    }
+
+    private static void restoreTable(Connection c, Table t, SecretKey dataKey, DataInputStream in)
+            throws IOException, SQLException {
+        if (in.readByte() != TABLE || !t.name().equals(readText(in))) {
+            throw new IOException("Archive corrompue : table " + t.name() + " attendue");
+        }
+        int n = t.columns().size();
+        int sealed = sealedColumn(t);
+        String placeholders = String.join(",", Collections.nCopies(n, "?"));
+        if ("sqlite_sequence".equals(t.name())) {
+            // Déjà alimentée par les insertions dans les tables AUTOINCREMENT : on remet les compteurs d'origine.
+            try (Statement st = c.createStatement()) {
+                st.execute("DELETE FROM sqlite_sequence");
+            }
+        }
+        long rows = 0;
+        try (PreparedStatement ps = c.prepareStatement(
+                "INSERT INTO " + quote(t.name()) + "(" + columnList(t) + ") VALUES(" + placeholders + ")")) {
+            byte tag;
+            while ((tag = in.readByte()) == ROW) {
+                for (int i = 0; i < n; i++) {
+                    Object value = readValue(in);
+                    ps.setObject(i + 1, i == sealed ? reseal(t.name(), value, dataKey) : value);
+                }
+                ps.addBatch();
+                if (++rows % BATCH == 0) ps.executeBatch();
+                if (rows % COMMIT_EVERY == 0) c.commit();
+            }
+            if (tag != TABLE_END) {
+                throw new IOException("Archive corrompue dans la table " + t.name());
+            }
+            ps.executeBatch();
+        }
+        if (rows != t.rows()) {
+            throw new IOException("Archive incomplète : " + rows + " ligne(s) sur " + t.rows() + " dans " + t.name());
+        }
+    }
+
+    private static Object reseal(String table, Object plain, SecretKey key) {
+        if (!(plain instanceof String)) return plain;
+        if ("notification_settings".equals(table)) {
+            return TokenCrypto.seal(plain.toString(), key);
+        }
+        try {
+            return EncryptedField.seal(plain.toString(), key);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Chiffrement impossible dans " + table, e);
+        }
+    }
+
+    private static Object readValue(DataInputStream in) throws IOException {
+        byte type = in.readByte();
+        return switch (type) {
+            case NULL -> null;
+            case LONG -> in.readLong();
+            case DOUBLE -> in.readDouble();
+            case TEXT -> readText(in);
+            case BLOB -> {
+                int len = in.readInt();
+                if (len < 0 || len > MAX_TEXT_BYTES) throw new IOException("Archive corrompue : taille invalide");
+                byte[] b = new byte[len];
+                in.readFully(b);
+                yield b;
+            }
+            default -> throw new IOException("Archive corrompue : type de valeur " + type);
+        };
+    }
+
+    // ---------- Commun ----------
+
+    private static void writeText(DataOutputStream out, String s) throws IOException {
+        if (s == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] b = s.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(b.length);
+        out.write(b);
+    }
+
+    private static String readText(DataInputStream in) throws IOException {
+        int len = in.readInt();
+        if (len == -1) return null;
+        if (len < 0 || len > MAX_TEXT_BYTES) throw new IOException("Archive corrompue : taille invalide");
+        byte[] b = new byte[len];
+        in.readFully(b);
+        return new String(b, StandardCharsets.UTF_8);
+    }
+
+    static String columnList(Table t) {
+        StringBuilder sb = new StringBuilder();
+        for (String col : t.columns()) {
+            if (!sb.isEmpty()) sb.append(',');
+            sb.append(quote(col));
+        }
+        return sb.toString();
+    }
+
+    static String quote(String identifier) {
+        return '"' + identifier.replace("\"", "\"\"") + '"';
+    }
+
+    static void deleteWithSidecars(Path p) {
+        for (String suffix : new String[]{"", "-wal", "-shm", "-journal"}) {
+            try {
+                Files.deleteIfExists(p.resolveSibling(p.getFileName() + suffix));
+            } catch (IOException ignore) {
+            }
+        }
+    }
+}
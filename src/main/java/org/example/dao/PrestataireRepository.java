@@ -0,0 +1,30 @@
+package org.example.dao;
+
+import org.example.model.Prestataire;
+
+import java.util.List;
+
+/** Accès aux prestataires. Un nom déjà pris lève {@link IllegalArgumentException}. */
+public interface PrestataireRepository {
+
+    /**
+     * Prestataires dans l'ordre alphabétique français (accents et casse ignorés, voir {@link org.example.util.SortKeys}),
+     * filtrés sur nom/société/e-mail/téléphone, avec leur nombre de factures impayées.
+     */
+    List<Prestataire> list(String filter);
+
+    /**
+     * Page suivante de {@link #list(String)} : au plus {@code limit} prestataires ({@code -1} : sans limite) placés après
+     * {@code after} ({@code null} : depuis le début). La pagination repose sur la clé de tri, pas sur un décalage.
+     */
+    List<Prestataire> listPage(String filter, Prestataire after, int limit);
+
+    Prestataire findPrestataire(int id);
+
+    int insertPrestataire(Prestataire p);
+
+    void updatePrestataire(Prestataire p);
+
+    /** Supprime aussi ses services, factures et rappels. */
+    void deletePrestataire(int id);
+}
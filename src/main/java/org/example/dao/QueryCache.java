@@ -0,0 +1,71 @@
+package org.example.dao;
+
+import java.sql.SQLException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Cache de résultats de lecture, valable tant que la base n'a reçu aucun commit.
+ * <p>
+ * Chaque lecture fournit un {@link Stamp} (compteur de commits du DAO + {@code PRAGMA data_version} pour les commits
+ * externes) ; dès qu'il change, tout le cache est vidé, sans invalidation par table. Les valeurs mises en cache
+ * doivent être immuables : l'appelant renvoie des copies des objets modifiables.
+ */
+final class QueryCache {
+
+    /** {@code dataVersion} n'a de sens que sur une même connexion physique, d'où sa présence dans l'empreinte. */
+    record Stamp(long commits, Object connection, long dataVersion) {
+    }
+
+    @FunctionalInterface
+    interface Loader<T> {
+        T load() throws SQLException;
+    }
+
+    private final Map<Object, Object> entries = new ConcurrentHashMap<>();
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private Stamp stamp;
+
+    /** Valeur en cache pour {@code key}, ou chargée puis mémorisée. Sans empreinte ({@code null}), pas de cache. */
+    @SuppressWarnings("unchecked")
+    <T> T get(Stamp current, Object key, Loader<T> loader) throws SQLException {
+        if (current == null) {
+            return loader.load();
+        }
+        synchronized (this) {
+            if (!current.equals(stamp)) {
+                entries.clear();
+                stamp = current;
+            }
+        }
+        Object cached = entries.get(key);
+        if (cached != null) {
+            hits.incrementAndGet();
+            return (T) cached;
+        }
+        misses.incrementAndGet();
+        T loaded = loader.load();
+        synchronized (this) {
+            // Un commit arrivé pendant le chargement a déjà changé l'empreinte : on ne publie pas.
+            if (loaded != null && current.equals(stamp)) {
+                entries.put(key, loaded);
+            }
+        }
+        return loaded;
+    }
+
+    synchronized void clear() {
+        entries.clear();
+        stamp = null;
+    }
+
+    long hits() {
+        return hits.get();
+    }
+
+    long misses() {
+        return misses.get();
+    }
+}
@@ -0,0 +1,37 @@
+package org.example.dao;
+
+import org.example.model.Rappel;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+/** File et historique des rappels (e-mails de relance). */
+public interface RappelRepository {
+
+    void addRappel(Rappel r);
+
+    /** Insère le rappel sauf si sa clé de job existe déjà ; retourne {@code true} s'il a été ajouté. */
+    boolean enqueueRappelIfAbsent(Rappel r);
+
+    Optional<Rappel> findRappelByJobKey(String jobKey);
+
+    /** Rappels en attente ou en échec dont la date d'envoi est atteinte. */
+    List<Rappel> rappelsAEnvoyer();
+
+    /** Date d'envoi du prochain rappel en attente ou en échec, échue ou non ; {@code null} si la file est vide. */
+    LocalDateTime prochainRappel();
+
+    /** Derniers rappels, du plus récent au plus ancien. */
+    List<Rappel> rappelsHistorique(int limit);
+
+    int countRappelsByStatus(String status);
+
+    void markRappelEnvoye(int id);
+
+    void markRappelFailed(int id, String error, LocalDateTime nextAttemptAt);
+
+    void markRappelSkipped(int id, String reason);
+
+    void skipPendingRappelsForFacture(int factureId, String reason);
+}
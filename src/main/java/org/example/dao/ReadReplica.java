@@ -0,0 +1,277 @@
+package org.example.dao;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Copie en mémoire (non chiffrée, jamais écrite sur disque) de la base utilisateur, réservée aux lectures analytiques.
+ * <p>
+ * La copie est alimentée par une connexion secondaire sur le fichier source, à laquelle la base mémoire est attachée.
+ * Avant chaque lecture, les lignes validées depuis le dernier rafraîchissement (voir {@link CommitTracker}) sont
+ * rejouées ; un changement de schéma ou une écriture externe provoque une reconstruction complète.
+ */
+final class ReadReplica implements AutoCloseable {
+
+    private static final Logger log = LoggerFactory.getLogger(ReadReplica.class);
+    private static final int ROWID_CHUNK = 500;
+    private static final AtomicInteger SEQ = new AtomicInteger();
+
+    private final CommitTracker commits;
+    private final Connection source;
+    private final Connection memory;
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Set<String> rowidTables = new HashSet<>();
+    private long seenVersion = -1;
+    private long seenDataVersion = -1;
+    private long seenSchemaVersion = -1;
+    private boolean closed;
+
+    ReadReplica(ConnectionProvider sourceConnections, CommitTracker commits) throws SQLException {
+        this.commits = commits;
+        String uri = "file:replica-" + SEQ.incrementAndGet() + "-" + UUID.randomUUID() + "?mode=memory&cache=shared";
+        this.memory = DriverManager.getConnection("jdbc:sqlite:" + uri);
+        Connection src = null;
+        try {
+            src = sourceConnections.getConnection();
+            try (Statement st = src.createStatement()) {
+                // La copie ne doit pas déclencher de cascades : seules les lignes rejouées changent.
+                st.execute("PRAGMA foreign_keys=OFF");
+                st.execute("ATTACH DATABASE '" + uri + "' AS replica KEY ''");
+            }
+        } catch (SQLException | RuntimeException ex) {
+            if (src != null) {
+                try { src.close(); } catch (Exception ignore) {}
+            }
+            try { memory.close(); } catch (Exception ignore) {}
+            throw ex;
+        }
+        this.source = src;
+        commits.trackRows(true);
+        lock.writeLock().lock();
+        try {
+            rebuild();
+        } catch (SQLException | RuntimeException ex) {
+            lock.writeLock().unlock();
+            close();
+            throw ex;
+        }
+        lock.writeLock().unlock();
+    }
+
+    /**
+     * Connexion de lecture sur la copie, rafraîchie au besoin. Le verrou de lecture est relâché par {@code close()}.
+     */
+    Connection connection() throws SQLException {
+        if (lock.getReadHoldCount() > 0) {
+            // Lecture imbriquée sur le même thread : pas de rafraîchissement (pas de montée de verrou possible).
+            lock.readLock().lock();
+            return readView();
+        }
+        lock.writeLock().lock();
+        try {
+            if (closed) {
+                throw new SQLException("Réplique de lecture fermée");
+            }
+            refreshIfStale();
+            lock.readLock().lock();
+        } finally {
+            lock.writeLock().unlock();
+        }
+        return readView();
+    }
+
+    private Connection readView() {
+        AtomicBoolean released = new AtomicBoolean();
+        InvocationHandler h = (proxy, m, a) -> {
+            if ("close".equals(m.getName())) {
+                if (released.compareAndSet(false, true)) {
+                    lock.readLock().unlock();
+                }
+                return null;
+            }
+            try {
+                return m.invoke(memory, a);
+            } catch (InvocationTargetException ex) {
+                throw ex.getTargetException();
+            }
+        };
+        return (Connection) Proxy.newProxyInstance(ReadReplica.class.getClassLoader(), new Class<?>[]{Connection.class}, h);
+    }
+
+    private void refreshIfStale() throws SQLException {
+        long version = commits.version();
+        long dataVersion = pragma("data_version");
+        long schemaVersion = pragma("main.schema_version");
+        if (version == seenVersion && dataVersion == seenDataVersion) {
+            return;
+        }
+        if (schemaVersion != seenSchemaVersion) {
+            rebuild();
+            return;
+        }
+        if (version == seenVersion) {
+            // Commit hors de ce DAO (autre processus, rekey...) : pas de détail ligne à ligne.
+            rebuild();
+            return;
+        }
+        Map<String, Set<Long>> changes = commits.drainChanges();
+        if (changes == null) {
+            rebuild();
+            return;
+        }
+        seenVersion = version;
+        seenDataVersion = dataVersion;
+        replay(changes);
+    }
+
+    private void rebuild() throws SQLException {
+        long started = System.nanoTime();
+        seenVersion = commits.version();
+        seenDataVersion = pragma("data_version");
+        commits.drainChanges();
+        List<String> tables = new ArrayList<>();
+        List<String> ddl = new ArrayList<>();
+        boolean auto = source.getAutoCommit();
+        source.setAutoCommit(false);
+        try (Statement st = source.createStatement()) {
+            seenSchemaVersion = pragma("main.schema_version");
+            try (ResultSet rs = st.executeQuery("SELECT name FROM replica.sqlite_master WHERE type='table' AND name NOT LIKE 'sqlite_%'")) {
+                while (rs.next()) tables.add(rs.getString(1));
+            }
+            for (String t : tables) {
+                st.execute("DROP TABLE IF EXISTS replica." + quote(t));
+            }
+            tables.clear();
+            try (ResultSet rs = st.executeQuery("""
+                    SELECT type, name, sql FROM main.sqlite_master
+                     WHERE sql IS NOT NULL AND name NOT LIKE 'sqlite_%' AND type IN ('table','index')
+                     ORDER BY CASE type WHEN 'table' THEN 0 ELSE 1 END""")) {
+                while (rs.next()) {
+                    if ("table".equals(rs.getString(1))) tables.add(rs.getString(2));
+                    ddl.add(rs.getString(3));
+                }
+            }
+            source.commit();
+        } catch (SQLException ex) {
+            source.rollback();
+            throw ex;
+        } finally {
+            source.setAutoCommit(auto);
+        }
+        // Le DDL est rejoué sur la connexion mémoire : les noms non qualifiés y désignent la copie.
+        try (Statement st = memory.createStatement()) {
+            for (String sql : ddl) st.execute(sql);
+        }
+        source.setAutoCommit(false);
+        try (Statement st = source.createStatement()) {
+            rowidTables.clear();
+            for (String t : tables) {
+                st.execute("INSERT INTO replica." + quote(t) + " SELECT * FROM main." + quote(t));
+                if (hasRowidAlias(st, t)) rowidTables.add(t);
+            }
+            source.commit();
+        } catch (SQLException ex) {
+            source.rollback();
+            throw ex;
+        } finally {
+            source.setAutoCommit(auto);
+        }
+        log.debug("[ReadReplica] rebuilt {} tables in {} ms", tables.size(), (System.nanoTime() - started) / 1_000_000);
+    }
+
+    private void replay(Map<String, Set<Long>> changes) throws SQLException {
+        if (changes.isEmpty()) {
+            return;
+        }
+        if (!rowidTables.containsAll(changes.keySet())) {
+            // SELECT * ne recopie le rowid que s'il est aliasé par une colonne INTEGER PRIMARY KEY.
+            rebuild();
+            return;
+        }
+        boolean auto = source.getAutoCommit();
+        source.setAutoCommit(false);
+        try (Statement st = source.createStatement()) {
+            for (Map.Entry<String, Set<Long>> e : changes.entrySet()) {
+                String t = quote(e.getKey());
+                Iterator<Long> it = e.getValue().iterator();
+                while (it.hasNext()) {
+                    StringBuilder ids = new StringBuilder();
+                    for (int i = 0; i < ROWID_CHUNK && it.hasNext(); i++) {
+                        if (i > 0) ids.append(',');
+                        ids.append(it.next().longValue());
+                    }
+                    st.executeUpdate("DELETE FROM replica." + t + " WHERE rowid IN (" + ids + ")");
+                    st.executeUpdate("INSERT INTO replica." + t + " SELECT * FROM main." + t + " WHERE rowid IN (" + ids + ")");
+                }
+            }
+            source.commit();
+        } catch (SQLException ex) {
+            source.rollback();
+            log.warn("[ReadReplica] incremental refresh failed, rebuilding: {}", ex.getMessage());
+            source.setAutoCommit(auto);
+            rebuild();
+            return;
+        }
+        source.setAutoCommit(auto);
+    }
+
+    private static boolean hasRowidAlias(Statement st, String table) throws SQLException {
+        int pk = 0;
+        boolean integer = false;
+        try (ResultSet rs = st.executeQuery("PRAGMA main.table_info(" + quote(table) + ")")) {
+            while (rs.next()) {
+                if (rs.getInt("pk") > 0) {
+                    pk++;
+                    integer = "INTEGER".equalsIgnoreCase(rs.getString("type"));
+                }
+            }
+        }
+        return pk == 1 && integer;
+    }
+
+    private long pragma(String name) throws SQLException {
+        try (Statement st = source.createStatement();
+             ResultSet rs = st.executeQuery("PRAGMA " + name)) {
+            return rs.next() ? rs.getLong(1) : 0L;
+        }
+    }
+
+    private static String quote(String identifier) {
+        return '"' + identifier.replace("\"", "\"\"") + '"';
+    }
+
+    @Override
+    public void close() {
+        lock.writeLock().lock();
+        try {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            commits.trackRows(false);
+            try { source.close(); } catch (Exception ignore) {}
+            try { memory.close(); } catch (Exception ignore) {}
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+}
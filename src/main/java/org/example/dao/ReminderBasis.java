@@ -0,0 +1,47 @@
+package org.example.dao;
+
+import org.example.model.NotificationSettings;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+
+/**
+ * Réglages dont dépend la date de prochaine relance d'une facture. Côté SQLite la formule est
+ * {@code DB.NEXT_REMINDER_EXPR} ; {@link #nextReminderTs} en est l'équivalent Java pour les stockages en mémoire.
+ */
+record ReminderBasis(int leadDays, int hour, int minute, int repeatHours, boolean dueDayEmails) {
+
+    private static final long DAY = 86_400L;
+
+    static ReminderBasis of(NotificationSettings s) {
+        return new ReminderBasis(s.leadDays(), s.reminderHour(), s.reminderMinute(), s.repeatEveryHours(),
+                s.emailEnabled() || (s.supplierEmailEnabled() && s.supplierSendOnDueDate()));
+    }
+
+    int bind(PreparedStatement ps) throws SQLException {
+        ps.setInt(1, leadDays);
+        ps.setInt(2, hour);
+        ps.setInt(3, minute);
+        ps.setInt(4, repeatHours);
+        ps.setInt(5, dueDayEmails ? 1 : 0);
+        return 6;
+    }
+
+    Long nextReminderTs(boolean paye, Long echeanceTs, boolean preavisEnvoye, Long lastReminderTs) {
+        if (paye || echeanceTs == null) {
+            return null;
+        }
+        long dayStart = echeanceTs - echeanceTs % DAY;
+        long dueDayReminder = dayStart + hour * 3600L + minute * 60L;
+        if (!preavisEnvoye) {
+            return dueDayReminder - leadDays * DAY;
+        }
+        Long dueDay = dueDayEmails && (lastReminderTs == null || lastReminderTs < dueDayReminder) ? dueDayReminder : null;
+        Long repeat = repeatHours > 0
+                ? Math.max(dayStart, lastReminderTs == null ? 0L : lastReminderTs + repeatHours * 3600L)
+                : null;
+        if (dueDay == null) return repeat;
+        if (repeat == null) return dueDay;
+        return Math.min(dueDay, repeat);
+    }
+}
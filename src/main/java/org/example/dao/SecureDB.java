@@ -2,94 +2,132 @@ package org.example.dao;
 
 import org.example.model.ServiceRow;
 import org.example.security.CryptoUtils;
+import org.example.security.EncryptedField;
 
 import javax.crypto.SecretKey;
-import java.nio.charset.StandardCharsets;
 import java.security.GeneralSecurityException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+import java.util.stream.IntStream;
 
+/**
+ * {@link DB} dont les descriptions de services sont chiffrées, stockées en {@code BLOB} au format
+ * {@link EncryptedField}. Les valeurs des versions précédentes (Base64 ou texte clair) restent lisibles ;
+ * {@link ServiceEncryptionMigration} les convertit en tâche de fond.
+ */
 public final class SecureDB extends DB {
+    /** En dessous, répartir le travail coûte plus que déchiffrer sur le thread appelant. */
+    static final int PARALLEL_THRESHOLD = 512;
+
     private final int userId;
-    private final SecretKey key;
+    private final Supplier<SecretKey> keys;
 
     public SecureDB(ConnectionProvider provider, int userId, SecretKey key) {
+        this(provider, userId, () -> key);
+    }
+
+    /**
+     * La clé est relue à chaque opération : avec {@link org.example.security.SessionLock#key()}, un accès pendant que
+     * la session est verrouillée échoue au lieu d'utiliser une copie gardée en mémoire.
+     */
+    public SecureDB(ConnectionProvider provider, int userId, Supplier<SecretKey> keys) {
         super(provider);
         this.userId = userId;
-        this.key = key;
+        this.keys = keys;
     }
 
     @Override
-    public void addService(int prestataireId, String plainDescription) {
+    protected Object encodeServiceDescription(String plain) {
         try {
-            super.addService(prestataireId, encryptDescription(plainDescription));
+            return EncryptedField.seal(plain, keys.get());
         } catch (GeneralSecurityException e) {
             throw new RuntimeException(e);
         }
     }
 
+    /**
+     * Déchiffre dans l'ordre reçu. Au-delà de {@link #PARALLEL_THRESHOLD} lignes, le travail est réparti sur un pool
+     * fork-join borné (propriété {@code app.decryptThreads}, par défaut le nombre de cœurs, au plus 8) ; chaque ligne
+     * est écrite à son indice, l'ordre ne dépend donc pas du découpage.
+     */
     @Override
-    public int insertService(int prestataireId, ServiceRow service) {
-        try {
-            return super.insertService(prestataireId, encryptRow(service));
-        } catch (GeneralSecurityException e) {
-            throw new RuntimeException(e);
+    protected List<ServiceRow> decodeServices(List<StoredService> stored) {
+        int n = stored.size();
+        ServiceRow[] decrypted = new ServiceRow[n];
+        if (n == 0) return new ArrayList<>();
+        SecretKey key = keys.get();
+        if (n < PARALLEL_THRESHOLD || DecryptPool.PARALLELISM < 2) {
+            for (int i = 0; i < n; i++) decodeInto(stored, i, decrypted, key);
+        } else {
+            try {
+                DecryptPool.POOL.submit(() -> IntStream.range(0, n).parallel()
+                        .forEach(i -> decodeInto(stored, i, decrypted, key))).get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException(e);
+            } catch (ExecutionException e) {
+                throw e.getCause() instanceof RuntimeException re ? re : new RuntimeException(e.getCause());
+            }
         }
+        return new ArrayList<>(Arrays.asList(decrypted));
     }
 
-    @Override
-    public void updateService(ServiceRow service) {
+    /**
+     * Lecture seule : une description encore en texte (Base64 ou clair d'avant le chiffrement) est rendue telle quelle,
+     * sa conversion revient à {@link ServiceEncryptionMigration}.
+     */
+    private static void decodeInto(List<StoredService> stored, int i, ServiceRow[] out, SecretKey key) {
+        StoredService row = stored.get(i);
         try {
-            super.updateService(encryptRow(service));
+            String plain = row.description() instanceof byte[] bytes
+                    ? EncryptedField.open(bytes, key)
+                    : CryptoUtils.decryptFromBase64((String) row.description(), key);
+            out[i] = new ServiceRow(row.id(), plain, row.date(), row.status());
+        } catch (IllegalArgumentException legacyPlaintext) {
+            out[i] = new ServiceRow(row.id(), (String) row.description(), row.date(), row.status());
         } catch (GeneralSecurityException e) {
             throw new RuntimeException(e);
         }
     }
 
-    @Override
-    public List<ServiceRow> services(int prestataireId) {
-        List<ServiceRow> encrypted = super.services(prestataireId);
-        List<ServiceRow> decrypted = new ArrayList<>(encrypted.size());
-        for (ServiceRow row : encrypted) {
-            try {
-                var blob = CryptoUtils.base64ToBlob(row.desc());
-                String plain = new String(CryptoUtils.decrypt(blob, key), StandardCharsets.UTF_8);
-                decrypted.add(new ServiceRow(row.id(), plain, row.date(), row.status()));
-            } catch (IllegalArgumentException ex) {
-                String plain = row.desc();
-                decrypted.add(new ServiceRow(row.id(), plain, row.date(), row.status()));
-                upgradeLegacyRow(row, plain);
-            } catch (GeneralSecurityException e) {
-                throw new RuntimeException(e);
-            }
-        }
-        return decrypted;
+    private static final class DecryptPool {
+        private static final AtomicInteger SEQ = new AtomicInteger();
+        static final int PARALLELISM = Math.max(1, Integer.getInteger("app.decryptThreads",
+                Math.min(8, Runtime.getRuntime().availableProcessors())));
+        static final ForkJoinPool POOL = new ForkJoinPool(PARALLELISM, pool -> {
+            ForkJoinWorkerThread t = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+            t.setName("decrypt-" + SEQ.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        }, null, false);
     }
 
-    private void upgradeLegacyRow(ServiceRow row, String plain) {
-        if (row.id() == null) {
-            return;
-        }
+    /**
+     * Forme binaire d'une description stockée en texte : chiffré Base64 des versions précédentes, ou clair d'avant le
+     * chiffrement. Utilisé par {@link ServiceEncryptionMigration}.
+     *
+     * @throws GeneralSecurityException si la valeur ressemble à un chiffré mais ne s'ouvre pas avec cette clé
+     */
+    byte[] upgradeStoredDescription(String stored) throws GeneralSecurityException {
+        SecretKey key = keys.get();
+        String plain;
         try {
-            ServiceRow reencrypted = encryptRow(new ServiceRow(row.id(), plain, row.date(), row.status()));
-            super.updateService(reencrypted);
-        } catch (GeneralSecurityException | RuntimeException ignore) {
-            // best-effort upgrade; ignore failures so the caller still sees the plaintext value
+            plain = CryptoUtils.decryptFromBase64(stored, key);
+        } catch (IllegalArgumentException notBase64) {
+            plain = stored;
         }
-    }
-
-    private String encryptDescription(String plainDescription) throws GeneralSecurityException {
-        var blob = CryptoUtils.encrypt(plainDescription.getBytes(StandardCharsets.UTF_8), key);
-        return CryptoUtils.blobToBase64(blob);
-    }
-
-    private ServiceRow encryptRow(ServiceRow service) throws GeneralSecurityException {
-        return new ServiceRow(service.id(), encryptDescription(service.desc()), service.date(), service.status());
+        return EncryptedField.seal(plain, key);
     }
 
     @Override
     protected SecretKey notificationSecretKey() {
-        return key;
+        return keys.get();
     }
 
     public int userId() {
@@ -0,0 +1,200 @@
+package org.example.dao;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.security.GeneralSecurityException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Convertit au format binaire chiffré ({@link org.example.security.EncryptedField}) les descriptions de services encore
+ * stockées en texte : clair d'avant le chiffrement ou Base64 des versions précédentes.
+ * <p>
+ * Le travail avance par lots d'identifiants croissants, chacun dans sa propre transaction sur une connexion dédiée. Le
+ * curseur ({@code schema_migrations.last_id}) est validé avec le lot : après un arrêt brutal, la reprise repart du
+ * dernier lot écrit. Une fois la passe terminée, {@code completed_ts} est renseigné et les démarrages suivants
+ * n'interrogent plus la table des services. Si des descriptions n'ont pu être converties (autre clé, valeur abîmée), la
+ * passe n'est pas marquée terminée : le curseur revient au début et le prochain démarrage les retente.
+ */
+public final class ServiceEncryptionMigration {
+
+    private static final Logger log = LoggerFactory.getLogger(ServiceEncryptionMigration.class);
+    public static final String NAME = "services.description.encrypted-blob";
+    private static final long PAUSE_MS = 20;
+
+    /** {@code remaining} : lignes en texte restant au-delà du curseur. */
+    public record Progress(int converted, int remaining, boolean done) {
+    }
+
+    private record Pending(int id, String text) {
+    }
+
+    private final SecureDB db;
+    private final ConnectionProvider connections;
+    private final int chunkSize;
+
+    /** {@code connections} doit fournir une connexion distincte de celle de l'interface (transactions par lot). */
+    public ServiceEncryptionMigration(SecureDB db, ConnectionProvider connections, int chunkSize) {
+        this.db = db;
+        this.connections = connections;
+        this.chunkSize = Math.max(1, chunkSize);
+    }
+
+    public boolean isComplete() {
+        try (Connection c = connections.getConnection()) {
+            return readState(c).completed;
+        } catch (SQLException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /** Exécute ou reprend la migration jusqu'au bout ; à appeler hors du thread JavaFX. */
+    public Progress run(Consumer<Progress> listener) {
+        Consumer<Progress> progress = listener == null ? p -> { } : listener;
+        try (Connection c = connections.getConnection()) {
+            State state = readState(c);
+            if (state.completed) {
+                return new Progress(state.converted, 0, true);
+            }
+            int skipped = 0;
+            while (true) {
+                List<Pending> batch = nextBatch(c, state.lastId);
+                if (batch.isEmpty()) {
+                    break;
+                }
+                List<byte[]> sealed = new ArrayList<>(batch.size());
+                for (Pending p : batch) {
+                    try {
+                        sealed.add(db.upgradeStoredDescription(p.text()));
+                    } catch (GeneralSecurityException e) {
+                        // Chiffré avec une autre clé ou abîmé : on le laisse tel quel plutôt que de l'écraser.
+                        sealed.add(null);
+                        skipped++;
+                    }
+                }
+                int written = writeBatch(c, batch, sealed);
+                state = new State(batch.get(batch.size() - 1).id(), state.converted + written, false);
+                Progress step = new Progress(state.converted, remaining(c, state.lastId), false);
+                progress.accept(step);
+                try {
+                    Thread.sleep(PAUSE_MS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    log.info("[ServiceEncryptionMigration] Interrompue, reprise au prochain démarrage");
+                    return step;
+                }
+            }
+            if (skipped > 0) {
+                log.warn("[ServiceEncryptionMigration] {} description(s) illisible(s) laissée(s) en l'état, nouvel essai"
+                        + " au prochain démarrage", skipped);
+                rewind(c);
+                Progress partial = new Progress(state.converted, skipped, false);
+                progress.accept(partial);
+                return partial;
+            }
+            markCompleted(c);
+            log.info("[ServiceEncryptionMigration] Terminé : {} description(s) converties", state.converted);
+            Progress done = new Progress(state.converted, 0, true);
+            progress.accept(done);
+            return done;
+        } catch (SQLException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private List<Pending> nextBatch(Connection c, int lastId) throws SQLException {
+        List<Pending> batch = new ArrayList<>();
+        try (PreparedStatement ps = c.prepareStatement(
+                "SELECT id, description FROM services WHERE id>? AND typeof(description)='text' ORDER BY id LIMIT ?")) {
+            ps.setInt(1, lastId);
+            ps.setInt(2, chunkSize);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) batch.add(new Pending(rs.getInt(1), rs.getString(2)));
+            }
+        }
+        return batch;
+    }
+
+    private int writeBatch(Connection c, List<Pending> batch, List<byte[]> sealed) throws SQLException {
+        boolean auto = c.getAutoCommit();
+        c.setAutoCommit(false);
+        try {
+            int written = 0;
+            // La description n'est remplacée que si personne ne l'a modifiée depuis la lecture du lot.
+            try (PreparedStatement up = c.prepareStatement("UPDATE services SET description=? WHERE id=? AND description=?")) {
+                for (int i = 0; i < batch.size(); i++) {
+                    if (sealed.get(i) == null) continue;
+                    up.setBytes(1, sealed.get(i));
+                    up.setInt(2, batch.get(i).id());
+                    up.setString(3, batch.get(i).text());
+                    written += up.executeUpdate();
+                }
+            }
+            try (PreparedStatement st = c.prepareStatement("""
+                    INSERT INTO schema_migrations(name, last_id, converted) VALUES(?,?,?)
+                    ON CONFLICT(name) DO UPDATE SET last_id=excluded.last_id, converted=converted+excluded.converted""")) {
+                st.setString(1, NAME);
+                st.setInt(2, batch.get(batch.size() - 1).id());
+                st.setInt(3, written);
+                st.executeUpdate();
+            }
+            c.commit();
+            return written;
+        } catch (SQLException | RuntimeException e) {
+            c.rollback();
+            throw e;
+        } finally {
+            c.setAutoCommit(auto);
+        }
+    }
+
+    private static int remaining(Connection c, int lastId) throws SQLException {
+        try (PreparedStatement ps = c.prepareStatement(
+                "SELECT COUNT(*) FROM services WHERE id>? AND typeof(description)='text'")) {
+            ps.setInt(1, lastId);
+            try (ResultSet rs = ps.executeQuery()) {
+                return rs.next() ? rs.getInt(1) : 0;
+            }
+        }
+    }
+
+    private static void markCompleted(Connection c) throws SQLException {
+        try (PreparedStatement ps = c.prepareStatement("""
+                INSERT INTO schema_migrations(name, completed_ts) VALUES(?,?)
+                ON CONFLICT(name) DO UPDATE SET completed_ts=excluded.completed_ts""")) {
+            ps.setString(1, NAME);
+            ps.setLong(2, Instant.now().getEpochSecond());
+            ps.executeUpdate();
+        }
+    }
+
+    private static void rewind(Connection c) throws SQLException {
+        try (PreparedStatement ps = c.prepareStatement("UPDATE schema_migrations SET last_id=0 WHERE name=?")) {
+            ps.setString(1, NAME);
+            ps.executeUpdate();
+        }
+    }
+
+    private record State(int lastId, int converted, boolean completed) {
+    }
+
+    private static State readState(Connection c) throws SQLException {
+        try (PreparedStatement ps = c.prepareStatement(
+                "SELECT last_id, converted, completed_ts FROM schema_migrations WHERE name=?")) {
+            ps.setString(1, NAME);
+            try (ResultSet rs = ps.executeQuery()) {
+                if (!rs.next()) return new State(0, 0, false);
+                rs.getLong(3);
+                boolean completed = !rs.wasNull();
+                return new State(rs.getInt(1), rs.getInt(2), completed);
+            }
+        }
+    }
+}
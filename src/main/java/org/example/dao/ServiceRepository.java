@@ -0,0 +1,25 @@
+package org.example.dao;
+
+import org.example.model.ServiceRow;
+import org.example.model.ServiceStatus;
+
+import java.util.List;
+import java.util.Map;
+
+/** Accès aux services rendus par les prestataires. */
+public interface ServiceRepository {
+
+    /** Services du prestataire triés par date. */
+    List<ServiceRow> services(int prestataireId);
+
+    /** Services de tous les prestataires en une lecture, groupés par identifiant de prestataire et triés par date. */
+    Map<Integer, List<ServiceRow>> allServices();
+
+    int insertService(int prestataireId, ServiceRow s);
+
+    void updateService(ServiceRow s);
+
+    void updateServiceStatus(int id, ServiceStatus status);
+
+    void deleteService(int id);
+}
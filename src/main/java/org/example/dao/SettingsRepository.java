@@ -0,0 +1,12 @@
+package org.example.dao;
+
+import org.example.model.NotificationSettings;
+
+/** Réglages de notifications (une seule ligne par base). */
+public interface SettingsRepository {
+
+    /** Réglages normalisés, ou {@link NotificationSettings#defaults()} s'il n'y en a pas encore. */
+    NotificationSettings loadNotificationSettings();
+
+    void saveNotificationSettings(NotificationSettings settings);
+}
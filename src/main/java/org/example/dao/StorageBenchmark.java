@@ -0,0 +1,186 @@
+package org.example.dao;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Mesure les {@link StorageProfile} sur une copie du fichier de l'utilisateur : petits commits, insertion massive,
+ * parcours complets des tables et tri volumineux. L'original n'est jamais ouvert en écriture.
+ * <p>
+ * En ligne de commande : {@code StorageBenchmark <fichier.db> [cléHex]} (la clé est requise pour une base chiffrée).
+ */
+public final class StorageBenchmark {
+
+    private static final Logger log = LoggerFactory.getLogger(StorageBenchmark.class);
+    private static final int SMALL_COMMITS = 200;
+    private static final int BULK_ROWS = 20_000;
+    private static final int SCAN_ROUNDS = 3;
+
+    @FunctionalInterface
+    public interface Opener {
+        Connection open(Path copy, StorageProfile profile) throws SQLException;
+    }
+
+    public record Result(StorageProfile profile, long smallCommitsMs, long bulkInsertMs, long scanMs, long sortMs) {
+        @Override
+        public String toString() {
+            return String.format(Locale.ROOT, "%-22s commits=%5d ms  insertion=%5d ms  lecture=%5d ms  tri=%5d ms",
+                    profile, smallCommitsMs, bulkInsertMs, scanMs, sortMs);
+        }
+    }
+
+    private StorageBenchmark() {
+    }
+
+    public static List<Result> run(Path source, Opener opener) throws SQLException {
+        Path dir;
+        try {
+            dir = Files.createTempDirectory("storage-bench");
+        } catch (IOException e) {
+            throw new SQLException("Dossier temporaire indisponible : " + e.getMessage(), e);
+        }
+        List<Result> results = new ArrayList<>();
+        try {
+            for (StorageProfile profile : StorageProfile.values()) {
+                // Copie neuve à chaque profil : les écritures du précédent ne doivent pas fausser la mesure.
+                Path copy = dir.resolve(profile.name().toLowerCase(Locale.ROOT) + ".db");
+                try {
+                    Files.copy(source, copy, StandardCopyOption.REPLACE_EXISTING);
+                    Path wal = source.resolveSibling(source.getFileName() + "-wal");
+                    if (Files.exists(wal)) {
+                        Files.copy(wal, copy.resolveSibling(copy.getFileName() + "-wal"), StandardCopyOption.REPLACE_EXISTING);
+                    }
+                } catch (IOException e) {
+                    throw new SQLException("Copie impossible de " + source + " : " + e.getMessage(), e);
+                }
+                try (Connection c = opener.open(copy, profile)) {
+                    Result r = measure(c, profile);
+                    log.info("[StorageBenchmark] {}", r);
+                    results.add(r);
+                }
+            }
+        } finally {
+            deleteQuietly(dir);
+        }
+        return results;
+    }
+
+    static Result measure(Connection c, StorageProfile profile) throws SQLException {
+        try (Statement st = c.createStatement()) {
+            st.execute("DROP TABLE IF EXISTS __bench");
+            st.execute("CREATE TABLE __bench(id INTEGER PRIMARY KEY, payload TEXT NOT NULL)");
+        }
+        boolean auto = c.getAutoCommit();
+        try {
+            c.setAutoCommit(true);
+            long t0 = System.nanoTime();
+            try (PreparedStatement ps = c.prepareStatement("INSERT INTO __bench(payload) VALUES(?)")) {
+                for (int i = 0; i < SMALL_COMMITS; i++) {
+                    ps.setString(1, payload(i));
+                    ps.executeUpdate();
+                }
+            }
+            long small = elapsedMs(t0);
+
+            c.setAutoCommit(false);
+            t0 = System.nanoTime();
+            try (PreparedStatement ps = c.prepareStatement("INSERT INTO __bench(payload) VALUES(?)")) {
+                for (int i = 0; i < BULK_ROWS; i++) {
+                    ps.setString(1, payload(SMALL_COMMITS + i));
+                    ps.addBatch();
+                    if (i % 1000 == 999) ps.executeBatch();
+                }
+                ps.executeBatch();
+            }
+            c.commit();
+            c.setAutoCommit(true);
+            long bulk = elapsedMs(t0);
+
+            t0 = System.nanoTime();
+            List<String> tables = userTables(c);
+            try (Statement st = c.createStatement()) {
+                for (int round = 0; round < SCAN_ROUNDS; round++) {
+                    for (String t : tables) {
+                        try (ResultSet rs = st.executeQuery("SELECT * FROM \"" + t.replace("\"", "\"\"") + "\"")) {
+                            int cols = rs.getMetaData().getColumnCount();
+                            while (rs.next()) {
+                                for (int i = 1; i <= cols; i++) rs.getObject(i);
+                            }
+                        }
+                    }
+                }
+            }
+            long scan = elapsedMs(t0);
+
+            t0 = System.nanoTime();
+            try (Statement st = c.createStatement();
+                 ResultSet rs = st.executeQuery("SELECT payload FROM __bench ORDER BY substr(payload, 9) DESC, id")) {
+                while (rs.next()) rs.getString(1);
+            }
+            long sort = elapsedMs(t0);
+            return new Result(profile, small, bulk, scan, sort);
+        } finally {
+            if (!c.getAutoCommit()) c.rollback();
+            try (Statement st = c.createStatement()) {
+                st.execute("DROP TABLE IF EXISTS __bench");
+            }
+            c.setAutoCommit(auto);
+        }
+    }
+
+    private static List<String> userTables(Connection c) throws SQLException {
+        List<String> out = new ArrayList<>();
+        try (Statement st = c.createStatement();
+             ResultSet rs = st.executeQuery("SELECT name FROM sqlite_master WHERE type='table' AND name NOT LIKE 'sqlite_%'")) {
+            while (rs.next()) out.add(rs.getString(1));
+        }
+        return out;
+    }
+
+    private static String payload(int i) {
+        return String.format(Locale.ROOT, "%08d-%s", i, Integer.toHexString(i * 0x9E3779B1));
+    }
+
+    private static long elapsedMs(long startNanos) {
+        return (System.nanoTime() - startNanos) / 1_000_000;
+    }
+
+    private static void deleteQuietly(Path dir) {
+        try (var files = Files.list(dir)) {
+            for (Path p : files.toList()) Files.deleteIfExists(p);
+        } catch (IOException ignore) {
+        }
+        try { Files.deleteIfExists(dir); } catch (IOException ignore) {}
+    }
+
+    public static void main(String[] args) throws Exception {
+        if (args.length < 1) {
+            System.err.println("Usage : StorageBenchmark <fichier.db> [cléHex]");
+            System.exit(2);
+        }
+        Path file = Path.of(args[0]);
+        List<Result> results;
+        if (args.length > 1) {
+            // Seules les copies reçoivent la clé : le fichier passé en argument n'est que lu par la copie.
+            byte[] key = HexFormat.of().parseHex(args[1]);
+            results = run(file, (copy, profile) -> UserDB.openKeyed(copy, key, profile));
+        } else {
+            results = run(file, (copy, profile) -> DB.newConnection(copy.toString(), profile));
+        }
+        for (Result r : results) System.out.println(r);
+    }
+}
@@ -0,0 +1,111 @@
+package org.example.dao;
+
+import org.sqlite.SQLiteConfig;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Locale;
+
+/**
+ * Réglages SQLite (synchronous, cache, tables temporaires, lectures mmap) adaptés à une charge de travail.
+ * <p>
+ * Le mmap court-circuite le codec de chiffrement : il n'est jamais activé sur une base chiffrée.
+ */
+public enum StorageProfile {
+
+    /** Profil par défaut de l'application : chaque commit est synchronisé sur disque. */
+    DURABLE_DESKTOP(SQLiteConfig.SynchronousMode.FULL, 8 * 1024, false, 0L),
+
+    /** Écritures massives : en WAL, NORMAL ne risque pas la corruption, seulement les derniers commits en cas de coupure. */
+    BULK_IMPORT(SQLiteConfig.SynchronousMode.NORMAL, 64 * 1024, true, 0L),
+
+    /** Lectures et agrégats fréquents : grand cache, tris temporaires en mémoire, lectures mmap sur base claire. */
+    READ_MOSTLY_ANALYTICS(SQLiteConfig.SynchronousMode.NORMAL, 32 * 1024, true, 256L * 1024 * 1024);
+
+    public static final String PROPERTY = "app.storageProfile";
+
+    private final SQLiteConfig.SynchronousMode synchronous;
+    private final int cacheKib;
+    private final boolean memoryTempStore;
+    private final long mmapBytes;
+
+    StorageProfile(SQLiteConfig.SynchronousMode synchronous, int cacheKib, boolean memoryTempStore, long mmapBytes) {
+        this.synchronous = synchronous;
+        this.cacheKib = cacheKib;
+        this.memoryTempStore = memoryTempStore;
+        this.mmapBytes = mmapBytes;
+    }
+
+    /** Profil demandé par {@code -Dapp.storageProfile=...}, ou {@link #DURABLE_DESKTOP}. */
+    public static StorageProfile configured() {
+        return parse(System.getProperty(PROPERTY));
+    }
+
+    public static StorageProfile parse(String value) {
+        if (value == null || value.isBlank()) {
+            return DURABLE_DESKTOP;
+        }
+        String v = value.trim().toUpperCase(Locale.ROOT).replace('-', '_');
+        for (StorageProfile p : values()) {
+            if (p.name().equals(v)) {
+                return p;
+            }
+        }
+        return DURABLE_DESKTOP;
+    }
+
+    public SQLiteConfig.SynchronousMode synchronous() {
+        return synchronous;
+    }
+
+    public int cacheKib() {
+        return cacheKib;
+    }
+
+    public long mmapBytes(boolean encrypted) {
+        return encrypted ? 0L : mmapBytes;
+    }
+
+    /** Réglages à l'ouverture de la connexion. */
+    void configure(SQLiteConfig sc, boolean encrypted) {
+        sc.setSynchronous(synchronous);
+        sc.setCacheSize(-cacheKib);
+        sc.setTempStore(memoryTempStore ? SQLiteConfig.TempStore.MEMORY : SQLiteConfig.TempStore.DEFAULT);
+        long mmap = mmapBytes(encrypted);
+        if (mmap > 0) {
+            sc.setPragma(SQLiteConfig.Pragma.MMAP_SIZE, Long.toString(mmap));
+        }
+    }
+
+    @FunctionalInterface
+    public interface Work<T> {
+        T run(Connection c) throws SQLException;
+    }
+
+    /**
+     * Exécute {@code work} avec {@code c} basculée sur ce profil, puis la rend à {@code restore}. Seule cette connexion
+     * change : à réserver à une connexion dédiée au traitement de masse, jamais à une connexion partagée.
+     */
+    public <T> T during(Connection c, boolean encrypted, StorageProfile restore, Work<T> work) throws SQLException {
+        if (this == restore) {
+            return work.run(c);
+        }
+        apply(c, encrypted);
+        try {
+            return work.run(c);
+        } finally {
+            restore.apply(c, encrypted);
+        }
+    }
+
+    /** Bascule une connexion ouverte sur ce profil ; tous ces PRAGMA sont modifiables à chaud. */
+    void apply(Connection c, boolean encrypted) throws SQLException {
+        try (Statement st = c.createStatement()) {
+            st.execute("PRAGMA synchronous=" + synchronous.name());
+            st.execute("PRAGMA cache_size=" + (-cacheKib));
+            st.execute("PRAGMA temp_store=" + (memoryTempStore ? "MEMORY" : "DEFAULT"));
+            st.execute("PRAGMA mmap_size=" + mmapBytes(encrypted));
+        }
+    }
+}
@@ -5,14 +5,19 @@ import org.slf4j.LoggerFactory;
 
 import java.nio.file.Files;
 import java.nio.file.Path;
-import java.nio.file.StandardCopyOption;
 import java.sql.*;
+import java.util.Arrays;
 import java.util.HexFormat;
+import java.util.function.DoubleConsumer;
 
 public final class UserDB implements AutoCloseable {
     private static final Logger log = LoggerFactory.getLogger(UserDB.class);
     private Connection conn;
     private final Path dbPath;
+    // Cle brute, effacee par lock() : aucune nouvelle connexion chiffree tant que la session est verrouillee
+    private byte[] activeKey;
+    private org.sqlite.SQLiteConfig.HexKeyMode activeMode;
+    private volatile StorageProfile storageProfile = StorageProfile.configured();
 
     public UserDB(String filePath) {
         this.dbPath = Path.of(filePath);
@@ -23,14 +28,15 @@ public final class UserDB implements AutoCloseable {
     // Ouvre une connexion unique avec la cle appliquee des la creation
     public synchronized void openPool(byte[] keyBytes) throws SQLException {
         close();
-        String hexKey = HexFormat.of().formatHex(keyBytes);
         boolean needsInit = false;
         try { needsInit = Files.notExists(dbPath) || Files.size(dbPath) == 0L; } catch (Exception ignore) {}
         if (needsInit) log.debug("[UserDB] creating new encrypted DB at {}", dbPath.toAbsolutePath());
         SQLException sseFailure = null;
         try {
-            conn = openWithMode(hexKey, org.sqlite.SQLiteConfig.HexKeyMode.SSE, needsInit);
-            log.debug("[UserDB] openPool OK (WAL, FK ON, mode=SSE)");
+            conn = openWithMode(keyBytes, org.sqlite.SQLiteConfig.HexKeyMode.SSE, needsInit);
+            activeKey = keyBytes.clone();
+            activeMode = org.sqlite.SQLiteConfig.HexKeyMode.SSE;
+            log.debug("[UserDB] openPool OK (WAL, FK ON, mode=SSE, profile={})", storageProfile);
             return;
         } catch (SQLException ex) {
             if (!isNotADB(ex)) {
@@ -40,26 +46,34 @@ public final class UserDB implements AutoCloseable {
             log.warn("[UserDB] SSE key rejected for {}: {}", dbPath.getFileName(), oneLine(ex));
         }
         try {
-            conn = openWithMode(hexKey, org.sqlite.SQLiteConfig.HexKeyMode.SQLCIPHER, needsInit);
-            log.info("[UserDB] openPool OK (WAL, FK ON, mode=SQLCIPHER - legacy)");
+            conn = openWithMode(keyBytes, org.sqlite.SQLiteConfig.HexKeyMode.SQLCIPHER, needsInit);
+            activeKey = keyBytes.clone();
+            activeMode = org.sqlite.SQLiteConfig.HexKeyMode.SQLCIPHER;
+            log.info("[UserDB] openPool OK (WAL, FK ON, mode=SQLCIPHER - legacy, profile={})", storageProfile);
         } catch (SQLException ex) {
             if (sseFailure != null) ex.addSuppressed(sseFailure);
             throw ex;
         }
     }
 
-    private Connection openWithMode(String hexKey, org.sqlite.SQLiteConfig.HexKeyMode mode, boolean needsInit) throws SQLException {
+    private Connection openWithMode(byte[] keyBytes, org.sqlite.SQLiteConfig.HexKeyMode mode, boolean needsInit) throws SQLException {
+        return openWithMode(dbPath, keyBytes, mode, needsInit, true, storageProfile);
+    }
+
+    // La forme hexadecimale n'existe que le temps de l'ouverture
+    private static Connection openWithMode(Path path, byte[] keyBytes, org.sqlite.SQLiteConfig.HexKeyMode mode, boolean needsInit,
+                                           boolean sharedCache, StorageProfile profile) throws SQLException {
         org.sqlite.SQLiteConfig sc = new org.sqlite.SQLiteConfig();
         sc.setBusyTimeout(5000);
-        sc.setSharedCache(true);
-        sc.setSynchronous(org.sqlite.SQLiteConfig.SynchronousMode.FULL);
+        sc.setSharedCache(sharedCache);
+        profile.configure(sc, true);
         sc.setJournalMode(org.sqlite.SQLiteConfig.JournalMode.WAL);
         sc.enforceForeignKeys(true);
         sc.setOpenMode(org.sqlite.SQLiteOpenMode.FULLMUTEX);
         sc.setHexKeyMode(mode);
         sc.setPragma(org.sqlite.SQLiteConfig.Pragma.HEXKEY_MODE, mode.name());
-        sc.setPragma(org.sqlite.SQLiteConfig.Pragma.KEY, hexKey);
-        String url = "jdbc:sqlite:" + dbPath.toAbsolutePath();
+        sc.setPragma(org.sqlite.SQLiteConfig.Pragma.KEY, HexFormat.of().formatHex(keyBytes));
+        String url = "jdbc:sqlite:" + path.toAbsolutePath();
         Connection c = DriverManager.getConnection(url, sc.toProperties());
         try {
             try (Statement st = c.createStatement()) {
@@ -81,8 +95,27 @@ public final class UserDB implements AutoCloseable {
         }
     }
 
-    // Essaie d'ouvrir; si NOTADB -> traite le cas clair/corrompu et recrée au besoin
+    // Ouvre un fichier chiffre hors de toute session (copie de banc d'essai) : SSE d'abord, SQLCipher en repli
+    static Connection openKeyed(Path path, byte[] keyBytes, StorageProfile profile) throws SQLException {
+        try {
+            return openWithMode(path, keyBytes, org.sqlite.SQLiteConfig.HexKeyMode.SSE, false, false, profile);
+        } catch (SQLException ex) {
+            if (!isNotADB(ex)) throw ex;
+            try {
+                return openWithMode(path, keyBytes, org.sqlite.SQLiteConfig.HexKeyMode.SQLCIPHER, false, false, profile);
+            } catch (SQLException legacy) {
+                legacy.addSuppressed(ex);
+                throw legacy;
+            }
+        }
+    }
+
     public synchronized void openOrRepair(byte[] keyBytes) throws SQLException {
+        openOrRepair(keyBytes, fraction -> {});
+    }
+
+    // Essaie d'ouvrir; si NOTADB -> traite le cas clair/corrompu et recrée au besoin
+    public synchronized void openOrRepair(byte[] keyBytes, DoubleConsumer migrationProgress) throws SQLException {
         try {
             openPool(keyBytes);
             return;
@@ -91,6 +124,26 @@ public final class UserDB implements AutoCloseable {
                 throw e;
             }
             log.warn("[UserDB] NOTADB at {} -> attempting repair. cause={}", dbPath.getFileName(), oneLine(e));
+            boolean plain = looksPlainSQLite(dbPath);
+            if (plain) {
+                // Le WAL d'une base en clair fait partie de ses données : il est lu par la migration, pas isolé.
+                try {
+                    PlainDatabaseMigration.run(dbPath, keyBytes, migrationProgress);
+                    openPool(keyBytes);
+                    return;
+                } catch (SQLException ex2) {
+                    if (!isNotADB(ex2)) {
+                        log.warn("[UserDB] Migration plain -> encrypted interrupted: {}", oneLine(ex2));
+                        throw new SQLException("Chiffrement de l'ancienne base interrompu (" + oneLine(ex2)
+                                + "). Il reprendra à la prochaine connexion.", ex2);
+                    }
+                    log.warn("[UserDB] Migration plain -> encrypted failed: {}", oneLine(ex2));
+                    try {
+                        Path bad = dbPath.resolveSibling(dbPath.getFileName() + ".corrupt." + System.currentTimeMillis());
+                        Files.move(dbPath, bad);
+                    } catch (Exception ignore) {}
+                }
+            }
             try {
                 long ts = System.currentTimeMillis();
                 Path wal = Path.of(dbPath.toString() + "-wal");
@@ -105,57 +158,10 @@ public final class UserDB implements AutoCloseable {
                 }
             } catch (Exception ignore) {}
 
-            boolean plain = looksPlainSQLite(dbPath);
-            if (plain) {
-                try (Connection cPlain = DriverManager.getConnection("jdbc:sqlite:" + dbPath.toAbsolutePath());
-                     Statement st = cPlain.createStatement()) {
-                    st.execute("PRAGMA foreign_keys=ON");
-                    st.execute("PRAGMA busy_timeout=5000");
-                    st.executeQuery("SELECT 1");
-                    migratePlainToEncrypted(cPlain, keyBytes);
-                    openPool(keyBytes);
-                    return;
-                } catch (SQLException ex2) {
-                    log.warn("[UserDB] Migration plain -> encrypted failed: {}", oneLine(ex2));
-                    try {
-                        Path bad = dbPath.resolveSibling(dbPath.getFileName() + ".corrupt." + System.currentTimeMillis());
-                        Files.move(dbPath, bad);
-                    } catch (Exception ignore) {}
-                }
-            }
-
             throw new SQLException("Base chiffrée ou illisible. Mot de passe incorrect ? Fichier: " + dbPath);
         }
     }
 
-    private void migratePlainToEncrypted(Connection plainConn, byte[] keyBytes) throws SQLException {
-        Path tmp = dbPath.resolveSibling(dbPath.getFileName() + ".tmp.enc");
-        try {
-            try { Files.deleteIfExists(tmp); } catch (Exception ignore) {}
-            String hexKey = HexFormat.of().formatHex(keyBytes);
-            String tmpPath = tmp.toAbsolutePath().toString().replace("'", "''");
-            try (Statement st = plainConn.createStatement()) {
-                st.execute("PRAGMA foreign_keys=ON");
-                st.execute("PRAGMA busy_timeout=5000");
-                st.executeQuery("SELECT 1");
-                st.execute("ATTACH DATABASE '" + tmpPath + "' AS encrypted KEY \"x'" + hexKey + "'\"");
-                try { st.execute("PRAGMA cipher_compatibility=4"); } catch (SQLException ignore) {}
-                st.execute("SELECT sqlcipher_export('encrypted')");
-                st.execute("DETACH DATABASE encrypted");
-            }
-            Path bak = dbPath.resolveSibling(dbPath.getFileName() + ".plain.bak." + System.currentTimeMillis());
-            Files.move(dbPath, bak, StandardCopyOption.REPLACE_EXISTING);
-            Files.move(tmp, dbPath, StandardCopyOption.REPLACE_EXISTING);
-            log.info("[UserDB] Migrated plain SQLite to encrypted DB (backup: {})", bak.getFileName());
-        } catch (SQLException e) {
-            try { Files.deleteIfExists(tmp); } catch (Exception ignore) {}
-            throw e;
-        } catch (Exception e) {
-            try { Files.deleteIfExists(tmp); } catch (Exception ignore) {}
-            throw new SQLException("Migration plain->encrypted failed: " + e.getMessage(), e);
-        }
-    }
-
     private void createFreshEncrypted(byte[] keyBytes) throws SQLException {
         String hex = HexFormat.of().formatHex(keyBytes);
         try (Connection cNew = DriverManager.getConnection("jdbc:sqlite:" + dbPath.toAbsolutePath());
@@ -183,7 +189,7 @@ public final class UserDB implements AutoCloseable {
         return false;
     }
 
-    private static boolean looksPlainSQLite(Path p) {
+    static boolean looksPlainSQLite(Path p) {
         try (var in = java.nio.file.Files.newInputStream(p)) {
             byte[] hdr = in.readNBytes(16);
             return new String(hdr, java.nio.charset.StandardCharsets.US_ASCII).startsWith("SQLite format 3");
@@ -209,12 +215,92 @@ public final class UserDB implements AutoCloseable {
     // Convenience alias
     public Connection connection() throws SQLException { return getConnection(); }
 
+    // Nouvelle connexion independante (hors cache partage) sur le meme fichier, avec la cle et le mode valides par openPool
+    public synchronized Connection openSecondaryConnection() throws SQLException {
+        return openSecondaryConnection(storageProfile);
+    }
+
+    public synchronized Connection openSecondaryConnection(StorageProfile profile) throws SQLException {
+        requireKey();
+        return openWithMode(dbPath, activeKey, activeMode, false, false, profile);
+    }
+
+    // Session verrouillee : la cle est effacee, la connexion principale deja ouverte reste utilisable
+    public synchronized void lock() {
+        if (activeKey != null) Arrays.fill(activeKey, (byte) 0);
+        activeKey = null;
+    }
+
+    // Deverrouillage : copie de la cle rendue par SessionLock
+    public synchronized void unlock(byte[] keyBytes) {
+        if (conn == null) throw new IllegalStateException("openPool must be called first");
+        lock();
+        activeKey = keyBytes.clone();
+    }
+
+    public synchronized boolean isLocked() {
+        return conn != null && activeKey == null;
+    }
+
+    private void requireKey() {
+        if (conn == null) throw new IllegalStateException("openPool must be called first");
+        if (activeKey == null) throw new IllegalStateException("Session verrouillée");
+    }
+
+    public Path path() {
+        return dbPath;
+    }
+
+    // Destination de l'API de sauvegarde : le fichier est ouvert par le moteur natif, la cle active passe donc par l'URI.
+    // A construire juste avant la copie et a ne pas conserver.
+    synchronized String backupTargetUri(Path target) {
+        requireKey();
+        String hexKey = HexFormat.of().formatHex(activeKey);
+        String key = activeMode == org.sqlite.SQLiteConfig.HexKeyMode.SSE
+                ? "hexkey=" + hexKey
+                : "key=" + java.net.URLEncoder.encode("x'" + hexKey + "'", java.nio.charset.StandardCharsets.UTF_8);
+        return target.toAbsolutePath().toUri() + "?" + key;
+    }
+
+    // Ouvre une copie (sauvegarde) avec la cle et le mode actifs, pour verifier qu'elle est lisible
+    synchronized Connection openCopy(Path copy) throws SQLException {
+        requireKey();
+        return openWithMode(copy, activeKey, activeMode, false, false, StorageProfile.DURABLE_DESKTOP);
+    }
+
+    public StorageProfile storageProfile() {
+        return storageProfile;
+    }
+
+    // Profil des prochaines ouvertures ; la connexion principale deja ouverte est basculee a chaud
+    public synchronized void setStorageProfile(StorageProfile profile) throws SQLException {
+        storageProfile = profile == null ? StorageProfile.DURABLE_DESKTOP : profile;
+        if (conn != null) storageProfile.apply(conn, true);
+    }
+
+    // Mesure chaque profil sur une copie du fichier (jamais sur l'original), avec la cle active
+    public synchronized java.util.List<StorageBenchmark.Result> benchmarkStorageProfiles() throws SQLException {
+        requireKey();
+        try (Statement st = conn.createStatement()) {
+            st.execute("PRAGMA wal_checkpoint(TRUNCATE)");
+        }
+        byte[] key = activeKey.clone();
+        org.sqlite.SQLiteConfig.HexKeyMode mode = activeMode;
+        try {
+            return StorageBenchmark.run(dbPath, (copy, profile) -> openWithMode(copy, key, mode, false, false, profile));
+        } finally {
+            Arrays.fill(key, (byte) 0);
+        }
+    }
+
     @Override
     public void close() {
         if (conn != null) {
             try { conn.close(); } catch (Exception ignore) {}
             conn = null;
         }
+        lock();
+        activeMode = null;
     }
 
     private static String oneLine(Throwable t) {
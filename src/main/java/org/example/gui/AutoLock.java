@@ -0,0 +1,106 @@
+package org.example.gui;
+
+import javafx.animation.PauseTransition;
+import javafx.geometry.Pos;
+import javafx.scene.Scene;
+import javafx.scene.control.Button;
+import javafx.scene.control.Label;
+import javafx.scene.control.PasswordField;
+import javafx.scene.input.InputEvent;
+import javafx.scene.layout.HBox;
+import javafx.scene.layout.StackPane;
+import javafx.scene.layout.VBox;
+import javafx.util.Duration;
+import org.example.security.SessionLock;
+
+/**
+ * Verrouillage de la fenêtre principale après {@code idle} sans saisie clavier ni souris : la clé de session est
+ * effacée ({@link SessionLock#lock()}) et un voile demande le code de verrouillage choisi à la connexion. Le
+ * déverrouillage ne rejoue que la dérivation légère de ce code, sans repasser par {@code auth.db} ni rouvrir la base.
+ */
+public final class AutoLock {
+
+    private final SessionLock lock;
+    private final PauseTransition idle;
+    private final VBox overlay = new VBox(12);
+    private final PasswordField pfPwd = new PasswordField();
+    private final Label lblError = new Label();
+    private final Button unlock = new Button("Déverrouiller");
+
+    private AutoLock(StackPane host, SessionLock lock, java.time.Duration idle, Runnable onQuit) {
+        this.lock = lock;
+        this.idle = new PauseTransition(Duration.millis(idle.toMillis()));
+        this.idle.setOnFinished(e -> lockNow());
+
+        Label lblHeader = new Label("Session verrouillée");
+        lblHeader.getStyleClass().add("login-header");
+        lblError.getStyleClass().add("error");
+        pfPwd.setPromptText("Code de verrouillage");
+        pfPwd.setMaxWidth(280);
+        unlock.getStyleClass().add("accent");
+        unlock.disableProperty().bind(pfPwd.textProperty().isEmpty());
+        Button quit = new Button("Quitter");
+        quit.setOnAction(e -> onQuit.run());
+        pfPwd.setOnAction(e -> unlock.fire());
+        unlock.setOnAction(e -> tryUnlock());
+
+        HBox actions = new HBox(10, unlock, quit);
+        actions.setAlignment(Pos.CENTER);
+        overlay.getChildren().addAll(lblHeader, pfPwd, actions, lblError);
+        overlay.setAlignment(Pos.CENTER);
+        overlay.getStyleClass().add("lock-overlay");
+        overlay.setVisible(false);
+        host.getChildren().add(overlay);
+    }
+
+    /**
+     * Installe le verrouillage sur {@code host}, racine de {@code scene} qui contient la vue principale. Une durée
+     * nulle ou négative ne désactive que le délai : {@link #lockNow()} reste utilisable.
+     */
+    public static AutoLock install(Scene scene, StackPane host, SessionLock lock, java.time.Duration idle,
+                                   Runnable onQuit) {
+        AutoLock auto = new AutoLock(host, lock, idle, onQuit);
+        if (!idle.isZero() && !idle.isNegative()) {
+            scene.addEventFilter(InputEvent.ANY, e -> {
+                if (!lock.isLocked()) auto.idle.playFromStart();
+            });
+            auto.idle.playFromStart();
+        }
+        return auto;
+    }
+
+    public void lockNow() {
+        idle.stop();
+        lock.lock();
+        pfPwd.clear();
+        lblError.setText("");
+        showUnlockControls(!lock.exhausted());
+        overlay.setVisible(true);
+        overlay.toFront();
+        pfPwd.requestFocus();
+    }
+
+    private void tryUnlock() {
+        // Dérivation légère (quelques millisecondes) : pas besoin de quitter le thread JavaFX.
+        char[] pwd = pfPwd.getText().toCharArray();
+        pfPwd.clear();
+        if (lock.unlock(pwd)) {
+            overlay.setVisible(false);
+            idle.playFromStart();
+            return;
+        }
+        if (lock.exhausted()) {
+            lblError.setText("Trop d'essais : quittez puis reconnectez-vous.");
+            showUnlockControls(false);
+        } else {
+            lblError.setText("Code incorrect");
+            pfPwd.requestFocus();
+        }
+    }
+
+    private void showUnlockControls(boolean show) {
+        pfPwd.setVisible(show);
+        unlock.setVisible(show);
+        unlock.setManaged(show);
+    }
+}
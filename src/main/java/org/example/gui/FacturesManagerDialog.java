@@ -1,5 +1,6 @@
 package org.example.gui;
 
+import javafx.application.Platform;
 import javafx.beans.binding.Bindings;
 import javafx.collections.FXCollections;
 import javafx.collections.ObservableList;
@@ -11,7 +12,7 @@ import javafx.scene.layout.BorderPane;
 import javafx.scene.layout.HBox;
 import javafx.scene.layout.Priority;
 import javafx.scene.layout.VBox;
-import org.example.dao.DB;
+import org.example.dao.AsyncDao;
 import org.example.model.Facture;
 
 import java.math.BigDecimal;
@@ -19,10 +20,11 @@ import java.time.LocalDate;
 import java.util.List;
 import java.util.Locale;
 import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
 
 final class FacturesManagerDialog extends Dialog<Void> {
 
-    private final DB dao;
+    private final AsyncDao dao;
     private final int prestataireId;
     private final String prestataireNom;
     private final TableView<Facture> table = new TableView<>();
@@ -33,8 +35,9 @@ final class FacturesManagerDialog extends Dialog<Void> {
     private final Label summaryCount = new Label();
     private final java.text.NumberFormat money = java.text.NumberFormat.getCurrencyInstance(Locale.FRANCE);
     private boolean mutated;
+    private CompletableFuture<List<Facture>> pendingLoad;
 
-    FacturesManagerDialog(DB dao, int prestataireId, String prestataireNom) {
+    FacturesManagerDialog(AsyncDao dao, int prestataireId, String prestataireNom) {
         this.dao = Objects.requireNonNull(dao, "dao");
         this.prestataireId = prestataireId;
         this.prestataireNom = prestataireNom == null ? "" : prestataireNom;
@@ -54,6 +57,9 @@ final class FacturesManagerDialog extends Dialog<Void> {
         loadFactures(null);
 
         setResultConverter(btn -> null);
+        setOnHidden(e -> {
+            if (pendingLoad != null) pendingLoad.cancel(false);
+        });
     }
 
     boolean hasMutations() {
@@ -174,15 +180,8 @@ final class FacturesManagerDialog extends Dialog<Void> {
     private void onAdd() {
         FactureFormDialog dlg = new FactureFormDialog(null);
         ThemeManager.apply(dlg);
-        dlg.showAndWait().ifPresent(result -> {
-            try {
-                int id = dao.insertFacture(prestataireId, result);
-                mutated = true;
-                loadFactures(id);
-            } catch (Exception ex) {
-                showError(ex);
-            }
-        });
+        dlg.showAndWait().ifPresent(result -> dao.write("insertFacture", s -> s.insertFacture(prestataireId, result))
+                .whenCompleteAsync(this::afterMutation, Platform::runLater));
     }
 
     private void onEdit() {
@@ -190,15 +189,8 @@ final class FacturesManagerDialog extends Dialog<Void> {
         if (selected == null) return;
         FactureFormDialog dlg = new FactureFormDialog(selected);
         ThemeManager.apply(dlg);
-        dlg.showAndWait().ifPresent(result -> {
-            try {
-                dao.updateFacture(result);
-                mutated = true;
-                loadFactures(result.getId());
-            } catch (Exception ex) {
-                showError(ex);
-            }
-        });
+        dlg.showAndWait().ifPresent(result -> dao.run("updateFacture", s -> s.updateFacture(result))
+                .whenCompleteAsync((v, err) -> afterMutation(result.getId(), err), Platform::runLater));
     }
 
     private void onDelete() {
@@ -207,13 +199,8 @@ final class FacturesManagerDialog extends Dialog<Void> {
         Alert confirm = new Alert(Alert.AlertType.CONFIRMATION, "Supprimer cette facture ?", ButtonType.YES, ButtonType.NO);
         ThemeManager.apply(confirm);
         if (confirm.showAndWait().orElse(ButtonType.NO) != ButtonType.YES) return;
-        try {
-            dao.deleteFacture(selected.getId());
-            mutated = true;
-            loadFactures(null);
-        } catch (Exception ex) {
-            showError(ex);
-        }
+        dao.run("deleteFacture", s -> s.deleteFacture(selected.getId()))
+                .whenCompleteAsync((v, err) -> afterMutation(null, err), Platform::runLater);
     }
 
     private void onTogglePaid(boolean payee) {
@@ -248,31 +235,47 @@ final class FacturesManagerDialog extends Dialog<Void> {
                 datePaiement,
                 selected.isPreavisEnvoye()
         );
-        try {
-            dao.updateFacture(updated);
-            mutated = true;
-            loadFactures(updated.getId());
-        } catch (Exception ex) {
-            showError(ex);
+        dao.run("updateFacture", s -> s.updateFacture(updated))
+                .whenCompleteAsync((v, err) -> afterMutation(updated.getId(), err), Platform::runLater);
+    }
+
+    private void afterMutation(Integer selectId, Throwable err) {
+        if (err != null) {
+            showError(err);
+            return;
         }
+        mutated = true;
+        loadFactures(selectId);
     }
 
     private void loadFactures(Integer selectId) {
-        try {
-            Boolean filter = null;
-            Toggle selectedToggle = filterGroup.getSelectedToggle();
-            if (selectedToggle != null) {
-                filter = (Boolean) selectedToggle.getUserData();
+        Boolean filter = null;
+        Toggle selectedToggle = filterGroup.getSelectedToggle();
+        if (selectedToggle != null) {
+            filter = (Boolean) selectedToggle.getUserData();
+        }
+        Boolean paye = filter;
+        if (pendingLoad != null) {
+            // Un changement de filtre rend la lecture précédente inutile.
+            pendingLoad.cancel(false);
+        }
+        CompletableFuture<List<Facture>> load = dao.read("factures", s -> s.factures(prestataireId, paye));
+        pendingLoad = load;
+        load.whenCompleteAsync((factures, err) -> {
+            if (load != pendingLoad || load.isCancelled()) {
+                return;
+            }
+            pendingLoad = null;
+            if (err != null) {
+                showError(err);
+                return;
             }
-            List<Facture> factures = dao.factures(prestataireId, filter);
             items.setAll(factures);
             if (selectId != null) {
                 selectById(selectId);
             }
             updateSummary();
-        } catch (Exception ex) {
-            showError(ex);
-        }
+        }, Platform::runLater);
     }
 
     private void selectById(Integer id) {
@@ -310,7 +313,8 @@ final class FacturesManagerDialog extends Dialog<Void> {
         return money.format(value.doubleValue());
     }
 
-    private void showError(Exception ex) {
+    private void showError(Throwable err) {
+        Throwable ex = AsyncDao.unwrap(err);
         Alert alert = new Alert(Alert.AlertType.ERROR, ex.getMessage() == null ? ex.toString() : ex.getMessage(), ButtonType.OK);
         ThemeManager.apply(alert);
         alert.showAndWait();
@@ -2,8 +2,6 @@ package org.example.gui;
 
 import javafx.animation.TranslateTransition;
 import javafx.application.Platform;
-import javafx.beans.property.ObjectProperty;
-import javafx.beans.property.SimpleObjectProperty;
 import javafx.event.ActionEvent;
 import javafx.geometry.Insets;
 import javafx.scene.Node;
@@ -17,15 +15,15 @@ import javafx.scene.control.TextField;
 import javafx.scene.layout.GridPane;
 import javafx.scene.layout.VBox;
 import javafx.util.Duration;
-import java.util.Arrays;
-import org.example.security.AuthService;
+import org.example.security.LoginPipeline;
 
-public class LoginDialog extends Dialog<AuthService.Session> {
-    public LoginDialog(AuthService auth) {
-        this(auth, "", "");
+/** Connexion : la vérification et l'ouverture de la base tournent dans {@link LoginPipeline}, le dialogue suit. */
+public class LoginDialog<T> extends Dialog<LoginPipeline.Opened<T>> {
+    public LoginDialog(LoginPipeline<T> pipeline) {
+        this(pipeline, "", "");
     }
 
-    public LoginDialog(AuthService auth, String defaultUser, String defaultPwd) {
+    public LoginDialog(LoginPipeline<T> pipeline, String defaultUser, String defaultPwd) {
         setTitle("Connexion");
 
         DialogPane pane = getDialogPane();
@@ -36,6 +34,8 @@ public class LoginDialog extends Dialog<AuthService.Session> {
         PasswordField pfPwd = new PasswordField();
         if (defaultPwd != null) pfPwd.setText(defaultPwd);
         pfPwd.setPromptText("Mot de passe");
+        PasswordField pfPin = new PasswordField();
+        pfPin.setPromptText("Pour déverrouiller cette session");
 
         GridPane grid = new GridPane();
         grid.setId("login-grid");
@@ -43,6 +43,7 @@ public class LoginDialog extends Dialog<AuthService.Session> {
         grid.setVgap(12);
         grid.addRow(0, new Label("Utilisateur :"), tfUser);
         grid.addRow(1, new Label("Mot de passe :"), pfPwd);
+        grid.addRow(2, new Label("Code de verrouillage :"), pfPin);
 
         Label lblHeader = new Label("Veuillez vous connecter");
         lblHeader.getStyleClass().add("login-header");
@@ -50,7 +51,9 @@ public class LoginDialog extends Dialog<AuthService.Session> {
         Label lblError = new Label();
         lblError.getStyleClass().add("error");
 
-        VBox root = new VBox(lblHeader, grid, lblError);
+        LoginProgress<T> progress = new LoginProgress<>(this, tfUser, pfPwd, pfPin);
+
+        VBox root = new VBox(lblHeader, grid, progress.statusBar(), lblError);
         root.setPadding(new Insets(20, 32, 12, 32));
         root.setSpacing(10);
         pane.setContent(root);
@@ -58,36 +61,34 @@ public class LoginDialog extends Dialog<AuthService.Session> {
         Button ok = (Button) pane.lookupButton(ButtonType.OK);
         ok.getStyleClass().add("accent");
         ok.setMaxWidth(Double.MAX_VALUE);
-        ok.disableProperty().bind(tfUser.textProperty().isEmpty().or(pfPwd.textProperty().isEmpty()));
+        ok.disableProperty().bind(tfUser.textProperty().isEmpty().or(pfPwd.textProperty().isEmpty())
+                .or(pfPin.textProperty().isEmpty()));
 
         tfUser.setOnAction(e -> ok.fire());
         pfPwd.setOnAction(e -> ok.fire());
+        pfPin.setOnAction(e -> ok.fire());
         Platform.runLater(tfUser::requestFocus);
 
-        final ObjectProperty<AuthService.Session> result = new SimpleObjectProperty<>();
-
         ok.addEventFilter(ActionEvent.ACTION, evt -> {
-            try {
-                String user = tfUser.getText().trim();
-                char[] pwd  = pfPwd.getText().toCharArray();
-                AuthService.Session sess = auth.login(user, pwd);
-                Arrays.fill(pwd, '\0');
-                if (sess == null) {
-                    lblError.setText("Identifiants invalides");
-                    shake(root);
-                    evt.consume();
-                } else {
-                    result.set(sess);
-                }
-            } catch (Exception ex) {
-                lblError.setText(ex.getMessage() != null ? ex.getMessage() : "Erreur d’authentification");
-                shake(root);
-                evt.consume();
-            }
+            // Le dialogue se ferme sur le résultat de la tentative, pas sur le clic.
+            evt.consume();
+            if (progress.running()) return;
+            lblError.setText("");
+            String user = tfUser.getText().trim();
+            char[] pwd  = pfPwd.getText().toCharArray();
+            char[] pin  = pfPin.getText().toCharArray();
+            progress.start(step -> pipeline.login(user, pwd, pin, step),
+                    () -> {
+                        lblError.setText("Identifiants invalides");
+                        shake(root);
+                        pfPwd.requestFocus();
+                    },
+                    ex -> {
+                        lblError.setText(ex.getMessage() != null ? ex.getMessage() : "Erreur d’authentification");
+                        shake(root);
+                    });
         });
 
-        setResultConverter(bt -> bt == ButtonType.OK ? result.get() : null);
-
         ThemeManager.apply(this);
     }
 
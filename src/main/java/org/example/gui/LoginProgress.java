@@ -0,0 +1,119 @@
+package org.example.gui;
+
+import javafx.application.Platform;
+import javafx.event.ActionEvent;
+import javafx.geometry.Pos;
+import javafx.scene.Node;
+import javafx.scene.control.Button;
+import javafx.scene.control.ButtonType;
+import javafx.scene.control.Dialog;
+import javafx.scene.control.Label;
+import javafx.scene.control.ProgressIndicator;
+import javafx.scene.layout.HBox;
+import org.example.dao.AsyncDao;
+import org.example.security.LoginPipeline;
+
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Suivi d'une tentative de {@link LoginPipeline} dans un dialogue : saisie figée et étape courante affichée pendant le
+ * travail, « Annuler » interrompt la tentative au lieu de fermer, et le dialogue se ferme sur le résultat.
+ */
+final class LoginProgress<T> {
+
+    private final Dialog<LoginPipeline.Opened<T>> dialog;
+    private final Node[] inputs;
+    private final ProgressIndicator spinner = new ProgressIndicator();
+    private final Label status = new Label();
+    private final HBox bar = new HBox(8, spinner, status);
+    private LoginPipeline.Attempt<T> current;
+
+    LoginProgress(Dialog<LoginPipeline.Opened<T>> dialog, Node... inputs) {
+        this.dialog = dialog;
+        this.inputs = inputs;
+        spinner.setPrefSize(18, 18);
+        bar.setAlignment(Pos.CENTER_LEFT);
+        bar.setVisible(false);
+        bar.managedProperty().bind(bar.visibleProperty());
+
+        Button cancel = (Button) dialog.getDialogPane().lookupButton(ButtonType.CANCEL);
+        cancel.addEventFilter(ActionEvent.ACTION, evt -> {
+            if (current != null) {
+                evt.consume();
+                cancel();
+            }
+        });
+        dialog.setOnCloseRequest(evt -> cancel());
+        dialog.setResultConverter(bt -> null);
+    }
+
+    Node statusBar() {
+        return bar;
+    }
+
+    boolean running() {
+        return current != null;
+    }
+
+    /**
+     * Lance une tentative. {@code onRejected} reçoit la main si les identifiants sont refusés, {@code onError} si
+     * l'ouverture échoue ; tous deux sur le thread JavaFX, saisie rendue.
+     */
+    void start(Function<LoginPipeline.Progress, LoginPipeline.Attempt<T>> launcher,
+               Runnable onRejected, Consumer<Throwable> onError) {
+        if (current != null) return;
+        setBusy(true);
+        LoginPipeline.Attempt<T> attempt = launcher.apply(new LoginPipeline.Progress() {
+            @Override
+            public void accept(LoginPipeline.Step step) {
+                Platform.runLater(() -> show(step.label(), ProgressIndicator.INDETERMINATE_PROGRESS));
+            }
+
+            @Override
+            public void accept(LoginPipeline.Step step, double fraction) {
+                Platform.runLater(() -> show(step.label() + " " + Math.round(fraction * 100) + " %", fraction));
+            }
+        });
+        current = attempt;
+        attempt.result().whenCompleteAsync((opened, err) -> {
+            if (current != attempt) return;
+            current = null;
+            if (attempt.isCancelled()) {
+                setBusy(false);
+            } else if (err != null) {
+                setBusy(false);
+                onError.accept(AsyncDao.unwrap(err));
+            } else if (opened == null) {
+                setBusy(false);
+                onRejected.run();
+            } else {
+                dialog.setResult(opened);
+                dialog.close();
+            }
+        }, Platform::runLater);
+    }
+
+    void cancel() {
+        LoginPipeline.Attempt<T> attempt = current;
+        if (attempt == null) return;
+        current = null;
+        attempt.cancel();
+        setBusy(false);
+    }
+
+    private void show(String text, double fraction) {
+        if (current == null) return;
+        status.setText(text);
+        spinner.setProgress(fraction);
+    }
+
+    private void setBusy(boolean busy) {
+        for (Node n : inputs) n.setDisable(busy);
+        bar.setVisible(busy);
+        if (!busy) {
+            status.setText("");
+            spinner.setProgress(ProgressIndicator.INDETERMINATE_PROGRESS);
+        }
+    }
+}
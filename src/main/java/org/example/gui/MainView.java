@@ -24,7 +24,8 @@ import javafx.scene.layout.Region;
 import javafx.stage.Stage;
 import javafx.util.Duration;
 import org.example.AppServices;
-import org.example.dao.DB;
+import org.example.dao.AsyncDao;
+import org.example.dao.DataStore;
 import org.example.model.Facture;
 import org.example.model.NotificationSettings;
 import org.example.model.Prestataire;
@@ -53,13 +54,13 @@ import java.util.EnumMap;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 
 public final class MainView {
     private static final Logger log = LoggerFactory.getLogger(MainView.class);
     private final Stage stage;
-    private final DB dao;
     private final AuthService authService;
     private final AuthService.Session session;
     private final Instant loginStarted;
@@ -105,7 +106,9 @@ public final class MainView {
     private final Timeline sessionTimeline = new Timeline();
 
 
-    // background
+    // background : base de donnees via AsyncDao, le reste (export PDF) sur exec
+    private final AsyncDao async;
+    private CompletableFuture<List<Prestataire>> pendingList;
     private final ExecutorService exec = Executors.newSingleThreadExecutor(r -> {
         Thread t = new Thread(r, "ui-loader");
         t.setDaemon(true);
@@ -116,9 +119,9 @@ public final class MainView {
     private final NumberFormat money = NumberFormat.getCurrencyInstance(Locale.FRANCE);
     private NotificationSettings notificationSettings;
 
-    public MainView(Stage stage, DB dao, AuthService authService, AuthService.Session session, Instant loginStarted) {
+    public MainView(Stage stage, DataStore dao, AuthService authService, AuthService.Session session, Instant loginStarted) {
         this.stage = stage;
-        this.dao = dao;
+        this.async = new AsyncDao(dao);
         this.authService = authService;
         this.session = session;
         this.loginStarted = loginStarted;
@@ -143,7 +146,7 @@ public final class MainView {
         btnNotifications.setOnAction(e -> openNotificationSettings());
         sessionLabel.getStyleClass().add("session-indicator");
 
-        notificationSettings = fetchNotificationSettings();
+        fetchNotificationSettings();
 
         // Top: menu + header
         MenuBar menuBar = new MenuBar();
@@ -183,8 +186,14 @@ public final class MainView {
 
     public Parent getRoot() { return root; }
 
+    /** Session verrouillée : les accès à la base sont retenus jusqu'au déverrouillage. */
+    public void setLocked(boolean locked) {
+        if (locked) async.pause(); else async.resume();
+    }
+
     public void shutdownExecutor() {
         exec.shutdownNow();
+        async.close();
         sessionTimeline.stop();
     }
 
@@ -291,14 +300,19 @@ public final class MainView {
         });
     }
 
-    private NotificationSettings fetchNotificationSettings() {
-        try {
-            return dao.loadNotificationSettings();
-        } catch (Exception ex) {
-            log.error("Unable to load notification settings", ex);
-            Platform.runLater(() -> showError(new RuntimeException("Paramètres de notification indisponibles : " + ex.getMessage(), ex)));
-            return NotificationSettings.defaults();
-        }
+    private void fetchNotificationSettings() {
+        async.read("loadNotificationSettings", DataStore::loadNotificationSettings).whenCompleteAsync((loaded, err) -> {
+            if (err != null) {
+                Throwable ex = AsyncDao.unwrap(err);
+                log.error("Unable to load notification settings", ex);
+                showError(new RuntimeException("Paramètres de notification indisponibles : " + ex.getMessage(), ex));
+                return;
+            }
+            if (notificationSettings == null) {
+                notificationSettings = loaded;
+                updateAlerts();
+            }
+        }, Platform::runLater);
     }
 
     private void openNotificationSettings() {
@@ -313,19 +327,17 @@ public final class MainView {
         }
         notificationSettings = updated.normalized();
         NotificationSettings toPersist = notificationSettings;
-        exec.submit(() -> {
-            try {
-                dao.saveNotificationSettings(toPersist);
-                Platform.runLater(() -> {
-                    AppServices.notificationServiceOptional().ifPresent(service -> service.updateSettings(notificationSettings));
-                    AppServices.trayManagerOptional().ifPresent(manager -> manager.updateSnoozeMinutes(notificationSettings.snoozeMinutes()));
-                    updateAlerts();
-                });
-            } catch (Exception ex) {
+        async.run("saveNotificationSettings", s -> s.saveNotificationSettings(toPersist)).whenCompleteAsync((v, err) -> {
+            if (err != null) {
+                Throwable ex = AsyncDao.unwrap(err);
                 log.error("Unable to persist notification settings", ex);
-                Platform.runLater(() -> showError(new RuntimeException("Paramètres de notification non enregistrés : " + ex.getMessage(), ex)));
+                showError(new RuntimeException("Paramètres de notification non enregistrés : " + ex.getMessage(), ex));
+                return;
             }
-        });
+            AppServices.notificationServiceOptional().ifPresent(service -> service.updateSettings(notificationSettings));
+            AppServices.trayManagerOptional().ifPresent(manager -> manager.updateSnoozeMinutes(notificationSettings.snoozeMinutes()));
+            updateAlerts();
+        }, Platform::runLater);
     }
 
     private NotificationSettings currentNotificationSettings() {
@@ -667,29 +679,33 @@ public final class MainView {
         btnDelete.setDisable(true);
         items.clear();
 
-        exec.submit(() -> {
-            try {
-                List<Prestataire> lst = dao.list(query == null ? "" : query);
-                Platform.runLater(() -> {
-                    items.setAll(lst);
-                    if (!lst.isEmpty()) {
-                        table.getSelectionModel().select(0);
-                    } else {
-                        clearDetails();
-                    }
-                    updateMetrics();
-                    updateAlerts();
-                });
-            } catch (Exception ex) {
+        if (pendingList != null) {
+            // Une nouvelle saisie de recherche rend la précédente inutile.
+            pendingList.cancel(false);
+        }
+        CompletableFuture<List<Prestataire>> load = async.read("list", s -> s.list(query == null ? "" : query));
+        pendingList = load;
+        load.whenCompleteAsync((lst, err) -> {
+            if (load != pendingList) {
+                return;
+            }
+            pendingList = null;
+            if (err != null) {
+                Throwable ex = AsyncDao.unwrap(err);
                 log.error("Unable to load prestataires", ex);
-                Platform.runLater(() -> {
-                    table.setPlaceholder(errorLabel("Erreur de chargement : " + ex.getMessage()));
+                table.setPlaceholder(errorLabel("Erreur de chargement : " + ex.getMessage()));
+                clearDetails();
+            } else {
+                items.setAll(lst);
+                if (!lst.isEmpty()) {
+                    table.getSelectionModel().select(0);
+                } else {
                     clearDetails();
-                    updateMetrics();
-                    updateAlerts();
-                });
+                }
             }
-        });
+            updateMetrics();
+            updateAlerts();
+        }, Platform::runLater);
     }
 
     private void refreshCurrentServices() {
@@ -739,26 +755,20 @@ public final class MainView {
             serviceTypeValue.setText("Non renseigne");
         }
 
-        exec.submit(() -> {
-            try {
-                List<ServiceRow> services = dao.services(p.getId());
-                List<Facture> factures = dao.facturesPrestataire(p.getId());
-                Platform.runLater(() -> {
-                    tvServices.getItems().setAll(services);
-                    tvFactures.getItems().setAll(factures);
-                    updateDetailCounts();
-                    ensureValidDetailSelection();
-                });
-            } catch (Exception ex) {
-                log.error("Unable to load details for prestataire {}", p.getId(), ex);
-                Platform.runLater(() -> {
-                    tvServices.setPlaceholder(errorLabel("Erreur chargement services"));
-                    tvFactures.setPlaceholder(errorLabel("Erreur chargement factures"));
-                    updateDetailCounts();
-                    ensureValidDetailSelection();
-                });
+        CompletableFuture<List<ServiceRow>> services = async.read("services", s -> s.services(p.getId()));
+        CompletableFuture<List<Facture>> factures = async.read("facturesPrestataire", s -> s.facturesPrestataire(p.getId()));
+        CompletableFuture.allOf(services, factures).whenCompleteAsync((v, err) -> {
+            if (err != null) {
+                log.error("Unable to load details for prestataire {}", p.getId(), AsyncDao.unwrap(err));
+                tvServices.setPlaceholder(errorLabel("Erreur chargement services"));
+                tvFactures.setPlaceholder(errorLabel("Erreur chargement factures"));
+            } else {
+                tvServices.getItems().setAll(services.join());
+                tvFactures.getItems().setAll(factures.join());
             }
-        });
+            updateDetailCounts();
+            ensureValidDetailSelection();
+        }, Platform::runLater);
     }
 
     private void clearDetails() { showDetails(null); }
@@ -914,36 +924,38 @@ public final class MainView {
 
     private void updateAlerts() {
         NotificationSettings cfg = currentNotificationSettings();
-        exec.submit(() -> {
-            try {
-                LocalDateTime now = LocalDateTime.now();
-                LocalDateTime limit = now.plusDays(Math.max(1, cfg.leadDays()));
-                List<Facture> factures = dao.facturesImpayeesPourDashboard(limit);
-                Map<Integer, Prestataire> cache = new HashMap<>();
-                List<AlertInfo> alerts = new ArrayList<>();
-                for (Facture facture : factures) {
-                    if (facture == null || facture.isPaye()) continue;
-                    LocalDate due = facture.getEcheance();
-                    if (due == null) continue;
-                    Prestataire prestataire = cache.computeIfAbsent(
-                            facture.getPrestataireId(),
-                            id -> dao.findPrestataire(id)
-                    );
-                    if (prestataire == null) continue;
-                    alerts.add(new AlertInfo(
-                            safePrestataireName(prestataire),
-                            safeFactureDescription(facture),
-                            facture.getMontantTtc(),
-                            due,
-                            due.isBefore(now.toLocalDate())
-                    ));
-                }
-                alerts.sort(Comparator.comparing(AlertInfo::dueDate));
-                Platform.runLater(() -> renderAlerts(alerts));
-            } catch (Exception ex) {
-                Platform.runLater(() -> renderAlertsError(ex));
+        async.read("alerts", store -> {
+            LocalDateTime now = LocalDateTime.now();
+            LocalDateTime limit = now.plusDays(Math.max(1, cfg.leadDays()));
+            List<Facture> factures = store.facturesImpayeesPourDashboard(limit);
+            Map<Integer, Prestataire> cache = new HashMap<>();
+            List<AlertInfo> alerts = new ArrayList<>();
+            for (Facture facture : factures) {
+                if (facture == null || facture.isPaye()) continue;
+                LocalDate due = facture.getEcheance();
+                if (due == null) continue;
+                Prestataire prestataire = cache.computeIfAbsent(
+                        facture.getPrestataireId(),
+                        store::findPrestataire
+                );
+                if (prestataire == null) continue;
+                alerts.add(new AlertInfo(
+                        safePrestataireName(prestataire),
+                        safeFactureDescription(facture),
+                        facture.getMontantTtc(),
+                        due,
+                        due.isBefore(now.toLocalDate())
+                ));
             }
-        });
+            alerts.sort(Comparator.comparing(AlertInfo::dueDate));
+            return alerts;
+        }).whenCompleteAsync((alerts, err) -> {
+            if (err != null) {
+                renderAlertsError(AsyncDao.unwrap(err));
+            } else {
+                renderAlerts(alerts);
+            }
+        }, Platform::runLater);
     }
 
     private record AlertInfo(String prestataireName,
@@ -1106,7 +1118,7 @@ public final class MainView {
         );
     }
 
-    private void renderAlertsError(Exception ex) {
+    private void renderAlertsError(Throwable ex) {
         log.error("Unable to render alerts overview", ex);
         alertsList.getChildren().clear();
         alertsPanel.setVisible(false);
@@ -1151,60 +1163,58 @@ public final class MainView {
         Integer id = row.id();
         if (id == null) return;
 
-        exec.submit(() -> {
-            try {
-                dao.updateServiceStatus(id, status);
-                Platform.runLater(() -> {
-                    ObservableList<ServiceRow> rows = tvServices.getItems();
-                    int idx = rows.indexOf(row);
-                    if (idx >= 0) {
-                        rows.set(idx, row.withStatus(status));
-                        updateDetailCounts();
-                    }
-                });
-            } catch (Exception ex) {
+        async.run("updateServiceStatus", s -> s.updateServiceStatus(id, status)).whenCompleteAsync((v, err) -> {
+            if (err != null) {
+                Throwable ex = AsyncDao.unwrap(err);
                 log.error("Unable to update service status {} -> {} for row {}", id, status, ex);
-                Platform.runLater(() -> showError(new RuntimeException("Statut service non mis a jour : " + ex.getMessage())));
+                showError(new RuntimeException("Statut service non mis a jour : " + ex.getMessage()));
+                return;
             }
-        });
+            ObservableList<ServiceRow> rows = tvServices.getItems();
+            int idx = rows.indexOf(row);
+            if (idx >= 0) {
+                rows.set(idx, row.withStatus(status));
+                updateDetailCounts();
+            }
+        }, Platform::runLater);
     }
 
     // ============================ ACTIONS ============================
 
     private void onAdd() {
-        PrestataireFormDialog dlg = new PrestataireFormDialog(dao, null, this::refreshCurrentServices);
+        PrestataireFormDialog dlg = new PrestataireFormDialog(async, null, this::refreshCurrentServices);
         ThemeManager.apply(dlg);
-        dlg.showAndWait().ifPresent(p -> exec.submit(() -> {
-            try { int id = dao.insertPrestataire(p); p.idProperty().set(id);
-                Platform.runLater(() -> { items.add(p); table.getSelectionModel().select(p); });
-            } catch (Exception ex) { log.error("Unable to create prestataire {}", p.getNom(), ex); Platform.runLater(() -> showError(ex)); }
-        }));
+        dlg.showAndWait().ifPresent(p -> async.write("insertPrestataire", s -> s.insertPrestataire(p)).whenCompleteAsync((id, err) -> {
+            if (err != null) { Throwable ex = AsyncDao.unwrap(err); log.error("Unable to create prestataire {}", p.getNom(), ex); showError(ex); return; }
+            p.idProperty().set(id); items.add(p); table.getSelectionModel().select(p);
+        }, Platform::runLater));
     }
 
     private void onEdit() {
         Prestataire sel = table.getSelectionModel().getSelectedItem(); if (sel == null) return;
-        PrestataireFormDialog dlg = new PrestataireFormDialog(dao, clonePrestataire(sel), this::refreshCurrentServices);
+        PrestataireFormDialog dlg = new PrestataireFormDialog(async, clonePrestataire(sel), this::refreshCurrentServices);
         ThemeManager.apply(dlg);
-        dlg.showAndWait().ifPresent(p -> exec.submit(() -> {
-            try { p.idProperty().set(sel.getId()); dao.updatePrestataire(p);
-                Platform.runLater(() -> { int i = items.indexOf(sel); items.set(i, p); table.getSelectionModel().select(p); });
-            } catch (Exception ex) { log.error("Unable to update prestataire {}", sel.getId(), ex); Platform.runLater(() -> showError(ex)); }
-        }));
+        dlg.showAndWait().ifPresent(p -> {
+            p.idProperty().set(sel.getId());
+            async.run("updatePrestataire", s -> s.updatePrestataire(p)).whenCompleteAsync((v, err) -> {
+                if (err != null) { Throwable ex = AsyncDao.unwrap(err); log.error("Unable to update prestataire {}", sel.getId(), ex); showError(ex); return; }
+                int i = items.indexOf(sel); if (i >= 0) items.set(i, p); table.getSelectionModel().select(p);
+            }, Platform::runLater);
+        });
     }
 
     private void onDelete() {
         Prestataire sel = table.getSelectionModel().getSelectedItem(); if (sel == null) return;
         if (!confirm("Supprimer " + sel.getNom() + " et ses donnees ?")) return;
-        exec.submit(() -> {
-            try { dao.deletePrestataire(sel.getId());
-                Platform.runLater(() -> { items.remove(sel); clearDetails(); });
-            } catch (Exception ex) { log.error("Unable to delete prestataire {}", sel.getId(), ex); Platform.runLater(() -> showError(ex)); }
-        });
+        async.run("deletePrestataire", s -> s.deletePrestataire(sel.getId())).whenCompleteAsync((v, err) -> {
+            if (err != null) { Throwable ex = AsyncDao.unwrap(err); log.error("Unable to delete prestataire {}", sel.getId(), ex); showError(ex); return; }
+            items.remove(sel); clearDetails();
+        }, Platform::runLater);
     }
 
     private void onManageFactures() {
         Prestataire selected = table.getSelectionModel().getSelectedItem(); if (selected == null) return;
-        FacturesManagerDialog dlg = new FacturesManagerDialog(dao, selected.getId(), selected.getNom());
+        FacturesManagerDialog dlg = new FacturesManagerDialog(async, selected.getId(), selected.getNom());
         ThemeManager.apply(dlg);
         dlg.showAndWait();
         if (dlg.hasMutations()) {
@@ -1220,7 +1230,7 @@ public final class MainView {
         Alert a = new Alert(Alert.AlertType.CONFIRMATION, msg, ButtonType.YES, ButtonType.NO);
         ThemeManager.apply(a); return a.showAndWait().orElse(ButtonType.NO)==ButtonType.YES;
     }
-    private void showError(Exception ex) {
+    private void showError(Throwable ex) {
         Dialogs.error(stage, ex);
     }
 
@@ -6,13 +6,13 @@ import javafx.scene.Node;
 import javafx.scene.control.*;
 import javafx.scene.layout.GridPane;
 import javafx.scene.layout.HBox;
-import org.example.dao.DB;
+import org.example.dao.AsyncDao;
 import org.example.model.Prestataire;
 
 import java.util.regex.Pattern;
 
 public final class PrestataireFormDialog extends Dialog<Prestataire> {
-    private final DB dao;
+    private final AsyncDao dao;
     private final Prestataire baseRef;
     private final Runnable onServicesChanged;
     private final TextField tfNom = new TextField();
@@ -27,7 +27,7 @@ public final class PrestataireFormDialog extends Dialog<Prestataire> {
     private final Button    btnServices = new Button("Configurer services");
     private final Label err = new Label();
 
-    public PrestataireFormDialog(DB dao, Prestataire base, Runnable onServicesChanged) {
+    public PrestataireFormDialog(AsyncDao dao, Prestataire base, Runnable onServicesChanged) {
         this.dao = dao;
         this.baseRef = base;
         this.onServicesChanged = onServicesChanged != null ? onServicesChanged : () -> {};
@@ -1,16 +1,15 @@
 package org.example.gui;
 
 import javafx.beans.binding.BooleanBinding;
+import javafx.event.ActionEvent;
 import javafx.geometry.Insets;
 import javafx.scene.control.*;
 import javafx.scene.layout.GridPane;
-import javafx.stage.Window;
-import org.example.security.AuthService;
+import javafx.scene.layout.VBox;
+import org.example.security.LoginPipeline;
 
-import java.util.Arrays;
-
-public final class RegisterDialog extends Dialog<AuthService.Session> {
-    public RegisterDialog(AuthService auth) {
+public final class RegisterDialog<T> extends Dialog<LoginPipeline.Opened<T>> {
+    public RegisterDialog(LoginPipeline<T> pipeline) {
         setTitle("Création d'utilisateur");
         setResizable(false);
         getDialogPane().getButtonTypes().addAll(ButtonType.OK, ButtonType.CANCEL);
@@ -19,35 +18,36 @@ public final class RegisterDialog extends Dialog<AuthService.Session> {
         tfUser.setPromptText("Nom d'utilisateur");
         PasswordField pfPwd = new PasswordField();
         pfPwd.setPromptText("Mot de passe");
+        PasswordField pfPin = new PasswordField();
+        pfPin.setPromptText("Pour déverrouiller cette session");
 
         GridPane gp = new GridPane();
         gp.setHgap(8);
         gp.setVgap(8);
-        gp.setPadding(new Insets(12));
         gp.addRow(0, new Label("Utilisateur :"), tfUser);
         gp.addRow(1, new Label("Mot de passe :"), pfPwd);
-        getDialogPane().setContent(gp);
+        gp.addRow(2, new Label("Code de verrouillage :"), pfPin);
+
+        LoginProgress<T> progress = new LoginProgress<>(this, tfUser, pfPwd, pfPin);
+        VBox content = new VBox(8, gp, progress.statusBar());
+        content.setPadding(new Insets(12));
+        getDialogPane().setContent(content);
 
         Button ok = (Button) getDialogPane().lookupButton(ButtonType.OK);
-        BooleanBinding invalid = tfUser.textProperty().isEmpty().or(pfPwd.textProperty().isEmpty());
+        BooleanBinding invalid = tfUser.textProperty().isEmpty().or(pfPwd.textProperty().isEmpty())
+                .or(pfPin.textProperty().isEmpty());
         ok.disableProperty().bind(invalid);
 
-        setResultConverter(bt -> {
-            if (bt != ButtonType.OK) return null;
+        ok.addEventFilter(ActionEvent.ACTION, evt -> {
+            evt.consume();
+            if (progress.running()) return;
+            String user = tfUser.getText().trim();
             char[] pwd = pfPwd.getText().toCharArray();
-            try {
-                String user = tfUser.getText().trim();
-                auth.register(user, pwd);
-                AuthService.Session sess = auth.login(user, pfPwd.getText().toCharArray());
-                if (sess == null) throw new IllegalStateException("Échec de connexion après création");
-                return sess;
-            } catch (Exception ex) {
-                Window owner = getDialogPane().getScene() == null ? null : getDialogPane().getScene().getWindow();
-                Dialogs.error(owner, ex.getMessage() == null ? "Impossible de crÃ©er le compte." : ex.getMessage());
-                return null;
-            } finally {
-                Arrays.fill(pwd, '\0');
-            }
+            char[] pin = pfPin.getText().toCharArray();
+            progress.start(step -> pipeline.register(user, pwd, pin, step),
+                    () -> Dialogs.error(getDialogPane().getScene().getWindow(), "Échec de connexion après création"),
+                    ex -> Dialogs.error(getDialogPane().getScene().getWindow(),
+                            ex.getMessage() == null ? "Impossible de créer le compte." : ex.getMessage()));
         });
         ThemeManager.apply(this);
     }
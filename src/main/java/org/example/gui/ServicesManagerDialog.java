@@ -1,5 +1,6 @@
 package org.example.gui;
 
+import javafx.application.Platform;
 import javafx.collections.FXCollections;
 import javafx.collections.ObservableList;
 import javafx.geometry.Insets;
@@ -9,19 +10,19 @@ import javafx.scene.layout.HBox;
 import javafx.scene.layout.Priority;
 import javafx.scene.layout.VBox;
 import javafx.util.Callback;
-import org.example.dao.DB;
+import org.example.dao.AsyncDao;
 import org.example.model.ServiceRow;
 import org.example.model.ServiceStatus;
 
 import java.util.Objects;
 
 final class ServicesManagerDialog extends Dialog<Void> {
-    private final DB dao;
+    private final AsyncDao dao;
     private final int prestataireId;
     private final TableView<ServiceRow> table = new TableView<>();
     private final ObservableList<ServiceRow> items = FXCollections.observableArrayList();
 
-    ServicesManagerDialog(DB dao, int prestataireId) {
+    ServicesManagerDialog(AsyncDao dao, int prestataireId) {
         this.dao = Objects.requireNonNull(dao, "dao");
         this.prestataireId = prestataireId;
 
@@ -119,25 +120,29 @@ final class ServicesManagerDialog extends Dialog<Void> {
     }
 
     private void loadServices(Integer selectId) {
-        try {
-            items.setAll(dao.services(prestataireId));
+        dao.read("services", s -> s.services(prestataireId)).whenCompleteAsync((rows, err) -> {
+            if (err != null) {
+                showError(err);
+                return;
+            }
+            items.setAll(rows);
             if (selectId != null) selectRowById(selectId);
-        } catch (Exception ex) {
-            showError(ex);
+        }, Platform::runLater);
+    }
+
+    private void afterMutation(Integer selectId, Throwable err) {
+        if (err != null) {
+            showError(err);
+            return;
         }
+        loadServices(selectId);
     }
 
     private void onAdd() {
         ServiceFormDialog dlg = new ServiceFormDialog(null);
         ThemeManager.apply(dlg);
-        dlg.showAndWait().ifPresent(service -> {
-            try {
-                int id = dao.insertService(prestataireId, service);
-                loadServices(id);
-            } catch (Exception ex) {
-                showError(ex);
-            }
-        });
+        dlg.showAndWait().ifPresent(service -> dao.write("insertService", s -> s.insertService(prestataireId, service))
+                .whenCompleteAsync(this::afterMutation, Platform::runLater));
     }
 
     private void onEdit() {
@@ -147,12 +152,8 @@ final class ServicesManagerDialog extends Dialog<Void> {
         ThemeManager.apply(dlg);
         dlg.showAndWait().ifPresent(result -> {
             ServiceRow updated = new ServiceRow(selected.id(), result.desc(), result.date(), result.status());
-            try {
-                dao.updateService(updated);
-                loadServices(updated.id());
-            } catch (Exception ex) {
-                showError(ex);
-            }
+            dao.run("updateService", s -> s.updateService(updated))
+                    .whenCompleteAsync((v, err) -> afterMutation(updated.id(), err), Platform::runLater);
         });
     }
 
@@ -162,22 +163,14 @@ final class ServicesManagerDialog extends Dialog<Void> {
         Alert confirm = new Alert(Alert.AlertType.CONFIRMATION, "Supprimer ce service ?", ButtonType.YES, ButtonType.NO);
         ThemeManager.apply(confirm);
         if (confirm.showAndWait().orElse(ButtonType.NO) != ButtonType.YES) return;
-        try {
-            dao.deleteService(selected.id());
-            loadServices();
-        } catch (Exception ex) {
-            showError(ex);
-        }
+        dao.run("deleteService", s -> s.deleteService(selected.id()))
+                .whenCompleteAsync((v, err) -> afterMutation(null, err), Platform::runLater);
     }
 
     private void updateStatus(ServiceRow row, ServiceStatus status) {
         if (row.id() == null || status == null || status == row.status()) return;
-        try {
-            dao.updateServiceStatus(row.id(), status);
-            loadServices(row.id());
-        } catch (Exception ex) {
-            showError(ex);
-        }
+        dao.run("updateServiceStatus", s -> s.updateServiceStatus(row.id(), status))
+                .whenCompleteAsync((v, err) -> afterMutation(row.id(), err), Platform::runLater);
     }
 
     private ServiceRow selectRowById(Integer id) {
@@ -192,7 +185,8 @@ final class ServicesManagerDialog extends Dialog<Void> {
         return null;
     }
 
-    private void showError(Exception ex) {
+    private void showError(Throwable err) {
+        Throwable ex = AsyncDao.unwrap(err);
         Alert alert = new Alert(Alert.AlertType.ERROR, ex.getMessage() == null ? ex.toString() : ex.getMessage(), ButtonType.OK);
         ThemeManager.apply(alert);
         alert.showAndWait();
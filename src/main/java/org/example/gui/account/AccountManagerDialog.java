@@ -4,23 +4,31 @@ import javafx.collections.FXCollections;
 import javafx.collections.ObservableList;
 import javafx.geometry.Insets;
 import javafx.geometry.Pos;
+import javafx.scene.Node;
 import javafx.scene.Scene;
 import javafx.scene.control.*;
 import javafx.scene.layout.BorderPane;
 import javafx.scene.layout.GridPane;
 import javafx.scene.layout.HBox;
 import javafx.scene.layout.VBox;
+import javafx.stage.FileChooser;
 import javafx.stage.Modality;
 import javafx.stage.Stage;
+import org.example.dao.PortableArchive;
 import org.example.gui.Dialogs;
 import org.example.gui.ThemeManager;
 import org.example.security.AuthService;
 
+import java.io.File;
 import java.util.Arrays;
 import java.util.Optional;
+import java.util.concurrent.Callable;
 
 public final class AccountManagerDialog extends Stage {
 
+    private static final String ARCHIVE_EXTENSION = ".cpxa";
+    private static final int MIN_PASSPHRASE_LEN = 8;
+
     private final AuthService authService;
     private final AuthService.Session currentSession;
     private final Runnable onRefresh;
@@ -75,23 +83,35 @@ public final class AccountManagerDialog extends Stage {
         Button btnRename = new Button("Renommer");
         Button btnPwd = new Button("Changer mot de passe");
         Button btnDelete = new Button("Supprimer");
+        Button btnRotate = new Button("Renouveler la clé");
+        Button btnExport = new Button("Exporter…");
+        Button btnImport = new Button("Importer…");
         Button btnClose = new Button("Fermer");
 
         btnAdd.setOnAction(e -> onCreate());
         btnRename.setOnAction(e -> onRename());
         btnPwd.setOnAction(e -> onChangePassword());
         btnDelete.setOnAction(e -> onDelete());
+        btnRotate.setOnAction(e -> onRotateKey(btnRotate));
+        btnExport.setOnAction(e -> onExport(btnExport));
+        btnImport.setOnAction(e -> onImport(btnImport));
         btnClose.setOnAction(e -> close());
         btnRename.disableProperty().bind(table.getSelectionModel().selectedItemProperty().isNull());
         btnPwd.disableProperty().bind(table.getSelectionModel().selectedItemProperty().isNull());
         btnDelete.disableProperty().bind(table.getSelectionModel().selectedItemProperty().isNull());
+        btnRotate.disableProperty().bind(table.getSelectionModel().selectedItemProperty().isNull());
+        btnExport.disableProperty().bind(table.getSelectionModel().selectedItemProperty().isNull());
+        btnImport.disableProperty().bind(table.getSelectionModel().selectedItemProperty().isNull());
 
         btnAdd.getStyleClass().addAll("accent");
         btnRename.getStyleClass().addAll("outline");
         btnPwd.getStyleClass().addAll("ghost");
         btnDelete.getStyleClass().addAll("danger");
+        btnRotate.getStyleClass().addAll("ghost");
+        btnExport.getStyleClass().addAll("ghost");
+        btnImport.getStyleClass().addAll("ghost");
 
-        HBox actions = new HBox(10, btnAdd, btnRename, btnPwd, btnDelete);
+        HBox actions = new HBox(10, btnAdd, btnRename, btnPwd, btnRotate, btnExport, btnImport, btnDelete);
         actions.setAlignment(Pos.CENTER_LEFT);
 
         HBox footer = new HBox(16, actions, btnClose);
@@ -101,7 +121,7 @@ public final class AccountManagerDialog extends Stage {
 
         root.setBottom(footer);
 
-        setScene(new Scene(root, 520, 340));
+        setScene(new Scene(root, 760, 340));
         ThemeManager.apply(getScene());
         refreshUsers();
     }
@@ -190,6 +210,168 @@ public final class AccountManagerDialog extends Stage {
         }
     }
 
+    // Rechiffre toute la base du compte : long, donc hors du thread JavaFX, et interdit sur la session ouverte.
+    private void onRotateKey(Button trigger) {
+        AuthService.UserSummary selected = table.getSelectionModel().getSelectedItem();
+        if (selected == null) {
+            showWarning("Veuillez sélectionner un compte.");
+            return;
+        }
+        if (selected.id() == currentSession.userId()) {
+            showWarning("La base du compte connecté est ouverte ; renouvelez sa clé depuis un autre compte.");
+            return;
+        }
+        Optional<char[]> pwd = promptPassword("Renouveler la clé de chiffrement", selected.username(),
+                "La base sera entièrement rechiffrée ; l'opération peut être longue.");
+        if (pwd.isEmpty()) return;
+
+        inBackground(trigger, "key-rotation", () -> {
+            authService.rotateDataKey(selected.id(), pwd.get());
+            return "La base du compte \"" + selected.username() + "\" a été rechiffrée.";
+        }, "Clé renouvelée", "Échec du renouvellement de la clé.");
+    }
+
+    // L'export lit un instantané : permis sur la session ouverte.
+    private void onExport(Button trigger) {
+        AuthService.UserSummary selected = table.getSelectionModel().getSelectedItem();
+        if (selected == null) {
+            showWarning("Veuillez sélectionner un compte.");
+            return;
+        }
+        FileChooser chooser = archiveChooser("Exporter la base");
+        chooser.setInitialFileName(selected.username() + ARCHIVE_EXTENSION);
+        File file = chooser.showSaveDialog(this);
+        if (file == null) return;
+        Optional<char[]> pwd = promptPassword("Exporter la base", selected.username(),
+                "Le mot de passe du compte ouvre la base à exporter.");
+        if (pwd.isEmpty()) return;
+        Optional<char[]> passphrase = promptPassphrase(true);
+        if (passphrase.isEmpty()) {
+            Arrays.fill(pwd.get(), '\0');
+            return;
+        }
+
+        inBackground(trigger, "archive-export", () -> {
+            PortableArchive.Manifest m = authService.exportArchive(selected.id(), pwd.get(), file.toPath(), passphrase.get());
+            return m.totalRows() + " ligne(s) exportée(s) vers " + file.getName() + ".";
+        }, "Export terminé", "Échec de l'export.");
+    }
+
+    // Remplace la base du compte : interdit sur la session ouverte, comme le renouvellement de clé.
+    private void onImport(Button trigger) {
+        AuthService.UserSummary selected = table.getSelectionModel().getSelectedItem();
+        if (selected == null) {
+            showWarning("Veuillez sélectionner un compte.");
+            return;
+        }
+        if (selected.id() == currentSession.userId()) {
+            showWarning("La base du compte connecté est ouverte ; importez depuis un autre compte.");
+            return;
+        }
+        File file = archiveChooser("Importer une archive").showOpenDialog(this);
+        if (file == null) return;
+        Optional<char[]> pwd = promptPassword("Importer une archive", selected.username(),
+                "Les données actuelles du compte seront remplacées (une copie est conservée à côté de la base).");
+        if (pwd.isEmpty()) return;
+        Optional<char[]> passphrase = promptPassphrase(false);
+        if (passphrase.isEmpty()) {
+            Arrays.fill(pwd.get(), '\0');
+            return;
+        }
+
+        inBackground(trigger, "archive-import", () -> {
+            PortableArchive.Manifest m = authService.restoreArchive(selected.id(), pwd.get(), file.toPath(), passphrase.get());
+            return m.totalRows() + " ligne(s) importée(s) dans le compte \"" + selected.username() + "\".";
+        }, "Import terminé", "Échec de l'import.");
+    }
+
+    /** Lance {@code work} sur un thread dédié, bouton désactivé, et affiche son message ou son erreur. */
+    private void inBackground(Button trigger, String threadName, Callable<String> work, String title, String failure) {
+        trigger.disableProperty().unbind();
+        trigger.setDisable(true);
+        Thread worker = new Thread(() -> {
+            String message = null;
+            Exception error = null;
+            try {
+                message = work.call();
+            } catch (Exception ex) {
+                error = ex;
+            }
+            String done = message;
+            Exception failed = error;
+            javafx.application.Platform.runLater(() -> {
+                trigger.disableProperty().bind(table.getSelectionModel().selectedItemProperty().isNull());
+                if (failed == null) {
+                    showInfo(title, done);
+                } else {
+                    showError(failed.getMessage() != null ? failed.getMessage() : failure);
+                }
+            });
+        }, threadName);
+        worker.setDaemon(true);
+        worker.start();
+    }
+
+    private static FileChooser archiveChooser(String title) {
+        FileChooser chooser = new FileChooser();
+        chooser.setTitle(title);
+        chooser.getExtensionFilters().add(
+                new FileChooser.ExtensionFilter("Archive chiffrée (*" + ARCHIVE_EXTENSION + ")", "*" + ARCHIVE_EXTENSION));
+        return chooser;
+    }
+
+    private Optional<char[]> promptPassword(String title, String username, String message) {
+        Dialog<char[]> dialog = new Dialog<>();
+        dialog.setTitle(title);
+        dialog.setHeaderText("Mot de passe de \"" + username + "\"");
+        dialog.initOwner(getOwner());
+        dialog.getDialogPane().getButtonTypes().addAll(ButtonType.OK, ButtonType.CANCEL);
+
+        PasswordField pf = new PasswordField();
+        VBox box = new VBox(8, new Label(message), pf);
+        box.setPadding(new Insets(20, 10, 10, 10));
+        dialog.getDialogPane().setContent(box);
+        ThemeManager.apply(dialog);
+
+        dialog.setResultConverter(button -> button == ButtonType.OK && !pf.getText().isEmpty()
+                ? pf.getText().toCharArray() : null);
+        Optional<char[]> out = dialog.showAndWait();
+        pf.clear();
+        return out;
+    }
+
+    // Phrase de passe de l'archive, indépendante des comptes ; saisie deux fois à l'export.
+    private Optional<char[]> promptPassphrase(boolean confirm) {
+        Dialog<char[]> dialog = new Dialog<>();
+        dialog.setTitle(confirm ? "Protéger l'archive" : "Ouvrir l'archive");
+        dialog.setHeaderText("Phrase de passe de l'archive");
+        dialog.initOwner(getOwner());
+        dialog.getDialogPane().getButtonTypes().addAll(ButtonType.OK, ButtonType.CANCEL);
+
+        PasswordField pf = new PasswordField();
+        PasswordField again = new PasswordField();
+        VBox box = new VBox(8, new Label(confirm
+                ? "Elle sera demandée pour importer l'archive, sur ce poste ou un autre."
+                : "Phrase de passe choisie lors de l'export."), pf);
+        if (confirm) {
+            again.setPromptText("Confirmation");
+            box.getChildren().add(again);
+            Node ok = dialog.getDialogPane().lookupButton(ButtonType.OK);
+            ok.disableProperty().bind(pf.textProperty().length().lessThan(MIN_PASSPHRASE_LEN)
+                    .or(pf.textProperty().isNotEqualTo(again.textProperty())));
+        }
+        box.setPadding(new Insets(20, 10, 10, 10));
+        dialog.getDialogPane().setContent(box);
+        ThemeManager.apply(dialog);
+
+        dialog.setResultConverter(button -> button == ButtonType.OK && !pf.getText().isEmpty()
+                ? pf.getText().toCharArray() : null);
+        Optional<char[]> out = dialog.showAndWait();
+        pf.clear();
+        again.clear();
+        return out;
+    }
+
     private void onDelete() {
         AuthService.UserSummary selected = table.getSelectionModel().getSelectedItem();
         if (selected == null) {
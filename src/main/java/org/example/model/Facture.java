@@ -73,6 +73,11 @@ public final class Facture implements Serializable {
     public ObjectProperty<LocalDate>  datePaiementProperty()  { return datePaiement; }
     public BooleanProperty            preavisEnvoyeProperty() { return preavisEnvoye; }
 
+    public Facture copy() {
+        return new Facture(getId(), getPrestataireId(), getDescription(), getEcheance(), getMontantHt(), getTvaPct(),
+                getMontantTva(), getMontantTtc(), isPaye(), getDatePaiement(), isPreavisEnvoye());
+    }
+
     public static BigDecimal calcTva(BigDecimal ht, BigDecimal pct) {
         if (ht == null || pct == null) return BigDecimal.ZERO;
         return ht.multiply(pct).divide(BigDecimal.valueOf(100));
@@ -89,6 +89,57 @@ public record NotificationSettings(
         );
     }
 
+    public NotificationSettings(
+            int leadDays,
+            int reminderHour,
+            int reminderMinute,
+            int repeatEveryHours,
+            boolean highlightOverdue,
+            boolean desktopPopup,
+            int snoozeMinutes,
+            boolean emailEnabled,
+            String emailRecipient,
+            String emailFrom,
+            String smtpHost,
+            int smtpPort,
+            String smtpUsername,
+            String smtpPassword,
+            SmtpSecurity smtpSecurity,
+            String subjectTemplate,
+            String bodyTemplate,
+            boolean supplierEmailEnabled,
+            boolean supplierSendOnDueDate,
+            String supplierSubjectTemplate,
+            String supplierBodyTemplate
+    ) {
+        this(
+                leadDays,
+                reminderHour,
+                reminderMinute,
+                repeatEveryHours,
+                highlightOverdue,
+                desktopPopup,
+                snoozeMinutes,
+                emailEnabled,
+                emailRecipient,
+                emailFrom,
+                defaults().emailFromName(),
+                "",
+                defaults().emailSignature(),
+                smtpHost,
+                smtpPort,
+                smtpUsername,
+                smtpPassword,
+                smtpSecurity,
+                subjectTemplate,
+                bodyTemplate,
+                supplierEmailEnabled,
+                supplierSendOnDueDate,
+                supplierSubjectTemplate,
+                supplierBodyTemplate
+        );
+    }
+
     public static NotificationSettings defaults() {
         return new NotificationSettings(
                 3,
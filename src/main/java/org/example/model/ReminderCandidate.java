@@ -0,0 +1,14 @@
+package org.example.model;
+
+import java.time.LocalDateTime;
+import java.util.Objects;
+
+/**
+ * Facture dont la prochaine relance planifiée est échue, avec l'horodatage de la dernière relance (ou {@code null}).
+ */
+public record ReminderCandidate(Facture facture, LocalDateTime lastReminder) {
+
+    public ReminderCandidate {
+        Objects.requireNonNull(facture, "facture");
+    }
+}
@@ -0,0 +1,93 @@
+package org.example.notifications;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Étage d'envoi SMTP : un pool borné d'ouvriers, et au plus {@code perHost} envois simultanés vers un même serveur.
+ * Il ne touche pas à la base ; le thread des notifications enregistre les résultats dans l'ordre de la file.
+ */
+final class EmailDispatcher {
+
+    static final int DEFAULT_WORKERS = Math.max(1, Integer.getInteger("app.smtpWorkers", 4));
+    static final int DEFAULT_PER_HOST = Math.max(1, Integer.getInteger("app.smtpPerHost", 2));
+
+    private final EmailSender sender;
+    private final int perHost;
+    private final ExecutorService workers;
+    private final ConcurrentMap<String, Semaphore> hosts = new ConcurrentHashMap<>();
+    private volatile boolean draining;
+
+    EmailDispatcher(EmailSender sender, int workers, int perHost) {
+        this.sender = sender;
+        this.perHost = Math.max(1, perHost);
+        AtomicInteger seq = new AtomicInteger();
+        this.workers = Executors.newFixedThreadPool(Math.max(1, workers), r -> {
+            Thread t = new Thread(r, "email-dispatch-" + seq.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    /**
+     * Met l'envoi en file. Le futur échoue avec l'erreur SMTP, ou est annulé si l'envoi n'a pas démarré avant
+     * {@link #drain} : le rappel reste alors en attente pour la prochaine session.
+     */
+    CompletableFuture<Void> submit(NotificationSettingsSnapshot cfg, EmailMessage message) {
+        CompletableFuture<Void> result = new CompletableFuture<>();
+        try {
+            workers.execute(() -> deliver(cfg, message, result));
+        } catch (RejectedExecutionException stopped) {
+            result.cancel(false);
+        }
+        return result;
+    }
+
+    private void deliver(NotificationSettingsSnapshot cfg, EmailMessage message, CompletableFuture<Void> result) {
+        Semaphore slot = hosts.computeIfAbsent(hostKey(cfg), k -> new Semaphore(perHost));
+        try {
+            slot.acquire();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            result.cancel(false);
+            return;
+        }
+        try {
+            if (draining) {
+                result.cancel(false);
+                return;
+            }
+            sender.send(cfg, message);
+            result.complete(null);
+        } catch (Throwable t) {
+            result.completeExceptionally(t);
+        } finally {
+            slot.release();
+        }
+    }
+
+    /** Plus aucun envoi ne démarre ; ceux en cours ont jusqu'à {@code timeout} pour aboutir. */
+    boolean drain(Duration timeout) throws InterruptedException {
+        draining = true;
+        workers.shutdown();
+        return workers.awaitTermination(timeout.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    void shutdownNow() {
+        draining = true;
+        workers.shutdownNow();
+    }
+
+    private static String hostKey(NotificationSettingsSnapshot cfg) {
+        return cfg.smtpProperties().getProperty("mail.smtp.host", "") + ":"
+                + cfg.smtpProperties().getProperty("mail.smtp.port", "");
+    }
+}
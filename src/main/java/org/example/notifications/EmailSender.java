@@ -4,4 +4,13 @@ import org.example.model.NotificationSettings;
 
 public interface EmailSender {
     void send(NotificationSettings settings, EmailMessage message) throws Exception;
+
+    /** Envoi à partir de réglages déjà préparés ; par défaut, retombe sur {@link #send(NotificationSettings, EmailMessage)}. */
+    default void send(NotificationSettingsSnapshot settings, EmailMessage message) throws Exception {
+        send(settings.settings(), message);
+    }
+
+    /** Libère les connexions gardées ouvertes, le cas échéant. */
+    default void close() {
+    }
 }
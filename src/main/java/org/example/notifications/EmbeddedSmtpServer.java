@@ -0,0 +1,356 @@
+package org.example.notifications;
+
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLSocket;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.Locale;
+import java.util.Properties;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Serveur SMTP en mémoire, sur la boucle locale : STARTTLS avec un certificat auto-signé, AUTH PLAIN et LOGIN,
+ * latence et échecs temporaires simulés, messages gardés en mémoire. Permet d'exercer {@link SmtpEmailSender} et
+ * toute la file d'envoi sans réseau ni vrai serveur ; {@link OutboxBenchmark} s'en sert pour mesurer le débit.
+ */
+final class EmbeddedSmtpServer implements AutoCloseable {
+
+    /**
+     * {@code latency} est attendue avant chaque réponse ; {@code failureRate} est la part des messages refusés en fin de
+     * DATA par un 451 (tirage reproductible selon {@code seed}). Identifiant nul : AUTH non exigée.
+     */
+    record Options(boolean startTls, String username, String password, Duration latency, double failureRate, long seed) {
+        static Options plain() {
+            return new Options(false, null, null, Duration.ZERO, 0, 42);
+        }
+
+        Options withStartTls() {
+            return new Options(true, username, password, latency, failureRate, seed);
+        }
+
+        Options withAuth(String user, String pwd) {
+            return new Options(startTls, user, pwd, latency, failureRate, seed);
+        }
+
+        Options withLatency(Duration delay) {
+            return new Options(startTls, username, password, delay, failureRate, seed);
+        }
+
+        Options withFailureRate(double rate) {
+            return new Options(startTls, username, password, latency, rate, seed);
+        }
+    }
+
+    /** Message accepté : enveloppe, contenu brut (en-têtes compris) et conditions de la session. */
+    record Received(String from, List<String> recipients, String data, String user, boolean tls) {
+    }
+
+    private final Options options;
+    private final ServerSocket server;
+    private final SSLContext serverTls;
+    private final SSLContext clientTls;
+    private final Random failures;
+    private final Set<Socket> open = ConcurrentHashMap.newKeySet();
+    private final List<Received> messages = new CopyOnWriteArrayList<>();
+    private final AtomicInteger connections = new AtomicInteger();
+    private final AtomicInteger rejected = new AtomicInteger();
+
+    EmbeddedSmtpServer(Options options) throws IOException {
+        this.options = options;
+        this.failures = new Random(options.seed());
+        if (options.startTls()) {
+            try {
+                SelfSignedCertificate cert = SelfSignedCertificate.create("localhost", Duration.ofDays(1));
+                serverTls = cert.serverContext();
+                clientTls = cert.clientContext();
+            } catch (GeneralSecurityException e) {
+                throw new IOException("Certificat de test impossible à créer : " + e.getMessage(), e);
+            }
+        } else {
+            serverTls = null;
+            clientTls = null;
+        }
+        server = new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+        Thread acceptor = new Thread(this::acceptLoop, "smtp-embedded-accept");
+        acceptor.setDaemon(true);
+        acceptor.start();
+    }
+
+    String host() {
+        return server.getInetAddress().getHostAddress();
+    }
+
+    int port() {
+        return server.getLocalPort();
+    }
+
+    /** Propriétés JavaMail à ajouter côté client pour faire confiance au certificat auto-signé. */
+    Properties clientProperties() {
+        Properties props = new Properties();
+        if (clientTls != null) {
+            props.put("mail.smtp.ssl.socketFactory", clientTls.getSocketFactory());
+            props.put("mail.smtp.starttls.required", "true");
+        }
+        return props;
+    }
+
+    int connections() {
+        return connections.get();
+    }
+
+    /** Messages refusés par l'injection d'échecs. */
+    int rejected() {
+        return rejected.get();
+    }
+
+    List<Received> messages() {
+        return messages;
+    }
+
+    /** Coupe les connexions ouvertes sans QUIT, comme un serveur qui expire ses clients inactifs. */
+    void dropConnections() {
+        for (Socket s : open) {
+            closeQuietly(s);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        server.close();
+        dropConnections();
+    }
+
+    private void acceptLoop() {
+        while (!server.isClosed()) {
+            try {
+                Socket s = server.accept();
+                int n = connections.incrementAndGet();
+                open.add(s);
+                Thread t = new Thread(() -> serve(s), "smtp-embedded-" + n);
+                t.setDaemon(true);
+                t.start();
+            } catch (IOException closed) {
+                return;
+            }
+        }
+    }
+
+    private void serve(Socket accepted) {
+        Session session = new Session(accepted);
+        try {
+            session.run();
+        } catch (IOException dropped) {
+            // Client parti ou connexion coupée par dropConnections().
+        } finally {
+            open.remove(session.socket);
+            open.remove(accepted);
+            closeQuietly(session.socket);
+        }
+    }
+
+    private boolean failNext() {
+        if (options.failureRate() <= 0) {
+            return false;
+        }
+        synchronized (failures) {
+            return failures.nextDouble() < options.failureRate();
+        }
+    }
+
+    /** Une connexion cliente ; ses flux sont remplacés après STARTTLS. */
+    private final class Session {
+        private Socket socket;
+        private BufferedReader in;
+        private OutputStream out;
+        private boolean tls;
+        private String user;
+        private String from;
+        private final List<String> recipients = new ArrayList<>();
+
+        Session(Socket socket) {
+            this.socket = socket;
+        }
+
+        void run() throws IOException {
+            bind(socket);
+            reply("220 localhost ESMTP");
+            String line;
+            while ((line = in.readLine()) != null) {
+                String verb = verb(line);
+                switch (verb) {
+                    case "EHLO" -> reply(ehlo());
+                    case "HELO" -> reply("250 localhost");
+                    case "STARTTLS" -> startTls();
+                    case "AUTH" -> auth(line);
+                    case "MAIL" -> {
+                        if (options.username() != null && user == null) {
+                            reply("530 5.7.0 Authentication required");
+                        } else {
+                            from = argument(line);
+                            recipients.clear();
+                            reply("250 2.1.0 OK");
+                        }
+                    }
+                    case "RCPT" -> {
+                        recipients.add(argument(line));
+                        reply("250 2.1.5 OK");
+                    }
+                    case "DATA" -> data();
+                    case "RSET" -> {
+                        from = null;
+                        recipients.clear();
+                        reply("250 2.0.0 OK");
+                    }
+                    case "NOOP" -> reply("250 2.0.0 OK");
+                    case "QUIT" -> {
+                        reply("221 2.0.0 Bye");
+                        return;
+                    }
+                    default -> reply("502 5.5.2 Command not implemented");
+                }
+            }
+        }
+
+        private String ehlo() {
+            StringBuilder sb = new StringBuilder("250-localhost\r\n250-8BITMIME");
+            if (serverTls != null && !tls) {
+                sb.append("\r\n250-STARTTLS");
+            }
+            // Comme un vrai serveur : pas d'AUTH en clair quand STARTTLS est proposé.
+            if (options.username() != null && (serverTls == null || tls)) {
+                sb.append("\r\n250-AUTH PLAIN LOGIN");
+            }
+            return sb.append("\r\n250 SMTPUTF8").toString();
+        }
+
+        private void startTls() throws IOException {
+            if (serverTls == null || tls) {
+                reply("502 5.5.1 STARTTLS not available");
+                return;
+            }
+            reply("220 2.0.0 Ready to start TLS");
+            SSLSocket secured = (SSLSocket) serverTls.getSocketFactory()
+                    .createSocket(socket, socket.getInetAddress().getHostAddress(), socket.getPort(), true);
+            secured.setUseClientMode(false);
+            secured.startHandshake();
+            open.add(secured);
+            socket = secured;
+            bind(secured);
+            tls = true;
+            user = null;
+        }
+
+        private void auth(String line) throws IOException {
+            String[] parts = line.split(" ");
+            String mechanism = parts.length > 1 ? parts[1].toUpperCase(Locale.ROOT) : "";
+            String login;
+            String pwd;
+            if (mechanism.equals("PLAIN")) {
+                String encoded = parts.length > 2 ? parts[2] : challenge("");
+                String[] fields = decode(encoded).split("\0", -1);
+                login = fields.length == 3 ? fields[1] : "";
+                pwd = fields.length == 3 ? fields[2] : "";
+            } else if (mechanism.equals("LOGIN")) {
+                login = decode(parts.length > 2 ? parts[2] : challenge("VXNlcm5hbWU6"));
+                pwd = decode(challenge("UGFzc3dvcmQ6"));
+            } else {
+                reply("504 5.5.4 Unrecognized authentication type");
+                return;
+            }
+            if (login.equals(options.username()) && pwd.equals(options.password())) {
+                user = login;
+                reply("235 2.7.0 Authentication successful");
+            } else {
+                reply("535 5.7.8 Authentication credentials invalid");
+            }
+        }
+
+        private void data() throws IOException {
+            if (from == null || recipients.isEmpty()) {
+                reply("503 5.5.1 Bad sequence of commands");
+                return;
+            }
+            reply("354 End data with <CR><LF>.<CR><LF>");
+            StringBuilder data = new StringBuilder();
+            String line;
+            while ((line = in.readLine()) != null && !line.equals(".")) {
+                data.append(line.startsWith("..") ? line.substring(1) : line).append("\r\n");
+            }
+            if (failNext()) {
+                rejected.incrementAndGet();
+                reply("451 4.3.0 Temporary failure (injected)");
+            } else {
+                messages.add(new Received(from, List.copyOf(recipients), data.toString(), user, tls));
+                reply("250 2.0.0 OK queued");
+            }
+            from = null;
+            recipients.clear();
+        }
+
+        private String challenge(String prompt) throws IOException {
+            reply("334 " + prompt);
+            String answer = in.readLine();
+            return answer == null ? "" : answer;
+        }
+
+        private void bind(Socket s) throws IOException {
+            in = new BufferedReader(new InputStreamReader(s.getInputStream(), StandardCharsets.UTF_8));
+            out = s.getOutputStream();
+        }
+
+        private void reply(String text) throws IOException {
+            if (!options.latency().isZero()) {
+                try {
+                    Thread.sleep(options.latency().toMillis(), options.latency().toNanosPart() % 1_000_000);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IOException("Interrompu", e);
+                }
+            }
+            out.write((text + "\r\n").getBytes(StandardCharsets.UTF_8));
+            out.flush();
+        }
+    }
+
+    private static String verb(String line) {
+        int space = line.indexOf(' ');
+        return (space < 0 ? line : line.substring(0, space)).toUpperCase(Locale.ROOT);
+    }
+
+    private static String argument(String line) {
+        int open = line.indexOf('<');
+        int close = line.indexOf('>', open + 1);
+        return open >= 0 && close > open ? line.substring(open + 1, close) : "";
+    }
+
+    private static String decode(String base64) {
+        try {
+            return new String(Base64.getDecoder().decode(base64.trim()), StandardCharsets.UTF_8);
+        } catch (IllegalArgumentException e) {
+            return "";
+        }
+    }
+
+    private static void closeQuietly(Socket s) {
+        try {
+            s.close();
+        } catch (IOException ignored) {
+            // Déjà fermée.
+        }
+    }
+}
@@ -1,70 +1,94 @@
 package org.example.notifications;
 
-import org.example.dao.DB;
+import org.example.dao.DataStore;
 import org.example.model.Facture;
 import org.example.model.NotificationSettings;
 import org.example.model.Prestataire;
 import org.example.model.Rappel;
+import org.example.model.ReminderCandidate;
 import org.example.util.NotificationTemplateEngine;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.math.BigDecimal;
 import java.text.NumberFormat;
+import java.time.Duration;
 import java.time.Instant;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.ZoneId;
 import java.time.ZoneOffset;
 import java.time.temporal.ChronoUnit;
-import java.util.HashSet;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Locale;
-import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
-import java.util.Set;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.Executors;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.function.Supplier;
 
 public final class NotificationService {
 
     private static final Logger log = LoggerFactory.getLogger(NotificationService.class);
     private static final int MAX_FAILURE_ATTEMPTS = 6;
-
-    private final DB dao;
+    /** Plafond d'attente : rattrape un changement d'heure ou un écouteur de données manquant. */
+    private static final Duration MAX_SLEEP = Duration.ofHours(1);
+    /** Relance échue mais que le tour n'a pu traiter (SMTP incomplet, destinataire absent…) : cadence de l'ancien sondage. */
+    private static final Duration STUCK_RETRY = Duration.ofSeconds(60);
+    /** Regroupe les commits d'une même rafale et laisse le dernier devenir visible avant de relire les échéances. */
+    private static final long RESCHEDULE_DELAY_MS = 250;
+    /** Couvre un envoi SMTP en cours (délais de connexion et d'écriture de 10 s chacun). */
+    private static final Duration DRAIN_TIMEOUT = Duration.ofSeconds(25);
+
+    private final DataStore dao;
     private final DesktopNotifier notifier;
     private final EmailSender emailSender;
     private final ScheduledExecutorService executor;
-    private final Map<Integer, Instant> reminderHistory = new ConcurrentHashMap<>();
+    private final EmailDispatcher dispatcher;
     private final NumberFormat currencyFormat = NumberFormat.getCurrencyInstance(Locale.FRANCE);
 
-    private volatile NotificationSettings settings;
+    /** Réglages en vigueur ; remplacés d'un bloc par {@link #updateSettings}, jamais modifiés en place. */
+    private volatile NotificationSettingsSnapshot current;
     private volatile Instant snoozeUntil = Instant.EPOCH;
-
-    public NotificationService(DB dao,
+    private volatile boolean paused;
+    private final AtomicBoolean rescheduleQueued = new AtomicBoolean();
+    private volatile Thread runner;
+    // Confinés au thread des notifications.
+    private ScheduledFuture<?> nextRun;
+    private Instant lastTickStart = Instant.EPOCH;
+
+    public NotificationService(DataStore dao,
                                DesktopNotifier notifier,
                                Supplier<NotificationSettings> initialSettingsSupplier) {
         this(dao, notifier, new SmtpEmailSender(), initialSettingsSupplier);
     }
 
-    public NotificationService(DB dao,
+    public NotificationService(DataStore dao,
                                DesktopNotifier notifier,
                                EmailSender emailSender,
                                Supplier<NotificationSettings> initialSettingsSupplier) {
         this.dao = Objects.requireNonNull(dao, "dao");
         this.notifier = Objects.requireNonNull(notifier, "notifier");
         this.emailSender = Objects.requireNonNull(emailSender, "emailSender");
-        this.settings = Objects.requireNonNull(initialSettingsSupplier.get(), "settings").normalized();
-        this.executor = Executors.newSingleThreadScheduledExecutor(r -> {
+        this.current = NotificationSettingsSnapshot.of(Objects.requireNonNull(initialSettingsSupplier.get(), "settings"));
+        this.dispatcher = new EmailDispatcher(emailSender, EmailDispatcher.DEFAULT_WORKERS, EmailDispatcher.DEFAULT_PER_HOST);
+        ScheduledThreadPoolExecutor scheduler = new ScheduledThreadPoolExecutor(1, r -> {
             Thread t = new Thread(r, "notifications-runner");
             t.setDaemon(true);
+            runner = t;
             return t;
         });
-        seedReminderHistory();
+        // À l'arrêt, le tour en cours se termine mais les réveils planifiés sont abandonnés.
+        scheduler.setExecuteExistingDelayedTasksAfterShutdownPolicy(false);
+        this.executor = scheduler;
     }
 
     public record DeliveryCheck(boolean success, String title, String message) {
@@ -88,36 +112,90 @@ public final class NotificationService {
     private record SendContext(Facture facture, Prestataire prestataire, String recipient) {
     }
 
+    /**
+     * Premier tour tout de suite, puis sommeil jusqu'à la prochaine relance ou au prochain rappel à envoyer, lus en tête
+     * des index de la base. Un changement de données ({@link #reschedule()}) ou de réglages réarme l'échéance.
+     */
     public void start() {
-        executor.scheduleAtFixedRate(this::safeTick, 0, 60, TimeUnit.SECONDS);
+        runNow();
     }
 
+    /**
+     * Arrêt en douceur : plus aucun envoi ne démarre, ceux en cours aboutissent et leur statut est enregistré avant
+     * de rendre la main ; les rappels restés en file seront repris à la prochaine session.
+     */
     public void stop() {
-        executor.shutdownNow();
+        executor.shutdown();
+        try {
+            dispatcher.drain(DRAIN_TIMEOUT);
+            executor.awaitTermination(DRAIN_TIMEOUT.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        } finally {
+            dispatcher.shutdownNow();
+            executor.shutdownNow();
+            emailSender.close();
+        }
     }
 
     public void runNow() {
-        executor.execute(this::safeTick);
+        executor.execute(this::runAndArm);
+    }
+
+    /** Données modifiées : la prochaine échéance est relue sous peu, plusieurs appels rapprochés n'en font qu'un. */
+    public void reschedule() {
+        // Les écritures du tour lui-même sont suivies d'un réarmement : inutile de se réveiller pour elles.
+        if (Thread.currentThread() == runner || !rescheduleQueued.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            executor.schedule(() -> {
+                rescheduleQueued.set(false);
+                arm(false);
+            }, RESCHEDULE_DELAY_MS, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException stopped) {
+            rescheduleQueued.set(false);
+        }
     }
 
     public void runNow(NotificationSettings previewSettings) {
-        NotificationSettings candidate = previewSettings == null ? null : previewSettings.normalized();
-        if (candidate == null) {
+        if (previewSettings == null) {
             runNow();
             return;
         }
+        NotificationSettingsSnapshot candidate = resolve(previewSettings);
         executor.execute(() -> safeTick(candidate));
     }
 
     public NotificationSettings currentSettings() {
-        return settings;
+        return current.settings();
+    }
+
+    public NotificationSettingsSnapshot currentSnapshot() {
+        return current;
     }
 
     public void updateSettings(NotificationSettings newSettings) {
         if (newSettings == null) {
             return;
         }
-        this.settings = newSettings.normalized();
+        this.current = NotificationSettingsSnapshot.of(newSettings);
+        reschedule();
+    }
+
+    /**
+     * Session verrouillée : les tours planifiés passent leur chemin, la clé de la base n'étant plus disponible, et les
+     * connexions SMTP authentifiées gardées ouvertes sont fermées.
+     */
+    public void pause() {
+        paused = true;
+        emailSender.close();
+    }
+
+    /** Reprend et rattrape aussitôt le tour manqué. */
+    public void resume() {
+        paused = false;
+        runNow();
     }
 
     public void snooze(java.time.Duration duration) {
@@ -126,10 +204,11 @@ public final class NotificationService {
         } else {
             snoozeUntil = Instant.now().plus(duration);
         }
+        reschedule();
     }
 
     public DeliveryCheck testDesktopNotification(NotificationSettings previewSettings) {
-        NotificationSettings candidate = previewSettings == null ? settings : previewSettings.normalized();
+        NotificationSettingsSnapshot candidate = resolve(previewSettings);
         try {
             NotificationTemplateEngine.Context sample = NotificationTemplateEngine.sampleContext();
             NotificationTemplateEngine.Context ctx = new NotificationTemplateEngine.Context(
@@ -137,12 +216,12 @@ public final class NotificationService {
                     sample.facture(),
                     sample.dueDate(),
                     sample.montant(),
-                    relativeLabel(candidate.leadDays()),
-                    candidate.leadDays(),
+                    relativeLabel(candidate.settings().leadDays()),
+                    candidate.settings().leadDays(),
                     false
             );
-            String title = NotificationTemplateEngine.render(candidate.subjectTemplate(), ctx);
-            String body = NotificationTemplateEngine.render(candidate.bodyTemplate(), ctx);
+            String title = candidate.subject().render(ctx);
+            String body = candidate.body().render(ctx);
             notifier.notify(title, body);
             return new DeliveryCheck(true, "Notification de bureau envoyée", "Un aperçu local vient d'être généré.");
         } catch (Exception ex) {
@@ -152,11 +231,11 @@ public final class NotificationService {
     }
 
     public DeliveryCheck testManagerEmail(NotificationSettings previewSettings) {
-        NotificationSettings candidate = previewSettings == null ? settings : previewSettings.normalized();
+        NotificationSettingsSnapshot candidate = resolve(previewSettings);
         if (!candidate.smtpReady()) {
             return new DeliveryCheck(false, "SMTP incomplet", "Le transport SMTP n'est pas configuré correctement.");
         }
-        if (!NotificationSettings.looksLikeEmail(candidate.emailRecipient())) {
+        if (!NotificationSettings.looksLikeEmail(candidate.settings().emailRecipient())) {
             return new DeliveryCheck(false, "Destinataire manquant", "Renseignez l'adresse e-mail du gestionnaire.");
         }
         try {
@@ -166,18 +245,18 @@ public final class NotificationService {
                     sample.facture(),
                     sample.dueDate(),
                     sample.montant(),
-                    relativeLabel(candidate.leadDays()),
-                    candidate.leadDays(),
+                    relativeLabel(candidate.settings().leadDays()),
+                    candidate.settings().leadDays(),
                     false
             );
-            String subject = NotificationTemplateEngine.render(candidate.subjectTemplate(), ctx);
-            String body = NotificationTemplateEngine.render(candidate.bodyTemplate(), ctx);
-            EmailMessage message = buildEmailMessage(candidate, candidate.emailRecipient(), subject, body);
+            String subject = candidate.subject().render(ctx);
+            String body = candidate.body().render(ctx);
+            EmailMessage message = buildEmailMessage(candidate, candidate.settings().emailRecipient(), subject, body);
             if (message == null) {
                 return new DeliveryCheck(false, "Paramètres invalides", "Impossible de résoudre l'expéditeur ou le destinataire.");
             }
             emailSender.send(candidate, message);
-            return new DeliveryCheck(true, "E-mail gestionnaire envoyé", "L'aperçu a été envoyé à " + candidate.emailRecipient() + ".");
+            return new DeliveryCheck(true, "E-mail gestionnaire envoyé", "L'aperçu a été envoyé à " + candidate.settings().emailRecipient() + ".");
         } catch (Exception ex) {
             log.error("Unable to send manager email preview", ex);
             return new DeliveryCheck(false, "Échec de l'e-mail gestionnaire", failureMessage(ex));
@@ -185,11 +264,11 @@ public final class NotificationService {
     }
 
     public DeliveryCheck testSupplierEmail(NotificationSettings previewSettings) {
-        NotificationSettings candidate = previewSettings == null ? settings : previewSettings.normalized();
+        NotificationSettingsSnapshot candidate = resolve(previewSettings);
         if (!candidate.smtpReady()) {
             return new DeliveryCheck(false, "SMTP incomplet", "Le transport SMTP n'est pas configuré correctement.");
         }
-        String previewRecipient = firstNonBlank(candidate.emailRecipient(), candidate.resolvedSenderAddress());
+        String previewRecipient = firstNonBlank(candidate.settings().emailRecipient(), candidate.senderAddress());
         if (!NotificationSettings.looksLikeEmail(previewRecipient)) {
             return new DeliveryCheck(false, "Boîte de test manquante", "Renseignez l'adresse du gestionnaire ou l'adresse d'expédition.");
         }
@@ -200,12 +279,12 @@ public final class NotificationService {
                     sample.facture(),
                     sample.dueDate(),
                     sample.montant(),
-                    relativeLabel(candidate.leadDays()),
-                    candidate.leadDays(),
+                    relativeLabel(candidate.settings().leadDays()),
+                    candidate.settings().leadDays(),
                     false
             );
-            String subject = NotificationTemplateEngine.render(candidate.supplierSubjectTemplate(), ctx);
-            String body = NotificationTemplateEngine.render(candidate.supplierBodyTemplate(), ctx);
+            String subject = candidate.supplierSubject().render(ctx);
+            String body = candidate.supplierBody().render(ctx);
             EmailMessage message = buildEmailMessage(candidate, previewRecipient, subject, body);
             if (message == null) {
                 return new DeliveryCheck(false, "Paramètres invalides", "Impossible de résoudre l'expéditeur ou la boîte de test.");
@@ -240,9 +319,9 @@ public final class NotificationService {
     }
 
     public ReminderSnapshot snapshot(NotificationSettings previewSettings) {
-        NotificationSettings candidate = previewSettings == null ? settings : previewSettings.normalized();
+        NotificationSettingsSnapshot candidate = resolve(previewSettings);
         LocalDateTime now = LocalDateTime.now();
-        LocalDateTime horizon = now.plusDays(Math.max(candidate.leadDays(), 1));
+        LocalDateTime horizon = now.plusDays(Math.max(candidate.settings().leadDays(), 1));
         List<Facture> factures = dao.facturesImpayeesPourDashboard(horizon);
         int overdue = 0;
         int upcoming = 0;
@@ -266,14 +345,14 @@ public final class NotificationService {
         int sent = dao.countRappelsByStatus(Rappel.STATUS_SENT);
         int skipped = dao.countRappelsByStatus(Rappel.STATUS_SKIPPED);
 
-        String managerSummary = candidate.emailEnabled()
-                ? (NotificationSettings.looksLikeEmail(candidate.emailRecipient())
-                ? "Gestionnaire : " + candidate.emailRecipient()
+        String managerSummary = candidate.settings().emailEnabled()
+                ? (NotificationSettings.looksLikeEmail(candidate.settings().emailRecipient())
+                ? "Gestionnaire : " + candidate.settings().emailRecipient()
                 : "Gestionnaire : adresse à compléter")
                 : "Gestionnaire : désactivé";
-        String supplierSummary = candidate.supplierEmailEnabled()
-                ? "Prestataires : relance J-" + candidate.leadDays()
-                + (candidate.supplierSendOnDueDate() ? " + jour J" : "")
+        String supplierSummary = candidate.settings().supplierEmailEnabled()
+                ? "Prestataires : relance J-" + candidate.settings().leadDays()
+                + (candidate.settings().supplierSendOnDueDate() ? " + jour J" : "")
                 : "Prestataires : désactivé";
 
         return new ReminderSnapshot(
@@ -284,8 +363,8 @@ public final class NotificationService {
                 failed,
                 sent,
                 skipped,
-                candidate.summary(Locale.FRENCH),
-                candidate.senderSummary(),
+                candidate.settings().summary(Locale.FRENCH),
+                candidate.settings().senderSummary(),
                 managerSummary,
                 supplierSummary
         );
@@ -300,25 +379,93 @@ public final class NotificationService {
         }
     }
 
-    private void safeTick() {
-        safeTick(settings);
+    /** Réglages d'aperçu préparés à la volée ; ceux en vigueur sont réutilisés tels quels. */
+    private NotificationSettingsSnapshot resolve(NotificationSettings previewSettings) {
+        NotificationSettingsSnapshot active = current;
+        if (previewSettings == null || previewSettings.equals(active.settings())) {
+            return active;
+        }
+        return NotificationSettingsSnapshot.of(previewSettings);
     }
 
-    private void safeTick(NotificationSettings previewSettings) {
+    private void runAndArm() {
+        lastTickStart = Instant.now();
+        safeTick(current);
+        arm(true);
+    }
+
+    /**
+     * Remplace l'échéance planifiée par la plus proche ; rien pendant une pause, {@link #resume()} réarme.
+     * Juste après un tour, une échéance déjà passée n'a pas pu avancer et n'est retentée qu'après {@link #STUCK_RETRY}.
+     */
+    private void arm(boolean afterTick) {
+        if (paused || executor.isShutdown()) {
+            return;
+        }
+        Instant now = Instant.now();
+        Instant next;
         try {
-            tick(previewSettings);
+            next = nextWakeUp(current, now, afterTick);
+        } catch (Exception ex) {
+            log.error("Unable to compute the next reminder instant", ex);
+            next = now.plus(STUCK_RETRY);
+        }
+        if (nextRun != null) {
+            nextRun.cancel(false);
+        }
+        long delayMs = Math.max(0, Duration.between(now, next).toMillis());
+        try {
+            nextRun = executor.schedule(this::runAndArm, delayMs, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException stopped) {
+            nextRun = null;
+        }
+    }
+
+    private Instant nextWakeUp(NotificationSettingsSnapshot cfg, Instant now, boolean afterTick) {
+        Instant cap = now.plus(MAX_SLEEP);
+        boolean email = cfg.settings().hasAnyEmailFlow();
+        if (!cfg.settings().desktopPopup() && !email) {
+            return cap;
+        }
+        Instant next = toInstant(dao.prochaineRelance(cfg.settings()));
+        if (email && cfg.smtpReady()) {
+            Instant outbox = toInstant(dao.prochainRappel());
+            if (next == null || (outbox != null && outbox.isBefore(next))) next = outbox;
+        }
+        if (next == null) {
+            return cap;
+        }
+        if (afterTick && !next.isAfter(lastTickStart)) {
+            next = lastTickStart.plus(STUCK_RETRY);
+        }
+        if (next.isBefore(snoozeUntil)) {
+            next = snoozeUntil;
+        }
+        return next.isAfter(cap) ? cap : next;
+    }
+
+    // Les *_ts de la base sont des heures locales encodées en UTC.
+    private static Instant toInstant(LocalDateTime at) {
+        return at == null ? null : at.atZone(ZoneId.systemDefault()).toInstant();
+    }
+
+    private void safeTick(NotificationSettingsSnapshot cfg) {
+        if (paused) {
+            return;
+        }
+        try {
+            tick(cfg);
         } catch (Throwable t) {
             log.error("Unhandled exception during notification tick", t);
         }
     }
 
     private void tick() {
-        tick(settings);
+        tick(current);
     }
 
-    private void tick(NotificationSettings previewSettings) {
-        NotificationSettings cfg = previewSettings == null ? NotificationSettings.defaults() : previewSettings.normalized();
-        if (!cfg.desktopPopup() && !cfg.hasAnyEmailFlow()) {
+    private void tick(NotificationSettingsSnapshot cfg) {
+        if (!cfg.settings().desktopPopup() && !cfg.settings().hasAnyEmailFlow()) {
             return;
         }
         Instant nowInstant = Instant.now();
@@ -326,187 +473,145 @@ public final class NotificationService {
             return;
         }
         LocalDateTime now = LocalDateTime.ofInstant(nowInstant, ZoneId.systemDefault());
-        Set<Integer> freshlyNotified = handleFirstReminders(now, nowInstant, cfg);
-        handleDueDayEmailReminders(now, nowInstant, cfg, freshlyNotified);
-        handleRepeatReminders(now, nowInstant, cfg, freshlyNotified);
-        flushEmailOutbox(cfg);
-        cleanupHistory();
-    }
-
-    private Set<Integer> handleFirstReminders(LocalDateTime now, Instant nowInstant, NotificationSettings cfg) {
-        Set<Integer> freshlyNotified = new HashSet<>();
-        LocalDateTime windowLimit = now.plusDays(cfg.leadDays());
-        List<Facture> candidates;
+        List<ReminderCandidate> due;
         try {
-            candidates = dao.facturesImpayeesAvant(windowLimit);
+            due = dao.facturesARelancer(now, cfg.settings());
         } catch (Exception ex) {
-            log.error("Unable to load unpaid invoices scheduled before {}", windowLimit, ex);
-            return freshlyNotified;
+            log.error("Unable to load invoices with a reminder due at {}", now, ex);
+            due = List.of();
         }
-        for (Facture facture : candidates) {
-            LocalDate due = facture.getEcheance();
-            if (due == null) {
-                continue;
-            }
-            LocalDateTime scheduled = due.atTime(cfg.reminderHour(), cfg.reminderMinute()).minusDays(cfg.leadDays());
-            if (now.isBefore(scheduled)) {
-                continue;
-            }
-            boolean desktopSent = emitDesktopNotification(facture, cfg);
-            boolean managerQueued = queueManagerEmailReminder(
-                    facture,
-                    cfg,
-                    Rappel.TYPE_MANAGER_PRE,
-                    oneShotJobKey("manager-pre", facture)
-            );
-            boolean supplierQueued = queueSupplierEmailReminder(
-                    facture,
-                    cfg,
-                    Rappel.TYPE_SUPPLIER_PRE,
-                    oneShotJobKey("supplier-pre", facture)
-            );
-            if (desktopSent || managerQueued || supplierQueued) {
-                try {
-                    dao.marquerPreavisEnvoye(facture.getId());
-                    reminderHistory.put(facture.getId(), nowInstant);
-                    freshlyNotified.add(facture.getId());
-                } catch (Exception ex) {
-                    log.error("Unable to mark pre-notice sent for facture {}", facture.getId(), ex);
-                }
+        for (ReminderCandidate candidate : due) {
+            if (candidate.facture().isPreavisEnvoye()) {
+                handleFollowUpReminders(candidate.facture(), candidate.lastReminder(), now, cfg);
+            } else {
+                handleFirstReminder(candidate.facture(), now, cfg);
             }
         }
-        return freshlyNotified;
+        flushEmailOutbox(cfg);
     }
 
-    private void handleDueDayEmailReminders(LocalDateTime now,
-                                            Instant nowInstant,
-                                            NotificationSettings cfg,
-                                            Set<Integer> freshlyNotified) {
-        if (!cfg.hasAnyEmailFlow()) {
+    private void handleFirstReminder(Facture facture, LocalDateTime now, NotificationSettingsSnapshot cfg) {
+        if (facture.getEcheance() == null) {
             return;
         }
-        List<Facture> dueInvoices;
-        try {
-            dueInvoices = dao.facturesImpayeesPourDashboard(now);
-        } catch (Exception ex) {
-            log.error("Unable to load invoices for due-day reminders", ex);
-            return;
-        }
-        LocalDate today = now.toLocalDate();
-        for (Facture facture : dueInvoices) {
-            if (freshlyNotified.contains(facture.getId())) {
-                continue;
-            }
-            LocalDate due = facture.getEcheance();
-            if (due == null || !due.isEqual(today)) {
-                continue;
-            }
-            if (now.isBefore(due.atTime(cfg.reminderHour(), cfg.reminderMinute()))) {
-                continue;
-            }
-            boolean managerQueued = queueManagerEmailReminder(
-                    facture,
-                    cfg,
-                    Rappel.TYPE_MANAGER_DUE,
-                    oneShotJobKey("manager-due", facture)
-            );
-            boolean supplierQueued = cfg.supplierSendOnDueDate() && queueSupplierEmailReminder(
-                    facture,
-                    cfg,
-                    Rappel.TYPE_SUPPLIER_DUE,
-                    oneShotJobKey("supplier-due", facture)
-            );
-            if (managerQueued || supplierQueued) {
-                reminderHistory.put(facture.getId(), nowInstant);
-                freshlyNotified.add(facture.getId());
+        boolean desktopSent = emitDesktopNotification(facture, cfg);
+        boolean managerQueued = queueManagerEmailReminder(
+                facture,
+                cfg,
+                Rappel.TYPE_MANAGER_PRE,
+                oneShotJobKey("manager-pre", facture)
+        );
+        boolean supplierQueued = queueSupplierEmailReminder(
+                facture,
+                cfg,
+                Rappel.TYPE_SUPPLIER_PRE,
+                oneShotJobKey("supplier-pre", facture)
+        );
+        if (desktopSent || managerQueued || supplierQueued) {
+            try {
+                dao.marquerPreavisEnvoye(facture.getId());
+                dao.recordReminderActivity(facture.getId(), now);
+            } catch (Exception ex) {
+                log.error("Unable to mark pre-notice sent for facture {}", facture.getId(), ex);
             }
         }
     }
 
-    private void handleRepeatReminders(LocalDateTime now,
-                                       Instant nowInstant,
-                                       NotificationSettings cfg,
-                                       Set<Integer> freshlyNotified) {
-        int repeatHours = cfg.repeatEveryHours();
-        if (repeatHours <= 0) {
+    private void handleFollowUpReminders(Facture facture,
+                                         LocalDateTime lastReminder,
+                                         LocalDateTime now,
+                                         NotificationSettingsSnapshot cfg) {
+        LocalDate due = facture.getEcheance();
+        if (due == null) {
             return;
         }
-        List<Facture> pending;
+        if (!handleDueDayEmailReminder(facture, due, now, cfg)) {
+            handleRepeatReminder(facture, due, lastReminder, now, cfg);
+        }
+        // Replanifie même sans envoi : sinon la facture resterait échue à chaque passage.
         try {
-            pending = dao.facturesNonPayeesAvecPreavis();
+            dao.recordReminderActivity(facture.getId(), now);
         } catch (Exception ex) {
-            log.error("Unable to load invoices awaiting repeat reminders", ex);
+            log.error("Unable to reschedule reminders for facture {}", facture.getId(), ex);
+        }
+    }
+
+    private boolean handleDueDayEmailReminder(Facture facture, LocalDate due, LocalDateTime now, NotificationSettingsSnapshot cfg) {
+        if (!cfg.settings().hasAnyEmailFlow() || !due.isEqual(now.toLocalDate())) {
+            return false;
+        }
+        if (now.isBefore(due.atTime(cfg.settings().reminderHour(), cfg.settings().reminderMinute()))) {
+            return false;
+        }
+        boolean managerQueued = queueManagerEmailReminder(
+                facture,
+                cfg,
+                Rappel.TYPE_MANAGER_DUE,
+                oneShotJobKey("manager-due", facture)
+        );
+        boolean supplierQueued = cfg.settings().supplierSendOnDueDate() && queueSupplierEmailReminder(
+                facture,
+                cfg,
+                Rappel.TYPE_SUPPLIER_DUE,
+                oneShotJobKey("supplier-due", facture)
+        );
+        return managerQueued || supplierQueued;
+    }
+
+    private void handleRepeatReminder(Facture facture,
+                                      LocalDate due,
+                                      LocalDateTime lastReminder,
+                                      LocalDateTime now,
+                                      NotificationSettingsSnapshot cfg) {
+        int repeatHours = cfg.settings().repeatEveryHours();
+        LocalDate today = now.toLocalDate();
+        if (repeatHours <= 0 || due.isAfter(today)) {
             return;
         }
-        if (pending.isEmpty()) {
+        if (lastReminder != null && java.time.Duration.between(lastReminder, now).toMinutes() < repeatHours * 60L) {
             return;
         }
-        long repeatMinutes = repeatHours * 60L;
-        LocalDate today = now.toLocalDate();
-        for (Facture facture : pending) {
-            if (freshlyNotified.contains(facture.getId())) {
-                continue;
-            }
-            LocalDate due = facture.getEcheance();
-            if (due == null || due.isAfter(today)) {
-                continue;
-            }
-            Instant last = reminderHistory.get(facture.getId());
-            if (last != null) {
-                long elapsed = java.time.Duration.between(last, nowInstant).toMinutes();
-                if (elapsed < repeatMinutes) {
-                    continue;
-                }
-            }
-            boolean desktopSent = emitDesktopNotification(facture, cfg);
-            boolean managerQueued = false;
-            boolean supplierQueued = false;
-
-            if (due.isEqual(today)) {
-                managerQueued = queueManagerEmailReminder(
-                        facture,
-                        cfg,
-                        Rappel.TYPE_MANAGER_DUE,
-                        repeatJobKey("manager-due", facture, now, repeatHours)
-                );
-                if (cfg.supplierSendOnDueDate()) {
-                    supplierQueued = queueSupplierEmailReminder(
-                            facture,
-                            cfg,
-                            Rappel.TYPE_SUPPLIER_DUE,
-                            repeatJobKey("supplier-due", facture, now, repeatHours)
-                    );
-                }
-            } else if (due.isBefore(today)) {
-                managerQueued = queueManagerEmailReminder(
-                        facture,
-                        cfg,
-                        Rappel.TYPE_MANAGER_OVERDUE,
-                        repeatJobKey("manager-overdue", facture, now, repeatHours)
-                );
-                supplierQueued = queueSupplierEmailReminder(
+        emitDesktopNotification(facture, cfg);
+        if (due.isEqual(today)) {
+            queueManagerEmailReminder(
+                    facture,
+                    cfg,
+                    Rappel.TYPE_MANAGER_DUE,
+                    repeatJobKey("manager-due", facture, now, repeatHours)
+            );
+            if (cfg.settings().supplierSendOnDueDate()) {
+                queueSupplierEmailReminder(
                         facture,
                         cfg,
-                        Rappel.TYPE_SUPPLIER_OVERDUE,
-                        repeatJobKey("supplier-overdue", facture, now, repeatHours)
+                        Rappel.TYPE_SUPPLIER_DUE,
+                        repeatJobKey("supplier-due", facture, now, repeatHours)
                 );
             }
-
-            if (desktopSent || managerQueued || supplierQueued) {
-                reminderHistory.put(facture.getId(), nowInstant);
-            }
+        } else {
+            queueManagerEmailReminder(
+                    facture,
+                    cfg,
+                    Rappel.TYPE_MANAGER_OVERDUE,
+                    repeatJobKey("manager-overdue", facture, now, repeatHours)
+            );
+            queueSupplierEmailReminder(
+                    facture,
+                    cfg,
+                    Rappel.TYPE_SUPPLIER_OVERDUE,
+                    repeatJobKey("supplier-overdue", facture, now, repeatHours)
+            );
         }
     }
 
-    private boolean emitDesktopNotification(Facture facture, NotificationSettings cfg) {
-        if (!cfg.desktopPopup()) {
+    private boolean emitDesktopNotification(Facture facture, NotificationSettingsSnapshot cfg) {
+        if (!cfg.settings().desktopPopup()) {
             return false;
         }
         try {
             Prestataire prestataire = dao.findPrestataire(facture.getPrestataireId());
             NotificationTemplateEngine.Context context = buildContext(facture, prestataire);
-            String title = NotificationTemplateEngine.render(cfg.subjectTemplate(), context);
-            String body = NotificationTemplateEngine.render(cfg.bodyTemplate(), context);
+            String title = cfg.subject().render(context);
+            String body = cfg.body().render(context);
             notifier.notify(title, body);
             return true;
         } catch (Exception ex) {
@@ -516,21 +621,21 @@ public final class NotificationService {
     }
 
     private boolean queueManagerEmailReminder(Facture facture,
-                                              NotificationSettings cfg,
+                                              NotificationSettingsSnapshot cfg,
                                               String type,
                                               String jobKey) {
-        if (!cfg.emailEnabled()) {
+        if (!cfg.settings().emailEnabled()) {
             return false;
         }
-        String recipient = safe(cfg.emailRecipient());
+        String recipient = safe(cfg.settings().emailRecipient());
         if (!NotificationSettings.looksLikeEmail(recipient)) {
             return false;
         }
         try {
             Prestataire prestataire = dao.findPrestataire(facture.getPrestataireId());
             NotificationTemplateEngine.Context context = buildContext(facture, prestataire);
-            String subject = NotificationTemplateEngine.render(cfg.subjectTemplate(), context);
-            String body = NotificationTemplateEngine.render(cfg.bodyTemplate(), context);
+            String subject = cfg.subject().render(context);
+            String body = cfg.body().render(context);
             Integer prestataireId = prestataire == null ? facture.getPrestataireId() : prestataire.getId();
             Rappel rappel = new Rappel(
                     0,
@@ -556,10 +661,10 @@ public final class NotificationService {
     }
 
     private boolean queueSupplierEmailReminder(Facture facture,
-                                               NotificationSettings cfg,
+                                               NotificationSettingsSnapshot cfg,
                                                String type,
                                                String jobKey) {
-        if (!cfg.supplierEmailEnabled()) {
+        if (!cfg.settings().supplierEmailEnabled()) {
             return false;
         }
         try {
@@ -569,8 +674,8 @@ public final class NotificationService {
                 return false;
             }
             NotificationTemplateEngine.Context context = buildContext(facture, prestataire);
-            String subject = NotificationTemplateEngine.render(cfg.supplierSubjectTemplate(), context);
-            String body = NotificationTemplateEngine.render(cfg.supplierBodyTemplate(), context);
+            String subject = cfg.supplierSubject().render(context);
+            String body = cfg.supplierBody().render(context);
             Rappel rappel = new Rappel(
                     0,
                     jobKey,
@@ -594,8 +699,8 @@ public final class NotificationService {
         }
     }
 
-    private void flushEmailOutbox(NotificationSettings cfg) {
-        if (!cfg.hasAnyEmailFlow()) {
+    private void flushEmailOutbox(NotificationSettingsSnapshot cfg) {
+        if (!cfg.settings().hasAnyEmailFlow()) {
             return;
         }
         List<Rappel> pending;
@@ -612,15 +717,17 @@ public final class NotificationService {
             log.warn("Email reminders pending but SMTP settings are incomplete.");
             return;
         }
+        // Préparation et écritures restent sur ce thread ; seuls les envois partent en parallèle.
+        List<Dispatch> dispatches = new ArrayList<>();
         for (Rappel rappel : pending) {
             if (rappel.attemptCount() >= MAX_FAILURE_ATTEMPTS) {
                 dao.markRappelSkipped(rappel.id(), "Nombre maximal d'essais atteint.");
                 continue;
             }
-            if (isManagerFlow(rappel) && !cfg.emailEnabled()) {
+            if (isManagerFlow(rappel) && !cfg.settings().emailEnabled()) {
                 continue;
             }
-            if (isSupplierFlow(rappel) && !cfg.supplierEmailEnabled()) {
+            if (isSupplierFlow(rappel) && !cfg.settings().supplierEmailEnabled()) {
                 continue;
             }
             SendContext context = resolveSendContext(rappel, cfg);
@@ -632,20 +739,34 @@ public final class NotificationService {
                 dao.markRappelSkipped(rappel.id(), "Destinataire ou expéditeur invalide.");
                 continue;
             }
-            try {
-                emailSender.send(cfg, message);
-                dao.markRappelEnvoye(rappel.id());
-                reminderHistory.put(rappel.factureId(), Instant.now());
-            } catch (Exception ex) {
-                int backoffMinutes = Math.min(60, Math.max(5, (rappel.attemptCount() + 1) * 5));
-                LocalDateTime nextAttempt = LocalDateTime.now().plusMinutes(backoffMinutes);
-                dao.markRappelFailed(rappel.id(), failureMessage(ex), nextAttempt);
-                log.error("Unable to send email reminder {}", rappel.id(), ex);
-            }
+            dispatches.add(new Dispatch(rappel, dispatcher.submit(cfg, message)));
+        }
+        for (Dispatch dispatch : dispatches) {
+            record(dispatch);
         }
     }
 
-    private SendContext resolveSendContext(Rappel rappel, NotificationSettings cfg) {
+    /** Statut enregistré dans l'ordre de la file, quel que soit l'ordre d'arrivée des réponses SMTP. */
+    private void record(Dispatch dispatch) {
+        Rappel rappel = dispatch.rappel();
+        try {
+            dispatch.result().join();
+            dao.markRappelEnvoye(rappel.id());
+        } catch (CancellationException stopped) {
+            // Arrêt en cours : l'envoi n'a pas démarré, le rappel reste en attente.
+        } catch (CompletionException failed) {
+            Throwable ex = failed.getCause() == null ? failed : failed.getCause();
+            int backoffMinutes = Math.min(60, Math.max(5, (rappel.attemptCount() + 1) * 5));
+            LocalDateTime nextAttempt = LocalDateTime.now().plusMinutes(backoffMinutes);
+            dao.markRappelFailed(rappel.id(), failureMessage(ex), nextAttempt);
+            log.error("Unable to send email reminder {}", rappel.id(), ex);
+        }
+    }
+
+    private record Dispatch(Rappel rappel, CompletableFuture<Void> result) {
+    }
+
+    private SendContext resolveSendContext(Rappel rappel, NotificationSettingsSnapshot cfg) {
         try {
             Facture facture = dao.findFacture(rappel.factureId());
             if (facture == null) {
@@ -659,7 +780,7 @@ public final class NotificationService {
             Prestataire prestataire = dao.findPrestataire(facture.getPrestataireId());
             String recipient;
             if (isManagerFlow(rappel)) {
-                recipient = firstNonBlank(cfg.emailRecipient(), rappel.dest());
+                recipient = firstNonBlank(cfg.settings().emailRecipient(), rappel.dest());
             } else {
                 recipient = firstNonBlank(prestataire == null ? "" : prestataire.getEmail(), rappel.dest());
             }
@@ -675,22 +796,22 @@ public final class NotificationService {
         }
     }
 
-    private EmailMessage buildEmailMessage(NotificationSettings cfg, String to, String subject, String body) {
+    private EmailMessage buildEmailMessage(NotificationSettingsSnapshot cfg, String to, String subject, String body) {
         String resolvedTo = safe(to);
         if (!NotificationSettings.looksLikeEmail(resolvedTo)) {
             return null;
         }
-        String from = cfg.resolvedSenderAddress();
+        String from = cfg.senderAddress();
         if (!NotificationSettings.looksLikeEmail(from)) {
             return null;
         }
         String safeSubject = subject == null ? "" : subject;
-        String safeBody = cfg.applySignature(body);
+        String safeBody = cfg.settings().applySignature(body);
         return new EmailMessage(
                 resolvedTo,
                 from,
-                cfg.resolvedSenderName(),
-                cfg.resolvedReplyTo(),
+                cfg.senderName(),
+                cfg.replyTo(),
                 safeSubject,
                 safeBody
         );
@@ -732,27 +853,6 @@ public final class NotificationService {
         );
     }
 
-    private void cleanupHistory() {
-        Set<Integer> validIds;
-        try {
-            validIds = dao.factureIdsNonPayesAvecPreavis();
-        } catch (Exception ex) {
-            log.error("Unable to refresh reminder history", ex);
-            return;
-        }
-        reminderHistory.keySet().removeIf(id -> !validIds.contains(id));
-    }
-
-    private void seedReminderHistory() {
-        try {
-            reminderHistory.clear();
-            reminderHistory.putAll(dao.latestReminderActivityByFacture());
-            cleanupHistory();
-        } catch (Exception ex) {
-            log.error("Unable to seed reminder history", ex);
-        }
-    }
-
     private static boolean isManagerFlow(Rappel rappel) {
         String type = rappel == null ? "" : safe(rappel.type());
         return type.startsWith("MANAGER_");
@@ -0,0 +1,147 @@
+package org.example.notifications;
+
+import jakarta.mail.Authenticator;
+import jakarta.mail.PasswordAuthentication;
+import jakarta.mail.Session;
+import org.example.model.NotificationSettings;
+import org.example.model.SmtpSecurity;
+import org.example.util.NotificationTemplateEngine;
+
+import java.util.Properties;
+
+/**
+ * Réglages de notification normalisés une fois, avec ce qui s'en déduit : expéditeur résolu, gabarits compilés et
+ * propriétés SMTP. Immuable ; {@link NotificationService} publie le courant par simple affectation, et chaque
+ * consommateur (tick, aperçus, envoi) le lit sans relire la base ni renormaliser.
+ */
+public final class NotificationSettingsSnapshot {
+
+    private final NotificationSettings settings;
+    private final String senderAddress;
+    private final String senderName;
+    private final String replyTo;
+    private final boolean smtpReady;
+    private final NotificationTemplateEngine.Template subject;
+    private final NotificationTemplateEngine.Template body;
+    private final NotificationTemplateEngine.Template supplierSubject;
+    private final NotificationTemplateEngine.Template supplierBody;
+    private final Properties smtpProperties;
+    private volatile Session mailSession;
+
+    private NotificationSettingsSnapshot(NotificationSettings settings) {
+        this.settings = settings;
+        this.senderAddress = settings.resolvedSenderAddress();
+        this.senderName = settings.resolvedSenderName();
+        this.replyTo = settings.resolvedReplyTo();
+        this.smtpReady = settings.smtpReady();
+        this.subject = NotificationTemplateEngine.compile(settings.subjectTemplate());
+        this.body = NotificationTemplateEngine.compile(settings.bodyTemplate());
+        this.supplierSubject = NotificationTemplateEngine.compile(settings.supplierSubjectTemplate());
+        this.supplierBody = NotificationTemplateEngine.compile(settings.supplierBodyTemplate());
+        this.smtpProperties = smtpProperties(settings);
+    }
+
+    public static NotificationSettingsSnapshot of(NotificationSettings settings) {
+        return new NotificationSettingsSnapshot(
+                settings == null ? NotificationSettings.defaults().normalized() : settings.normalized());
+    }
+
+    /** Réglages normalisés. */
+    public NotificationSettings settings() {
+        return settings;
+    }
+
+    public String senderAddress() {
+        return senderAddress;
+    }
+
+    public String senderName() {
+        return senderName;
+    }
+
+    public String replyTo() {
+        return replyTo;
+    }
+
+    public boolean smtpReady() {
+        return smtpReady;
+    }
+
+    public NotificationTemplateEngine.Template subject() {
+        return subject;
+    }
+
+    public NotificationTemplateEngine.Template body() {
+        return body;
+    }
+
+    public NotificationTemplateEngine.Template supplierSubject() {
+        return supplierSubject;
+    }
+
+    public NotificationTemplateEngine.Template supplierBody() {
+        return supplierBody;
+    }
+
+    /** Copie : la session SMTP partagée garde l'original. */
+    public Properties smtpProperties() {
+        return (Properties) smtpProperties.clone();
+    }
+
+    /** Session JavaMail construite au premier envoi puis réutilisée tant que ces réglages restent en vigueur. */
+    Session mailSession() {
+        Session s = mailSession;
+        if (s == null) {
+            synchronized (this) {
+                s = mailSession;
+                if (s == null) {
+                    s = Session.getInstance(smtpProperties, authenticator(settings));
+                    mailSession = s;
+                }
+            }
+        }
+        return s;
+    }
+
+    /** Session non partagée, propriétés SMTP complétées par {@code extra} (fabrique de sockets TLS d'un banc d'essai…). */
+    Session mailSession(Properties extra) {
+        Properties props = (Properties) smtpProperties.clone();
+        props.putAll(extra);
+        return Session.getInstance(props, authenticator(settings));
+    }
+
+    private static Properties smtpProperties(NotificationSettings settings) {
+        Properties props = new Properties();
+        props.put("mail.smtp.host", settings.smtpHost());
+        props.put("mail.smtp.port", Integer.toString(settings.smtpPort()));
+        props.put("mail.smtp.connectiontimeout", "10000");
+        props.put("mail.smtp.timeout", "10000");
+        props.put("mail.smtp.writetimeout", "10000");
+        props.put("mail.smtp.auth", hasCredentials(settings) ? "true" : "false");
+        SmtpSecurity security = settings.smtpSecurity() == null ? SmtpSecurity.STARTTLS : settings.smtpSecurity();
+        if (security == SmtpSecurity.STARTTLS) {
+            props.put("mail.smtp.starttls.enable", "true");
+        } else if (security == SmtpSecurity.SSL) {
+            props.put("mail.smtp.ssl.enable", "true");
+        }
+        return props;
+    }
+
+    private static Authenticator authenticator(NotificationSettings settings) {
+        if (!hasCredentials(settings)) {
+            return null;
+        }
+        String user = settings.smtpUsername();
+        String pwd = settings.smtpPassword() == null ? "" : settings.smtpPassword();
+        return new Authenticator() {
+            @Override
+            protected PasswordAuthentication getPasswordAuthentication() {
+                return new PasswordAuthentication(user, pwd);
+            }
+        };
+    }
+
+    private static boolean hasCredentials(NotificationSettings settings) {
+        return settings.smtpUsername() != null && !settings.smtpUsername().isBlank();
+    }
+}
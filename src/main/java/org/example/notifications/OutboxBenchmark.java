@@ -0,0 +1,175 @@
+package org.example.notifications;
+
+import org.example.dao.DB;
+import org.example.model.Facture;
+import org.example.model.NotificationSettings;
+import org.example.model.Prestataire;
+import org.example.model.Rappel;
+import org.example.model.SmtpSecurity;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Débit de bout en bout de la file d'envoi : {@code messages} rappels échus dans une base jetable, un tour de
+ * {@link NotificationService} avec le vrai {@link SmtpEmailSender}, face à {@link EmbeddedSmtpServer} (STARTTLS, AUTH,
+ * latence par réponse et échecs injectés). La latence mesurée est celle de chaque envoi, attente d'une connexion comprise.
+ * <p>
+ * En ligne de commande : {@code OutboxBenchmark [messages] [latenceMs] [tauxÉchec]} (500, 5 et 0 par défaut).
+ */
+public final class OutboxBenchmark {
+
+    public static final int DEFAULT_MESSAGES = 500;
+    private static final Duration TIMEOUT = Duration.ofMinutes(5);
+
+    public record Result(int messages, int delivered, int failed, int connections, long millis,
+                         double perSecond, double p50Ms, double p95Ms, double p99Ms) {
+        @Override
+        public String toString() {
+            return String.format(Locale.ROOT,
+                    "%5d messages  %5d remis  %4d échecs  %3d connexions  %6d ms  %8.1f msg/s  p50=%.1f ms  p95=%.1f ms  p99=%.1f ms",
+                    messages, delivered, failed, connections, millis, perSecond, p50Ms, p95Ms, p99Ms);
+        }
+    }
+
+    private OutboxBenchmark() {
+    }
+
+    public static Result run(int messages, Duration latency, double failureRate) throws Exception {
+        Path dir = Files.createTempDirectory("outbox-bench");
+        EmbeddedSmtpServer.Options options = EmbeddedSmtpServer.Options.plain()
+                .withStartTls()
+                .withAuth("bench", "bench-secret")
+                .withLatency(latency)
+                .withFailureRate(failureRate);
+        try (EmbeddedSmtpServer server = new EmbeddedSmtpServer(options)) {
+            DB db = new DB(dir.resolve("outbox.db").toString());
+            try {
+                enqueue(db, messages);
+                NotificationSettings settings = settings(server);
+                TimedSender sender = new TimedSender(new SmtpEmailSender(new SmtpTransportPool(
+                        SmtpTransportPool.DEFAULT_MAX_MESSAGES, SmtpTransportPool.DEFAULT_MAX_IDLE, System::nanoTime,
+                        server.clientProperties())), messages);
+                NotificationService service = new NotificationService(db, (title, message) -> { }, sender, () -> settings);
+                long t0 = System.nanoTime();
+                try {
+                    service.runNow();
+                    sender.done.await(TIMEOUT.toMillis(), TimeUnit.MILLISECONDS);
+                } finally {
+                    service.stop();
+                }
+                long elapsed = System.nanoTime() - t0;
+                return sender.result(messages, server, elapsed);
+            } finally {
+                db.close();
+            }
+        } finally {
+            deleteQuietly(dir);
+        }
+    }
+
+    private static void enqueue(DB db, int messages) {
+        int prestataireId = db.insertPrestataire(new Prestataire(
+                0, "Banc", "Banc d'essai", "", "banc@example.com", 0, "", "", ""));
+        // Échéance lointaine : le tour n'ajoute aucune relance, seuls les rappels déjà en file partent.
+        int factureId = db.insertFacture(prestataireId, new Facture(
+                0, prestataireId, "Facture banc", LocalDate.now().plusYears(1),
+                new BigDecimal("100.00"), new BigDecimal("20.0"), null, null, false, null, false));
+        LocalDateTime due = LocalDateTime.now().minusMinutes(1);
+        for (int i = 0; i < messages; i++) {
+            db.addRappel(new Rappel(0, factureId, "owner@example.com", "Rappel " + i, "Corps " + i, due, false));
+        }
+    }
+
+    private static NotificationSettings settings(EmbeddedSmtpServer server) {
+        return new NotificationSettings(
+                1, 0, 0, 4, true, false, 30, true,
+                "owner@example.com", "alerts@example.com", server.host(), server.port(), "bench", "bench-secret",
+                SmtpSecurity.STARTTLS, "Sujet", "Corps", false, true, "Sujet", "Corps");
+    }
+
+    /** Chronomètre chaque envoi et compte les issues ; l'envoi réel est délégué. */
+    private static final class TimedSender implements EmailSender {
+        private final EmailSender delegate;
+        private final long[] nanos;
+        private final AtomicInteger completed = new AtomicInteger();
+        private final AtomicInteger failed = new AtomicInteger();
+        private final CountDownLatch done;
+
+        TimedSender(EmailSender delegate, int messages) {
+            this.delegate = delegate;
+            this.nanos = new long[messages];
+            this.done = new CountDownLatch(messages);
+        }
+
+        @Override
+        public void send(NotificationSettings settings, EmailMessage message) throws Exception {
+            send(NotificationSettingsSnapshot.of(settings), message);
+        }
+
+        @Override
+        public void send(NotificationSettingsSnapshot settings, EmailMessage message) throws Exception {
+            long t0 = System.nanoTime();
+            try {
+                delegate.send(settings, message);
+            } catch (Exception ex) {
+                failed.incrementAndGet();
+                throw ex;
+            } finally {
+                int slot = completed.getAndIncrement();
+                if (slot < nanos.length) {
+                    nanos[slot] = System.nanoTime() - t0;
+                }
+                done.countDown();
+            }
+        }
+
+        @Override
+        public void close() {
+            delegate.close();
+        }
+
+        Result result(int messages, EmbeddedSmtpServer server, long elapsedNanos) {
+            int n = Math.min(completed.get(), nanos.length);
+            long[] sorted = Arrays.copyOf(nanos, n);
+            Arrays.sort(sorted);
+            int delivered = server.messages().size();
+            double seconds = Math.max(1, elapsedNanos) / 1e9;
+            return new Result(messages, delivered, failed.get(), server.connections(), elapsedNanos / 1_000_000,
+                    delivered / seconds, percentile(sorted, 0.50), percentile(sorted, 0.95), percentile(sorted, 0.99));
+        }
+
+        private static double percentile(long[] sorted, double p) {
+            if (sorted.length == 0) {
+                return 0;
+            }
+            int index = (int) Math.ceil(p * sorted.length) - 1;
+            return sorted[Math.max(0, Math.min(index, sorted.length - 1))] / 1e6;
+        }
+    }
+
+    private static void deleteQuietly(Path dir) {
+        try (var files = Files.list(dir)) {
+            for (Path p : files.toList()) Files.deleteIfExists(p);
+        } catch (IOException ignore) {
+        }
+        try { Files.deleteIfExists(dir); } catch (IOException ignore) {}
+    }
+
+    public static void main(String[] args) throws Exception {
+        int messages = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_MESSAGES;
+        long latencyMs = args.length > 1 ? Long.parseLong(args[1]) : 5;
+        double failureRate = args.length > 2 ? Double.parseDouble(args[2]) : 0;
+        System.out.println(run(messages, Duration.ofMillis(latencyMs), failureRate));
+    }
+}
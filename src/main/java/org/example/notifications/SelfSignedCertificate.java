@@ -0,0 +1,133 @@
+package org.example.notifications;
+
+import javax.net.ssl.KeyManagerFactory;
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.TrustManagerFactory;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.KeyStore;
+import java.security.SecureRandom;
+import java.security.Signature;
+import java.security.cert.Certificate;
+import java.security.cert.CertificateFactory;
+import java.security.cert.X509Certificate;
+import java.time.Duration;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+
+/**
+ * Certificat X.509 auto-signé construit en mémoire (DER écrit à la main, signature SHA256withRSA du JDK), sans outil
+ * externe ni API interne : de quoi ouvrir une session STARTTLS vers {@link EmbeddedSmtpServer}.
+ */
+final class SelfSignedCertificate {
+
+    private static final byte[] SHA256_WITH_RSA = {0x06, 0x09, 0x2A, (byte) 0x86, 0x48, (byte) 0x86, (byte) 0xF7, 0x0D, 0x01, 0x01, 0x0B};
+    private static final byte[] COMMON_NAME = {0x06, 0x03, 0x55, 0x04, 0x03};
+    private static final DateTimeFormatter UTC_TIME = DateTimeFormatter.ofPattern("yyMMddHHmmss'Z'");
+    private static final char[] STORE_PASSWORD = "embedded".toCharArray();
+
+    private final KeyStore keyStore;
+    private final X509Certificate certificate;
+
+    private SelfSignedCertificate(KeyStore keyStore, X509Certificate certificate) {
+        this.keyStore = keyStore;
+        this.certificate = certificate;
+    }
+
+    static SelfSignedCertificate create(String commonName, Duration validity) throws GeneralSecurityException {
+        KeyPairGenerator generator = KeyPairGenerator.getInstance("RSA");
+        generator.initialize(2048);
+        KeyPair pair = generator.generateKeyPair();
+
+        ZonedDateTime now = ZonedDateTime.now(ZoneOffset.UTC);
+        byte[] algorithm = der(0x30, SHA256_WITH_RSA, der(0x05));
+        byte[] name = der(0x30, der(0x31, der(0x30, COMMON_NAME, der(0x0C, commonName.getBytes(StandardCharsets.UTF_8)))));
+        byte[] tbs = der(0x30,
+                der(0xA0, der(0x02, new byte[]{2})),
+                der(0x02, new BigInteger(63, new SecureRandom()).add(BigInteger.ONE).toByteArray()),
+                algorithm,
+                name,
+                der(0x30, utcTime(now.minusMinutes(5)), utcTime(now.plus(validity))),
+                name,
+                pair.getPublic().getEncoded());
+
+        Signature signer = Signature.getInstance("SHA256withRSA");
+        signer.initSign(pair.getPrivate());
+        signer.update(tbs);
+        byte[] signature = signer.sign();
+        byte[] bitString = new byte[signature.length + 1];
+        System.arraycopy(signature, 0, bitString, 1, signature.length);
+
+        byte[] encoded = der(0x30, tbs, algorithm, der(0x03, bitString));
+        X509Certificate cert = (X509Certificate) CertificateFactory.getInstance("X.509")
+                .generateCertificate(new ByteArrayInputStream(encoded));
+        cert.verify(pair.getPublic());
+
+        KeyStore store = KeyStore.getInstance("PKCS12");
+        try {
+            store.load(null, null);
+        } catch (IOException e) {
+            throw new GeneralSecurityException(e);
+        }
+        store.setKeyEntry("server", pair.getPrivate(), STORE_PASSWORD, new Certificate[]{cert});
+        return new SelfSignedCertificate(store, cert);
+    }
+
+    /** Contexte côté serveur, présentant ce certificat. */
+    SSLContext serverContext() throws GeneralSecurityException {
+        KeyManagerFactory kmf = KeyManagerFactory.getInstance(KeyManagerFactory.getDefaultAlgorithm());
+        kmf.init(keyStore, STORE_PASSWORD);
+        SSLContext ctx = SSLContext.getInstance("TLS");
+        ctx.init(kmf.getKeyManagers(), null, null);
+        return ctx;
+    }
+
+    /** Contexte côté client, qui ne fait confiance qu'à ce certificat. */
+    SSLContext clientContext() throws GeneralSecurityException {
+        KeyStore trust = KeyStore.getInstance("PKCS12");
+        try {
+            trust.load(null, null);
+        } catch (IOException e) {
+            throw new GeneralSecurityException(e);
+        }
+        trust.setCertificateEntry("server", certificate);
+        TrustManagerFactory tmf = TrustManagerFactory.getInstance(TrustManagerFactory.getDefaultAlgorithm());
+        tmf.init(trust);
+        SSLContext ctx = SSLContext.getInstance("TLS");
+        ctx.init(null, tmf.getTrustManagers(), null);
+        return ctx;
+    }
+
+    private static byte[] utcTime(ZonedDateTime at) {
+        return der(0x17, UTC_TIME.format(at).getBytes(StandardCharsets.US_ASCII));
+    }
+
+    /** Élément DER : étiquette, longueur (forme courte ou longue), puis la concaténation des contenus. */
+    private static byte[] der(int tag, byte[]... contents) {
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        for (byte[] c : contents) {
+            body.writeBytes(c);
+        }
+        int length = body.size();
+        ByteArrayOutputStream out = new ByteArrayOutputStream(length + 6);
+        out.write(tag);
+        if (length < 0x80) {
+            out.write(length);
+        } else {
+            int bytes = (32 - Integer.numberOfLeadingZeros(length) + 7) / 8;
+            out.write(0x80 | bytes);
+            for (int i = bytes - 1; i >= 0; i--) {
+                out.write(length >>> (8 * i));
+            }
+        }
+        out.writeBytes(body.toByteArray());
+        return out.toByteArray();
+    }
+}
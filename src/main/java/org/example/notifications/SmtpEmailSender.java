@@ -1,56 +1,40 @@
 package org.example.notifications;
 
-import jakarta.mail.Authenticator;
 import jakarta.mail.Message;
-import jakarta.mail.PasswordAuthentication;
 import jakarta.mail.Session;
-import jakarta.mail.Transport;
 import jakarta.mail.internet.InternetAddress;
 import jakarta.mail.internet.MimeMessage;
 import org.example.model.NotificationSettings;
-import org.example.model.SmtpSecurity;
 
 import java.nio.charset.StandardCharsets;
 import java.util.Date;
 import java.util.Objects;
-import java.util.Properties;
 
+/** Envoi SMTP sur les connexions persistantes de {@link SmtpTransportPool}. */
 public final class SmtpEmailSender implements EmailSender {
 
-    @Override
-    public void send(NotificationSettings settings, EmailMessage message) throws Exception {
-        Objects.requireNonNull(settings, "settings");
-        Objects.requireNonNull(message, "message");
+    private final SmtpTransportPool pool;
 
-        Properties props = new Properties();
-        props.put("mail.smtp.host", settings.smtpHost());
-        props.put("mail.smtp.port", Integer.toString(settings.smtpPort()));
-        props.put("mail.smtp.connectiontimeout", "10000");
-        props.put("mail.smtp.timeout", "10000");
-        props.put("mail.smtp.writetimeout", "10000");
+    public SmtpEmailSender() {
+        this(new SmtpTransportPool());
+    }
 
-        boolean auth = settings.smtpUsername() != null && !settings.smtpUsername().isBlank();
-        props.put("mail.smtp.auth", auth ? "true" : "false");
+    SmtpEmailSender(SmtpTransportPool pool) {
+        this.pool = pool;
+    }
 
-        SmtpSecurity security = settings.smtpSecurity() == null ? SmtpSecurity.STARTTLS : settings.smtpSecurity();
-        if (security == SmtpSecurity.STARTTLS) {
-            props.put("mail.smtp.starttls.enable", "true");
-        } else if (security == SmtpSecurity.SSL) {
-            props.put("mail.smtp.ssl.enable", "true");
-        }
+    @Override
+    public void send(NotificationSettings settings, EmailMessage message) throws Exception {
+        Objects.requireNonNull(settings, "settings");
+        send(NotificationSettingsSnapshot.of(settings), message);
+    }
 
-        Authenticator authenticator = null;
-        if (auth) {
-            String pwd = settings.smtpPassword() == null ? "" : settings.smtpPassword();
-            authenticator = new Authenticator() {
-                @Override
-                protected PasswordAuthentication getPasswordAuthentication() {
-                    return new PasswordAuthentication(settings.smtpUsername(), pwd);
-                }
-            };
-        }
+    @Override
+    public void send(NotificationSettingsSnapshot settings, EmailMessage message) throws Exception {
+        Objects.requireNonNull(settings, "settings");
+        Objects.requireNonNull(message, "message");
 
-        Session session = Session.getInstance(props, authenticator);
+        Session session = pool.session(settings);
         MimeMessage mime = new MimeMessage(session);
 
         InternetAddress from = new InternetAddress(message.from(), false);
@@ -78,6 +62,11 @@ public final class SmtpEmailSender implements EmailSender {
         mime.setSubject(subject, StandardCharsets.UTF_8.name());
         mime.setText(body, StandardCharsets.UTF_8.name());
         mime.setSentDate(new Date());
-        Transport.send(mime);
+        pool.send(settings, mime);
+    }
+
+    @Override
+    public void close() {
+        pool.close();
     }
 }
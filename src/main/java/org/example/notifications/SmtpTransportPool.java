@@ -0,0 +1,227 @@
+package org.example.notifications;
+
+import jakarta.mail.MessagingException;
+import jakarta.mail.SendFailedException;
+import jakarta.mail.Session;
+import jakarta.mail.Transport;
+import jakarta.mail.internet.MimeMessage;
+import org.example.model.NotificationSettings;
+import org.example.model.SmtpSecurity;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * Connexions SMTP authentifiées gardées ouvertes d'un envoi à l'autre : une poignée de main (TCP, STARTTLS, AUTH)
+ * par lot au lieu d'une par message. Une connexion sert au plus {@code maxMessages} envois et n'est pas reprise après
+ * {@code maxIdle} d'inactivité ; la session JavaMail est partagée par empreinte des réglages de connexion.
+ */
+final class SmtpTransportPool implements AutoCloseable {
+
+    private static final Logger log = LoggerFactory.getLogger(SmtpTransportPool.class);
+
+    static final int DEFAULT_MAX_MESSAGES = Math.max(1, Integer.getInteger("app.smtpMaxMessages", 100));
+    static final Duration DEFAULT_MAX_IDLE = Duration.ofSeconds(Math.max(1, Long.getLong("app.smtpIdleSeconds", 60)));
+    /** Connexions inactives gardées par serveur ; au-delà, elles sont fermées au retour. */
+    private static final int MAX_IDLE_CONNECTIONS = 8;
+
+    private final int maxMessages;
+    private final long maxIdleNanos;
+    private final LongSupplier clock;
+    private final Properties sessionOverrides;
+    private final Map<Fingerprint, Endpoint> endpoints = new ConcurrentHashMap<>();
+    private final AtomicLong connects = new AtomicLong();
+
+    SmtpTransportPool() {
+        this(DEFAULT_MAX_MESSAGES, DEFAULT_MAX_IDLE, System::nanoTime);
+    }
+
+    SmtpTransportPool(int maxMessages, Duration maxIdle, LongSupplier clock) {
+        this(maxMessages, maxIdle, clock, new Properties());
+    }
+
+    /** {@code sessionOverrides} complète les propriétés JavaMail de chaque session (bancs d'essai uniquement). */
+    SmtpTransportPool(int maxMessages, Duration maxIdle, LongSupplier clock, Properties sessionOverrides) {
+        this.maxMessages = Math.max(1, maxMessages);
+        this.maxIdleNanos = maxIdle.toNanos();
+        this.clock = clock;
+        this.sessionOverrides = sessionOverrides;
+    }
+
+    /** Session partagée par tous les réglages de même empreinte, même d'un instantané à l'autre. */
+    Session session(NotificationSettingsSnapshot cfg) {
+        return endpoint(cfg).session;
+    }
+
+    /**
+     * Envoie sur une connexion du pool. Une connexion reprise qui échoue a pu être fermée par le serveur : l'envoi est
+     * retenté une fois sur une connexion neuve. Un refus de destinataire laisse la connexion réutilisable.
+     */
+    void send(NotificationSettingsSnapshot cfg, MimeMessage message) throws MessagingException {
+        Endpoint endpoint = endpoint(cfg);
+        message.saveChanges();
+        Pooled pooled = endpoint.borrow();
+        boolean reused = pooled != null;
+        if (!reused) {
+            pooled = connect(endpoint);
+        }
+        try {
+            pooled.transport.sendMessage(message, message.getAllRecipients());
+        } catch (SendFailedException refused) {
+            endpoint.release(pooled);
+            throw refused;
+        } catch (MessagingException | IllegalStateException ex) {
+            closeQuietly(pooled.transport);
+            if (!reused) {
+                throw ex;
+            }
+            log.debug("[SmtpTransportPool] Connexion réutilisée perdue, nouvelle tentative : {}", ex.getMessage());
+            pooled = connect(endpoint);
+            try {
+                pooled.transport.sendMessage(message, message.getAllRecipients());
+            } catch (SendFailedException refused) {
+                endpoint.release(pooled);
+                throw refused;
+            } catch (MessagingException | IllegalStateException retryFailure) {
+                closeQuietly(pooled.transport);
+                throw retryFailure;
+            }
+        }
+        endpoint.release(pooled);
+    }
+
+    /** Nombre de connexions ouvertes depuis la création du pool. */
+    long connectCount() {
+        return connects.get();
+    }
+
+    /** Ferme les connexions restées inactives trop longtemps et oublie les empreintes qui n'en ont plus. */
+    void evictIdle() {
+        long now = clock.getAsLong();
+        endpoints.values().removeIf(endpoint -> endpoint.evict(now));
+    }
+
+    @Override
+    public void close() {
+        for (Endpoint endpoint : endpoints.values()) {
+            endpoint.closeAll();
+        }
+        endpoints.clear();
+    }
+
+    private Endpoint endpoint(NotificationSettingsSnapshot cfg) {
+        evictIdle();
+        return endpoints.computeIfAbsent(Fingerprint.of(cfg.settings()), k -> new Endpoint(
+                sessionOverrides.isEmpty() ? cfg.mailSession() : cfg.mailSession(sessionOverrides)));
+    }
+
+    private Pooled connect(Endpoint endpoint) throws MessagingException {
+        Transport transport = endpoint.session.getTransport("smtp");
+        transport.connect();
+        connects.incrementAndGet();
+        return new Pooled(transport);
+    }
+
+    private static void closeQuietly(Transport transport) {
+        try {
+            transport.close();
+        } catch (MessagingException | RuntimeException ignored) {
+            // Connexion déjà perdue.
+        }
+    }
+
+    /** Ce qui détermine la connexion ; les gabarits ou l'expéditeur peuvent changer sans rouvrir de session. */
+    private record Fingerprint(String host, int port, SmtpSecurity security, String username, String password) {
+        static Fingerprint of(NotificationSettings s) {
+            return new Fingerprint(s.smtpHost(), s.smtpPort(), s.smtpSecurity(), s.smtpUsername(), s.smtpPassword());
+        }
+
+        @Override
+        public String toString() {
+            // Jamais le mot de passe dans un journal.
+            return host + ":" + port;
+        }
+    }
+
+    private static final class Pooled {
+        final Transport transport;
+        int sent;
+        long idleSince;
+
+        Pooled(Transport transport) {
+            this.transport = transport;
+        }
+    }
+
+    private final class Endpoint {
+        final Session session;
+        private final Deque<Pooled> idle = new ArrayDeque<>();
+        private long lastUse = clock.getAsLong();
+
+        Endpoint(Session session) {
+            this.session = session;
+        }
+
+        /** Connexion la plus récemment rendue encore utilisable, ou {@code null}. */
+        Pooled borrow() {
+            while (true) {
+                long now = clock.getAsLong();
+                Pooled p;
+                synchronized (this) {
+                    lastUse = now;
+                    p = idle.pollFirst();
+                }
+                if (p == null) {
+                    return null;
+                }
+                // isConnected() sonde le serveur (NOOP) : hors verrou.
+                if (now - p.idleSince < maxIdleNanos && p.transport.isConnected()) {
+                    return p;
+                }
+                closeQuietly(p.transport);
+            }
+        }
+
+        void release(Pooled p) {
+            p.sent++;
+            long now = clock.getAsLong();
+            synchronized (this) {
+                lastUse = now;
+                if (p.sent < maxMessages && idle.size() < MAX_IDLE_CONNECTIONS) {
+                    p.idleSince = now;
+                    idle.addFirst(p);
+                    return;
+                }
+            }
+            closeQuietly(p.transport);
+        }
+
+        /** Vrai si l'empreinte peut être oubliée. */
+        synchronized boolean evict(long now) {
+            for (Iterator<Pooled> it = idle.iterator(); it.hasNext(); ) {
+                Pooled p = it.next();
+                if (now - p.idleSince >= maxIdleNanos) {
+                    it.remove();
+                    closeQuietly(p.transport);
+                }
+            }
+            return idle.isEmpty() && now - lastUse >= maxIdleNanos;
+        }
+
+        synchronized void closeAll() {
+            for (Pooled p : idle) {
+                closeQuietly(p.transport);
+            }
+            idle.clear();
+        }
+    }
+}
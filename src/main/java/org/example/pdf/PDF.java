@@ -8,13 +8,16 @@ import javafx.scene.control.Alert;
 import javafx.scene.control.ButtonType;
 import javafx.stage.FileChooser;
 import javafx.stage.Stage;
-import org.example.dao.DB;
+import org.example.dao.DataStore;
 import org.example.gui.ThemeManager;
 import org.example.model.Prestataire;
+import org.example.model.ServiceRow;
 
 import java.io.FileOutputStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 public final class PDF {
@@ -33,7 +36,7 @@ public final class PDF {
         }
     }
 
-    public static void historiqueGlobal(Stage owner, DB dao) {
+    public static void historiqueGlobal(Stage owner, DataStore dao) {
         Path file = choose(owner, "Historique_global_prestataires.pdf");
         if (file != null) {
             try {
@@ -73,7 +76,7 @@ public final class PDF {
         generateFiche(file, p);
     }
 
-    public static void generateHistorique(Path file, DB dao) throws Exception {
+    public static void generateHistorique(Path file, DataStore dao) throws Exception {
         Files.createDirectories(file.getParent());
         try (Document doc = new Document();
              FileOutputStream out = new FileOutputStream(file.toFile())) {
@@ -82,8 +85,9 @@ public final class PDF {
             doc.add(new Paragraph("Historique des contrats et services",
                     FontFactory.getFont(FontFactory.HELVETICA_BOLD, 18)));
             doc.add(new Paragraph(" "));
+            Map<Integer, List<ServiceRow>> services = dao.allServices();
             dao.list("").forEach(p ->
-                    dao.services(p.getId()).forEach(sr -> {
+                    services.getOrDefault(p.getId(), List.of()).forEach(sr -> {
                         try {
                             doc.add(new Paragraph(sr.date()
                                     + " - " + p.getNom()
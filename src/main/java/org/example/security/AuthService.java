@@ -1,8 +1,9 @@
 package org.example.security;
 
 import org.example.dao.AuthDB;
+import org.example.dao.DataKeyRotation;
+import org.example.dao.PortableArchive;
 import org.example.dao.UserDB;
-import org.example.dao.SqlcipherUtil;
 import org.example.util.AppPaths;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -12,19 +13,17 @@ import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.StandardCopyOption;
 import java.security.SecureRandom;
-import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Base64;
 import java.util.HexFormat;
 import java.util.List;
 
 public final class AuthService {
-    private static final int    KDF_ITER_REG  = 150_000;
-    private static final int    KDF_ITER_NEW  = 180_000;
-    private static final int    SALT_BYTES    = 16;
+    private static final int    SALT_BYTES    = PasswordKdf.SALT_BYTES;
     private static final int    MIN_PWD_LEN   = 8;
     private static final SecureRandom RNG     = new SecureRandom();
     private static final Logger log = LoggerFactory.getLogger(AuthService.class);
@@ -37,30 +36,47 @@ public final class AuthService {
         return MIN_PWD_LEN;
     }
 
-    public void register(String username, char[] pwd) throws Exception {
+    /**
+     * Crée le compte et retourne sa session. La base de l'utilisateur sera chiffrée par une clé de données aléatoire,
+     * stockée enveloppée par la clé issue du mot de passe : changer ce dernier ne touche pas à la base.
+     */
+    public Session register(String username, char[] pwd) throws Exception {
         String user = normalizeUsername(username);
         ensurePasswordStrength(pwd);
         byte[] salt = RNG.generateSeed(SALT_BYTES);
-        String hash;
+        PasswordKdf.Params params = PasswordKdf.current();
+        PasswordKdf.Derived derived;
         try {
-            hash = CryptoUtils.hashPwd(pwd);
+            derived = PasswordKdf.derive(pwd, salt, params);
         } finally {
             Arrays.fill(pwd, '\0');
         }
-        try (PreparedStatement ps = store.c().prepareStatement(
-                "INSERT INTO users(username,pwd_hash,kdf_salt,kdf_iters) VALUES(?,?,?,?)")) {
+        SecretKey dataKey = PasswordKdf.newDataKey();
+        try (PreparedStatement ps = store.c().prepareStatement("""
+                INSERT INTO users(username,pwd_hash,kdf_salt,kdf_iters,kdf_version,kdf_memory,kdf_parallelism,wrapped_key)
+                VALUES(?,?,?,?,?,?,?,?)""", PreparedStatement.RETURN_GENERATED_KEYS)) {
             ps.setString(1, user);
-            ps.setString(2, hash);
+            ps.setString(2, Base64.getEncoder().encodeToString(derived.verifier()));
             ps.setBytes (3, salt);
-            ps.setInt   (4, KDF_ITER_REG);
+            ps.setInt   (4, params.iterations());
+            ps.setInt   (5, PasswordKdf.VERSION_2);
+            ps.setInt   (6, params.memoryKib());
+            ps.setInt   (7, params.parallelism());
+            ps.setBytes (8, PasswordKdf.wrap(dataKey, derived.key()));
             ps.executeUpdate();
+            int uid;
+            try (ResultSet keys = ps.getGeneratedKeys()) {
+                if (!keys.next()) throw new SQLException("Identifiant du compte créé introuvable");
+                uid = keys.getInt(1);
+            }
+            log.debug("[Auth] user registered: {}", user);
+            return new Session(uid, dataKey, user);
         } catch (SQLException e) {
             if (isUniqueConstraint(e)) {
                 throw new IllegalArgumentException("Ce nom d'utilisateur existe déjà.", e);
             }
             throw e;
         }
-        log.debug("[Auth] user registered: {}", user);
     }
 
     public Session login(String username, char[] pwd) throws Exception {
@@ -70,31 +86,115 @@ public final class AuthService {
             return null;
         }
         try {
-            try (PreparedStatement ps = store.c().prepareStatement(
-                    "SELECT id,pwd_hash,kdf_salt,kdf_iters FROM users WHERE username=?")) {
-                ps.setString(1, user);
-                try (ResultSet rs = ps.executeQuery()) {
-                    if (!rs.next()) {
-                        log.debug("[Auth] login failed (unknown user): {}", user);
-                        return null;
-                    }
-                    String hash = rs.getString("pwd_hash");
-                    if (!CryptoUtils.verifyPwd(pwd, hash)) {
-                        log.debug("[Auth] login failed (bad password): {}", user);
-                        return null;
-                    }
-                    byte[] salt = rs.getBytes("kdf_salt");
-                    int    it   = rs.getInt("kdf_iters");
-                    SecretKey key = CryptoUtils.deriveKey(pwd, salt, it);
-                    int uid = rs.getInt("id");
-                    log.debug("[Auth] login OK: {} (id={})", user, uid);
-                    return new Session(uid, key, user);
-                }
+            Unlocked unlocked = unlock(user, pwd);
+            if (unlocked == null) return null;
+            SecretKey key = unlocked.dataKey();
+            if (unlocked.account().pendingKey() != null && unlocked.kek() != null) {
+                // Renouvellement de clé interrompu : on le termine avant d'ouvrir la base.
+                log.info("[Auth] resuming data key rotation for user id={}", unlocked.account().id());
+                key = finishRotation(unlocked.account().id(), user, key,
+                        PasswordKdf.unwrap(unlocked.account().pendingKey(), unlocked.kek()), unlocked.kek());
             }
+            log.debug("[Auth] login OK: {} (id={})", user, unlocked.account().id());
+            return new Session(unlocked.account().id(), key, user);
         } finally {
             Arrays.fill(pwd, '\0');
         }
     }
+
+    private record Account(int id, String hash, byte[] salt, int iterations, int version,
+                           int memoryKib, int parallelism, byte[] wrappedKey, byte[] pendingKey) {
+        PasswordKdf.Params params() {
+            return new PasswordKdf.Params(iterations, memoryKib, parallelism);
+        }
+    }
+
+    /** {@code kek} est nul si un compte v1 n'a pas pu passer en v2 : il garde alors sa clé PBKDF2 non enveloppée. */
+    private record Unlocked(Account account, SecretKey kek, SecretKey dataKey) {
+    }
+
+    private Account findAccount(String user) throws SQLException {
+        try (PreparedStatement ps = store.c().prepareStatement("""
+                SELECT id,pwd_hash,kdf_salt,kdf_iters,kdf_version,kdf_memory,kdf_parallelism,wrapped_key,pending_key
+                FROM users WHERE username=?""")) {
+            ps.setString(1, user);
+            try (ResultSet rs = ps.executeQuery()) {
+                if (!rs.next()) return null;
+                return new Account(rs.getInt("id"), rs.getString("pwd_hash"), rs.getBytes("kdf_salt"),
+                        rs.getInt("kdf_iters"), rs.getInt("kdf_version"), rs.getInt("kdf_memory"),
+                        rs.getInt("kdf_parallelism"), rs.getBytes("wrapped_key"), rs.getBytes("pending_key"));
+            }
+        }
+    }
+
+    /** Vérifie le mot de passe et ouvre l'enveloppe ; {@code null} si refusé. N'efface pas {@code pwd}. */
+    private Unlocked unlock(String user, char[] pwd) throws Exception {
+        Account account = findAccount(user);
+        if (account == null) {
+            log.debug("[Auth] login failed (unknown user): {}", user);
+            return null;
+        }
+        if (account.version() >= PasswordKdf.VERSION_2) {
+            PasswordKdf.Derived derived = PasswordKdf.derive(pwd, account.salt(), account.params());
+            if (!derived.matches(decodeVerifier(account.hash()))) {
+                log.debug("[Auth] login failed (bad password): {}", user);
+                return null;
+            }
+            // Sans enveloppe (comptes créés avant son introduction), la clé dérivée est la clé de données.
+            SecretKey dataKey = account.wrappedKey() == null
+                    ? derived.key()
+                    : PasswordKdf.unwrap(account.wrappedKey(), derived.key());
+            return new Unlocked(account, derived.key(), dataKey);
+        }
+        if (!CryptoUtils.verifyPwd(pwd, account.hash())) {
+            log.debug("[Auth] login failed (bad password): {}", user);
+            return null;
+        }
+        SecretKey legacyKey = CryptoUtils.deriveKey(pwd, account.salt(), account.iterations());
+        return new Unlocked(account, upgradeToV2(account, pwd, legacyKey), legacyKey);
+    }
+
+    private static byte[] decodeVerifier(String stored) {
+        try {
+            return Base64.getDecoder().decode(stored);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    /*
+     * Passage d'un compte v1 au schéma v2 juste après une connexion réussie. La base de l'utilisateur reste chiffrée
+     * avec sa clé PBKDF2 : celle-ci devient la clé de données, enveloppée par la clé v2, sans réécrire le fichier.
+     * Un échec n'empêche pas la connexion ; on retentera à la suivante.
+     */
+    private SecretKey upgradeToV2(Account account, char[] pwd, SecretKey legacyKey) {
+        try {
+            byte[] salt = RNG.generateSeed(SALT_BYTES);
+            PasswordKdf.Params params = PasswordKdf.current();
+            PasswordKdf.Derived derived = PasswordKdf.derive(pwd, salt, params);
+            try (PreparedStatement ps = store.c().prepareStatement("""
+                    UPDATE users SET pwd_hash=?,kdf_salt=?,kdf_iters=?,kdf_version=?,kdf_memory=?,kdf_parallelism=?,
+                                     wrapped_key=?
+                    WHERE id=? AND kdf_version=?""")) {
+                ps.setString(1, Base64.getEncoder().encodeToString(derived.verifier()));
+                ps.setBytes (2, salt);
+                ps.setInt   (3, params.iterations());
+                ps.setInt   (4, PasswordKdf.VERSION_2);
+                ps.setInt   (5, params.memoryKib());
+                ps.setInt   (6, params.parallelism());
+                ps.setBytes (7, PasswordKdf.wrap(legacyKey, derived.key()));
+                ps.setInt   (8, account.id());
+                ps.setInt   (9, PasswordKdf.VERSION_LEGACY);
+                ps.executeUpdate();
+            }
+            log.info("[Auth] KDF upgraded to v2 for user id={}", account.id());
+            return derived.key();
+        } catch (Exception ex) {
+            log.warn("[Auth] KDF upgrade failed for user id={}: {}", account.id(), ex.getMessage());
+            return null;
+        }
+    }
+
     public String getUsername(int userId) throws Exception {
         try (PreparedStatement ps = store.c().prepareStatement(
                 "SELECT username FROM users WHERE id=?")) {
@@ -104,44 +204,145 @@ public final class AuthService {
             }
         }
     }
-    public void changePassword(int userId, char[] oldPwd, char[] newPwd) throws Exception {
-        String username = getUsername(userId);
-        if (username == null) throw new IllegalArgumentException("Utilisateur introuvable.");
-        ensurePasswordStrength(newPwd);
-        Session sess = login(username, oldPwd);
-        if (sess == null) throw new IllegalArgumentException("Mot de passe incorrect");
 
-        byte[] newSalt = RNG.generateSeed(SALT_BYTES);
-        String newHash;
-        SecretKey newKey;
+    /** Ne réenveloppe que la clé de données : la base de l'utilisateur n'est ni rouverte ni réécrite. */
+    public void changePassword(int userId, char[] oldPwd, char[] newPwd) throws Exception {
         try {
-            newHash = CryptoUtils.hashPwd(newPwd);
-            newKey = CryptoUtils.deriveKey(newPwd, newSalt, KDF_ITER_NEW);
+            String username = getUsername(userId);
+            if (username == null) throw new IllegalArgumentException("Utilisateur introuvable.");
+            ensurePasswordStrength(newPwd);
+            Unlocked unlocked = unlock(username, oldPwd);
+            if (unlocked == null) throw new IllegalArgumentException("Mot de passe incorrect");
+
+            byte[] newSalt = RNG.generateSeed(SALT_BYTES);
+            PasswordKdf.Params params = PasswordKdf.current();
+            PasswordKdf.Derived derived = PasswordKdf.derive(newPwd, newSalt, params);
+            byte[] pending = null;
+            if (unlocked.account().pendingKey() != null && unlocked.kek() != null) {
+                pending = PasswordKdf.wrap(PasswordKdf.unwrap(unlocked.account().pendingKey(), unlocked.kek()), derived.key());
+            }
+
+            try (PreparedStatement ps = store.c().prepareStatement("""
+                    UPDATE users SET pwd_hash=?,kdf_salt=?,kdf_iters=?,kdf_version=?,kdf_memory=?,kdf_parallelism=?,
+                                     wrapped_key=?,pending_key=?
+                    WHERE id=?""")) {
+                ps.setString(1, Base64.getEncoder().encodeToString(derived.verifier()));
+                ps.setBytes (2, newSalt);
+                ps.setInt   (3, params.iterations());
+                ps.setInt   (4, PasswordKdf.VERSION_2);
+                ps.setInt   (5, params.memoryKib());
+                ps.setInt   (6, params.parallelism());
+                ps.setBytes (7, PasswordKdf.wrap(unlocked.dataKey(), derived.key()));
+                ps.setBytes (8, pending);
+                ps.setInt   (9, userId);
+                ps.executeUpdate();
+            }
+            log.debug("[Auth] password changed for user id={} ({})", userId, username);
         } finally {
+            Arrays.fill(oldPwd, '\0');
             Arrays.fill(newPwd, '\0');
         }
+    }
 
+    /**
+     * Remplace la clé de données du compte et rechiffre sa base ({@link DataKeyRotation}). Long sur une grosse base :
+     * à lancer en tâche de fond, base de ce compte fermée. La nouvelle clé est enregistrée avant le rechiffrement ;
+     * si l'opération est interrompue, la connexion suivante la termine.
+     */
+    public void rotateDataKey(int userId, char[] pwd) throws Exception {
         try {
-            try (UserDB udb = new UserDB(AppPaths.userDb(sess.username()).toString())) {
-                udb.openPool(sess.key().getEncoded());
-                Connection c = udb.connection();
-                SqlcipherUtil.disableWalForRekey(c);
-                SqlcipherUtil.rekey(c, newKey.getEncoded(), KDF_ITER_NEW);
-                SqlcipherUtil.enableWal(c);
+            String username = getUsername(userId);
+            if (username == null) throw new IllegalArgumentException("Utilisateur introuvable.");
+            Unlocked unlocked = unlock(username, pwd);
+            if (unlocked == null) throw new IllegalArgumentException("Mot de passe incorrect");
+            if (unlocked.kek() == null) throw new IllegalStateException("Compte non migré, reconnectez-vous puis réessayez.");
+            SecretKey next;
+            if (unlocked.account().pendingKey() != null) {
+                next = PasswordKdf.unwrap(unlocked.account().pendingKey(), unlocked.kek());
+            } else {
+                next = PasswordKdf.newDataKey();
+                try (PreparedStatement ps = store.c().prepareStatement("UPDATE users SET pending_key=? WHERE id=?")) {
+                    ps.setBytes(1, PasswordKdf.wrap(next, unlocked.kek()));
+                    ps.setInt  (2, userId);
+                    ps.executeUpdate();
+                }
             }
+            finishRotation(userId, username, unlocked.dataKey(), next, unlocked.kek());
+        } finally {
+            Arrays.fill(pwd, '\0');
+        }
+    }
 
-            try (PreparedStatement ps = store.c().prepareStatement(
-                    "UPDATE users SET pwd_hash=?,kdf_salt=?,kdf_iters=? WHERE id=?")) {
-                ps.setString(1, newHash);
-                ps.setBytes (2, newSalt);
-                ps.setInt   (3, KDF_ITER_NEW);
-                ps.setInt   (4, userId);
-                ps.executeUpdate();
+    /**
+     * Exporte la base du compte dans une archive portable protégée par {@code passphrase} ({@link PortableArchive}).
+     * La base peut rester ouverte : la lecture se fait sur un instantané. Efface les deux secrets.
+     */
+    public PortableArchive.Manifest exportArchive(int userId, char[] pwd, Path target, char[] passphrase) throws Exception {
+        try {
+            String username = getUsername(userId);
+            if (username == null) throw new IllegalArgumentException("Utilisateur introuvable.");
+            Unlocked unlocked = unlock(username, pwd);
+            if (unlocked == null) throw new IllegalArgumentException("Mot de passe incorrect");
+            try (UserDB db = new UserDB(AppPaths.userDb(username).toString())) {
+                db.openPool(unlocked.dataKey().getEncoded());
+                return PortableArchive.export(db, unlocked.dataKey(), target, passphrase);
             }
-            log.debug("[Auth] password changed for user id={} ({})", userId, sess.username());
         } finally {
-            Arrays.fill(oldPwd, '\0');
+            Arrays.fill(pwd, '\0');
+            Arrays.fill(passphrase, '\0');
+        }
+    }
+
+    /**
+     * Remplace la base du compte par le contenu d'une archive, rescellé avec la clé de données du compte. La nouvelle
+     * base est construite à côté ; l'ancienne est gardée sous {@code <base>.before-import}. Base de ce compte fermée.
+     */
+    public PortableArchive.Manifest restoreArchive(int userId, char[] pwd, Path archive, char[] passphrase) throws Exception {
+        try {
+            String username = getUsername(userId);
+            if (username == null) throw new IllegalArgumentException("Utilisateur introuvable.");
+            Unlocked unlocked = unlock(username, pwd);
+            if (unlocked == null) throw new IllegalArgumentException("Mot de passe incorrect");
+            Path db = AppPaths.userDb(username);
+            Path fresh = Path.of(db + ".import");
+            deleteIfExists(fresh);
+            PortableArchive.Manifest manifest = PortableArchive.restore(archive, passphrase, fresh, unlocked.dataKey());
+
+            Path kept = Path.of(db + ".before-import");
+            List<Path[]> moved = new ArrayList<>();
+            try {
+                moveIfExists(db, kept, moved);
+                moveIfExists(Path.of(db + "-wal"), Path.of(kept + "-wal"), moved);
+                moveIfExists(Path.of(db + "-shm"), Path.of(kept + "-shm"), moved);
+                moveIfExists(fresh, db, moved);
+            } catch (RuntimeException ex) {
+                rollbackMoves(moved);
+                deleteIfExists(fresh);
+                throw new IllegalStateException("Impossible de remplacer la base par l'archive.", ex);
+            }
+            log.info("[Auth] archive restored for user id={} ({} rows)", userId, manifest.totalRows());
+            return manifest;
+        } finally {
+            Arrays.fill(pwd, '\0');
+            Arrays.fill(passphrase, '\0');
+        }
+    }
+
+    private SecretKey finishRotation(int userId, String username, SecretKey current, SecretKey next, SecretKey kek)
+            throws Exception {
+        try {
+            DataKeyRotation.run(AppPaths.userDb(username), current, next);
+        } catch (SQLException ex) {
+            throw new IllegalStateException("Renouvellement de la clé inachevé : " + ex.getMessage(), ex);
+        }
+        try (PreparedStatement ps = store.c().prepareStatement(
+                "UPDATE users SET wrapped_key=?,pending_key=NULL WHERE id=?")) {
+            ps.setBytes(1, PasswordKdf.wrap(next, kek));
+            ps.setInt  (2, userId);
+            ps.executeUpdate();
         }
+        log.info("[Auth] data key rotated for user id={}", userId);
+        return next;
     }
 
     public record Session(int userId, SecretKey key, String username) {}
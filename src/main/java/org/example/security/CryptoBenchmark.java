@@ -0,0 +1,117 @@
+package org.example.security;
+
+import javax.crypto.Cipher;
+import javax.crypto.SecretKey;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Compare les chemins de déchiffrement des descriptions de services : l'ancien ({@code Cipher.getInstance} à chaque
+ * ligne, copies via {@link CryptoUtils.CipherBlob}), le chemin Base64 actuel et l'API sur tampons réutilisés.
+ * <p>
+ * En ligne de commande : {@code CryptoBenchmark [lignes]} (100 000 par défaut).
+ */
+public final class CryptoBenchmark {
+
+    public static final int DEFAULT_ROWS = 100_000;
+
+    /** {@code bytesPerRow} vaut -1 si la JVM ne mesure pas les allocations par thread. */
+    public record Result(String path, int rows, long millis, long bytesPerRow) {
+        @Override
+        public String toString() {
+            return String.format(Locale.ROOT, "%-16s %7d lignes  %6d ms  %6d octets alloués/ligne",
+                    path, rows, millis, bytesPerRow);
+        }
+    }
+
+    private CryptoBenchmark() {
+    }
+
+    public static List<Result> run(int rows) throws GeneralSecurityException {
+        byte[] raw = new byte[32];
+        new SecureRandom().nextBytes(raw);
+        SecretKey key = new SecretKeySpec(raw, "AES");
+
+        String[] base64 = new String[rows];
+        byte[][] sealed = new byte[rows][];
+        int maxPlain = 0;
+        for (int i = 0; i < rows; i++) {
+            String plain = description(i);
+            base64[i] = CryptoUtils.encryptToBase64(plain, key);
+            sealed[i] = Base64.getDecoder().decode(base64[i]);
+            maxPlain = Math.max(maxPlain, sealed[i].length - CryptoUtils.SEALED_OVERHEAD);
+        }
+        byte[] out = new byte[maxPlain];
+
+        List<Result> results = new ArrayList<>();
+        // Un premier tour à blanc par chemin, pour que le JIT ne pèse pas sur la mesure.
+        for (int round = 0; round < 2; round++) {
+            results.clear();
+            results.add(measure("getInstance", rows, i -> {
+                CryptoUtils.CipherBlob blob = CryptoUtils.base64ToBlob(base64[i]);
+                Cipher c = Cipher.getInstance("AES/GCM/NoPadding");
+                c.init(Cipher.DECRYPT_MODE, key, new GCMParameterSpec(128, blob.iv()));
+                return new String(c.doFinal(blob.ciphertext()), StandardCharsets.UTF_8).length();
+            }));
+            results.add(measure("base64", rows, i -> CryptoUtils.decryptFromBase64(base64[i], key).length()));
+            results.add(measure("tampons", rows, i -> CryptoUtils.decrypt(sealed[i], 0, sealed[i].length, out, 0, key)));
+            ByteBuffer outBuf = ByteBuffer.wrap(out);
+            ByteBuffer[] sealedBufs = new ByteBuffer[rows];
+            for (int i = 0; i < rows; i++) sealedBufs[i] = ByteBuffer.wrap(sealed[i]);
+            results.add(measure("ByteBuffer", rows, i -> {
+                outBuf.clear();
+                return CryptoUtils.decrypt(sealedBufs[i].rewind(), outBuf, key);
+            }));
+        }
+        return results;
+    }
+
+    @FunctionalInterface
+    private interface Row {
+        int decrypt(int i) throws GeneralSecurityException;
+    }
+
+    private static Result measure(String path, int rows, Row row) throws GeneralSecurityException {
+        long bytesBefore = allocatedBytes();
+        long t0 = System.nanoTime();
+        long sink = 0;
+        for (int i = 0; i < rows; i++) {
+            sink += row.decrypt(i);
+        }
+        long millis = (System.nanoTime() - t0) / 1_000_000;
+        long bytesAfter = allocatedBytes();
+        if (sink < 0) {
+            throw new IllegalStateException();
+        }
+        long perRow = bytesBefore < 0 || rows == 0 ? -1 : (bytesAfter - bytesBefore) / rows;
+        return new Result(path, rows, millis, perRow);
+    }
+
+    private static long allocatedBytes() {
+        ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (bean instanceof com.sun.management.ThreadMXBean hotspot && hotspot.isThreadAllocatedMemorySupported()) {
+            if (!hotspot.isThreadAllocatedMemoryEnabled()) hotspot.setThreadAllocatedMemoryEnabled(true);
+            return hotspot.getThreadAllocatedBytes(Thread.currentThread().getId());
+        }
+        return -1;
+    }
+
+    private static String description(int i) {
+        return String.format(Locale.ROOT, "Intervention n°%d – remplacement filtre, contrôle étanchéité (%x)", i, i * 0x9E3779B1);
+    }
+
+    public static void main(String[] args) throws Exception {
+        int rows = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_ROWS;
+        for (Result r : run(rows)) System.out.println(r);
+    }
+}
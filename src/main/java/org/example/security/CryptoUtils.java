@@ -9,8 +9,10 @@ import javax.crypto.spec.GCMParameterSpec;
 import javax.crypto.spec.PBEKeySpec;
 import javax.crypto.spec.SecretKeySpec;
 import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 import java.security.GeneralSecurityException;
 import java.security.SecureRandom;
+import java.util.Arrays;
 import java.util.Base64;
 
 public final class CryptoUtils {
@@ -20,6 +22,23 @@ public final class CryptoUtils {
     private static final int GCM_TAG_BITS = 128;
     private static final int GCM_IV_BYTES = 12;
 
+    /** Octets ajoutés au clair par {@link #encrypt(ByteBuffer, ByteBuffer, SecretKey)} : IV en tête, tag GCM en fin. */
+    public static final int SEALED_OVERHEAD = GCM_IV_BYTES + GCM_TAG_BITS / 8;
+
+    /**
+     * Un {@link Cipher} par thread, réinitialisé à chaque appel : {@code Cipher.getInstance} parcourt les fournisseurs
+     * et coûte bien plus cher que le chiffrement d'une description de quelques dizaines d'octets.
+     */
+    private static final ThreadLocal<Cipher> GCM = ThreadLocal.withInitial(() -> {
+        try {
+            return Cipher.getInstance("AES/GCM/NoPadding");
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("AES/GCM indisponible", e);
+        }
+    });
+    private static final ThreadLocal<byte[]> IV = ThreadLocal.withInitial(() -> new byte[GCM_IV_BYTES]);
+    private static final ThreadLocal<byte[]> SCRATCH = ThreadLocal.withInitial(() -> new byte[256]);
+
     public static String hashPwd(char[] pwd) {
         return ARGON.hash(3, 1 << 16, 2, pwd);
     }
@@ -39,31 +58,103 @@ public final class CryptoUtils {
     public static CipherBlob encrypt(byte[] plain, SecretKey key) throws GeneralSecurityException {
         byte[] iv = new byte[GCM_IV_BYTES];
         RNG.nextBytes(iv);
-        Cipher c = Cipher.getInstance("AES/GCM/NoPadding");
+        Cipher c = GCM.get();
         c.init(Cipher.ENCRYPT_MODE, key, new GCMParameterSpec(GCM_TAG_BITS, iv));
         return new CipherBlob(iv, c.doFinal(plain));
     }
 
     public static byte[] decrypt(CipherBlob blob, SecretKey key) throws GeneralSecurityException {
-        Cipher c = Cipher.getInstance("AES/GCM/NoPadding");
+        Cipher c = GCM.get();
         c.init(Cipher.DECRYPT_MODE, key, new GCMParameterSpec(GCM_TAG_BITS, blob.iv()));
         return c.doFinal(blob.ciphertext());
     }
 
+    /**
+     * Chiffre {@code plain} (de sa position à sa limite) et écrit {@code IV ‖ chiffré ‖ tag} dans {@code out}, qui doit
+     * disposer de {@code plain.remaining() + SEALED_OVERHEAD} octets. Retourne le nombre d'octets écrits.
+     */
+    public static int encrypt(ByteBuffer plain, ByteBuffer out, SecretKey key) throws GeneralSecurityException {
+        byte[] iv = IV.get();
+        RNG.nextBytes(iv);
+        Cipher c = GCM.get();
+        c.init(Cipher.ENCRYPT_MODE, key, new GCMParameterSpec(GCM_TAG_BITS, iv));
+        out.put(iv);
+        return GCM_IV_BYTES + c.doFinal(plain, out);
+    }
+
+    /**
+     * Inverse de {@link #encrypt(ByteBuffer, ByteBuffer, SecretKey)} : lit {@code IV ‖ chiffré ‖ tag} et écrit le clair
+     * dans {@code out} ({@code sealed.remaining() - SEALED_OVERHEAD} octets). Retourne la taille du clair.
+     */
+    public static int decrypt(ByteBuffer sealed, ByteBuffer out, SecretKey key) throws GeneralSecurityException {
+        if (sealed.remaining() < SEALED_OVERHEAD) {
+            throw new javax.crypto.AEADBadTagException("Chiffré tronqué");
+        }
+        byte[] iv = IV.get();
+        sealed.get(iv);
+        Cipher c = GCM.get();
+        c.init(Cipher.DECRYPT_MODE, key, new GCMParameterSpec(GCM_TAG_BITS, iv));
+        return c.doFinal(sealed, out);
+    }
+
+    /** Variante sur tableaux de {@link #decrypt(ByteBuffer, ByteBuffer, SecretKey)}, sans objet intermédiaire. */
+    public static int decrypt(byte[] sealed, int off, int len, byte[] out, int outOff, SecretKey key)
+            throws GeneralSecurityException {
+        if (len < SEALED_OVERHEAD) {
+            throw new javax.crypto.AEADBadTagException("Chiffré tronqué");
+        }
+        Cipher c = GCM.get();
+        c.init(Cipher.DECRYPT_MODE, key, new GCMParameterSpec(GCM_TAG_BITS, sealed, off, GCM_IV_BYTES));
+        return c.doFinal(sealed, off + GCM_IV_BYTES, len - GCM_IV_BYTES, out, outOff);
+    }
+
+    /** Chiffre un texte au format Base64 de {@link #blobToBase64(CipherBlob)}. */
+    public static String encryptToBase64(String plain, SecretKey key) throws GeneralSecurityException {
+        byte[] clear = plain.getBytes(StandardCharsets.UTF_8);
+        byte[] sealed = new byte[clear.length + SEALED_OVERHEAD];
+        encrypt(ByteBuffer.wrap(clear), ByteBuffer.wrap(sealed), key);
+        return Base64.getEncoder().encodeToString(sealed);
+    }
+
+    /**
+     * Déchiffre une valeur produite par {@link #encryptToBase64(String, SecretKey)} (ou {@link #blobToBase64}) en passant
+     * par un tampon du thread : seuls le décodage Base64 et la chaîne rendue sont alloués.
+     *
+     * @throws IllegalArgumentException si {@code base64} n'est pas du Base64, ou trop court pour porter un chiffré (un
+     *                                  mot clair comme « Ramonage » est aussi du Base64 valide)
+     */
+    public static String decryptFromBase64(String base64, SecretKey key) throws GeneralSecurityException {
+        byte[] sealed = Base64.getDecoder().decode(base64);
+        if (sealed.length < SEALED_OVERHEAD) {
+            throw new IllegalArgumentException("Valeur trop courte pour un chiffré");
+        }
+        byte[] out = scratch(Math.max(0, sealed.length - SEALED_OVERHEAD));
+        int n = decrypt(sealed, 0, sealed.length, out, 0, key);
+        return new String(out, 0, n, StandardCharsets.UTF_8);
+    }
+
+    private static byte[] scratch(int size) {
+        byte[] buf = SCRATCH.get();
+        if (buf.length < size) {
+            buf = new byte[Math.max(size, buf.length * 2)];
+            SCRATCH.set(buf);
+        }
+        return buf;
+    }
+
     public static String blobToBase64(CipherBlob b) {
-        ByteBuffer buf = ByteBuffer.allocate(GCM_IV_BYTES + b.ciphertext().length)
-                .put(b.iv())
-                .put(b.ciphertext());
-        return Base64.getEncoder().encodeToString(buf.array());
+        byte[] all = new byte[GCM_IV_BYTES + b.ciphertext().length];
+        System.arraycopy(b.iv(), 0, all, 0, GCM_IV_BYTES);
+        System.arraycopy(b.ciphertext(), 0, all, GCM_IV_BYTES, b.ciphertext().length);
+        return Base64.getEncoder().encodeToString(all);
     }
 
     public static CipherBlob base64ToBlob(String s) {
         byte[] all = Base64.getDecoder().decode(s);
-        byte[] iv = new byte[GCM_IV_BYTES];
-        byte[] ct = new byte[all.length - GCM_IV_BYTES];
-        System.arraycopy(all, 0, iv, 0, GCM_IV_BYTES);
-        System.arraycopy(all, GCM_IV_BYTES, ct, 0, ct.length);
-        return new CipherBlob(iv, ct);
+        if (all.length < GCM_IV_BYTES) {
+            throw new IllegalArgumentException("Valeur trop courte pour un chiffré");
+        }
+        return new CipherBlob(Arrays.copyOfRange(all, 0, GCM_IV_BYTES), Arrays.copyOfRange(all, GCM_IV_BYTES, all.length));
     }
 
     private CryptoUtils() {}
@@ -0,0 +1,142 @@
+package org.example.security;
+
+import javax.crypto.AEADBadTagException;
+import javax.crypto.Cipher;
+import javax.crypto.SecretKey;
+import javax.crypto.spec.GCMParameterSpec;
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Format binaire des colonnes chiffrées, stockées en {@code BLOB} :
+ * <pre>
+ *   [version:1][options:1][IV:12][chiffré + tag GCM:16]
+ * </pre>
+ * Les deux premiers octets sont authentifiés avec le contenu (données associées GCM), si bien qu'on ne peut pas
+ * basculer l'option de compression sans invalider le tag. Avec {@link #DEFLATE}, le clair chiffré est
+ * {@code [taille d'origine:4][flux deflate brut]} ; on ne compresse que les textes longs, et seulement si c'est rentable.
+ */
+public final class EncryptedField {
+
+    public static final byte VERSION_1 = 1;
+    public static final byte DEFLATE = 0x01;
+    /** En dessous, la compression ne fait rien gagner une fois le dictionnaire vide et l'en-tête comptés. */
+    public static final int COMPRESSION_THRESHOLD = 160;
+
+    private static final int HEADER_BYTES = 2;
+    private static final int IV_BYTES = 12;
+    private static final int TAG_BITS = 128;
+    private static final int MIN_BYTES = HEADER_BYTES + IV_BYTES + TAG_BITS / 8;
+    private static final SecureRandom RNG = new SecureRandom();
+
+    private static final ThreadLocal<Cipher> GCM = ThreadLocal.withInitial(() -> {
+        try {
+            return Cipher.getInstance("AES/GCM/NoPadding");
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("AES/GCM indisponible", e);
+        }
+    });
+    private static final ThreadLocal<Deflater> DEFLATER = ThreadLocal.withInitial(() -> new Deflater(Deflater.DEFAULT_COMPRESSION, true));
+    private static final ThreadLocal<Inflater> INFLATER = ThreadLocal.withInitial(() -> new Inflater(true));
+
+    private EncryptedField() {
+    }
+
+    public static byte[] seal(String plain, SecretKey key) throws GeneralSecurityException {
+        byte[] clear = (plain == null ? "" : plain).getBytes(StandardCharsets.UTF_8);
+        byte options = 0;
+        byte[] payload = clear;
+        if (clear.length >= COMPRESSION_THRESHOLD) {
+            byte[] packed = deflate(clear);
+            if (packed.length < clear.length) {
+                payload = packed;
+                options = DEFLATE;
+            }
+        }
+        byte[] out = new byte[MIN_BYTES + payload.length];
+        out[0] = VERSION_1;
+        out[1] = options;
+        byte[] iv = new byte[IV_BYTES];
+        RNG.nextBytes(iv);
+        System.arraycopy(iv, 0, out, HEADER_BYTES, IV_BYTES);
+        Cipher c = GCM.get();
+        c.init(Cipher.ENCRYPT_MODE, key, new GCMParameterSpec(TAG_BITS, iv));
+        c.updateAAD(out, 0, HEADER_BYTES);
+        c.doFinal(payload, 0, payload.length, out, HEADER_BYTES + IV_BYTES);
+        return out;
+    }
+
+    public static String open(byte[] stored, SecretKey key) throws GeneralSecurityException {
+        if (!isSealed(stored)) {
+            throw new AEADBadTagException("Format de champ chiffré inconnu");
+        }
+        Cipher c = GCM.get();
+        c.init(Cipher.DECRYPT_MODE, key, new GCMParameterSpec(TAG_BITS, stored, HEADER_BYTES, IV_BYTES));
+        c.updateAAD(stored, 0, HEADER_BYTES);
+        int offset = HEADER_BYTES + IV_BYTES;
+        byte[] payload = new byte[stored.length - MIN_BYTES];
+        int n = c.doFinal(stored, offset, stored.length - offset, payload, 0);
+        if ((stored[1] & DEFLATE) == 0) {
+            return new String(payload, 0, n, StandardCharsets.UTF_8);
+        }
+        return new String(inflate(payload, n), StandardCharsets.UTF_8);
+    }
+
+    /** Vrai si la valeur porte un en-tête connu ; le tag n'est vérifié qu'à l'ouverture. */
+    public static boolean isSealed(byte[] stored) {
+        return stored != null && stored.length >= MIN_BYTES && stored[0] == VERSION_1 && (stored[1] & ~DEFLATE) == 0;
+    }
+
+    public static boolean isCompressed(byte[] stored) {
+        return isSealed(stored) && (stored[1] & DEFLATE) != 0;
+    }
+
+    private static byte[] deflate(byte[] clear) {
+        Deflater d = DEFLATER.get();
+        d.reset();
+        d.setInput(clear);
+        d.finish();
+        ByteArrayOutputStream out = new ByteArrayOutputStream(clear.length / 2 + 8);
+        out.writeBytes(ByteBuffer.allocate(4).putInt(clear.length).array());
+        byte[] chunk = new byte[Math.min(clear.length, 8192)];
+        while (!d.finished()) {
+            int n = d.deflate(chunk);
+            out.write(chunk, 0, n);
+        }
+        return out.toByteArray();
+    }
+
+    private static byte[] inflate(byte[] payload, int length) throws GeneralSecurityException {
+        if (length < 4) {
+            throw new AEADBadTagException("Contenu compressé tronqué");
+        }
+        int size = ByteBuffer.wrap(payload, 0, 4).getInt();
+        if (size < 0) {
+            throw new AEADBadTagException("Taille d'origine invalide");
+        }
+        Inflater inf = INFLATER.get();
+        inf.reset();
+        inf.setInput(payload, 4, length - 4);
+        byte[] clear = new byte[size];
+        try {
+            int done = 0;
+            while (done < size && !inf.finished()) {
+                int n = inf.inflate(clear, done, size - done);
+                if (n == 0 && (inf.needsInput() || inf.needsDictionary())) break;
+                done += n;
+            }
+            if (done != size) {
+                throw new AEADBadTagException("Contenu compressé incomplet");
+            }
+        } catch (DataFormatException e) {
+            throw new AEADBadTagException("Contenu compressé illisible : " + e.getMessage());
+        }
+        return clear;
+    }
+}
@@ -0,0 +1,171 @@
+package org.example.security;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Arrays;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Consumer;
+
+/**
+ * Connexion en étapes, hors du thread JavaFX : vérification du mot de passe et dérivation de la clé, puis ouverture de
+ * la base de l'utilisateur par {@code opener}, qui signale ses propres étapes (schéma, réparation…).
+ * <p>
+ * Les étapes sont transmises au {@code progress} de l'appelant depuis le thread de travail. Une annulation rend la main
+ * tout de suite ; le travail en cours (Argon2 ne s'interrompt pas) s'arrête à la fin de son étape et une ressource déjà
+ * ouverte est rendue à {@code discard}.
+ *
+ * @param <T> ce que produit l'ouverture (base, DAO…)
+ */
+public final class LoginPipeline<T> implements AutoCloseable {
+
+    private static final Logger log = LoggerFactory.getLogger(LoginPipeline.class);
+
+    public enum Step {
+        VERIFYING("Vérification du mot de passe…"),
+        OPENING("Ouverture de la base chiffrée…"),
+        MIGRATING("Mise à jour de la base…"),
+        ENCRYPTING("Chiffrement de l'ancienne base…");
+
+        private final String label;
+
+        Step(String label) {
+            this.label = label;
+        }
+
+        public String label() {
+            return label;
+        }
+    }
+
+    /** Suivi des étapes ; les étapes longues signalent aussi leur avancement, entre 0 et 1. */
+    @FunctionalInterface
+    public interface Progress {
+        void accept(Step step);
+
+        default void accept(Step step, double fraction) {
+            accept(step);
+        }
+    }
+
+    @FunctionalInterface
+    public interface Opener<T> {
+        /**
+         * Appelé sur le thread de travail ; doit refermer ce qu'il a ouvert s'il échoue. Ce qui chiffre des champs
+         * devrait lire sa clé dans {@code lock} pour suivre le verrouillage de la session.
+         */
+        T open(AuthService.Session session, SessionLock lock, Progress progress) throws Exception;
+    }
+
+    @FunctionalInterface
+    private interface Verification {
+        AuthService.Session run() throws Exception;
+    }
+
+    public record Opened<T>(AuthService.Session session, SessionLock lock, T resource) {
+    }
+
+    /** Une tentative en cours ; {@link #result()} vaut {@code null} si les identifiants sont refusés. */
+    public static final class Attempt<T> {
+        private final CompletableFuture<Opened<T>> result = new CompletableFuture<>();
+
+        public CompletableFuture<Opened<T>> result() {
+            return result;
+        }
+
+        public void cancel() {
+            result.cancel(false);
+        }
+
+        public boolean isCancelled() {
+            return result.isCancelled();
+        }
+    }
+
+    private final AuthService auth;
+    private final Opener<T> opener;
+    private final Consumer<? super T> discard;
+    private final ExecutorService worker = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "login-worker");
+        t.setDaemon(true);
+        return t;
+    });
+
+    public LoginPipeline(AuthService auth, Opener<T> opener, Consumer<? super T> discard) {
+        this.auth = auth;
+        this.opener = opener;
+        this.discard = discard;
+    }
+
+    /** {@code pin} : code de verrouillage de cette session ({@link SessionLock}), effacé comme {@code pwd}. */
+    public Attempt<T> login(String username, char[] pwd, char[] pin, Progress progress) {
+        return start(pwd, pin, () -> auth.login(username, pwd), progress);
+    }
+
+    /** Crée le compte puis l'ouvre, sans seconde dérivation. */
+    public Attempt<T> register(String username, char[] pwd, char[] pin, Progress progress) {
+        return start(pwd, pin, () -> auth.register(username, pwd), progress);
+    }
+
+    private Attempt<T> start(char[] pwd, char[] pin, Verification verification, Progress progress) {
+        Attempt<T> attempt = new Attempt<>();
+        // Refusé avant la dérivation complète : inutile de la payer pour un code inutilisable.
+        String invalid = pin.length < SessionLock.MIN_PIN_LENGTH
+                ? "Le code de verrouillage doit compter au moins " + SessionLock.MIN_PIN_LENGTH + " caractères."
+                : Arrays.equals(pin, pwd) ? "Le code de verrouillage doit différer du mot de passe." : null;
+        if (invalid != null) {
+            Arrays.fill(pwd, '\0');
+            Arrays.fill(pin, '\0');
+            attempt.result.completeExceptionally(new IllegalArgumentException(invalid));
+            return attempt;
+        }
+        Progress report = new Progress() {
+            @Override
+            public void accept(Step step) {
+                if (attempt.isCancelled()) throw new CancellationException();
+                progress.accept(step);
+            }
+
+            @Override
+            public void accept(Step step, double fraction) {
+                if (attempt.isCancelled()) throw new CancellationException();
+                progress.accept(step, fraction);
+            }
+        };
+        worker.execute(() -> {
+            try {
+                report.accept(Step.VERIFYING);
+                AuthService.Session session = verification.run();
+                if (session == null) {
+                    attempt.result.complete(null);
+                    return;
+                }
+                SessionLock lock = new SessionLock(session.key(), pin);
+                Arrays.fill(pin, '\0');
+                report.accept(Step.OPENING);
+                T resource = opener.open(session, lock, report);
+                if (!attempt.result.complete(new Opened<>(session, lock, resource))) {
+                    log.debug("[LoginPipeline] Connexion annulée après ouverture, fermeture de la base");
+                    discard.accept(resource);
+                }
+            } catch (CancellationException cancelled) {
+                log.debug("[LoginPipeline] Connexion annulée");
+            } catch (Throwable t) {
+                attempt.result.completeExceptionally(t);
+            } finally {
+                // Déjà effacé par AuthService, sauf si l'annulation est arrivée avant la vérification.
+                Arrays.fill(pwd, '\0');
+                Arrays.fill(pin, '\0');
+            }
+        });
+        return attempt;
+    }
+
+    @Override
+    public void close() {
+        worker.shutdown();
+    }
+}
@@ -0,0 +1,155 @@
+package org.example.security;
+
+import de.mkammerer.argon2.Argon2Advanced;
+import de.mkammerer.argon2.Argon2Factory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.crypto.SecretKey;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.time.Duration;
+import java.util.Arrays;
+
+/**
+ * Dérivation des secrets de connexion.
+ * <ul>
+ *   <li>{@link #VERSION_LEGACY} : empreinte Argon2id encodée pour la vérification, puis PBKDF2 pour la clé de base.</li>
+ *   <li>{@link #VERSION_2} : une seule passe Argon2id produit 64 octets, {@code [vérificateur:32][clé:32]}. Les deux
+ *   moitiés sont indépendantes : connaître le vérificateur stocké n'apprend rien sur la clé. Cette clé enveloppe
+ *   ({@link #wrap}) la clé de données qui chiffre la base de l'utilisateur.</li>
+ * </ul>
+ * Les paramètres Argon2 sont calibrés sur la machine (voir {@link #calibrate(Duration)}) et conservés avec le compte.
+ */
+public final class PasswordKdf {
+
+    private static final Logger log = LoggerFactory.getLogger(PasswordKdf.class);
+
+    public static final int VERSION_LEGACY = 1;
+    public static final int VERSION_2 = 2;
+    public static final int SALT_BYTES = 16;
+    public static final int KEY_BYTES = 32;
+    /** Taille d'une clé enveloppée par {@link #wrap(SecretKey, SecretKey)}. */
+    public static final int WRAPPED_BYTES = KEY_BYTES + CryptoUtils.SEALED_OVERHEAD;
+
+    /** Mémoire visée (64 Mio) ; on ne descend sous ce seuil que si une seule itération dépasse déjà la cible. */
+    static final int PREFERRED_MEMORY_KIB = 64 * 1024;
+    /** Plancher recommandé pour Argon2id avec au moins deux itérations (19 Mio). */
+    static final int MIN_MEMORY_KIB = 19 * 1024;
+    static final int MIN_ITERATIONS = 2;
+    static final int MAX_ITERATIONS = 10;
+    private static final Duration DEFAULT_TARGET = Duration.ofMillis(Long.getLong("app.kdfTargetMs", 400));
+
+    private static final Argon2Advanced ARGON = Argon2Factory.createAdvanced(Argon2Factory.Argon2Types.ARGON2id);
+    private static final SecureRandom RNG = new SecureRandom();
+    private static volatile Params calibrated;
+
+    public record Params(int iterations, int memoryKib, int parallelism) {
+        public Params {
+            if (iterations < 1 || memoryKib < 8 * parallelism || parallelism < 1) {
+                throw new IllegalArgumentException("Paramètres Argon2 invalides");
+            }
+        }
+    }
+
+    /** Résultat d'une passe {@link #VERSION_2} ; {@link #verifier()} est ce qui est stocké dans {@code auth.db}. */
+    public record Derived(byte[] verifier, SecretKey key) {
+        public boolean matches(byte[] stored) {
+            return stored != null && MessageDigest.isEqual(verifier, stored);
+        }
+    }
+
+    private PasswordKdf() {
+    }
+
+    public static Derived derive(char[] pwd, byte[] salt, Params p) {
+        byte[] out = ARGON.pbkdf(p.iterations(), p.memoryKib(), p.parallelism(), pwd, StandardCharsets.UTF_8, salt,
+                2 * KEY_BYTES);
+        try {
+            return new Derived(Arrays.copyOfRange(out, 0, KEY_BYTES),
+                    new SecretKeySpec(out, KEY_BYTES, KEY_BYTES, "AES"));
+        } finally {
+            Arrays.fill(out, (byte) 0);
+        }
+    }
+
+    /** Paramètres calibrés pour cette machine, mesurés une fois par processus (cible {@code app.kdfTargetMs}). */
+    public static Params current() {
+        Params p = calibrated;
+        if (p == null) {
+            synchronized (PasswordKdf.class) {
+                p = calibrated;
+                if (p == null) {
+                    p = calibrate(DEFAULT_TARGET);
+                    calibrated = p;
+                }
+            }
+        }
+        return p;
+    }
+
+    /**
+     * Choisit des paramètres dont une dérivation prend environ {@code target} sur cette machine. Une passe d'essai à une
+     * itération donne le coût unitaire ; le nombre d'itérations en découle, borné à
+     * [{@value #MIN_ITERATIONS}, {@value #MAX_ITERATIONS}]. Sur une machine trop lente pour tenir la cible même au
+     * minimum, la mémoire est réduite par paliers jusqu'à {@link #MIN_MEMORY_KIB}.
+     */
+    public static Params calibrate(Duration target) {
+        int parallelism = Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors()));
+        long targetNanos = Math.max(1, target.toNanos());
+        byte[] salt = new byte[SALT_BYTES];
+        char[] probe = "calibration".toCharArray();
+        int memory = PREFERRED_MEMORY_KIB;
+        while (true) {
+            long t0 = System.nanoTime();
+            ARGON.pbkdf(1, memory, parallelism, probe, StandardCharsets.UTF_8, salt, KEY_BYTES);
+            long perIteration = Math.max(1, System.nanoTime() - t0);
+            long iterations = targetNanos / perIteration;
+            if (iterations >= MIN_ITERATIONS || memory <= MIN_MEMORY_KIB) {
+                Params p = new Params((int) Math.max(MIN_ITERATIONS, Math.min(MAX_ITERATIONS, iterations)),
+                        memory, parallelism);
+                log.info("[PasswordKdf] Calibré pour {} ms : t={} m={} Kio p={} ({} ms/itération)", target.toMillis(),
+                        p.iterations(), p.memoryKib(), p.parallelism(), perIteration / 1_000_000);
+                return p;
+            }
+            memory = Math.max(MIN_MEMORY_KIB, memory / 2);
+        }
+    }
+
+    /** Clé de données aléatoire : c'est elle qui chiffre la base, le mot de passe ne fait que l'envelopper. */
+    public static SecretKey newDataKey() {
+        byte[] raw = new byte[KEY_BYTES];
+        RNG.nextBytes(raw);
+        try {
+            return new SecretKeySpec(raw, "AES");
+        } finally {
+            Arrays.fill(raw, (byte) 0);
+        }
+    }
+
+    /** Chiffre (AES-GCM) une clé de base sous une clé issue du mot de passe : {@code IV ‖ chiffré ‖ tag}. */
+    public static byte[] wrap(SecretKey key, SecretKey kek) throws GeneralSecurityException {
+        byte[] raw = key.getEncoded();
+        byte[] out = new byte[raw.length + CryptoUtils.SEALED_OVERHEAD];
+        try {
+            CryptoUtils.encrypt(ByteBuffer.wrap(raw), ByteBuffer.wrap(out), kek);
+        } finally {
+            Arrays.fill(raw, (byte) 0);
+        }
+        return out;
+    }
+
+    public static SecretKey unwrap(byte[] wrapped, SecretKey kek) throws GeneralSecurityException {
+        byte[] raw = new byte[Math.max(0, wrapped.length - CryptoUtils.SEALED_OVERHEAD)];
+        try {
+            int n = CryptoUtils.decrypt(wrapped, 0, wrapped.length, raw, 0, kek);
+            return new SecretKeySpec(raw, 0, n, "AES");
+        } finally {
+            Arrays.fill(raw, (byte) 0);
+        }
+    }
+}
@@ -0,0 +1,272 @@
+package org.example.security;
+
+import javax.crypto.AEADBadTagException;
+import javax.crypto.Cipher;
+import javax.crypto.SecretKey;
+import javax.crypto.spec.GCMParameterSpec;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+import java.util.Arrays;
+
+/**
+ * Conteneur chiffré pour les flux longs (archives portables), lu et écrit par morceaux de taille fixe :
+ * <pre>
+ *   en-tête  : [magique "CPXS":4][version:1][t:4][m:4][p:4][sel:16][taille des morceaux:4]
+ *   morceaux : [drapeau final (bit 31) | taille chiffrée:4][chiffré + tag GCM:16] …
+ * </pre>
+ * La clé est dérivée de la phrase de passe par Argon2id (paramètres et sel dans l'en-tête) ; le sel étant tiré à chaque
+ * conteneur, la clé l'est aussi et l'IV peut être le simple numéro du morceau. Chaque morceau authentifie en données
+ * associées l'en-tête complet, son numéro et son drapeau final : morceaux permutés, retirés ou ajoutés en fin, ou
+ * en-tête retouché, font échouer la lecture. La mémoire occupée ne dépend que de la taille des morceaux.
+ */
+public final class SealedStream {
+
+    public static final int DEFAULT_CHUNK_BYTES = 1 << 20;
+    private static final byte[] MAGIC = {'C', 'P', 'X', 'S'};
+    private static final byte VERSION_1 = 1;
+    private static final int HEADER_BYTES = MAGIC.length + 1 + 3 * 4 + PasswordKdf.SALT_BYTES + 4;
+    private static final int TAG_BYTES = 16;
+    private static final int FINAL = 0x8000_0000;
+    private static final int MIN_CHUNK_BYTES = 4 * 1024;
+    private static final int MAX_CHUNK_BYTES = 64 << 20;
+    /** Bornes de lecture : un en-tête forgé ne doit pas pouvoir réclamer des gigaoctets à Argon2. */
+    private static final int MAX_ITERATIONS = 64;
+    private static final int MAX_MEMORY_KIB = 1 << 20;
+    private static final SecureRandom RNG = new SecureRandom();
+
+    private SealedStream() {
+    }
+
+    /** Nouveau conteneur sur {@code out}, avec les paramètres Argon2 calibrés de la machine. N'efface pas {@code passphrase}. */
+    public static Output output(WritableByteChannel out, char[] passphrase) throws IOException {
+        return output(out, passphrase, PasswordKdf.current(), DEFAULT_CHUNK_BYTES);
+    }
+
+    public static Output output(WritableByteChannel out, char[] passphrase, PasswordKdf.Params params, int chunkBytes)
+            throws IOException {
+        if (chunkBytes < MIN_CHUNK_BYTES || chunkBytes > MAX_CHUNK_BYTES) {
+            throw new IllegalArgumentException("Taille de morceau invalide : " + chunkBytes);
+        }
+        byte[] salt = new byte[PasswordKdf.SALT_BYTES];
+        RNG.nextBytes(salt);
+        ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+        header.put(MAGIC).put(VERSION_1)
+                .putInt(params.iterations()).putInt(params.memoryKib()).putInt(params.parallelism())
+                .put(salt).putInt(chunkBytes).flip();
+        byte[] headerBytes = Arrays.copyOf(header.array(), HEADER_BYTES);
+        writeFully(out, header);
+        return new Output(out, PasswordKdf.derive(passphrase, salt, params).key(), headerBytes, chunkBytes);
+    }
+
+    /** Ouvre un conteneur ; une phrase de passe fausse n'est détectée qu'au premier morceau. N'efface pas {@code passphrase}. */
+    public static Input input(ReadableByteChannel in, char[] passphrase) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+        readFully(in, header, "En-tête d'archive incomplet");
+        header.flip();
+        byte[] magic = new byte[MAGIC.length];
+        header.get(magic);
+        if (!Arrays.equals(magic, MAGIC)) {
+            throw new IOException("Ce fichier n'est pas une archive chiffrée de l'application.");
+        }
+        byte version = header.get();
+        if (version != VERSION_1) {
+            throw new IOException("Version d'archive non prise en charge : " + version);
+        }
+        int t = header.getInt();
+        int m = header.getInt();
+        int p = header.getInt();
+        byte[] salt = new byte[PasswordKdf.SALT_BYTES];
+        header.get(salt);
+        int chunkBytes = header.getInt();
+        if (t > MAX_ITERATIONS || m > MAX_MEMORY_KIB || chunkBytes < MIN_CHUNK_BYTES || chunkBytes > MAX_CHUNK_BYTES) {
+            throw new IOException("En-tête d'archive invalide.");
+        }
+        PasswordKdf.Params params;
+        try {
+            params = new PasswordKdf.Params(t, m, p);
+        } catch (IllegalArgumentException ex) {
+            throw new IOException("En-tête d'archive invalide.", ex);
+        }
+        return new Input(in, PasswordKdf.derive(passphrase, salt, params).key(), header.array(), chunkBytes);
+    }
+
+    /** Flux d'écriture ; {@link #close()} scelle le dernier morceau, marqué final, mais ne ferme pas le canal. */
+    public static final class Output extends OutputStream {
+        private final WritableByteChannel out;
+        private final Chunks chunks;
+        private final ByteBuffer plain;
+        private final ByteBuffer sealed;
+        private boolean closed;
+
+        private Output(WritableByteChannel out, SecretKey key, byte[] header, int chunkBytes) throws IOException {
+            this.out = out;
+            this.chunks = new Chunks(key, header);
+            this.plain = ByteBuffer.allocate(chunkBytes);
+            this.sealed = ByteBuffer.allocate(4 + chunkBytes + TAG_BYTES);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            ensureOpen();
+            if (!plain.hasRemaining()) seal(false);
+            plain.put((byte) b);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            ensureOpen();
+            while (len > 0) {
+                if (!plain.hasRemaining()) seal(false);
+                int n = Math.min(len, plain.remaining());
+                plain.put(b, off, n);
+                off += n;
+                len -= n;
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (closed) return;
+            seal(true);
+            closed = true;
+        }
+
+        private void seal(boolean last) throws IOException {
+            ensureOpen();
+            plain.flip();
+            sealed.clear();
+            sealed.putInt((last ? FINAL : 0) | (plain.remaining() + TAG_BYTES));
+            try {
+                chunks.cipher(Cipher.ENCRYPT_MODE, last).doFinal(plain, sealed);
+            } catch (GeneralSecurityException e) {
+                throw new IOException("Chiffrement de l'archive impossible", e);
+            }
+            sealed.flip();
+            writeFully(out, sealed);
+            plain.clear();
+        }
+
+        private void ensureOpen() throws IOException {
+            if (closed) throw new IOException("Archive déjà fermée");
+        }
+    }
+
+    /** Flux de lecture ; échoue si un morceau est altéré ou si le morceau final manque. Ne ferme pas le canal. */
+    public static final class Input extends InputStream {
+        private final ReadableByteChannel in;
+        private final Chunks chunks;
+        private final int chunkBytes;
+        private final ByteBuffer sealed;
+        private final ByteBuffer plain;
+        private final ByteBuffer length = ByteBuffer.allocate(4);
+        private boolean finished;
+
+        private Input(ReadableByteChannel in, SecretKey key, byte[] header, int chunkBytes) {
+            this.in = in;
+            this.chunks = new Chunks(key, header);
+            this.chunkBytes = chunkBytes;
+            this.sealed = ByteBuffer.allocate(chunkBytes + TAG_BYTES);
+            this.plain = ByteBuffer.allocate(chunkBytes + TAG_BYTES);
+            this.plain.limit(0);
+        }
+
+        @Override
+        public int read() throws IOException {
+            if (!fill()) return -1;
+            return plain.get() & 0xff;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (len == 0) return 0;
+            if (!fill()) return -1;
+            int n = Math.min(len, plain.remaining());
+            plain.get(b, off, n);
+            return n;
+        }
+
+        private boolean fill() throws IOException {
+            while (!plain.hasRemaining()) {
+                if (finished) return false;
+                length.clear();
+                readFully(in, length, "Archive tronquée : morceau final absent");
+                int word = length.flip().getInt();
+                boolean last = (word & FINAL) != 0;
+                int size = word & ~FINAL;
+                if (size < TAG_BYTES || size > chunkBytes + TAG_BYTES) {
+                    throw new IOException("Archive corrompue : taille de morceau invalide");
+                }
+                sealed.clear().limit(size);
+                readFully(in, sealed, "Archive tronquée");
+                sealed.flip();
+                plain.clear();
+                try {
+                    chunks.cipher(Cipher.DECRYPT_MODE, last).doFinal(sealed, plain);
+                } catch (AEADBadTagException e) {
+                    throw new IOException(chunks.index == 1
+                            ? "Phrase de passe incorrecte ou archive altérée."
+                            : "Archive altérée (morceau " + (chunks.index - 1) + ").", e);
+                } catch (GeneralSecurityException e) {
+                    throw new IOException("Déchiffrement de l'archive impossible", e);
+                }
+                plain.flip();
+                if (last) {
+                    finished = true;
+                    if (in.read(length.clear()) > 0) {
+                        throw new IOException("Archive corrompue : données après le morceau final");
+                    }
+                }
+            }
+            return true;
+        }
+    }
+
+    /** Un chiffrement par morceau : IV = numéro du morceau, données associées = en-tête ‖ numéro ‖ drapeau final. */
+    private static final class Chunks {
+        private final SecretKey key;
+        private final byte[] aad;
+        private final byte[] iv = new byte[12];
+        private final Cipher cipher;
+        private long index;
+
+        Chunks(SecretKey key, byte[] header) {
+            this.key = key;
+            this.aad = Arrays.copyOf(header, header.length + 8 + 1);
+            try {
+                this.cipher = Cipher.getInstance("AES/GCM/NoPadding");
+            } catch (GeneralSecurityException e) {
+                throw new IllegalStateException("AES/GCM indisponible", e);
+            }
+        }
+
+        Cipher cipher(int mode, boolean last) throws GeneralSecurityException {
+            ByteBuffer.wrap(iv, 4, 8).putLong(index);
+            ByteBuffer.wrap(aad, aad.length - 9, 9).putLong(index).put((byte) (last ? 1 : 0));
+            index++;
+            cipher.init(mode, key, new GCMParameterSpec(TAG_BYTES * 8, iv));
+            cipher.updateAAD(aad);
+            return cipher;
+        }
+    }
+
+    private static void writeFully(WritableByteChannel out, ByteBuffer buf) throws IOException {
+        while (buf.hasRemaining()) {
+            out.write(buf);
+        }
+    }
+
+    private static void readFully(ReadableByteChannel in, ByteBuffer buf, String truncated) throws IOException {
+        while (buf.hasRemaining()) {
+            if (in.read(buf) < 0) {
+                throw new EOFException(truncated);
+            }
+        }
+    }
+}
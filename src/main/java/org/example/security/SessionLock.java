@@ -0,0 +1,110 @@
+package org.example.security;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.crypto.SecretKey;
+import javax.crypto.spec.SecretKeySpec;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Clé de données de la session ouverte, verrouillable.
+ * <p>
+ * À la connexion, l'utilisateur choisit un code de verrouillage, distinct de son mot de passe et valable pour cette
+ * session seulement. Une copie de la clé est enveloppée sous une dérivation Argon2id volontairement légère de ce code
+ * ({@link #QUICK}, quelques millisecondes) ; seuls le sel et l'enveloppe restent en mémoire. Verrouiller efface la clé
+ * en clair ; déverrouiller rejoue la dérivation légère et ouvre l'enveloppe, le tag GCM tenant lieu de vérification du
+ * code. Le mot de passe du compte n'est jamais dérivé à coût réduit. Après {@link #MAX_FAILED_UNLOCKS} échecs
+ * l'enveloppe est détruite et seule une connexion complète rouvre la session.
+ */
+public final class SessionLock {
+
+    private static final Logger log = LoggerFactory.getLogger(SessionLock.class);
+
+    static final PasswordKdf.Params QUICK = new PasswordKdf.Params(1, 8 * 1024, 1);
+    public static final int MAX_FAILED_UNLOCKS = 5;
+    public static final int MIN_PIN_LENGTH = 4;
+    private static final SecureRandom RNG = new SecureRandom();
+
+    /** Appelés sur le thread qui verrouille ou déverrouille. */
+    public interface Listener {
+        void locked();
+
+        void unlocked();
+    }
+
+    private final byte[] salt = new byte[PasswordKdf.SALT_BYTES];
+    private byte[] wrapped;
+    private byte[] plain;
+    private int failures;
+    private final List<Listener> listeners = new CopyOnWriteArrayList<>();
+
+    /** N'efface pas {@code pin}. */
+    public SessionLock(SecretKey key, char[] pin) throws GeneralSecurityException {
+        if (pin == null || pin.length < MIN_PIN_LENGTH) {
+            throw new IllegalArgumentException("Code de verrouillage trop court (" + MIN_PIN_LENGTH + " caractères minimum)");
+        }
+        RNG.nextBytes(salt);
+        this.wrapped = PasswordKdf.wrap(key, PasswordKdf.derive(pin, salt, QUICK).key());
+        this.plain = key.getEncoded();
+    }
+
+    public void addListener(Listener listener) {
+        listeners.add(listener);
+    }
+
+    /** @throws IllegalStateException si la session est verrouillée */
+    public synchronized SecretKey key() {
+        if (plain == null) throw new IllegalStateException("Session verrouillée");
+        return new SecretKeySpec(plain, "AES");
+    }
+
+    public synchronized boolean isLocked() {
+        return plain == null;
+    }
+
+    /** Vrai si trop d'échecs ont détruit l'enveloppe : il faut se reconnecter. */
+    public synchronized boolean exhausted() {
+        return wrapped == null;
+    }
+
+    public void lock() {
+        synchronized (this) {
+            if (plain == null) return;
+            Arrays.fill(plain, (byte) 0);
+            plain = null;
+        }
+        log.info("[SessionLock] Session verrouillée");
+        for (Listener l : listeners) l.locked();
+    }
+
+    /** Efface {@code pin}. Faux si le code est refusé ou l'enveloppe détruite. */
+    public boolean unlock(char[] pin) {
+        try {
+            synchronized (this) {
+                if (plain != null) return true;
+                if (wrapped == null) return false;
+                try {
+                    plain = PasswordKdf.unwrap(wrapped, PasswordKdf.derive(pin, salt, QUICK).key()).getEncoded();
+                    failures = 0;
+                } catch (GeneralSecurityException refused) {
+                    if (++failures >= MAX_FAILED_UNLOCKS) {
+                        Arrays.fill(wrapped, (byte) 0);
+                        wrapped = null;
+                        log.warn("[SessionLock] {} échecs de déverrouillage, reconnexion requise", failures);
+                    }
+                    return false;
+                }
+            }
+            log.info("[SessionLock] Session déverrouillée");
+            for (Listener l : listeners) l.unlocked();
+            return true;
+        } finally {
+            Arrays.fill(pin, '\0');
+        }
+    }
+}
@@ -46,6 +46,16 @@ public final class AppPaths {
         return dir;
     }
 
+    public static Path backupsDir() {
+        Path dir = dataRoot().resolve("backups");
+        try {
+            Files.createDirectories(dir);
+        } catch (IOException e) {
+            throw new IllegalStateException("Impossible de créer le dossier des sauvegardes: " + dir, e);
+        }
+        return dir;
+    }
+
     private static Path computeRoot() {
         String env = System.getenv(ENV_HOME);
         Path base = (env != null && !env.isBlank())
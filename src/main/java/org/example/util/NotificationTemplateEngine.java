@@ -1,6 +1,8 @@
 package org.example.util;
 
 import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Locale;
 import java.util.Objects;
 import java.util.regex.Matcher;
@@ -29,19 +31,25 @@ public final class NotificationTemplateEngine {
     }
 
     public static String render(String template, Context context) {
+        return compile(template).render(context);
+    }
+
+    /** Découpe {@code template} une fois pour toutes ; le rendu ne fait plus que concaténer. */
+    public static Template compile(String template) {
         if (template == null || template.isBlank()) {
-            return "";
+            return Template.EMPTY;
         }
-        Context ctx = context == null ? Context.empty() : context;
+        List<String> literals = new ArrayList<>();
+        List<String> keys = new ArrayList<>();
         Matcher matcher = PLACEHOLDER_PATTERN.matcher(template);
-        StringBuffer sb = new StringBuffer(template.length());
+        int last = 0;
         while (matcher.find()) {
-            String key = matcher.group(1).toLowerCase(Locale.ROOT);
-            String replacement = valueFor(key, ctx);
-            matcher.appendReplacement(sb, Matcher.quoteReplacement(replacement));
+            literals.add(template.substring(last, matcher.start()));
+            keys.add(matcher.group(1).toLowerCase(Locale.ROOT));
+            last = matcher.end();
         }
-        matcher.appendTail(sb);
-        return sb.toString();
+        literals.add(template.substring(last));
+        return new Template(template, literals.toArray(String[]::new), keys.toArray(String[]::new));
     }
 
     private static String valueFor(String key, Context ctx) {
@@ -65,6 +73,37 @@ public final class NotificationTemplateEngine {
         return date == null ? "" : DATE_FR.format(date);
     }
 
+    /** Gabarit pré-découpé : {@code literals[i]} précède {@code keys[i]}, le dernier texte suit la dernière clé. */
+    public static final class Template {
+        static final Template EMPTY = new Template("", new String[]{""}, new String[0]);
+
+        private final String source;
+        private final String[] literals;
+        private final String[] keys;
+
+        private Template(String source, String[] literals, String[] keys) {
+            this.source = source;
+            this.literals = literals;
+            this.keys = keys;
+        }
+
+        public String source() {
+            return source;
+        }
+
+        public String render(Context context) {
+            if (keys.length == 0) {
+                return literals[0];
+            }
+            Context ctx = context == null ? Context.empty() : context;
+            StringBuilder sb = new StringBuilder(source.length() + 32);
+            for (int i = 0; i < keys.length; i++) {
+                sb.append(literals[i]).append(valueFor(keys[i], ctx));
+            }
+            return sb.append(literals[keys.length]).toString();
+        }
+    }
+
     public record Context(
             String prestataire,
             String facture,
@@ -0,0 +1,52 @@
+package org.example.util;
+
+import java.text.Normalizer;
+import java.util.Comparator;
+import java.util.Locale;
+import java.util.regex.Pattern;
+
+/**
+ * Clés de tri et de recherche des noms, calculées une fois à l'écriture puis indexées.
+ * <p>
+ * La clé suit le niveau primaire de la collation française : décomposition Unicode, accents retirés, ligatures
+ * développées ({@code œ → oe}), minuscules, tirets et apostrophes traités comme des espaces. Les noms de même clé
+ * se départagent ensuite sur le nom lui-même ({@link #NOCASE}), ce qui place la forme sans accent en premier.
+ */
+public final class SortKeys {
+
+    private static final Pattern MARKS = Pattern.compile("\\p{M}+");
+    private static final Pattern SEPARATORS = Pattern.compile("[\\s\\-‐‑–—'’ʼ`´]+");
+
+    /** Équivalent Java de {@code COLLATE NOCASE} de SQLite : seules les lettres ASCII sont repliées. */
+    public static final Comparator<String> NOCASE = SortKeys::compareNoCase;
+
+    private SortKeys() {
+    }
+
+    public static String fold(String value) {
+        if (value == null || value.isEmpty()) {
+            return "";
+        }
+        String s = Normalizer.normalize(value, Normalizer.Form.NFKD);
+        s = MARKS.matcher(s).replaceAll("");
+        s = s.replace("œ", "oe").replace("Œ", "oe")
+                .replace("æ", "ae").replace("Æ", "ae")
+                .replace("ß", "ss");
+        s = s.toLowerCase(Locale.FRENCH);
+        return SEPARATORS.matcher(s).replaceAll(" ").trim();
+    }
+
+    private static int compareNoCase(String a, String b) {
+        int n = Math.min(a.length(), b.length());
+        for (int i = 0; i < n; i++) {
+            char x = a.charAt(i);
+            char y = b.charAt(i);
+            if (x >= 'A' && x <= 'Z') x += 'a' - 'A';
+            if (y >= 'A' && y <= 'Z') y += 'a' - 'A';
+            if (x != y) {
+                return x - y;
+            }
+        }
+        return a.length() - b.length();
+    }
+}
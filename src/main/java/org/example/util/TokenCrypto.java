@@ -1,11 +1,11 @@
 package org.example.util;
 
 import org.example.security.CryptoUtils;
+import org.example.security.EncryptedField;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import javax.crypto.SecretKey;
-import java.nio.charset.StandardCharsets;
 import java.util.Base64;
 
 public final class TokenCrypto {
@@ -17,8 +17,7 @@ public final class TokenCrypto {
     public static String encrypt(String plain, SecretKey key) {
         if (plain == null || plain.isBlank()) return "";
         try {
-            return CryptoUtils.blobToBase64(
-                    CryptoUtils.encrypt(plain.getBytes(StandardCharsets.UTF_8), key));
+            return CryptoUtils.encryptToBase64(plain, key);
         } catch (Exception e) {
             throw new RuntimeException(e);
         }
@@ -27,9 +26,7 @@ public final class TokenCrypto {
     public static String decrypt(String enc, SecretKey key) {
         if (enc == null || enc.isBlank()) return "";
         try {
-            return new String(
-                    CryptoUtils.decrypt(CryptoUtils.base64ToBlob(enc), key),
-                    StandardCharsets.UTF_8);
+            return CryptoUtils.decryptFromBase64(enc, key);
         } catch (Exception e) {
             if (looksLikeBase64(enc)) {
                 log.warn("[TokenCrypto] Unable to decrypt value that appears to be encrypted. Returning placeholder.", e);
@@ -40,6 +37,29 @@ public final class TokenCrypto {
         }
     }
 
+    /** Valeur à stocker en {@code BLOB} (format {@link EncryptedField}) ; un secret vide reste une chaîne vide. */
+    public static Object seal(String plain, SecretKey key) {
+        if (plain == null || plain.isBlank()) return "";
+        try {
+            return EncryptedField.seal(plain, key);
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /** Lit une valeur stockée : {@code BLOB} chiffré, ou texte Base64 / clair des versions précédentes. */
+    public static String open(Object stored, SecretKey key) {
+        if (stored instanceof byte[] bytes) {
+            try {
+                return EncryptedField.open(bytes, key);
+            } catch (Exception e) {
+                log.warn("[TokenCrypto] Unable to decrypt stored value. Returning placeholder.", e);
+                return "";
+            }
+        }
+        return decrypt(stored == null ? null : stored.toString(), key);
+    }
+
     private static boolean looksLikeBase64(String value) {
         if (value.length() % 4 != 0) {
             return false;